@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//сравнение двух результатов JMH в формате JSON (-rf json): для каждого бенчмарка с одинаковыми параметрами
+//печатает оценку до и после и изменение в процентах; изменения в худшую сторону больше порога
+//отмечаются как регрессия, и программа завершается с кодом 1
+//запуск: java -cp benchmark/target/benchmarks.jar ru.yandex.practicum.filmorate.benchmark.BenchmarkComparison
+//        benchmark/results/<прошлый релиз>.json benchmark/results/<новый релиз>.json [порог в процентах, 10]
+public class BenchmarkComparison {
+    private static final double DEFAULT_THRESHOLD = 10;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Использование: BenchmarkComparison <baseline.json> <current.json> [порог, %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : DEFAULT_THRESHOLD;
+        Map<String, JsonNode> baseline = read(new File(args[0]));
+        Map<String, JsonNode> current = read(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-80s %14s %14s %9s%n", "Бенчмарк", "было", "стало", "изменение");
+        for (Map.Entry<String, JsonNode> entry : current.entrySet()) {
+            JsonNode before = baseline.get(entry.getKey());
+            JsonNode after = entry.getValue();
+            String unit = after.path("primaryMetric").path("scoreUnit").asText();
+            double afterScore = after.path("primaryMetric").path("score").asDouble();
+            if (before == null) {
+                System.out.printf("%-80s %14s %14.3f %9s  %s%n", entry.getKey(), "-", afterScore, "новый", unit);
+                continue;
+            }
+            double beforeScore = before.path("primaryMetric").path("score").asDouble();
+            double change = beforeScore == 0 ? 0 : (afterScore - beforeScore) / beforeScore * 100;
+            //в режиме thrpt больше - лучше, в остальных режимах оценка - время, и лучше меньше
+            boolean higherIsBetter = "thrpt".equals(after.path("mode").asText());
+            boolean regression = higherIsBetter ? change < -threshold : change > threshold;
+            if (regression) {
+                regressions++;
+            }
+            System.out.printf("%-80s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), beforeScore, afterScore,
+                    change, unit, regression ? "  РЕГРЕССИЯ" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) {
+                System.out.printf("%-80s %s%n", key, "нет в новом результате");
+            }
+        }
+        System.out.printf("Регрессий больше %.1f%%: %d%n", threshold, regressions);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    //результаты по ключу «бенчмарк:режим {параметры}»
+    private static Map<String, JsonNode> read(File file) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode result : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(result.path("benchmark").asText())
+                    .append(':').append(result.path("mode").asText());
+            Iterator<Map.Entry<String, JsonNode>> params = result.path("params").fields();
+            if (params.hasNext()) {
+                key.append(" {");
+                while (params.hasNext()) {
+                    Map.Entry<String, JsonNode> param = params.next();
+                    key.append(param.getKey()).append('=').append(param.getValue().asText());
+                    if (params.hasNext()) {
+                        key.append(", ");
+                    }
+                }
+                key.append('}');
+            }
+            results.put(key.toString(), result);
+        }
+        return results;
+    }
+}
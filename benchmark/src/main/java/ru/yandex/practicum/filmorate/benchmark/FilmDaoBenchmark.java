@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.BenchmarkDatabase;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//запросы FilmDbDao к встроенной H2 со сгенерированными фильмами: карточка фильма, страница каталога,
+//популярные фильмы и все фильмы целиком; время включает запрос и сборку фильмов из строк FilmRowsExtractor
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FilmDaoBenchmark {
+
+    @Param({"1000", "100000"})
+    private int films;
+
+    //лайков у пользователя в среднем, пользователей столько же, сколько фильмов
+    @Param("10")
+    private int likes;
+
+    @Param("20")
+    private int pageSize;
+
+    private BenchmarkDatabase database;
+    private FilmDbDao filmDao;
+
+    @Setup
+    public void setUp() {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(films);
+        settings.setFilms(films);
+        settings.setLikesPerUser(likes);
+        settings.setFriendsPerUser(10);
+        database = new BenchmarkDatabase(settings);
+        filmDao = database.getFilmDao();
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public Film getFilm() {
+        return filmDao.getFilm(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPage() {
+        return filmDao.getFilms(ThreadLocalRandom.current().nextInt(films), pageSize);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmDao.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<Film> getAllFilms() {
+        return filmDao.getFilms();
+    }
+}
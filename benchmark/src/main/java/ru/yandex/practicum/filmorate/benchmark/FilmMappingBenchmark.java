@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.FilmRows;
+import ru.yandex.practicum.filmorate.benchmark.support.RowsResultSet;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmRowsExtractor;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+//сравнение маппинга списка фильмов: прежний RowMapper (фильм на каждую строку) + getUniqueFilm
+//и FilmRowsExtractor (один фильм на все его строки)
+//объём выделяемой памяти на операцию смотреть профилировщиком: java -jar benchmarks.jar FilmMapping -prof gc
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class FilmMappingBenchmark {
+
+    @Param("100000")
+    private int films;
+
+    @Param("3")
+    private int genresPerFilm;
+
+    private List<Object[]> rows;
+
+    @Setup
+    public void setUp() {
+        rows = FilmRows.generate(films, genresPerFilm);
+    }
+
+    @Benchmark
+    public List<Film> legacyRowMapper() throws SQLException {
+        ResultSet rs = RowsResultSet.of(FilmRows.COLUMNS, rows);
+        //так JdbcTemplate.query(sql, RowMapper) собирает результат
+        List<Film> mapped = new ArrayList<>();
+        while (rs.next()) {
+            mapped.add(legacyFilmMapper(rs));
+        }
+        return legacyGetUniqueFilm(mapped).values().stream().collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<Film> groupedExtractor() throws SQLException {
+        return new FilmRowsExtractor().extractData(RowsResultSet.of(FilmRows.COLUMNS, rows));
+    }
+
+    //прежний FilmDbDao.filmMapper
+    private static Film legacyFilmMapper(ResultSet rs) throws SQLException {
+        long id = rs.getLong("film_id");
+        String name = rs.getString("name");
+        String description = rs.getString("description");
+        LocalDate releaseDate = rs.getDate("release_date").toLocalDate();
+        int duration = rs.getInt("duration");
+        int rate = rs.getInt("rate");
+        MPA mpa = new MPA();
+        mpa.setId(rs.getInt("rating_id"));
+        mpa.setName(rs.getString("rating_name"));
+        int genreId = rs.getInt("genre_id");
+        Set<Genre> genres = new HashSet<>();
+        if (genreId > 0) {
+            genres.add(new Genre(genreId, rs.getString("genre_name")));
+        }
+        return new Film(id, name, description, releaseDate, duration, rate, mpa, genres);
+    }
+
+    //прежний FilmDbDao.getUniqueFilm
+    private static LinkedHashMap<Long, Film> legacyGetUniqueFilm(List<Film> films) {
+        LinkedHashMap<Long, Film> filmsMap = new LinkedHashMap<>();
+        for (Film film : films) {
+            if (filmsMap.containsKey(film.getId())) {
+                filmsMap.get(film.getId()).addGenres(film.getGenres().stream().findFirst().get());
+            } else {
+                filmsMap.put(film.getId(), film);
+            }
+        }
+        return filmsMap;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.GeneratedFilmTexts;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//поиск фильмов по индексу из 500 000 сгенерированных фильмов: название из 1-4 слов, описание из 10-40 слов
+//запросы - 1-3 слова, взятые из текста случайного фильма, поэтому у запроса всегда есть результаты;
+//prefix - то же, но последнее слово обрезано до трёх букв, как при автодополнении
+//режим SampleTime показывает распределение времени запроса, в том числе p99
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FilmSearchBenchmark {
+
+    @Param("500000")
+    private int films;
+
+    @Param("100000")
+    private int vocabulary;
+
+    private static final int QUERIES = 10_000;
+
+    private FilmSearchIndex index;
+    private String[] queries;
+    private String[] prefixQueries;
+
+    @Setup
+    public void setUp() {
+        index = new FilmSearchIndex(null);
+        GeneratedFilmTexts texts = new GeneratedFilmTexts(vocabulary, 42);
+        String[] names = new String[films + 1];
+        String[] descriptions = new String[films + 1];
+        Random random = new Random(7);
+        for (int filmId = 1; filmId <= films; filmId++) {
+            names[filmId] = texts.text(1 + random.nextInt(4));
+            descriptions[filmId] = texts.text(10 + random.nextInt(31));
+            index.index(filmId, names[filmId], descriptions[filmId]);
+        }
+        queries = new String[QUERIES];
+        prefixQueries = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int filmId = 1 + random.nextInt(films);
+            String[] words = (names[filmId] + " " + descriptions[filmId]).split(" ");
+            StringBuilder query = new StringBuilder();
+            int count = 1 + random.nextInt(3);
+            for (int j = 0; j < count; j++) {
+                query.append(words[random.nextInt(words.length)]).append(' ');
+            }
+            queries[i] = query.toString();
+            String last = words[random.nextInt(words.length)];
+            prefixQueries[i] = query + last.substring(0, Math.min(3, last.length()));
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public FilmSearchIndex.SearchResult search() {
+        return index.search(queries[ThreadLocalRandom.current().nextInt(QUERIES)], 0, 20);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public FilmSearchIndex.SearchResult prefix() {
+        return index.search(prefixQueries[ThreadLocalRandom.current().nextInt(QUERIES)], 0, 20);
+    }
+}
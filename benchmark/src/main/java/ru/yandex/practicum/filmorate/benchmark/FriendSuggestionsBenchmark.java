@@ -0,0 +1,66 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.GeneratedFriends;
+import ru.yandex.practicum.filmorate.service.FriendSuggestions;
+import ru.yandex.practicum.filmorate.service.FriendsGraph;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//рекомендации друзей на сгенерированном графе: 1 000 000 пользователей, в среднем 150 друзей у каждого
+//uncached - подсчёт друзей друзей на каждый запрос, cached - запросы к 1000 «горячих» пользователей через кэш
+//граф занимает несколько гигабайт при построении, поэтому бенчмарк запускается с -Xmx8g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class FriendSuggestionsBenchmark {
+
+    @Param("1000000")
+    private int users;
+
+    @Param("150")
+    private int degree;
+
+    @Param("10")
+    private int limit;
+
+    private static final int HOT_USERS = 1000;
+
+    private FriendSuggestions uncached;
+    private FriendSuggestions cached;
+
+    @Setup
+    public void setUp() {
+        FriendsGraph graph = new FriendsGraph(new GeneratedFriends(users, degree, 5000, 42));
+        graph.rebuild();
+        uncached = new FriendSuggestions(graph, 0);
+        cached = new FriendSuggestions(graph, HOT_USERS);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int[] uncached() {
+        return uncached.suggest(1 + ThreadLocalRandom.current().nextInt(users), limit);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int[] cached() {
+        return cached.suggest(1 + ThreadLocalRandom.current().nextInt(HOT_USERS), limit);
+    }
+}
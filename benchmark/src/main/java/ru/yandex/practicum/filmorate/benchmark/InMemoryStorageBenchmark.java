@@ -0,0 +1,122 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.dataset.DatasetSink;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdSets;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryGenreDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//хранилища в памяти на том же сгенерированном наборе, что и бенчмарки DAO:
+//популярные фильмы InMemoryFilmStorage и общие друзья InMemoryFriendsStorage
+//время одного запроса в одном потоке; пропускную способность под нагрузкой из нескольких потоков
+//в сравнении с H2 измеряет StorageThroughputBenchmark
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InMemoryStorageBenchmark {
+
+    @Param({"1000", "100000"})
+    private int size;
+
+    //лайков и друзей у пользователя в среднем
+    @Param("10")
+    private int likes;
+
+    @Param("50")
+    private int friends;
+
+    private static final int FRIEND_PAIRS = 1024;
+
+    private InMemoryFilmStorage filmStorage;
+    private InMemoryFriendsStorage friendsStorage;
+    private long[][] friendPairs;
+
+    @Setup
+    public void setUp() {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(size);
+        settings.setFilms(size);
+        settings.setLikesPerUser(likes);
+        settings.setFriendsPerUser(friends);
+
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        filmStorage = new InMemoryFilmStorage(filmLikeDao, new InMemoryGenreDao(), new InMemoryMpaDao());
+        friendsStorage = new InMemoryFriendsStorage(userStorage);
+        List<long[]> pairs = new ArrayList<>();
+        Random random = new Random(42);
+        //генератор выдаёт лайки раньше фильмов, а лайк фильму, которого нет в хранилище, отклоняется
+        IdSets filmLikes = new IdSets();
+        new DatasetGenerator(settings).generate(new DatasetSink() {
+            private long friendRows;
+
+            @Override
+            public void user(User user) {
+                userStorage.addUser(user);
+            }
+
+            @Override
+            public void like(long filmId, long userId) {
+                filmLikes.add(filmId, userId);
+            }
+
+            @Override
+            public void film(Film film) {
+                filmStorage.addFilm(film);
+            }
+
+            //записи о дружбе для getCommonFriends выбираются равномерно
+            @Override
+            public void friend(long userId, long friendId) {
+                friendsStorage.addFriend(userId, friendId);
+                long slot = Math.floorMod(random.nextLong(), ++friendRows);
+                if (pairs.size() < FRIEND_PAIRS) {
+                    pairs.add(new long[]{userId, friendId});
+                } else if (slot < FRIEND_PAIRS) {
+                    pairs.set((int) slot, new long[]{userId, friendId});
+                }
+            }
+        });
+        filmLikes.forEach(filmLikeDao::addLike);
+        friendPairs = pairs.toArray(new long[0][]);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmStorage.getPopularFilms(10);
+    }
+
+    //общие друзья пользователя и его друга
+    @Benchmark
+    public List<User> getCommonFriends() {
+        long[] pair = friendPairs[ThreadLocalRandom.current().nextInt(friendPairs.length)];
+        return friendsStorage.getCommonFriends(pair[0], pair[1]);
+    }
+}
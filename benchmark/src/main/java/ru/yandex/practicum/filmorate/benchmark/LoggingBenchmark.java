@@ -0,0 +1,132 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.zalando.logbook.BodyFilters;
+import org.zalando.logbook.DefaultHttpLogFormatter;
+import org.zalando.logbook.DefaultHttpLogWriter;
+import org.zalando.logbook.DefaultSink;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Logbook;
+import org.zalando.logbook.LogbookCreator;
+import ru.yandex.practicum.filmorate.benchmark.support.BenchmarkDatabase;
+import ru.yandex.practicum.filmorate.benchmark.support.BenchmarkLogging;
+import ru.yandex.practicum.filmorate.benchmark.support.HttpExchange;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.logging.SampledRequestCondition;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.FriendsDbDao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//пропускная способность запросов к БД и журнала HTTP-запросов logbook с журналированием как по умолчанию (debug)
+//и как в профиле prod: в debug приложение пишет отладочные сообщения, logbook - каждый запрос и ответ целиком,
+//запись синхронная; в prod сообщения от INFO пишутся асинхронно, logbook записывает каждый сотый запрос
+//с телами не длиннее 1 КБ
+//журнал пишется во временный файл (BenchmarkLogging); для конкуренции за запись в журнал запускать с -t 4
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LoggingBenchmark {
+
+    @Param({"debug", "prod"})
+    private String logging;
+
+    @Param("10000")
+    private int films;
+
+    @Param("20")
+    private int pageSize;
+
+    private Path logFile;
+    private BenchmarkDatabase database;
+    private FilmDbDao filmDao;
+    private FriendsDbDao friendsDao;
+    private Logbook logbook;
+    private HttpRequest request;
+    private HttpResponse response;
+
+    @Setup
+    public void setUp() throws IOException {
+        boolean prod = logging.equals("prod");
+        logFile = Files.createTempFile("filmorate-benchmark", ".log");
+        BenchmarkLogging.configure(prod, logFile);
+
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(films);
+        settings.setFilms(films);
+        settings.setLikesPerUser(10);
+        settings.setFriendsPerUser(20);
+        database = new BenchmarkDatabase(settings);
+        filmDao = database.getFilmDao();
+        friendsDao = database.getFriendsDao();
+
+        LogbookCreator.Builder builder = Logbook.builder()
+                .sink(new DefaultSink(new DefaultHttpLogFormatter(), new DefaultHttpLogWriter()));
+        if (prod) {
+            builder.condition(new SampledRequestCondition(0.01))
+                    .bodyFilter(BodyFilters.truncate(1024));
+        }
+        logbook = builder.build();
+        //добавление фильма и страница каталога в ответе
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        List<Film> page = filmDao.getFilms(0, pageSize);
+        request = HttpExchange.request("POST", "/films", json(objectMapper, page.get(0)));
+        response = HttpExchange.response(200, json(objectMapper, page));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        database.close();
+        BenchmarkLogging.stop();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public List<Film> getFilmsPage() {
+        return filmDao.getFilms(ThreadLocalRandom.current().nextInt(films), pageSize);
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmDao.getPopularFilms(10);
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return friendsDao.getFriends(1 + ThreadLocalRandom.current().nextInt(films));
+    }
+
+    //запрос и ответ проходят через logbook так же, как в его фильтре сервлетов
+    @Benchmark
+    public void logbookExchange() throws IOException {
+        logbook.process(request).write().process(response).write();
+    }
+
+    private static String json(ObjectMapper objectMapper, Object value) throws JsonProcessingException {
+        return objectMapper.writeValueAsString(value);
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.service.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//пропускная способность чтения популярных фильмов из PopularFilmsLeaderboard
+//readOnly - только чтение, readWithLikes - чтение при одновременном потоке лайков к популярным фильмам
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PopularFilmsBenchmark {
+
+    @Param("100000")
+    private int films;
+
+    @Param("10")
+    private int count;
+
+    private PopularFilmsLeaderboard leaderboard;
+
+    @Setup
+    public void setUp() {
+        leaderboard = new PopularFilmsLeaderboard(new InMemoryFilmLikeDao());
+        leaderboard.rebuild();
+        Random random = new Random(42);
+        for (long filmId = 1; filmId <= films; filmId++) {
+            leaderboard.addFilm(filmId);
+            //у немногих фильмов много лайков, у большинства - единицы
+            int likes = (int) (1000 * Math.pow(random.nextDouble(), 8));
+            for (int i = 0; i < likes; i++) {
+                leaderboard.addLike(filmId);
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Long> readOnly() {
+        return leaderboard.getPopularFilms(count);
+    }
+
+    @Benchmark
+    @Group("readWithLikes")
+    @GroupThreads(3)
+    public List<Long> read() {
+        return leaderboard.getPopularFilms(count);
+    }
+
+    @Benchmark
+    @Group("readWithLikes")
+    @GroupThreads(1)
+    public void like() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        //лайки приходят в основном к первым фильмам, у части из них лайк снимается
+        long filmId = 1 + random.nextInt(Math.min(films, 100));
+        if (random.nextBoolean()) {
+            leaderboard.addLike(filmId);
+        } else {
+            leaderboard.deleteLike(filmId);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.dataset.DatasetSink;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdSets;
+
+import java.lang.ref.Reference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+//память, которую хранилища в памяти тратят на лайки и дружбы, на сгенерированном наборе данных:
+//прежние раскладки (HashMap с множествами Long; множества LinkedHashSet<User> для друзей; ConcurrentHashMap
+//с конкурентными множествами Long) и IdSets
+//память - разница занятой кучи после сборки мусора до и после заполнения структуры; пары id генерируются заранее
+//и в разницу не входят; объекты пользователей, на которые ссылались множества друзей, тоже созданы заранее
+//запуск: java -Xmx4g -cp benchmark/target/benchmarks.jar ru.yandex.practicum.filmorate.benchmark.StorageFootprint
+//        [пользователей, 1 000 000] [фильмов, 100 000] [лайков на пользователя, 10] [друзей на пользователя, 10]
+public class StorageFootprint {
+
+    public static void main(String[] args) throws InterruptedException {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000);
+        settings.setFilms(args.length > 1 ? Integer.parseInt(args[1]) : 100_000);
+        settings.setLikesPerUser(args.length > 2 ? Integer.parseInt(args[2]) : 10);
+        settings.setFriendsPerUser(args.length > 3 ? Integer.parseInt(args[3]) : 10);
+
+        IdPairs likes = new IdPairs();
+        IdPairs friends = new IdPairs();
+        new DatasetGenerator(settings).generate(new DatasetSink() {
+            @Override
+            public void user(User user) {
+            }
+
+            @Override
+            public void like(long filmId, long userId) {
+                likes.add(filmId, userId);
+            }
+
+            @Override
+            public void film(Film film) {
+            }
+
+            @Override
+            public void friend(long userId, long friendId) {
+                friends.add(userId, friendId);
+            }
+        });
+        Object[] users = new Object[settings.getUsers() + 1];
+        for (int i = 1; i < users.length; i++) {
+            users[i] = new Object();
+        }
+        System.out.printf("Лайков: %d, записей о дружбе: %d%n", likes.size, friends.size);
+
+        measure("Лайки: HashMap<Long, HashSet<Long>>", likes.size, () -> {
+            Map<Long, Set<Long>> map = new HashMap<>();
+            for (int i = 0; i < likes.size; i++) {
+                map.computeIfAbsent((long) likes.ids[i], id -> new HashSet<>()).add((long) likes.values[i]);
+            }
+            return map;
+        });
+        measure("Лайки: ConcurrentHashMap<Long, newKeySet<Long>>", likes.size, () -> {
+            Map<Long, Set<Long>> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < likes.size; i++) {
+                map.computeIfAbsent((long) likes.ids[i], id -> ConcurrentHashMap.newKeySet())
+                        .add((long) likes.values[i]);
+            }
+            return map;
+        });
+        measure("Лайки: IdSets", likes.size, () -> fill(likes));
+
+        measure("Дружбы: HashMap<Long, LinkedHashSet<User>>", friends.size, () -> {
+            Map<Long, Set<Object>> map = new HashMap<>();
+            for (int i = 0; i < friends.size; i++) {
+                map.computeIfAbsent((long) friends.ids[i], id -> new LinkedHashSet<>()).add(users[friends.values[i]]);
+            }
+            return map;
+        });
+        measure("Дружбы: ConcurrentHashMap<Long, newKeySet<Long>>", friends.size, () -> {
+            Map<Long, Set<Long>> map = new ConcurrentHashMap<>();
+            for (int i = 0; i < friends.size; i++) {
+                map.computeIfAbsent((long) friends.ids[i], id -> ConcurrentHashMap.newKeySet())
+                        .add((long) friends.values[i]);
+            }
+            return map;
+        });
+        measure("Дружбы: IdSets", friends.size, () -> fill(friends));
+        System.out.printf("Оценка IdSets.getMemoryBytes: лайки %.1f, дружбы %.1f байт на запись%n",
+                (double) fill(likes).getMemoryBytes() / likes.size,
+                (double) fill(friends).getMemoryBytes() / friends.size);
+    }
+
+    private static IdSets fill(IdPairs pairs) {
+        IdSets sets = new IdSets();
+        for (int i = 0; i < pairs.size; i++) {
+            sets.add(pairs.ids[i], pairs.values[i]);
+        }
+        return sets;
+    }
+
+    private static void measure(String name, int pairs, Supplier<Object> builder) throws InterruptedException {
+        long before = usedHeap();
+        Object structure = builder.get();
+        long after = usedHeap();
+        System.out.printf("%-50s %8.1f МБ %6.1f байт на запись%n", name, (after - before) / 1048576.0,
+                (double) (after - before) / pairs);
+        //структура должна дожить до второго замера
+        Reference.reachabilityFence(structure);
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(200);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    //пары (id, value) в растущих массивах int
+    private static final class IdPairs {
+        private int[] ids = new int[1024];
+        private int[] values = new int[1024];
+        private int size;
+
+        void add(long id, long value) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            ids[size] = Math.toIntExact(id);
+            values[size] = Math.toIntExact(value);
+            size++;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.BenchmarkDatabase;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.dataset.DatasetSink;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdSets;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryGenreDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
+import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+//пропускная способность хранилищ на выбор filmorate.storage: db - DAO поверх встроенной H2,
+//memory - конкурентные хранилища в памяти, journal - они же с журналом StorageJournal во временном каталоге
+//(sync=true: лайк возвращается после сброса записи на диск); набор данных один и тот же и загружается
+//без журнала, запросы идут из 4 потоков одновременно
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class StorageThroughputBenchmark {
+
+    @Param({"db", "memory", "journal"})
+    private String storage;
+
+    @Param("100000")
+    private int size;
+
+    private BenchmarkDatabase database;
+    private FilmDao filmDao;
+    private FilmLikeDao filmLikeDao;
+    private FriendsDao friendsDao;
+    private StorageJournal journal;
+    private Path journalDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(size);
+        settings.setFilms(size);
+        settings.setLikesPerUser(10);
+        settings.setFriendsPerUser(50);
+
+        if (storage.equals("db")) {
+            database = new BenchmarkDatabase(settings);
+            filmDao = database.getFilmDao();
+            filmLikeDao = database.getFilmLikeDao();
+            friendsDao = database.getFriendsDao();
+            return;
+        }
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        InMemoryFilmLikeDao inMemoryFilmLikeDao = new InMemoryFilmLikeDao();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(inMemoryFilmLikeDao, new InMemoryGenreDao(),
+                new InMemoryMpaDao());
+        InMemoryFriendsStorage friendsStorage = new InMemoryFriendsStorage(userStorage);
+        //генератор выдаёт лайки раньше фильмов, а лайк фильму, которого нет в хранилище, отклоняется,
+        //поэтому лайки ставятся после загрузки фильмов
+        IdSets likes = new IdSets();
+        new DatasetGenerator(settings).generate(new DatasetSink() {
+            @Override
+            public void user(User user) {
+                userStorage.addUser(user);
+            }
+
+            @Override
+            public void film(Film film) {
+                filmStorage.addFilm(film);
+            }
+
+            @Override
+            public void like(long filmId, long userId) {
+                likes.add(filmId, userId);
+            }
+
+            @Override
+            public void friend(long userId, long friendId) {
+                friendsStorage.addFriend(userId, friendId);
+            }
+        });
+        likes.forEach(inMemoryFilmLikeDao::addLike);
+        filmDao = filmStorage;
+        filmLikeDao = inMemoryFilmLikeDao;
+        friendsDao = friendsStorage;
+        if (storage.equals("journal")) {
+            journalDir = Files.createTempDirectory("filmorate-journal");
+            journal = new StorageJournal(journalDir.toString(), 64, true, 10);
+            journal.open();
+            userStorage.setJournal(journal);
+            userStorage.registerInJournal();
+            friendsStorage.setJournal(journal);
+            friendsStorage.registerInJournal();
+            inMemoryFilmLikeDao.setJournal(journal);
+            inMemoryFilmLikeDao.registerInJournal();
+            filmStorage.setJournal(journal);
+            filmStorage.registerInJournal();
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        if (database != null) {
+            database.close();
+        }
+        if (journal != null) {
+            journal.close();
+            try (Stream<Path> files = Files.walk(journalDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    @Benchmark
+    public Film getFilm() {
+        return filmDao.getFilm(randomId());
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return friendsDao.getFriends(randomId());
+    }
+
+    @Benchmark
+    public List<Film> getPopularFilms() {
+        return filmDao.getPopularFilms(10);
+    }
+
+    //лайк ставится и снимается, чтобы количество лайков не росло от итерации к итерации
+    @Benchmark
+    public void likeAndUnlike() {
+        long filmId = randomId();
+        long userId = randomId();
+        filmLikeDao.addLike(filmId, userId);
+        filmLikeDao.deleteLike(filmId, userId);
+    }
+
+    private long randomId() {
+        return 1 + ThreadLocalRandom.current().nextInt(size);
+    }
+}
@@ -0,0 +1,107 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.yandex.practicum.filmorate.benchmark.support.BenchmarkDatabase;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.FriendsDbDao;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.UserDbDao;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//запросы UserDbDao и FriendsDbDao к встроенной H2 со сгенерированными пользователями и дружбой:
+//время включает запрос и маппинг строк в пользователей
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UserDaoBenchmark {
+
+    @Param({"1000", "100000"})
+    private int users;
+
+    //друзей у пользователя в среднем
+    @Param("50")
+    private int friends;
+
+    //пользователей в одном запросе getUsersByIds
+    @Param("100")
+    private int batch;
+
+    private static final int FRIEND_PAIRS = 1024;
+
+    private BenchmarkDatabase database;
+    private UserDbDao userDao;
+    private FriendsDbDao friendsDao;
+    private long[][] friendPairs;
+
+    @Setup
+    public void setUp() {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(users);
+        settings.setFilms(0);
+        settings.setFriendsPerUser(friends);
+        database = new BenchmarkDatabase(settings);
+        userDao = database.getUserDao();
+        friendsDao = database.getFriendsDao();
+        friendPairs = database.sampleFriends(FRIEND_PAIRS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        database.close();
+    }
+
+    @Benchmark
+    public User getUser() {
+        return userDao.getUser(randomUser());
+    }
+
+    @Benchmark
+    public Set<User> getUsers() {
+        return userDao.getUsers();
+    }
+
+    @Benchmark
+    public List<User> getUsersByIds() {
+        //id по возрастанию через одного, чтобы они не шли сплошным диапазоном
+        int[] ids = new int[Math.min(batch, users / 2)];
+        int from = 1 + ThreadLocalRandom.current().nextInt(users - ids.length * 2 + 1);
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = from + i * 2;
+        }
+        return userDao.getUsersByIds(ids);
+    }
+
+    @Benchmark
+    public List<User> getFriends() {
+        return friendsDao.getFriends(randomUser());
+    }
+
+    //общие друзья пользователя и его друга
+    @Benchmark
+    public List<User> getCommonFriends() {
+        long[] pair = friendPairs[ThreadLocalRandom.current().nextInt(friendPairs.length)];
+        return friendsDao.getCommonFriends(pair[0], pair[1]);
+    }
+
+    private long randomUser() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+}
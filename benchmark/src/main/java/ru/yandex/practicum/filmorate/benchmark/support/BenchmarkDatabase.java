@@ -0,0 +1,111 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.dataset.CsvDatasetWriter;
+import ru.yandex.practicum.filmorate.dataset.DatasetGenerator;
+import ru.yandex.practicum.filmorate.dataset.DatasetLoader;
+import ru.yandex.practicum.filmorate.dataset.DatasetSettings;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmLikeDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.GenreDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.MpaDbDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.FriendsDbDao;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.UserDbDao;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//встроенная H2 в памяти со схемой приложения, заполненная сгенерированным набором данных, и DAO поверх неё
+//набор записывается в CSV во временный каталог и загружается DatasetLoader, как при загрузке в файловую БД
+//кэш карточек фильмов отключён, чтобы каждый вызов DAO доходил до БД
+public final class BenchmarkDatabase implements AutoCloseable {
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmDbDao filmDao;
+    private final FilmLikeDbDao filmLikeDao;
+    private final UserDbDao userDao;
+    private final FriendsDbDao friendsDao;
+
+    public BenchmarkDatabase(DatasetSettings settings) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:benchmark" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1", "sa", "password");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        load(settings);
+
+        FilmCardCache filmCardCache = new FilmCardCache(0, 0);
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry(jdbcTemplate);
+        referenceData.refresh();
+        MpaDbDao mpaDao = new MpaDbDao(referenceData);
+        FilmFacetIndex filmFacetIndex = new FilmFacetIndex(jdbcTemplate);
+        GenreDbDao genreDao = new GenreDbDao(jdbcTemplate, filmCardCache, referenceData, filmFacetIndex);
+        filmDao = new FilmDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache, new FilmSearchIndex(jdbcTemplate),
+                filmFacetIndex);
+        filmLikeDao = new FilmLikeDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache);
+        userDao = new UserDbDao(jdbcTemplate);
+        friendsDao = new FriendsDbDao(jdbcTemplate);
+    }
+
+    public FilmDbDao getFilmDao() {
+        return filmDao;
+    }
+
+    public FilmLikeDbDao getFilmLikeDao() {
+        return filmLikeDao;
+    }
+
+    public UserDbDao getUserDao() {
+        return userDao;
+    }
+
+    public FriendsDbDao getFriendsDao() {
+        return friendsDao;
+    }
+
+    //до count записей о дружбе (user_id, friend_id), равномерно по таблице friends
+    public long[][] sampleFriends(int count) {
+        Long rows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM friends", Long.class);
+        long step = Math.max(1, rows / Math.max(1, count));
+        return jdbcTemplate.query("SELECT user_id, friend_id FROM friends WHERE MOD(user_friend_id, ?) = 0 LIMIT ?",
+                (rs, rowNum) -> new long[]{rs.getLong("user_id"), rs.getLong("friend_id")}, step, count)
+                .toArray(new long[0][]);
+    }
+
+    @Override
+    public void close() {
+        jdbcTemplate.execute("SHUTDOWN");
+    }
+
+    private void load(DatasetSettings settings) {
+        try {
+            Path directory = Files.createTempDirectory("filmorate-dataset");
+            try {
+                try (CsvDatasetWriter writer = new CsvDatasetWriter(directory)) {
+                    new DatasetGenerator(settings).generate(writer);
+                }
+                new DatasetLoader(jdbcTemplate).load(directory);
+            } finally {
+                for (Path part : CsvDatasetWriter.parts(directory, null)) {
+                    Files.delete(part);
+                }
+                Files.delete(directory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
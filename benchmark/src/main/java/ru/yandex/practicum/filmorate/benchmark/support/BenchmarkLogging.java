@@ -0,0 +1,65 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+//настройка logback в бенчмарке вместо logback.xml модуля: журнал пишется в файл, а не в консоль,
+//чтобы не смешиваться с выводом JMH
+//debug - как с application.properties: отладочные сообщения приложения, синхронная запись;
+//prod - как профиль prod (logback-spring.xml, application-prod.properties): сообщения от INFO через AsyncAppender
+public final class BenchmarkLogging {
+    private static final String PATTERN = "%d{yyyy-MM-dd HH:mm:ss.SSS} %5p %t --- %-40.40logger{39} : %m%n";
+
+    private BenchmarkLogging() {
+    }
+
+    public static void configure(boolean prod, Path file) {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern(PATTERN);
+        encoder.setCharset(StandardCharsets.UTF_8);
+        encoder.start();
+
+        FileAppender<ILoggingEvent> fileAppender = new FileAppender<>();
+        fileAppender.setContext(context);
+        fileAppender.setFile(file.toString());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+
+        Appender<ILoggingEvent> appender = fileAppender;
+        if (prod) {
+            AsyncAppender asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(context);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            appender = asyncAppender;
+        }
+
+        Logger root = context.getLogger(Logger.ROOT_LOGGER_NAME);
+        root.detachAndStopAllAppenders();
+        root.setLevel(Level.INFO);
+        root.addAppender(appender);
+        context.getLogger("ru.yandex.practicum").setLevel(prod ? Level.INFO : Level.DEBUG);
+        //журнал logbook пишется на уровне TRACE
+        context.getLogger("org.zalando.logbook").setLevel(Level.TRACE);
+    }
+
+    //дописывает очередь AsyncAppender и закрывает файл
+    public static void stop() {
+        ((LoggerContext) LoggerFactory.getILoggerFactory()).stop();
+    }
+}
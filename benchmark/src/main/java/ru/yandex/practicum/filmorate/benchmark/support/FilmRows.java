@@ -0,0 +1,39 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+//строки результата запроса films LEFT JOIN ratings_mpa LEFT JOIN films_genre LEFT JOIN genre,
+//как их возвращает FilmDbDao: по одной строке на каждый жанр фильма, строки фильма идут подряд
+public final class FilmRows {
+    public static final String[] COLUMNS = {"film_id", "name", "description", "release_date", "duration", "rate",
+            "likes_count", "rating_id", "rating_name", "genre_id", "genre_name"};
+
+    private static final String[] RATINGS = {"G", "PG", "PG-13", "R", "NC-17"};
+    private static final String[] GENRES = {"Комедия", "Драма", "Мультфильм", "Триллер", "Документальный", "Боевик"};
+
+    private FilmRows() {
+    }
+
+    public static List<Object[]> generate(int films, int genresPerFilm) {
+        List<Object[]> rows = new ArrayList<>(films * Math.max(genresPerFilm, 1));
+        Date releaseDate = Date.valueOf(LocalDate.of(2000, 1, 1));
+        for (long id = 1; id <= films; id++) {
+            int ratingId = (int) (id % RATINGS.length) + 1;
+            String name = "film_" + id;
+            String description = "description of film " + id;
+            if (genresPerFilm == 0) {
+                rows.add(new Object[]{id, name, description, releaseDate, 120, 5, 0, ratingId,
+                        RATINGS[ratingId - 1], null, null});
+            }
+            for (int g = 0; g < genresPerFilm; g++) {
+                int genreId = (int) ((id + g) % GENRES.length) + 1;
+                rows.add(new Object[]{id, name, description, releaseDate, 120, 5, 0, ratingId,
+                        RATINGS[ratingId - 1], genreId, GENRES[genreId - 1]});
+            }
+        }
+        return rows;
+    }
+}
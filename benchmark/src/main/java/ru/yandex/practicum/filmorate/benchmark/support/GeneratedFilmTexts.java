@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import java.util.Arrays;
+import java.util.Random;
+
+//сгенерированные названия и описания фильмов для поискового индекса
+//слова выбираются из словаря по закону Ципфа, как в текстах: несколько слов встречаются почти везде,
+//большинство - в единицах фильмов
+public final class GeneratedFilmTexts {
+    private static final String LETTERS = "абвгдежзиклмнопрстуфхцчшэюя";
+
+    private final String[] words;
+    private final double[] cumulative; //накопленные вероятности слов словаря
+    private final Random random;
+
+    public GeneratedFilmTexts(int vocabulary, long seed) {
+        random = new Random(seed);
+        words = new String[vocabulary];
+        for (int i = 0; i < vocabulary; i++) {
+            StringBuilder word = new StringBuilder();
+            //частые слова короче, как в языке
+            int length = 3 + (int) Math.log(i + 1);
+            for (int j = 0; j < length; j++) {
+                word.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+            }
+            words[i] = word.append(i).toString();
+        }
+        cumulative = new double[vocabulary];
+        double sum = 0;
+        for (int i = 0; i < vocabulary; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < vocabulary; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    //случайное слово словаря с вероятностью по закону Ципфа
+    public String word() {
+        int pos = Arrays.binarySearch(cumulative, random.nextDouble());
+        return words[Math.min(pos >= 0 ? pos : -pos - 1, words.length - 1)];
+    }
+
+    //текст из words слов
+    public String text(int words) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(word());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,63 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
+
+import java.util.List;
+import java.util.Random;
+
+//хранилище дружбы со сгенерированным графом: у каждого из users пользователей degree друзей
+//друзья выбираются в основном среди пользователей с близкими id, чтобы у друзей были общие друзья,
+//как в социальных графах; граф читается только через forEachFriend
+public final class GeneratedFriends implements FriendsDao {
+    //доля друзей, выбранных среди всех пользователей, а не среди соседей по id
+    private static final double RANDOM_SHARE = 0.2;
+
+    private final int users;
+    private final int degree;
+    private final int window;
+    private final long seed;
+
+    public GeneratedFriends(int users, int degree, int window, long seed) {
+        this.users = users;
+        this.degree = degree;
+        this.window = window;
+        this.seed = seed;
+    }
+
+    @Override
+    public void forEachFriend(FriendConsumer consumer) {
+        Random random = new Random(seed);
+        for (long userId = 1; userId <= users; userId++) {
+            for (int i = 0; i < degree; i++) {
+                long friendId;
+                if (random.nextDouble() < RANDOM_SHARE) {
+                    friendId = 1 + random.nextInt(users);
+                } else {
+                    friendId = 1 + Math.floorMod(userId - 1 + random.nextInt(2 * window + 1) - window, users);
+                }
+                if (friendId != userId) {
+                    consumer.accept(userId, friendId);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addFriend(long userId, long friendId) {
+    }
+
+    @Override
+    public void deleteFriend(long userId, long friendId) {
+    }
+
+    @Override
+    public List<User> getFriends(long userId) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public List<User> getCommonFriends(long userId, long otherId) {
+        throw new UnsupportedOperationException();
+    }
+}
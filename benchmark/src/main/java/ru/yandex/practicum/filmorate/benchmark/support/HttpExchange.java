@@ -0,0 +1,139 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import org.zalando.logbook.HttpHeaders;
+import org.zalando.logbook.HttpRequest;
+import org.zalando.logbook.HttpResponse;
+import org.zalando.logbook.Origin;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+//запрос и ответ с телами JSON для logbook без сервлетного контейнера: тела уже прочитаны в память,
+//как их буферизует фильтр logbook в приложении
+public final class HttpExchange {
+    private static final HttpHeaders JSON_HEADERS = HttpHeaders.of("Content-Type", "application/json");
+    private static final byte[] EMPTY = new byte[0];
+
+    private HttpExchange() {
+    }
+
+    public static HttpRequest request(String method, String path, String body) {
+        return new Request(method, path, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HttpResponse response(int status, String body) {
+        return new Response(status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static final class Request implements HttpRequest {
+        private final String method;
+        private final String path;
+        private final byte[] body;
+
+        private Request(String method, String path, byte[] body) {
+            this.method = method;
+            this.path = path;
+            this.body = body;
+        }
+
+        @Override
+        public String getRemote() {
+            return "127.0.0.1";
+        }
+
+        @Override
+        public String getMethod() {
+            return method;
+        }
+
+        @Override
+        public String getScheme() {
+            return "http";
+        }
+
+        @Override
+        public String getHost() {
+            return "localhost";
+        }
+
+        @Override
+        public Optional<Integer> getPort() {
+            return Optional.of(8080);
+        }
+
+        @Override
+        public String getPath() {
+            return path;
+        }
+
+        @Override
+        public String getQuery() {
+            return "";
+        }
+
+        @Override
+        public HttpRequest withBody() {
+            return this;
+        }
+
+        @Override
+        public HttpRequest withoutBody() {
+            return new Request(method, path, EMPTY);
+        }
+
+        @Override
+        public Origin getOrigin() {
+            return Origin.REMOTE;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return JSON_HEADERS;
+        }
+
+        @Override
+        public byte[] getBody() {
+            return body;
+        }
+    }
+
+    private static final class Response implements HttpResponse {
+        private final int status;
+        private final byte[] body;
+
+        private Response(int status, byte[] body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        @Override
+        public int getStatus() {
+            return status;
+        }
+
+        @Override
+        public HttpResponse withBody() {
+            return this;
+        }
+
+        @Override
+        public HttpResponse withoutBody() {
+            return new Response(status, EMPTY);
+        }
+
+        @Override
+        public Origin getOrigin() {
+            return Origin.LOCAL;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return JSON_HEADERS;
+        }
+
+        @Override
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.yandex.practicum.filmorate.benchmark.support;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+//ResultSet поверх заранее подготовленных строк: позволяет измерять маппинг без затрат на БД
+//поддерживает только то, что нужно маппингу фильмов: next, getXxx(String), wasNull, close
+public final class RowsResultSet {
+
+    private RowsResultSet() {
+    }
+
+    public static ResultSet of(String[] columns, List<Object[]> rows) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < columns.length; i++) {
+            index.put(columns[i].toLowerCase(Locale.ROOT), i);
+        }
+        int[] cursor = {-1};
+        boolean[] lastNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if ("next".equals(name)) {
+                        return ++cursor[0] < rows.size();
+                    }
+                    if ("close".equals(name)) {
+                        return null;
+                    }
+                    if ("wasNull".equals(name)) {
+                        return lastNull[0];
+                    }
+                    if (name.startsWith("get") && args != null && args.length == 1 && args[0] instanceof String) {
+                        Object value = rows.get(cursor[0])[index.get(((String) args[0]).toLowerCase(Locale.ROOT))];
+                        lastNull[0] = value == null;
+                        switch (name) {
+                            case "getLong":
+                                return value == null ? 0L : ((Number) value).longValue();
+                            case "getInt":
+                                return value == null ? 0 : ((Number) value).intValue();
+                            default:
+                                return value;
+                        }
+                    }
+                    throw new SQLFeatureNotSupportedException(name);
+                });
+    }
+}
@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
+
+//условный GET: ответ с ETag и Cache-Control; если If-None-Match совпадает с ETag - 304 без тела,
+//тело при этом не читается из хранилища и не сериализуется
+//checkNotModified сам пишет ETag в ответ, поэтому в ResponseEntity он не добавляется
+final class ConditionalGet {
+
+    private ConditionalGet() {
+    }
+
+    static <T> ResponseEntity<T> respond(WebRequest request, String etag, CacheControl cacheControl,
+                                         Supplier<T> body) {
+        return respond(request, etag, () -> { }, cacheControl, body);
+    }
+
+    //checkExists проверяет существование сущности после того, как взят ETag, и до сравнения с If-None-Match:
+    //на удалённую или несуществующую сущность клиент получает 404, а не 304 с ETag, совпавшим с прежним
+    static <T> ResponseEntity<T> respond(WebRequest request, String etag, Runnable checkExists,
+                                         CacheControl cacheControl, Supplier<T> body) {
+        checkExists.run();
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(cacheControl).build();
+        }
+        return ResponseEntity.ok().cacheControl(cacheControl).body(body.get());
+    }
+
+    //ETag справочника - MD5 его содержимого, как у ShallowEtagHeaderFilter: не меняется между запусками,
+    //пока не изменится справочник; справочники - объекты Lombok @Data, toString которых включает все поля
+    static String contentTag(Object content) {
+        return "\"r" + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+}
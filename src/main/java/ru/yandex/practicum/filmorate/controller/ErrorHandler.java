@@ -1,11 +1,14 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.film.LikesBufferFullException;
 import ru.yandex.practicum.filmorate.exceptions.genre.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.mpa.MpaNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.user.UserNotFoundException;
@@ -44,6 +47,14 @@ public class ErrorHandler {
         return new ErrorResponse("некорректный параметр", e.getMessage());
     }
 
+    //лайк не принят из-за заполненного буфера: клиент повторяет запрос не раньше, чем через Retry-After секунд
+    @ExceptionHandler
+    public ResponseEntity<ErrorResponse> handleLikesBufferFullException(final LikesBufferFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(new ErrorResponse("буфер лайков заполнен", e.getMessage()));
+    }
+
     @ExceptionHandler
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public ErrorResponse handleOtherThrows(final Throwable e) {
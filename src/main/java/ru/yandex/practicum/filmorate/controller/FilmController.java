@@ -2,22 +2,43 @@ package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFacets;
+import ru.yandex.practicum.filmorate.model.FilmsImportReport;
+import ru.yandex.practicum.filmorate.model.FilmsFilter;
+import ru.yandex.practicum.filmorate.model.FilmsPage;
+import ru.yandex.practicum.filmorate.model.FilmsSearchPage;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmImportService;
 import ru.yandex.practicum.filmorate.service.FilmService;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @RestController
 @RequestMapping("/films")
 @Slf4j
 public class FilmController {
+    private static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final String TOTAL_COUNT_HEADER = "X-Total-Count";
+    private static final int DEFAULT_PAGE_SIZE = 100;
 
     private final FilmService filmService;
+    private final FilmImportService filmImportService;
+    private final EntityVersions entityVersions;
 
-    public FilmController(FilmService filmService) {
+    public FilmController(FilmService filmService, FilmImportService filmImportService,
+                          EntityVersions entityVersions) {
         this.filmService = filmService;
+        this.filmImportService = filmImportService;
+        this.entityVersions = entityVersions;
     }
 
     //добавление фильма
@@ -27,6 +48,14 @@ public class FilmController {
         return filmService.addFilm(film);
     }
 
+    //пакетное добавление фильмов: в теле запроса NDJSON, по одному фильму в строке
+    //тело читается потоком, в ответе - результат по каждой строке
+    @PostMapping(value = "/batch", consumes = {"application/x-ndjson", "application/json", "text/plain"})
+    protected FilmsImportReport importFilms(InputStream body) throws IOException {
+        log.info("Получен запрос на пакетное добавление фильмов.");
+        return filmImportService.importFilms(body);
+    }
+
     //обновление фильма
     @PutMapping
     protected Film updateFilm(@Valid @RequestBody Film film) {
@@ -42,17 +71,76 @@ public class FilmController {
     }
 
     //получение фильма по id
+    //ETag - версия фильма; клиент перепроверяет фильм каждый раз (no-cache), на If-None-Match с той же версией
+    //отвечаем 304 без чтения фильма; на несуществующий фильм - 404
     @GetMapping("/{id}")
-    protected Film getFilm(@PathVariable("id") long filmId) {
+    protected ResponseEntity<Film> getFilm(@PathVariable("id") long filmId, WebRequest request) {
         log.info("Получен запрос на чтение фильма с id={}",filmId);
-        return filmService.getFilm(filmId);
+        return ConditionalGet.respond(request, entityVersions.getFilmTag(filmId),
+                () -> filmService.checkFilmExists(filmId), CacheControl.noCache(), () -> filmService.getFilm(filmId));
     }
 
     //возвращает информацию обо всех фильмах
+    //если задан limit или after, то возвращает страницу фильмов с id больше after,
+    //курсор следующей страницы передаётся в заголовке X-Next-Cursor
+    //genres, mpa, yearFrom и yearTo отбирают фильмы по жанрам (genreMatch=all - все жанры, иначе любой из них),
+    //рейтингам и годам выпуска; количество отобранных фильмов передаётся в заголовке X-Total-Count
     @GetMapping
-    protected List<Film> getFilms() {
-        log.info("Получен запрос на чтение всех фильмов.");
-        return filmService.getFilms();
+    protected ResponseEntity<List<Film>> getFilms(@RequestParam(required = false) Integer limit,
+                                                  @RequestParam(required = false) Long after,
+                                                  @RequestParam(required = false) Set<Integer> genres,
+                                                  @RequestParam(defaultValue = "any") String genreMatch,
+                                                  @RequestParam(required = false) Set<Integer> mpa,
+                                                  @RequestParam(required = false) Integer yearFrom,
+                                                  @RequestParam(required = false) Integer yearTo) {
+        FilmsFilter filter = toFilter(genres, genreMatch, mpa, yearFrom, yearTo);
+        if (limit == null && after == null && filter.isEmpty()) {
+            log.info("Получен запрос на чтение всех фильмов.");
+            return ResponseEntity.ok(filmService.getFilms());
+        }
+        long afterId = after == null ? 0 : after;
+        int pageSize = limit == null ? DEFAULT_PAGE_SIZE : limit;
+        FilmsPage page;
+        if (filter.isEmpty()) {
+            log.info("Получен запрос на чтение {} фильмов после фильма с id={}.", limit, after);
+            page = filmService.getFilms(afterId, pageSize);
+        } else {
+            log.info("Получен запрос на чтение {} фильмов после фильма с id={} с отбором {}.", limit, after, filter);
+            page = filmService.getFilms(filter, afterId, pageSize);
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(page.getNextCursor()));
+        }
+        if (page.getTotal() != null) {
+            response.header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotal()));
+        }
+        return response.body(page.getFilms());
+    }
+
+    //количество фильмов по жанрам, рейтингам и годам выпуска для того же отбора, что и в GET /films
+    @GetMapping("/facets")
+    protected FilmFacets getFilmFacets(@RequestParam(required = false) Set<Integer> genres,
+                                       @RequestParam(defaultValue = "any") String genreMatch,
+                                       @RequestParam(required = false) Set<Integer> mpa,
+                                       @RequestParam(required = false) Integer yearFrom,
+                                       @RequestParam(required = false) Integer yearTo) {
+        FilmsFilter filter = toFilter(genres, genreMatch, mpa, yearFrom, yearTo);
+        log.info("Получен запрос на количество фильмов по жанрам, рейтингам и годам с отбором {}.", filter);
+        return filmService.getFilmFacets(filter);
+    }
+
+    //поиск фильмов по словам названия и описания, по убыванию релевантности
+    //количество найденных фильмов передаётся в заголовке X-Total-Count
+    @GetMapping("/search")
+    protected ResponseEntity<List<Film>> searchFilms(@RequestParam("q") String query,
+                                                     @RequestParam(defaultValue = "0") int offset,
+                                                     @RequestParam(defaultValue = "20") int limit) {
+        log.info("Получен запрос на поиск фильмов: '{}', offset={}, limit={}.", query, offset, limit);
+        FilmsSearchPage page = filmService.searchFilms(query, offset, limit);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotal()))
+                .body(page.getFilms());
     }
 
     //пользователь ставит лайк фильму
@@ -67,6 +155,15 @@ public class FilmController {
         filmService.deleteLike(filmId, userId);
     }
 
+    private static FilmsFilter toFilter(Set<Integer> genres, String genreMatch, Set<Integer> mpa,
+                                        Integer yearFrom, Integer yearTo) {
+        if (!"any".equalsIgnoreCase(genreMatch) && !"all".equalsIgnoreCase(genreMatch)) {
+            throw new ValidationException("Параметр genreMatch должен быть any или all.");
+        }
+        return new FilmsFilter(genres == null ? Set.of() : genres, "all".equalsIgnoreCase(genreMatch),
+                mpa == null ? Set.of() : mpa, yearFrom, yearTo);
+    }
+
     //вернуть самые популярные фильмы
     @GetMapping("/popular")
     protected List<Film> getPopularFilms(@RequestParam(defaultValue = "10", required = false) Long count) {
@@ -1,36 +1,48 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.service.GenreService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+//справочник жанров меняется редко: ответы кэшируются клиентом на filmorate.cache.reference.max-age-seconds,
+//после этого перепроверяются по ETag содержимого
 @RestController
 @RequestMapping("/genres")
 @Slf4j
 public class GenreController {
 private final GenreService genreService;
+    private final CacheControl cacheControl;
 
-    public GenreController(GenreService genreService) {
+    public GenreController(GenreService genreService,
+                           @Value("${filmorate.cache.reference.max-age-seconds:86400}") long maxAgeSeconds) {
         this.genreService = genreService;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     //получение всех жанров
     @GetMapping
-    protected List<Genre> getGenres() {
+    protected ResponseEntity<List<Genre>> getGenres(WebRequest request) {
         log.info("Получен запрос на чтение жанров фильмов.");
-        return genreService.getGenres();
+        List<Genre> genres = genreService.getGenres();
+        return ConditionalGet.respond(request, ConditionalGet.contentTag(genres), cacheControl, () -> genres);
     }
 
-    //получение рейтинга MPA по id
+    //получение жанра по id
     @GetMapping("/{id}")
-    protected Genre getGenre(@PathVariable("id") int genreId) {
+    protected ResponseEntity<Genre> getGenre(@PathVariable("id") int genreId, WebRequest request) {
         log.info("Получен запрос на чтение жанра с id={}",genreId);
-        return genreService.getGenre(genreId);
+        Genre genre = genreService.getGenre(genreId);
+        return ConditionalGet.respond(request, ConditionalGet.contentTag(genre), cacheControl, () -> genre);
     }
 }
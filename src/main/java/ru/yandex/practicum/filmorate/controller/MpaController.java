@@ -1,36 +1,47 @@
 package ru.yandex.practicum.filmorate.controller;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.service.MpaService;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
+//справочник рейтингов кэшируется клиентом так же, как справочник жанров в GenreController
 @RestController
 @RequestMapping("/mpa")
 @Slf4j
 public class MpaController {
     private final MpaService mpaService;
+    private final CacheControl cacheControl;
 
-    public MpaController(MpaService mpaService) {
+    public MpaController(MpaService mpaService,
+                         @Value("${filmorate.cache.reference.max-age-seconds:86400}") long maxAgeSeconds) {
         this.mpaService = mpaService;
+        this.cacheControl = CacheControl.maxAge(maxAgeSeconds, TimeUnit.SECONDS).cachePublic();
     }
 
     //получение всех рейтингов MPA
     @GetMapping
-    protected List<MPA> getMpas() {
+    protected ResponseEntity<List<MPA>> getMpas(WebRequest request) {
         log.info("Получен запрос на чтение рейтингов MPA.");
-        return mpaService.getMpas();
+        List<MPA> ratings = mpaService.getMpas();
+        return ConditionalGet.respond(request, ConditionalGet.contentTag(ratings), cacheControl, () -> ratings);
     }
 
     //получение рейтинга MPA по id
     @GetMapping("/{id}")
-    protected MPA getMpa(@PathVariable("id") int mpaId) {
+    protected ResponseEntity<MPA> getMpa(@PathVariable("id") int mpaId, WebRequest request) {
         log.info("Получен запрос на чтение рейтинга MPA с id={}",mpaId);
-        return mpaService.getMpa(mpaId);
+        MPA mpa = mpaService.getMpa(mpaId);
+        return ConditionalGet.respond(request, ConditionalGet.contentTag(mpa), cacheControl, () -> mpa);
     }
 }
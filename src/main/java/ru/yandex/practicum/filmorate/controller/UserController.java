@@ -3,8 +3,14 @@ package ru.yandex.practicum.filmorate.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.EntityVersions;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
 
 import javax.validation.Valid;
@@ -17,10 +23,14 @@ import java.util.*;
 public class UserController {
 
     private final UserService userService;
+    private final FilmService filmService;
+    private final EntityVersions entityVersions;
 
     @Autowired
-    public UserController(UserService userService) {
+    public UserController(UserService userService, FilmService filmService, EntityVersions entityVersions) {
         this.userService = userService;
+        this.filmService = filmService;
+        this.entityVersions = entityVersions;
     }
 
     //добавление пользователя
@@ -41,10 +51,11 @@ public class UserController {
         return userService.getUsers();
     }
 
-    //получение данных о пользователе
+    //получение данных о пользователе; ETag - версия пользователя, как у фильма
     @GetMapping("/{id}")
-    private User getUser(@PathVariable("id") long userId) {
-        return userService.getUser(userId);
+    private ResponseEntity<User> getUser(@PathVariable("id") long userId, WebRequest request) {
+        return ConditionalGet.respond(request, entityVersions.getUserTag(userId),
+                () -> userService.checkUserExists(userId), CacheControl.noCache(), () -> userService.getUser(userId));
     }
 
     //добавление в друзья
@@ -72,4 +83,20 @@ public class UserController {
         log.info("Получен запрос на поиск общих друзей для пользователей с userId={} и otherId={}.", userId, otherId);
         return userService.getCommonFriends(userId, otherId);
     }
+
+    //рекомендации друзей: пользователи не из списка друзей по убыванию количества общих друзей
+    @GetMapping("/{id}/suggestions")
+    private List<User> getSuggestions(@PathVariable("id") long userId,
+                                      @RequestParam(defaultValue = "10") int limit) {
+        log.info("Получен запрос на рекомендации друзей для пользователя с id={}, limit={}", userId, limit);
+        return userService.getSuggestions(userId, limit);
+    }
+
+    //рекомендации фильмов: фильмы, которые лайкают пользователи со схожими вкусами
+    @GetMapping("/{id}/recommendations")
+    private List<Film> getRecommendations(@PathVariable("id") long userId,
+                                          @RequestParam(defaultValue = "10") int limit) {
+        log.info("Получен запрос на рекомендации фильмов для пользователя с id={}, limit={}", userId, limit);
+        return filmService.getRecommendations(userId, limit);
+    }
 }
@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//запись набора данных в CSV-файлы для загрузки через CSVREAD: по файлам на таблицу, файл таблицы
+//делится на части <таблица>.<номер>.csv не больше rowsPerFile строк, чтобы каждая часть загружалась
+//отдельной транзакцией; в первой строке файла - названия столбцов таблицы
+public class CsvDatasetWriter implements DatasetSink, AutoCloseable {
+    public static final int DEFAULT_ROWS_PER_FILE = 1_000_000;
+    private static final Pattern PART = Pattern.compile("(.+)\\.(\\d+)\\.csv");
+
+    private final CsvTable users;
+    private final CsvTable films;
+    private final CsvTable filmGenres;
+    private final CsvTable likes;
+    private final CsvTable friends;
+
+    public CsvDatasetWriter(Path directory) {
+        this(directory, DEFAULT_ROWS_PER_FILE);
+    }
+
+    //части прежнего набора в каталоге удаляются, иначе загрузчик прочитал бы их вместе с новыми
+    public CsvDatasetWriter(Path directory, int rowsPerFile) {
+        try {
+            Files.createDirectories(directory);
+            for (Path part : parts(directory, null)) {
+                Files.delete(part);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        users = new CsvTable(directory, "users", "USER_ID,EMAIL,LOGIN,NAME,BIRTHDAY", rowsPerFile);
+        films = new CsvTable(directory, "films",
+                "FILM_ID,NAME,DESCRIPTION,RELEASE_DATE,DURATION,RATE,RATING_ID,LIKES_COUNT", rowsPerFile);
+        filmGenres = new CsvTable(directory, "films_genre", "FILM_ID,GENRE_ID", rowsPerFile);
+        likes = new CsvTable(directory, "films_like", "FILM_ID,USER_ID", rowsPerFile);
+        friends = new CsvTable(directory, "friends", "USER_ID,FRIEND_ID", rowsPerFile);
+    }
+
+    //части таблицы table (всех таблиц, если table == null) по порядку номеров
+    public static List<Path> parts(Path directory, String table) throws IOException {
+        List<Path> parts = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return parts;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.csv")) {
+            for (Path file : files) {
+                Matcher matcher = PART.matcher(file.getFileName().toString());
+                if (matcher.matches() && (table == null || matcher.group(1).equals(table))) {
+                    parts.add(file);
+                }
+            }
+        }
+        parts.sort((a, b) -> Long.compare(partNumber(a), partNumber(b)));
+        return parts;
+    }
+
+    private static long partNumber(Path part) {
+        Matcher matcher = PART.matcher(part.getFileName().toString());
+        return matcher.matches() ? Long.parseLong(matcher.group(2)) : 0;
+    }
+
+    @Override
+    public void user(User user) {
+        users.start().value(user.getId()).text(user.getEmail()).text(user.getLogin()).text(user.getName())
+                .text(user.getBirthday() == null ? null : user.getBirthday().toString()).end();
+    }
+
+    @Override
+    public void like(long filmId, long userId) {
+        likes.start().value(filmId).value(userId).end();
+    }
+
+    @Override
+    public void film(Film film) {
+        films.start().value(film.getId()).text(film.getName()).text(film.getDescription())
+                .text(film.getReleaseDate() == null ? null : film.getReleaseDate().toString())
+                .value(film.getDuration()).value(film.getRate())
+                .number(film.getMpa() == null ? null : film.getMpa().getId())
+                .value(film.getLikesCount()).end();
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                filmGenres.start().value(film.getId()).value(genre.getId()).end();
+            }
+        }
+    }
+
+    @Override
+    public void friend(long userId, long friendId) {
+        friends.start().value(userId).value(friendId).end();
+    }
+
+    @Override
+    public void close() {
+        users.close();
+        films.close();
+        filmGenres.close();
+        likes.close();
+        friends.close();
+    }
+
+    //файлы одной таблицы: новая часть начинается, когда в текущей набралось rowsPerFile строк
+    private static final class CsvTable {
+        private final Path directory;
+        private final String table;
+        private final String header;
+        private final int rowsPerFile;
+        private final StringBuilder line = new StringBuilder();
+        private Writer writer;
+        private int part;
+        private int rows;
+
+        private CsvTable(Path directory, String table, String header, int rowsPerFile) {
+            this.directory = directory;
+            this.table = table;
+            this.header = header;
+            this.rowsPerFile = Math.max(1, rowsPerFile);
+        }
+
+        private CsvTable start() {
+            line.setLength(0);
+            return this;
+        }
+
+        private CsvTable value(long value) {
+            separate();
+            line.append(value);
+            return this;
+        }
+
+        //null - пустое поле
+        private CsvTable number(Integer value) {
+            separate();
+            if (value != null) {
+                line.append(value.intValue());
+            }
+            return this;
+        }
+
+        //строка в кавычках, кавычки внутри удваиваются; null - пустое поле
+        private CsvTable text(String value) {
+            separate();
+            if (value != null) {
+                line.append('"').append(value.replace("\"", "\"\"")).append('"');
+            }
+            return this;
+        }
+
+        private void separate() {
+            if (line.length() > 0) {
+                line.append(',');
+            }
+        }
+
+        private void end() {
+            try {
+                if (writer == null || rows == rowsPerFile) {
+                    close();
+                    writer = new BufferedWriter(Files.newBufferedWriter(
+                            directory.resolve(table + "." + part++ + ".csv"), StandardCharsets.UTF_8), 1 << 16);
+                    writer.write(header);
+                    writer.write('\n');
+                    rows = 0;
+                }
+                line.append('\n');
+                writer.append(line);
+                rows++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void close() {
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+                writer = null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,326 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+//генератор набора данных с распределениями, похожими на настоящие:
+//популярность фильмов подчиняется закону Ципфа - немногие фильмы собирают большую часть лайков,
+//количество лайков и друзей у пользователей распределено по степенному закону - у большинства их немного,
+//у единиц - тысячи; жанры и рейтинги MPA выбираются с весами, у фильма от одного до трёх жанров
+//каждая часть набора генерируется своим генератором случайных чисел от seed, поэтому, например,
+//изменение количества друзей не меняет фильмы и лайки
+//в памяти держатся массивы по количеству фильмов и пользователей и множество пар друзей,
+//сами записи сразу передаются получателю
+@Slf4j
+public class DatasetGenerator {
+    //жанры и рейтинги MPA в порядке id из data.sql
+    private static final String[] GENRES = {"Комедия", "Драма", "Мультфильм", "Триллер", "Документальный", "Боевик"};
+    private static final double[] GENRE_WEIGHTS = {0.22, 0.30, 0.08, 0.15, 0.07, 0.18};
+    //у фильма один, два или три жанра
+    private static final double[] GENRES_COUNT_WEIGHTS = {0.50, 0.35, 0.15};
+    private static final String[] RATINGS = {"G", "PG", "PG-13", "R", "NC-17"};
+    private static final double[] RATING_WEIGHTS = {0.10, 0.20, 0.35, 0.28, 0.07};
+    //показатель степенного распределения количества лайков у пользователя
+    private static final double LIKES_EXPONENT = 2.5;
+    //слова названий и описаний: частота слов тоже подчиняется закону Ципфа
+    private static final int VOCABULARY = 20_000;
+    private static final String[] SYLLABLES = {"ка", "ро", "ми", "ла", "то", "ве", "ни", "за", "по", "ре", "ду",
+            "са", "ле", "но", "ги", "ма", "ту", "ри", "во", "се", "ба", "ко", "лу", "да"};
+    private static final int MAX_DESCRIPTION = 200;
+
+    private final DatasetSettings settings;
+
+    public DatasetGenerator(DatasetSettings settings) {
+        if (settings.getUsers() < 0 || settings.getFilms() < 0 || settings.getLikesPerUser() < 0
+                || settings.getFriendsPerUser() < 0 || settings.getMaxFriends() < 0) {
+            throw new IllegalArgumentException("Размеры набора данных не могут быть отрицательными.");
+        }
+        if (settings.getFriendsExponent() <= 2) {
+            throw new IllegalArgumentException("Показатель распределения друзей должен быть больше 2.");
+        }
+        if (settings.getLikesSkew() <= 0) {
+            throw new IllegalArgumentException("Показатель закона Ципфа для лайков должен быть больше 0.");
+        }
+        if (settings.getConfirmedShare() < 0 || settings.getConfirmedShare() > 1) {
+            throw new IllegalArgumentException("Доля подтверждённых дружб должна быть от 0 до 1.");
+        }
+        this.settings = settings;
+    }
+
+    public void generate(DatasetSink sink) {
+        long seed = settings.getSeed();
+        String[] words = vocabulary(new Random(seed));
+        ZipfSampler wordSampler = new ZipfSampler(words.length, 1.0);
+
+        generateUsers(sink, new Random(seed * 31 + 1), words, wordSampler);
+        int[] likesCount = generateLikes(sink, new Random(seed * 31 + 2));
+        generateFilms(sink, new Random(seed * 31 + 3), words, wordSampler, likesCount);
+        generateFriends(sink, new Random(seed * 31 + 4));
+    }
+
+    private void generateUsers(DatasetSink sink, Random random, String[] words, ZipfSampler wordSampler) {
+        LocalDate firstBirthday = LocalDate.of(1950, 1, 1);
+        for (long userId = 1; userId <= settings.getUsers(); userId++) {
+            String name = capitalize(words[wordSampler.sample(random)]) + " "
+                    + capitalize(words[wordSampler.sample(random)]);
+            sink.user(new User(userId, "user" + userId + "@example.com", "user" + userId, name,
+                    firstBirthday.plusDays(random.nextInt(58 * 365))));
+        }
+        log.info("Сгенерировано пользователей: {}", settings.getUsers());
+    }
+
+    //лайки пользователей по порядку; фильм выбирается по популярности, повторный лайк того же фильма
+    //пропускается; возвращает количество лайков каждого фильма по id
+    private int[] generateLikes(DatasetSink sink, Random random) {
+        int films = settings.getFilms();
+        int[] likesCount = new int[films + 1];
+        if (films == 0 || settings.getLikesPerUser() == 0) {
+            return likesCount;
+        }
+        ZipfSampler popularity = new ZipfSampler(films, settings.getLikesSkew());
+        //самый популярный фильм - не обязательно фильм с id 1
+        int[] filmByRank = shuffledIds(films, random);
+        //likedBy[filmId] - последний пользователь, отметивший фильм: пользователи идут по порядку,
+        //поэтому так проверяется повторный лайк без множества на каждого пользователя
+        int[] likedBy = new int[films + 1];
+        //чем больше у пользователя лайков, тем чаще выпадают уже отмеченные фильмы, поэтому лайков не больше
+        //четверти фильмов
+        int maxLikes = Math.max(1, films / 4);
+        long likes = 0;
+        for (int userId = 1; userId <= settings.getUsers(); userId++) {
+            int userLikes = powerLaw(random, settings.getLikesPerUser(), LIKES_EXPONENT, maxLikes);
+            for (int i = 0; i < userLikes; ) {
+                int filmId = filmByRank[popularity.sample(random)];
+                if (likedBy[filmId] == userId) {
+                    continue;
+                }
+                likedBy[filmId] = userId;
+                likesCount[filmId]++;
+                sink.like(filmId, userId);
+                i++;
+            }
+            likes += userLikes;
+        }
+        log.info("Сгенерировано лайков: {}", likes);
+        return likesCount;
+    }
+
+    private void generateFilms(DatasetSink sink, Random random, String[] words, ZipfSampler wordSampler,
+                               int[] likesCount) {
+        for (int filmId = 1; filmId <= settings.getFilms(); filmId++) {
+            StringBuilder name = new StringBuilder(capitalize(words[wordSampler.sample(random)]));
+            int nameWords = 1 + random.nextInt(4);
+            for (int i = 1; i < nameWords; i++) {
+                name.append(' ').append(words[wordSampler.sample(random)]);
+            }
+            StringBuilder description = new StringBuilder(capitalize(words[wordSampler.sample(random)]));
+            int descriptionWords = 6 + random.nextInt(15);
+            for (int i = 1; i < descriptionWords; i++) {
+                String word = words[wordSampler.sample(random)];
+                if (description.length() + 1 + word.length() > MAX_DESCRIPTION) {
+                    break;
+                }
+                description.append(' ').append(word);
+            }
+            //новых фильмов больше, чем старых
+            int year = 1920 + (int) (103 * Math.sqrt(random.nextDouble()));
+            LocalDate releaseDate = LocalDate.ofYearDay(year, 1 + random.nextInt(365));
+            int duration = Math.min(240, Math.max(40, (int) (100 + 25 * random.nextGaussian())));
+            int ratingId = 1 + weighted(random, RATING_WEIGHTS, null);
+
+            Set<Genre> genres = new LinkedHashSet<>();
+            boolean[] chosen = new boolean[GENRES.length];
+            int genresCount = 1 + weighted(random, GENRES_COUNT_WEIGHTS, null);
+            for (int i = 0; i < genresCount; i++) {
+                int genre = weighted(random, GENRE_WEIGHTS, chosen);
+                chosen[genre] = true;
+                genres.add(new Genre(genre + 1, GENRES[genre]));
+            }
+            sink.film(new Film(filmId, name.toString(), description.toString(), releaseDate, duration, 0,
+                    new MPA(ratingId, RATINGS[ratingId - 1]), genres, likesCount[filmId]));
+        }
+        log.info("Сгенерировано фильмов: {}", settings.getFilms());
+    }
+
+    //модель Чунга-Лу: у каждого пользователя есть ожидаемое количество друзей по степенному закону,
+    //пользователь сам выбирает половину из них, второй конец пары выбирается с вероятностью,
+    //пропорциональной его ожидаемому количеству друзей, - так набирается вторая половина
+    //пара пользователей встречается не больше одного раза
+    private void generateFriends(DatasetSink sink, Random random) {
+        int users = settings.getUsers();
+        if (users < 2 || settings.getFriendsPerUser() == 0) {
+            return;
+        }
+        int maxFriends = Math.min(settings.getMaxFriends(), users - 1);
+        double[] weights = new double[users];
+        double[] cumulative = new double[users];
+        double total = 0;
+        for (int i = 0; i < users; i++) {
+            weights[i] = powerLaw(random, settings.getFriendsPerUser(), settings.getFriendsExponent(), maxFriends);
+            total += weights[i];
+            cumulative[i] = total;
+        }
+        PairSet pairs = new PairSet((long) (total / 2));
+        long rows = 0;
+        for (int userId = 1; userId <= users; userId++) {
+            double own = weights[userId - 1] / 2;
+            int picks = (int) own + (random.nextDouble() < own - (int) own ? 1 : 0);
+            for (int i = 0; i < picks; i++) {
+                int pos = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+                int friendId = 1 + Math.min(pos >= 0 ? pos : -pos - 1, users - 1);
+                if (friendId == userId || !pairs.add(userId, friendId)) {
+                    continue;
+                }
+                sink.friend(userId, friendId);
+                rows++;
+                if (random.nextDouble() < settings.getConfirmedShare()) {
+                    sink.friend(friendId, userId);
+                    rows++;
+                }
+            }
+        }
+        log.info("Сгенерировано записей о дружбе: {}, пар пользователей: {}", rows, pairs.size());
+    }
+
+    private static String[] vocabulary(Random random) {
+        String[] words = new String[VOCABULARY];
+        for (int i = 0; i < words.length; i++) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 2 + random.nextInt(3);
+            for (int j = 0; j < syllables; j++) {
+                word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            words[i] = word.toString();
+        }
+        return words;
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    //id от 1 до count в случайном порядке
+    private static int[] shuffledIds(int count, Random random) {
+        int[] ids = new int[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = i + 1;
+        }
+        for (int i = count - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+        return ids;
+    }
+
+    //целое от 1 до max по распределению Парето со средним mean (без учёта ограничения max)
+    //и показателем exponent: доля значений больше x убывает как x^(1-exponent)
+    static int powerLaw(Random random, double mean, double exponent, int max) {
+        double min = mean * (exponent - 2) / (exponent - 1);
+        double value = min * Math.pow(1 - random.nextDouble(), -1 / (exponent - 1));
+        return (int) Math.max(1, Math.min(max, Math.round(value)));
+    }
+
+    //номер варианта по весам; варианты, отмеченные в excluded, не выбираются
+    private static int weighted(Random random, double[] weights, boolean[] excluded) {
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (excluded == null || !excluded[i]) {
+                total += weights[i];
+            }
+        }
+        double point = random.nextDouble() * total;
+        int last = 0;
+        for (int i = 0; i < weights.length; i++) {
+            if (excluded != null && excluded[i]) {
+                continue;
+            }
+            last = i;
+            point -= weights[i];
+            if (point < 0) {
+                return i;
+            }
+        }
+        return last;
+    }
+
+    //номер от 0 до count - 1 по закону Ципфа: номер k выпадает с весом 1/(k+1)^skew
+    static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int count, double skew) {
+            cumulative = new double[count];
+            double total = 0;
+            for (int k = 0; k < count; k++) {
+                total += 1 / Math.pow(k + 1, skew);
+                cumulative[k] = total;
+            }
+        }
+
+        int sample(Random random) {
+            int pos = Arrays.binarySearch(cumulative, random.nextDouble() * cumulative[cumulative.length - 1]);
+            return Math.min(pos >= 0 ? pos : -pos - 1, cumulative.length - 1);
+        }
+    }
+
+    //множество неупорядоченных пар id пользователей: открытая адресация в массиве long,
+    //пара хранится как (меньший id << 32 | больший id), 0 - свободная ячейка
+    private static final class PairSet {
+        private long[] keys;
+        private int size;
+
+        private PairSet(long expected) {
+            int capacity = 16;
+            while (capacity < expected * 2 && capacity < (1 << 30)) {
+                capacity <<= 1;
+            }
+            keys = new long[capacity];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        //false, если пара уже есть
+        private boolean add(int first, int second) {
+            long key = ((long) Math.min(first, second) << 32) | Math.max(first, second);
+            if (!insert(keys, key)) {
+                return false;
+            }
+            if (++size * 2 > keys.length) {
+                long[] grown = new long[keys.length * 2];
+                for (long k : keys) {
+                    if (k != 0) {
+                        insert(grown, k);
+                    }
+                }
+                keys = grown;
+            }
+            return true;
+        }
+
+        private static boolean insert(long[] table, long key) {
+            int mask = table.length - 1;
+            long hash = key * 0x9E3779B97F4A7C15L;
+            int i = (int) (hash ^ (hash >>> 32)) & mask;
+            while (table[i] != 0) {
+                if (table[i] == key) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = key;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+
+//загрузка набора данных из CSV-файлов CsvDatasetWriter в БД H2: каждая часть файла загружается одним
+//INSERT ... SELECT FROM CSVREAD - H2 читает файл сам, без передачи строк через JDBC
+//id пользователей и фильмов берутся из файлов, поэтому таблицы перед загрузкой должны быть пустыми
+//(data.sql их очищает); после загрузки счётчики id продолжаются после загруженных id
+@Slf4j
+public class DatasetLoader {
+    private final JdbcTemplate jdbcTemplate;
+
+    public DatasetLoader(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void load(Path directory) {
+        //порядок таблиц - по внешним ключам
+        load(directory, "users", "USER_ID, EMAIL, LOGIN, NAME, BIRTHDAY");
+        load(directory, "films", "FILM_ID, NAME, DESCRIPTION, RELEASE_DATE, DURATION, RATE, RATING_ID, LIKES_COUNT");
+        load(directory, "films_genre", "FILM_ID, GENRE_ID");
+        load(directory, "films_like", "FILM_ID, USER_ID");
+        load(directory, "friends", "USER_ID, FRIEND_ID");
+        restartIdentity("users", "user_id");
+        restartIdentity("films", "film_id");
+        //обновляем статистику, по которой H2 выбирает индексы
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    private void load(Path directory, String table, String columns) {
+        long started = System.nanoTime();
+        long rows = 0;
+        try {
+            for (Path part : CsvDatasetWriter.parts(directory, table)) {
+                String file = part.toAbsolutePath().toString().replace("'", "''");
+                rows += jdbcTemplate.update("INSERT INTO " + table + " (" + columns + ") SELECT " + columns +
+                        " FROM CSVREAD('" + file + "', NULL, 'charset=UTF-8')");
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        log.info("В таблицу {} загружено {} строк за {} мс", table, rows, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    private void restartIdentity(String table, String column) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + (maxId + 1));
+    }
+}
@@ -0,0 +1,23 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.Data;
+
+//параметры сгенерированного набора данных; при одинаковых параметрах набор получается одним и тем же
+@Data
+public class DatasetSettings {
+    private int users = 100_000;
+    private int films = 20_000;
+    //среднее количество лайков у пользователя; количество лайков распределено по степенному закону
+    private int likesPerUser = 20;
+    //показатель закона Ципфа популярности фильмов: фильм k-й по популярности получает лайки с весом 1/k^s
+    private double likesSkew = 1.0;
+    //среднее количество друзей у пользователя; количество друзей распределено по степенному закону
+    private int friendsPerUser = 30;
+    //показатель степенного распределения количества друзей, больше 2
+    private double friendsExponent = 2.5;
+    //количество друзей одного пользователя не больше
+    private int maxFriends = 5000;
+    //доля подтверждённых дружб, остальные - заявки в одну сторону
+    private double confirmedShare = 0.7;
+    private long seed = 42;
+}
@@ -0,0 +1,18 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+//получатель сгенерированного набора данных
+//DatasetGenerator передаёт сначала всех пользователей, затем лайки, затем фильмы с жанрами и количеством лайков,
+//затем записи о дружбе; лайки приходят раньше фильмов, потому что количество лайков фильма известно только после них
+public interface DatasetSink {
+    void user(User user);
+
+    void like(long filmId, long userId);
+
+    void film(Film film);
+
+    //запись (userId, friendId): friendId в списке друзей userId; подтверждённая дружба - две зеркальные записи
+    void friend(long userId, long friendId);
+}
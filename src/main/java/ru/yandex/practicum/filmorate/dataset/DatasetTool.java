@@ -0,0 +1,78 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+//генерация набора данных в CSV и загрузка в БД приложения, запускается отдельно от приложения:
+//java -cp target/filmorate-0.0.1-SNAPSHOT.jar -Dloader.main=ru.yandex.practicum.filmorate.dataset.DatasetTool
+//        org.springframework.boot.loader.PropertiesLauncher --users=1000000 --films=200000
+//параметры: --users, --films, --likes-per-user, --likes-skew, --friends-per-user, --friends-exponent,
+//--max-friends, --confirmed-share, --seed - см. DatasetSettings; --dir - каталог CSV-файлов (./db/dataset),
+//--url, --username, --password - БД (по умолчанию файловая БД приложения); --load=false - только CSV
+//перед загрузкой выполняются schema.sql и data.sql, то есть все данные в БД удаляются
+@Slf4j
+public class DatasetTool {
+
+    public static void main(String[] args) {
+        Map<String, String> options = parse(args);
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(Integer.parseInt(options.getOrDefault("users", String.valueOf(settings.getUsers()))));
+        settings.setFilms(Integer.parseInt(options.getOrDefault("films", String.valueOf(settings.getFilms()))));
+        settings.setLikesPerUser(Integer.parseInt(
+                options.getOrDefault("likes-per-user", String.valueOf(settings.getLikesPerUser()))));
+        settings.setLikesSkew(Double.parseDouble(
+                options.getOrDefault("likes-skew", String.valueOf(settings.getLikesSkew()))));
+        settings.setFriendsPerUser(Integer.parseInt(
+                options.getOrDefault("friends-per-user", String.valueOf(settings.getFriendsPerUser()))));
+        settings.setFriendsExponent(Double.parseDouble(
+                options.getOrDefault("friends-exponent", String.valueOf(settings.getFriendsExponent()))));
+        settings.setMaxFriends(Integer.parseInt(
+                options.getOrDefault("max-friends", String.valueOf(settings.getMaxFriends()))));
+        settings.setConfirmedShare(Double.parseDouble(
+                options.getOrDefault("confirmed-share", String.valueOf(settings.getConfirmedShare()))));
+        settings.setSeed(Long.parseLong(options.getOrDefault("seed", String.valueOf(settings.getSeed()))));
+        Path directory = Paths.get(options.getOrDefault("dir", "./db/dataset"));
+
+        long started = System.nanoTime();
+        try (CsvDatasetWriter writer = new CsvDatasetWriter(directory)) {
+            new DatasetGenerator(settings).generate(writer);
+        }
+        log.info("Набор данных {} записан в {} за {} мс", settings, directory.toAbsolutePath(),
+                (System.nanoTime() - started) / 1_000_000);
+        if (!Boolean.parseBoolean(options.getOrDefault("load", "true"))) {
+            return;
+        }
+
+        started = System.nanoTime();
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                options.getOrDefault("url", "jdbc:h2:file:./db/filmorate"),
+                options.getOrDefault("username", "sa"), options.getOrDefault("password", "password"));
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+        new DatasetLoader(new JdbcTemplate(dataSource)).load(directory);
+        log.info("Набор данных загружен за {} мс", (System.nanoTime() - started) / 1_000_000);
+    }
+
+    //параметры вида --name=value
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Параметр должен иметь вид --name=value: " + arg);
+            }
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.exceptions.film;
+
+//буфер отложенной записи лайков заполнен, а БД временно недоступна: лайк можно повторить через retryAfterSeconds
+public class LikesBufferFullException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public LikesBufferFullException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
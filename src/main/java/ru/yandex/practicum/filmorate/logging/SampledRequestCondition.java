@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.zalando.logbook.HttpRequest;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Predicate;
+
+//выборочный журнал HTTP-запросов logbook: в журнал попадает только доля sample-rate случайных запросов
+//остальные запросы logbook пропускает целиком - их тела не буферизуются и не форматируются
+//бин заменяет условие logbook по умолчанию (имя requestCondition), logbook.include и logbook.exclude продолжают действовать
+@Component("requestCondition")
+@ConditionalOnProperty(name = "filmorate.logging.http.sample-rate")
+@Slf4j
+public class SampledRequestCondition implements Predicate<HttpRequest> {
+    private final double sampleRate;
+
+    public SampledRequestCondition(@Value("${filmorate.logging.http.sample-rate}") double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Доля журналируемых HTTP-запросов должна быть от 0 до 1.");
+        }
+        this.sampleRate = sampleRate;
+        log.info("Журнал HTTP-запросов: записывается доля запросов {}.", sampleRate);
+    }
+
+    @Override
+    public boolean test(HttpRequest request) {
+        return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
+import ru.yandex.practicum.filmorate.storage.user.dao.UserDao;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+//таймеры методов DAO: бины, реализующие интерфейсы DAO, оборачиваются перехватчиком, который замеряет
+//каждый вызов метода интерфейса; метрика filmorate.dao с тегами dao (интерфейс), method, storage (имя бина -
+//хранилище в БД или в памяти) и exception (класс исключения или none)
+//если бин уже обёрнут Spring (например, для @Transactional), перехватчик добавляется первым в его цепочку,
+//поэтому время вызова включает и транзакцию
+@Component
+public class DaoMetricsPostProcessor implements BeanPostProcessor {
+    public static final String DAO_TIMER = "filmorate.dao";
+    private static final List<Class<?>> DAO_INTERFACES = List.of(FilmDao.class, FilmLikeDao.class, GenreDao.class,
+            MpaDao.class, UserDao.class, FriendsDao.class);
+
+    //реестр метрик создаётся позже пост-процессоров, поэтому запрашивается при первом вызове DAO
+    private final ObjectProvider<MeterRegistry> registryProvider;
+    private volatile MeterRegistry registry;
+
+    public DaoMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        Class<?> dao = DAO_INTERFACES.stream().filter(i -> i.isInstance(bean)).findFirst().orElse(null);
+        if (dao == null) {
+            return bean;
+        }
+        TimingInterceptor interceptor = new TimingInterceptor(dao, beanName);
+        if (bean instanceof Advised && !((Advised) bean).isFrozen()) {
+            ((Advised) bean).addAdvice(0, interceptor);
+            return bean;
+        }
+        //бины DAO в памяти внедряются и по классу, поэтому прокси - подкласс бина
+        ProxyFactory proxyFactory = new ProxyFactory(bean);
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAdvice(interceptor);
+        return proxyFactory.getProxy();
+    }
+
+    private final class TimingInterceptor implements MethodInterceptor {
+        private final String dao;
+        private final String storage;
+        private final Set<String> daoMethods = new HashSet<>();
+        //таймеры успешных вызовов по методу; таймеры вызовов с исключением регистрируются на месте
+        private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+        private TimingInterceptor(Class<?> dao, String storage) {
+            this.dao = dao.getSimpleName();
+            this.storage = storage;
+            for (Method method : dao.getMethods()) {
+                daoMethods.add(signature(method));
+            }
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            Method method = invocation.getMethod();
+            Timer timer = timers.get(method);
+            if (timer == null) {
+                MeterRegistry meterRegistry = registry();
+                if (meterRegistry == null || !daoMethods.contains(signature(method))) {
+                    return invocation.proceed();
+                }
+                timer = timers.computeIfAbsent(method, m -> timer(meterRegistry, m, "none"));
+            }
+            long started = System.nanoTime();
+            Object result;
+            try {
+                result = invocation.proceed();
+            } catch (Throwable e) {
+                timer(registry, method, e.getClass().getSimpleName())
+                        .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                throw e;
+            }
+            timer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            return result;
+        }
+
+        private Timer timer(MeterRegistry meterRegistry, Method method, String exception) {
+            return Timer.builder(DAO_TIMER)
+                    .description("Время выполнения методов DAO")
+                    .tag("dao", dao)
+                    .tag("method", method.getName())
+                    .tag("storage", storage)
+                    .tag("exception", exception)
+                    .register(meterRegistry);
+        }
+    }
+
+    private MeterRegistry registry() {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            meterRegistry = registryProvider.getIfAvailable();
+            registry = meterRegistry;
+        }
+        return meterRegistry;
+    }
+
+    private static String signature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+}
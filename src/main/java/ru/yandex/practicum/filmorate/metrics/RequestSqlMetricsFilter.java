@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//количество SQL-запросов и прочитанных строк на один HTTP-запрос: распределения
+//filmorate.request.sql.statements и filmorate.request.sql.rows с тегами method и uri (шаблон маршрута,
+//как у http.server.requests); запросы к /actuator не учитываются
+@Component
+public class RequestSqlMetricsFilter extends OncePerRequestFilter {
+    public static final String STATEMENTS_SUMMARY = "filmorate.request.sql.statements";
+    public static final String ROWS_SUMMARY = "filmorate.request.sql.rows";
+    private static final String UNKNOWN_URI = "UNKNOWN";
+
+    private final MeterRegistry registry;
+    //распределения по «метод uri»: [0] - запросы, [1] - строки
+    private final Map<String, DistributionSummary[]> summaries = new ConcurrentHashMap<>();
+
+    public RequestSqlMetricsFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getRequestURI().startsWith(request.getContextPath() + "/actuator");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlCounters counters = SqlCounters.start();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlCounters.finish();
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            String uri = pattern == null ? UNKNOWN_URI : pattern.toString();
+            DistributionSummary[] requestSummaries = summaries.computeIfAbsent(request.getMethod() + " " + uri,
+                    key -> summaries(request.getMethod(), uri));
+            requestSummaries[0].record(counters.statements);
+            requestSummaries[1].record(counters.rows);
+        }
+    }
+
+    private DistributionSummary[] summaries(String method, String uri) {
+        return new DistributionSummary[]{
+                DistributionSummary.builder(STATEMENTS_SUMMARY)
+                        .description("SQL-запросы на один HTTP-запрос")
+                        .tag("method", method)
+                        .tag("uri", uri)
+                        .register(registry),
+                DistributionSummary.builder(ROWS_SUMMARY)
+                        .description("Строки результатов SQL-запросов на один HTTP-запрос")
+                        .baseUnit("rows")
+                        .tag("method", method)
+                        .tag("uri", uri)
+                        .register(registry)
+        };
+    }
+}
@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+//количество SQL-запросов и прочитанных строк в текущем HTTP-запросе
+//счётчики привязаны к потоку запроса; запросы к БД из других потоков (отложенная запись лайков,
+//задачи по расписанию) в них не попадают и учитываются только в общих счётчиках
+final class SqlCounters {
+    private static final ThreadLocal<SqlCounters> CURRENT = new ThreadLocal<>();
+
+    long statements;
+    long rows;
+
+    private SqlCounters() {
+    }
+
+    static SqlCounters start() {
+        SqlCounters counters = new SqlCounters();
+        CURRENT.set(counters);
+        return counters;
+    }
+
+    static void finish() {
+        CURRENT.remove();
+    }
+
+    //null вне HTTP-запроса
+    static SqlCounters current() {
+        return CURRENT.get();
+    }
+}
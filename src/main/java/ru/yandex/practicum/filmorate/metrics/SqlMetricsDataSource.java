@@ -0,0 +1,148 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//источник данных, который считает выполненные SQL-запросы и прочитанные строки результатов:
+//соединения, запросы и результаты оборачиваются прокси; счётчики текущего HTTP-запроса (SqlCounters)
+//и общие счётчики filmorate.sql.statements и filmorate.sql.rows увеличиваются при каждом execute*
+//и каждом успешном ResultSet.next()
+public class SqlMetricsDataSource extends DelegatingDataSource {
+    public static final String STATEMENTS_COUNTER = "filmorate.sql.statements";
+    public static final String ROWS_COUNTER = "filmorate.sql.rows";
+
+    private final ObjectProvider<MeterRegistry> registryProvider;
+    private volatile Counter statementsCounter;
+    private volatile Counter rowsCounter;
+
+    public SqlMetricsDataSource(DataSource target, ObjectProvider<MeterRegistry> registryProvider) {
+        super(target);
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connection(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connection(super.getConnection(username, password));
+    }
+
+    private Connection connection(Connection connection) {
+        return proxy(Connection.class, connection, (method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                return statement(method.getReturnType(), (Statement) result);
+            }
+            return result;
+        });
+    }
+
+    //Statement, PreparedStatement или CallableStatement - по типу, который вернул метод соединения
+    private Object statement(Class<?> type, Statement statement) {
+        return proxy(type, statement, (method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                statementExecuted();
+            }
+            Object result = invoke(statement, method, args);
+            if (result instanceof ResultSet) {
+                return resultSet((ResultSet) result);
+            }
+            return result;
+        });
+    }
+
+    private ResultSet resultSet(ResultSet resultSet) {
+        SqlCounters counters = SqlCounters.current();
+        long[] rows = new long[1];
+        return proxy(ResultSet.class, resultSet, (method, args) -> {
+            Object result = invoke(resultSet, method, args);
+            String name = method.getName();
+            if (name.equals("next") && Boolean.TRUE.equals(result)) {
+                rows[0]++;
+                if (counters != null) {
+                    counters.rows++;
+                }
+            } else if (name.equals("close") && rows[0] > 0) {
+                Counter counter = rowsCounter();
+                if (counter != null) {
+                    counter.increment(rows[0]);
+                }
+                rows[0] = 0;
+            }
+            return result;
+        });
+    }
+
+    private void statementExecuted() {
+        SqlCounters counters = SqlCounters.current();
+        if (counters != null) {
+            counters.statements++;
+        }
+        Counter counter = statementsCounter();
+        if (counter != null) {
+            counter.increment();
+        }
+    }
+
+    private Counter statementsCounter() {
+        Counter counter = statementsCounter;
+        if (counter == null) {
+            MeterRegistry registry = registryProvider.getIfAvailable();
+            if (registry != null) {
+                counter = Counter.builder(STATEMENTS_COUNTER)
+                        .description("Выполненные SQL-запросы")
+                        .register(registry);
+                statementsCounter = counter;
+            }
+        }
+        return counter;
+    }
+
+    private Counter rowsCounter() {
+        Counter counter = rowsCounter;
+        if (counter == null) {
+            MeterRegistry registry = registryProvider.getIfAvailable();
+            if (registry != null) {
+                counter = Counter.builder(ROWS_COUNTER)
+                        .description("Строки, прочитанные из результатов SQL-запросов")
+                        .baseUnit("rows")
+                        .register(registry);
+                rowsCounter = counter;
+            }
+        }
+        return counter;
+    }
+
+    private interface Call {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, Call call) {
+        InvocationHandler handler = (proxy, method, args) -> call.invoke(method, args);
+        return type.cast(Proxy.newProxyInstance(SqlMetricsDataSource.class.getClassLoader(),
+                new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
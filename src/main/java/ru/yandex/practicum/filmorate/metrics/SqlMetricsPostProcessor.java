@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+//источник данных приложения заменяется на SqlMetricsDataSource, который считает SQL-запросы и прочитанные строки
+//каждый вызов ResultSet проходит через прокси, поэтому подсчёт отключается filmorate.metrics.sql.enabled=false
+@Component
+@ConditionalOnProperty(name = "filmorate.metrics.sql.enabled", havingValue = "true", matchIfMissing = true)
+public class SqlMetricsPostProcessor implements BeanPostProcessor {
+    private final ObjectProvider<MeterRegistry> registryProvider;
+
+    public SqlMetricsPostProcessor(ObjectProvider<MeterRegistry> registryProvider) {
+        this.registryProvider = registryProvider;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource && !(bean instanceof SqlMetricsDataSource)) {
+            return new SqlMetricsDataSource((DataSource) bean, registryProvider);
+        }
+        return bean;
+    }
+}
@@ -1,7 +1,9 @@
 package ru.yandex.practicum.filmorate.model;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import ru.yandex.practicum.filmorate.model.validator.DateBefore;
 
 import javax.validation.constraints.NotBlank;
@@ -12,6 +14,7 @@ import java.util.Set;
 
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 //генерирует @Getter,@Setter,@ToString,@EqualsAndHashCode,@RequiredArgsConstructor
 public class Film {
     private long id; //целочисленный идентификатор
@@ -34,6 +37,14 @@ public class Film {
 
     private Set<Genre> genres; //жанр фильма
 
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private int likesCount; //количество лайков, задаётся только хранилищем
+
+    public Film(long id, String name, String description, LocalDate releaseDate, int duration, int rate, MPA mpa,
+                Set<Genre> genres) {
+        this(id, name, description, releaseDate, duration, rate, mpa, genres, 0);
+    }
+
     public Set<Genre> getGenres() {
         return genres;
     }
@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Map;
+
+//количество фильмов по значениям жанра, рейтинга MPA и года выпуска для текущего отбора
+//количество по значению поля считается с отбором по остальным полям: столько фильмов будет найдено,
+//если выбрать это значение вместо выбранных в этом поле (для жанров с allGenres - вместе с выбранными)
+@Data
+@AllArgsConstructor
+public class FilmFacets {
+    private int total; //количество фильмов, подходящих под отбор
+
+    private Map<Integer, Integer> genres; //id жанра - количество фильмов
+
+    private Map<Integer, Integer> mpa; //id рейтинга - количество фильмов
+
+    private Map<Integer, Integer> years; //год выпуска - количество фильмов
+}
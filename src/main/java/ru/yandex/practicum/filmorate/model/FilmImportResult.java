@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+//результат добавления одного фильма из строки пакета NDJSON
+@Data
+@AllArgsConstructor
+public class FilmImportResult {
+    private int line; //номер строки в теле запроса, начиная с 1
+
+    private boolean imported; //фильм добавлен
+
+    private Long filmId; //id добавленного фильма, если фильм не добавлен - null
+
+    private String error; //причина, по которой фильм не добавлен
+
+    public static FilmImportResult imported(int line, long filmId) {
+        return new FilmImportResult(line, true, filmId, null);
+    }
+
+    public static FilmImportResult failed(int line, String error) {
+        return new FilmImportResult(line, false, null, error);
+    }
+}
@@ -0,0 +1,12 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+//лайк пользователя фильму - строка таблицы films_like
+@Data
+@AllArgsConstructor
+public class FilmLike {
+    private long filmId;
+    private long userId;
+}
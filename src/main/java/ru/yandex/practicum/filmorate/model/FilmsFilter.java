@@ -0,0 +1,26 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Set;
+
+//отбор фильмов по жанрам, рейтингам MPA и годам выпуска
+//внутри жанров и рейтингов значения объединяются по ИЛИ (жанры - по И, если allGenres), условия разных полей - по И
+@Data
+@AllArgsConstructor
+public class FilmsFilter {
+    private Set<Integer> genres; //id жанров, пустое множество - без отбора по жанрам
+
+    private boolean allGenres; //у фильма должны быть все жанры из genres, а не хотя бы один
+
+    private Set<Integer> mpa; //id рейтингов, пустое множество - без отбора по рейтингу
+
+    private Integer yearFrom; //первый год выпуска включительно или null
+
+    private Integer yearTo; //последний год выпуска включительно или null
+
+    public boolean isEmpty() {
+        return genres.isEmpty() && mpa.isEmpty() && yearFrom == null && yearTo == null;
+    }
+}
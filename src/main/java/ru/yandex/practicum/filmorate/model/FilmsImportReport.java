@@ -0,0 +1,19 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+//отчёт о пакетном добавлении фильмов: итоги и результат по каждой непустой строке
+@Data
+@AllArgsConstructor
+public class FilmsImportReport {
+    private int total; //количество непустых строк
+
+    private int imported; //добавлено фильмов
+
+    private int failed; //не добавлено фильмов
+
+    private List<FilmImportResult> results; //результаты в порядке строк
+}
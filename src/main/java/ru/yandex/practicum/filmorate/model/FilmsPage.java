@@ -0,0 +1,21 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+//страница списка фильмов при постраничном чтении по film_id
+@Data
+@AllArgsConstructor
+public class FilmsPage {
+    private List<Film> films; //фильмы страницы в порядке возрастания id
+
+    private Long nextCursor; //id последнего фильма страницы, если есть следующая страница, иначе null
+
+    private Integer total; //количество фильмов, подходящих под отбор, или null, если фильмы читаются без отбора
+
+    public FilmsPage(List<Film> films, Long nextCursor) {
+        this(films, nextCursor, null);
+    }
+}
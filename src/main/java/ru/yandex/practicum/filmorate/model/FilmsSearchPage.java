@@ -0,0 +1,15 @@
+package ru.yandex.practicum.filmorate.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+//страница результатов поиска фильмов
+@Data
+@AllArgsConstructor
+public class FilmsSearchPage {
+    private List<Film> films; //фильмы страницы по убыванию релевантности
+
+    private int total; //количество найденных фильмов
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//версии фильмов и пользователей для ETag ответов GET /films/{id} и GET /users/{id}
+//версия не хранится для каждого id: id попадает в один из SLOTS счётчиков, и изменение сущности увеличивает
+//счётчик её ячейки; изменение соседа по ячейке меняет ETag и лишь заставляет клиента перечитать сущность,
+//а ответ 304 на изменённую сущность невозможен, потому что счётчики только растут
+//сервисы увеличивают версию после записи в хранилище, контроллеры берут ETag до чтения сущности: данные ответа
+//не старше его ETag, поэтому устаревший ответ не получит ETag новой версии
+//в ETag входит время запуска: после перезапуска счётчики начинаются заново, а ETag прежнего запуска не совпадут
+@Component
+public class EntityVersions {
+    private static final int SLOTS = 1 << 16;
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLongArray films = new AtomicLongArray(SLOTS);
+    private final AtomicLongArray users = new AtomicLongArray(SLOTS);
+    //увеличивается, когда могли измениться все фильмы сразу
+    private final AtomicLong filmsGeneration = new AtomicLong();
+
+    public String getFilmTag(long filmId) {
+        return "\"f" + epoch + "." + filmsGeneration.get() + "." + films.get(slot(filmId)) + "\"";
+    }
+
+    //фильм, его жанры или лайки изменены, фильм удалён
+    public void filmChanged(long filmId) {
+        films.incrementAndGet(slot(filmId));
+    }
+
+    public void allFilmsChanged() {
+        filmsGeneration.incrementAndGet();
+    }
+
+    public String getUserTag(long userId) {
+        return "\"u" + epoch + "." + users.get(slot(userId)) + "\"";
+    }
+
+    public void userChanged(long userId) {
+        users.incrementAndGet(slot(userId));
+    }
+
+    private static int slot(long id) {
+        return (int) (id ^ (id >>> 32)) & (SLOTS - 1);
+    }
+}
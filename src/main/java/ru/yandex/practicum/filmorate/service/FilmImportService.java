@@ -0,0 +1,147 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.FilmsImportReport;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
+import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//пакетное добавление фильмов из NDJSON: одна строка - один фильм в том же формате, что и в POST /films
+//тело читается построчно, в памяти держится только текущая порция фильмов для записи
+//фильмы записываются в БД порциями по chunk-size, каждая порция - в своей транзакции
+@Service
+@Slf4j
+public class FilmImportService {
+    //причина в отчёте для фильмов порции, которую не удалось записать
+    static final String WRITE_ERROR = "Ошибка записи в БД, фильм не добавлен.";
+
+    private final FilmDao filmStorage;
+    private final MpaDao mpaDao;
+    private final GenreDao genreDao;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final Validator validator;
+    private final ObjectReader filmReader;
+    private final int chunkSize;
+
+    public FilmImportService(FilmDao filmStorage, MpaDao mpaDao, GenreDao genreDao,
+                             PopularFilmsLeaderboard leaderboard, Validator validator, ObjectMapper objectMapper,
+                             @Value("${filmorate.films.batch.chunk-size:500}") int chunkSize) {
+        this.filmStorage = filmStorage;
+        this.mpaDao = mpaDao;
+        this.genreDao = genreDao;
+        this.leaderboard = leaderboard;
+        this.validator = validator;
+        this.filmReader = objectMapper.readerFor(Film.class);
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    public FilmsImportReport importFilms(InputStream body) throws IOException {
+        List<FilmImportResult> results = new ArrayList<>();
+        List<Film> chunk = new ArrayList<>(chunkSize);
+        List<Integer> chunkLines = new ArrayList<>(chunkSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                Film film;
+                try {
+                    film = filmReader.readValue(line);
+                } catch (JsonProcessingException e) {
+                    results.add(FilmImportResult.failed(lineNumber, "Некорректный JSON: " + e.getOriginalMessage()));
+                    continue;
+                }
+                String error = validate(film);
+                if (error != null) {
+                    results.add(FilmImportResult.failed(lineNumber, error));
+                    continue;
+                }
+                film.setId(0);
+                chunk.add(film);
+                chunkLines.add(lineNumber);
+                if (chunk.size() >= chunkSize) {
+                    writeChunk(chunk, chunkLines, results);
+                }
+            }
+        }
+        writeChunk(chunk, chunkLines, results);
+
+        results.sort(Comparator.comparingInt(FilmImportResult::getLine));
+        int imported = (int) results.stream().filter(FilmImportResult::isImported).count();
+        log.info("Пакетное добавление фильмов: строк {}, добавлено {}, с ошибками {}.",
+                results.size(), imported, results.size() - imported);
+        return new FilmsImportReport(results.size(), imported, results.size() - imported, results);
+    }
+
+    //возвращает описание ошибок фильма или null, если фильм корректен
+    //рейтинги MPA и жанры проверяются по справочникам в памяти
+    private String validate(Film film) {
+        Set<ConstraintViolation<Film>> violations = validator.validate(film);
+        if (!violations.isEmpty()) {
+            return violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (film.getMpa() == null || !mpaDao.hasRating(film.getMpa().getId())) {
+            return "Не найден рейтинг фильма " + film.getMpa();
+        }
+        if (film.getGenres() != null) {
+            for (Genre genre : film.getGenres()) {
+                if (genre == null || !genreDao.hasGenre(genre.getId())) {
+                    return "Не найден жанр фильма " + genre;
+                }
+            }
+        }
+        return null;
+    }
+
+    //записывает порцию фильмов; если запись не удалась, ошибка отмечается у всех фильмов порции
+    private void writeChunk(List<Film> chunk, List<Integer> chunkLines, List<FilmImportResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            List<Film> films = filmStorage.addFilms(chunk);
+            for (int i = 0; i < films.size(); i++) {
+                long filmId = films.get(i).getId();
+                results.add(FilmImportResult.imported(chunkLines.get(i), filmId));
+                leaderboard.addFilm(filmId);
+            }
+        } catch (RuntimeException e) {
+            //текст исключения JDBC содержит SQL и имена таблиц и ограничений - он остаётся в журнале сервера,
+            //клиенту возвращается только общая причина
+            log.warn("Не удалось записать {} фильмов со строк {}-{}.", chunk.size(), chunkLines.get(0),
+                    chunkLines.get(chunkLines.size() - 1), e);
+            for (int line : chunkLines) {
+                results.add(FilmImportResult.failed(line, WRITE_ERROR));
+            }
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+}
@@ -0,0 +1,44 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+
+import java.util.Map;
+
+//периодически сверяет количество лайков фильмов (films.likes_count) с таблицей films_like
+//и исправляет счётчики, если они разошлись; исправленное количество переносится и в рейтинг популярных фильмов
+//вместе с ещё не записанными лайками буфера
+@Service
+@Slf4j
+public class FilmLikesReconciliationJob {
+    private final FilmLikeDao filmLikeDao;
+    private final EntityVersions entityVersions;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikesWriteBehindBuffer likesBuffer;
+
+    public FilmLikesReconciliationJob(FilmLikeDao filmLikeDao, EntityVersions entityVersions,
+                                      PopularFilmsLeaderboard leaderboard, LikesWriteBehindBuffer likesBuffer) {
+        this.filmLikeDao = filmLikeDao;
+        this.entityVersions = entityVersions;
+        this.leaderboard = leaderboard;
+        this.likesBuffer = likesBuffer;
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.reconcile-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.likes.reconcile-interval-ms:3600000}")
+    public void reconcileLikesCount() {
+        log.debug("Сверка количества лайков фильмов...");
+        Map<Long, Long> fixedFilms = filmLikeDao.reconcileLikesCount();
+        if (!fixedFilms.isEmpty()) {
+            log.warn("Исправлено количество лайков у {} фильмов.", fixedFilms.size());
+            fixedFilms.forEach((filmId, likes) -> {
+                leaderboard.setLikes(filmId, likes + likesBuffer.getPendingLikes(filmId));
+                entityVersions.filmChanged(filmId);
+            });
+        } else {
+            log.debug("Количество лайков фильмов совпадает с таблицей films_like.");
+        }
+    }
+}
@@ -0,0 +1,551 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+//рекомендации фильмов пользователю: фильмы, которые лайкают пользователи со схожими вкусами
+//по таблице films_like в памяти строится разреженная матрица пользователь x фильм: для пользователя - упорядоченный
+//массив id фильмов с его лайком, для фильма - упорядоченный массив id пользователей, поставивших ему лайк
+//сходство фильмов - косинус: количество пользователей, лайкнувших оба фильма, делённое на корень из произведения
+//количеств лайков фильмов; для каждого фильма хранятся neighbours самых похожих фильмов вместе с количеством общих
+//лайков, сам косинус считается при чтении по текущему количеству лайков
+//соседи всех фильмов считаются при старте в фоне в ForkJoinPool; пока соседи фильма не посчитаны, их считает поток запроса
+//лайк пользователя увеличивает количество общих лайков фильма с каждым другим фильмом пользователя - соседи этих
+//фильмов обновляются сразу, без пересчёта; после снятия лайка за пределами полного списка соседей может оказаться
+//более похожий фильм, поэтому такие фильмы пересчитываются фоновой задачей
+//подсчёт идёт в массивах по всем id фильмов; таких наборов массивов столько, сколько потоков в ForkJoinPool,
+//поток запроса берёт свободный набор и ждёт, если все заняты
+//рекомендации пользователю - соседи фильмов с его лайком, которые он ещё не лайкал, по сумме косинусов
+@Component
+@Slf4j
+public class FilmRecommendations {
+    //наибольшее количество рекомендаций
+    public static final int MAX_LIMIT = 100;
+    //количество фильмов, соседей которых считает одна задача ForkJoinPool
+    private static final int FILMS_PER_TASK = 64;
+
+    private final FilmLikeDao filmLikeDao;
+    private final int neighboursSize;
+    private final ForkJoinPool pool;
+
+    private final SortedIdLists userFilms = new SortedIdLists(); //user_id - id фильмов с лайком пользователя
+    private final SortedIdLists filmUsers = new SortedIdLists(); //film_id - id пользователей, лайкнувших фильм
+    private final ConcurrentHashMap<Integer, Neighbours> neighbours = new ConcurrentHashMap<>(); //film_id - соседи
+    //фильмы, соседей которых нужно пересчитать
+    private final Set<Integer> stale = ConcurrentHashMap.newKeySet();
+    //счётчик изменений лайков: нечётный, пока изменение выполняется; если он изменился, пока считались соседи фильма,
+    //соседи могли не учесть изменение, и фильм пересчитывается ещё раз
+    private final AtomicLong changes = new AtomicLong();
+    //изменения лайков выполняются по очереди
+    private final Object writeLock = new Object();
+    //наборы массивов для подсчёта; поток берёт один набор и возвращает его до того, как взять другой
+    private final BlockingQueue<Worker> workers;
+    //пересчёт устаревших соседей запущен и ещё не закончен
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    public FilmRecommendations(FilmLikeDao filmLikeDao,
+                               @Value("${filmorate.recommendations.neighbours:50}") int neighboursSize,
+                               @Value("${filmorate.recommendations.parallelism:0}") int parallelism) {
+        this.filmLikeDao = filmLikeDao;
+        this.neighboursSize = Math.max(neighboursSize, 1);
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        this.workers = new ArrayBlockingQueue<>(pool.getParallelism());
+        for (int i = 0; i < pool.getParallelism(); i++) {
+            workers.add(new Worker());
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        SortedIdLists.Builder byFilm = new SortedIdLists.Builder();
+        SortedIdLists.Builder byUser = new SortedIdLists.Builder();
+        filmLikeDao.forEachLike((filmId, userId) -> {
+            byFilm.add(filmId, userId);
+            byUser.add(userId, filmId);
+        });
+        synchronized (writeLock) {
+            changes.incrementAndGet();
+            filmUsers.load(byFilm);
+            userFilms.load(byUser);
+            neighbours.clear();
+            stale.clear();
+            changes.incrementAndGet();
+        }
+        log.info("Матрица лайков для рекомендаций построена: фильмов {}, пользователей {}, лайков {}.",
+                byFilm.size(), byUser.size(), filmUsers.size());
+        int[] films = likedFilms();
+        pool.execute(() -> {
+            long start = System.nanoTime();
+            new NeighboursTask(films, 0, films.length).invoke();
+            log.info("Посчитаны похожие фильмы для {} фильмов за {} мс.", films.length,
+                    (System.nanoTime() - start) / 1_000_000);
+        });
+    }
+
+    //пересчёт соседей фильмов, которые могли устареть после снятия лайков; поток планировщика его не ждёт,
+    //иначе на время пересчёта останавливались бы и другие задачи по расписанию (запись буфера лайков, сверка лайков)
+    @Scheduled(initialDelayString = "${filmorate.recommendations.refresh-interval-ms:10000}",
+            fixedDelayString = "${filmorate.recommendations.refresh-interval-ms:10000}")
+    public void refreshStale() {
+        submitRefresh();
+    }
+
+    //запускает пересчёт в ForkJoinPool; null - пересчитывать нечего или предыдущий пересчёт ещё идёт
+    ForkJoinTask<?> submitRefresh() {
+        if (stale.isEmpty() || !refreshing.compareAndSet(false, true)) {
+            return null;
+        }
+        int[] films = new int[stale.size()];
+        int size = 0;
+        Iterator<Integer> iterator = stale.iterator();
+        while (iterator.hasNext() && size < films.length) {
+            films[size++] = iterator.next();
+            iterator.remove();
+        }
+        int count = size;
+        return pool.submit(() -> {
+            try {
+                new NeighboursTask(films, 0, count).invoke();
+                log.debug("Пересчитаны похожие фильмы для {} фильмов.", count);
+            } finally {
+                refreshing.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    //id не более limit рекомендуемых фильмов, лучшие - первыми
+    public int[] recommend(long userId, int limit) {
+        int[] liked = userFilms.get(userId);
+        if (liked.length == 0) {
+            return SortedIdLists.EMPTY;
+        }
+        Neighbours[] likedNeighbours = new Neighbours[liked.length];
+        for (int i = 0; i < liked.length; i++) {
+            likedNeighbours[i] = getNeighbours(liked[i]);
+        }
+        Worker worker = takeWorker();
+        try {
+            return worker.recommend(liked, likedNeighbours, Math.min(limit, MAX_LIMIT));
+        } finally {
+            workers.add(worker);
+        }
+    }
+
+    //пользователь userId поставил лайк фильму filmId
+    public void addLike(long filmId, long userId) {
+        synchronized (writeLock) {
+            changes.incrementAndGet();
+            try {
+                if (!filmUsers.add(filmId, userId)) {
+                    return;
+                }
+                userFilms.add(userId, filmId);
+                int film = (int) filmId;
+                for (int other : userFilms.get(userId)) {
+                    if (other != film) {
+                        addCoLike(film, other);
+                        addCoLike(other, film);
+                    }
+                }
+            } finally {
+                changes.incrementAndGet();
+            }
+        }
+    }
+
+    //пользователь userId снял лайк с фильма filmId
+    public void deleteLike(long filmId, long userId) {
+        synchronized (writeLock) {
+            changes.incrementAndGet();
+            try {
+                if (!filmUsers.remove(filmId, userId)) {
+                    return;
+                }
+                userFilms.remove(userId, filmId);
+                int film = (int) filmId;
+                for (int other : userFilms.get(userId)) {
+                    removeCoLike(film, other);
+                    removeCoLike(other, film);
+                }
+            } finally {
+                changes.incrementAndGet();
+            }
+        }
+    }
+
+    //фильм удалён вместе с лайками
+    public void removeFilm(long filmId) {
+        for (int userId : filmUsers.get(filmId)) {
+            deleteLike(filmId, userId);
+        }
+        if (filmId <= Integer.MAX_VALUE) {
+            neighbours.remove((int) filmId);
+            stale.remove((int) filmId);
+        }
+    }
+
+    //соседи фильма: если они ещё не посчитаны, считаем их в потоке запроса
+    private Neighbours getNeighbours(int film) {
+        Neighbours current = neighbours.get(film);
+        return current != null ? current : computeNeighbours(film);
+    }
+
+    private Neighbours computeNeighbours(int film) {
+        long version = changes.get();
+        Neighbours computed;
+        Worker worker = takeWorker();
+        try {
+            computed = worker.computeNeighbours(film);
+        } finally {
+            workers.add(worker);
+        }
+        neighbours.put(film, computed);
+        //лайки менялись во время подсчёта - соседи могли их не учесть
+        if ((version & 1) != 0 || changes.get() != version) {
+            stale.add(film);
+        }
+        return computed;
+    }
+
+    private Worker takeWorker() {
+        try {
+            return workers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Поток прерван в ожидании подсчёта рекомендаций.", e);
+        }
+    }
+
+    //количество общих лайков фильма film с фильмом other увеличилось на один; вызывается под writeLock
+    private void addCoLike(int film, int other) {
+        Neighbours current = neighbours.get(film);
+        if (current == null) {
+            //соседи будут посчитаны при первом чтении по текущим лайкам
+            return;
+        }
+        int pos = current.indexOf(other);
+        if (pos >= 0) {
+            neighbours.put(film, current.withCoLikes(pos, current.coLikes[pos] + 1));
+            return;
+        }
+        int coLikes = SortedIdLists.intersect(filmUsers.get(film), filmUsers.get(other)).length;
+        if (current.size() < neighboursSize) {
+            neighbours.put(film, current.with(other, coLikes));
+            return;
+        }
+        int filmLikes = filmUsers.get(film).length;
+        int weakest = 0;
+        double weakestSimilarity = similarity(current.coLikes[0], filmLikes, filmUsers.get(current.ids[0]).length);
+        for (int i = 1; i < current.size(); i++) {
+            double similarity = similarity(current.coLikes[i], filmLikes, filmUsers.get(current.ids[i]).length);
+            if (isWorse(current.ids[i], similarity, current.ids[weakest], weakestSimilarity)) {
+                weakest = i;
+                weakestSimilarity = similarity;
+            }
+        }
+        double similarity = similarity(coLikes, filmLikes, filmUsers.get(other).length);
+        if (isWorse(current.ids[weakest], weakestSimilarity, other, similarity)) {
+            neighbours.put(film, current.without(weakest).with(other, coLikes));
+        }
+    }
+
+    //количество общих лайков фильма film с фильмом other уменьшилось на один; вызывается под writeLock
+    private void removeCoLike(int film, int other) {
+        Neighbours current = neighbours.get(film);
+        if (current == null) {
+            return;
+        }
+        int pos = current.indexOf(other);
+        if (pos < 0) {
+            return;
+        }
+        int coLikes = current.coLikes[pos] - 1;
+        neighbours.put(film, coLikes > 0 ? current.withCoLikes(pos, coLikes) : current.without(pos));
+        if (current.size() == neighboursSize) {
+            //за пределами полного списка может оказаться фильм, который теперь похожее
+            stale.add(film);
+        }
+    }
+
+    //id фильмов, у которых есть лайки
+    private int[] likedFilms() {
+        int[] films = new int[filmUsers.getMaxId() + 1];
+        int size = 0;
+        for (int film = 1; film < films.length; film++) {
+            if (filmUsers.get(film).length > 0) {
+                films[size++] = film;
+            }
+        }
+        return Arrays.copyOf(films, size);
+    }
+
+    private static double similarity(int coLikes, int filmLikes, int otherLikes) {
+        if (coLikes <= 0 || filmLikes == 0 || otherLikes == 0) {
+            return 0;
+        }
+        return coLikes / Math.sqrt((double) filmLikes * otherLikes);
+    }
+
+    //фильм a хуже фильма b: меньше сходство, при равенстве - больше id
+    private static boolean isWorse(int aId, double aScore, int bId, double bScore) {
+        return aScore != bScore ? aScore < bScore : aId > bId;
+    }
+
+    //похожие фильмы: id по возрастанию и количество общих лайков; объект не изменяется, изменение создаёт новый
+    private static final class Neighbours {
+        private static final Neighbours NONE = new Neighbours(new int[0], new int[0]);
+
+        private final int[] ids;
+        private final int[] coLikes;
+
+        private Neighbours(int[] ids, int[] coLikes) {
+            this.ids = ids;
+            this.coLikes = coLikes;
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private int indexOf(int id) {
+            return Arrays.binarySearch(ids, id);
+        }
+
+        private Neighbours withCoLikes(int pos, int count) {
+            int[] newCoLikes = coLikes.clone();
+            newCoLikes[pos] = count;
+            return new Neighbours(ids, newCoLikes);
+        }
+
+        private Neighbours with(int id, int count) {
+            int pos = -indexOf(id) - 1;
+            int[] newIds = new int[ids.length + 1];
+            int[] newCoLikes = new int[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            System.arraycopy(coLikes, 0, newCoLikes, 0, pos);
+            newIds[pos] = id;
+            newCoLikes[pos] = count;
+            System.arraycopy(ids, pos, newIds, pos + 1, ids.length - pos);
+            System.arraycopy(coLikes, pos, newCoLikes, pos + 1, ids.length - pos);
+            return new Neighbours(newIds, newCoLikes);
+        }
+
+        private Neighbours without(int pos) {
+            int[] newIds = new int[ids.length - 1];
+            int[] newCoLikes = new int[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            System.arraycopy(coLikes, 0, newCoLikes, 0, pos);
+            System.arraycopy(ids, pos + 1, newIds, pos, ids.length - pos - 1);
+            System.arraycopy(coLikes, pos + 1, newCoLikes, pos, ids.length - pos - 1);
+            return new Neighbours(newIds, newCoLikes);
+        }
+    }
+
+    //пересчёт соседей части фильмов: задача делится пополам, пока фильмов больше FILMS_PER_TASK
+    private final class NeighboursTask extends RecursiveAction {
+        private final int[] films;
+        private final int from;
+        private final int to;
+
+        private NeighboursTask(int[] films, int from, int to) {
+            this.films = films;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= FILMS_PER_TASK) {
+                for (int i = from; i < to; i++) {
+                    computeNeighbours(films[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new NeighboursTask(films, from, middle), new NeighboursTask(films, middle, to));
+        }
+    }
+
+    //переиспользуемые массивы подсчёта; одновременно используются одним потоком
+    private final class Worker {
+        private int[] counts = new int[0]; //film_id - количество общих лайков с фильмом
+        private double[] scores = new double[0]; //film_id - сумма косинусов для рекомендации
+        private int[] touched = new int[1024]; //id фильмов с ненулевым счётчиком
+        private int touchedSize;
+        //куча лучших фильмов: на вершине худший из них
+        private int[] heapIds = new int[0];
+        private double[] heapScores = new double[0];
+        private int heapSize;
+        private int heapCapacity;
+
+        //соседи фильма по лайкам всех его пользователей
+        private Neighbours computeNeighbours(int film) {
+            int[] users = filmUsers.get(film);
+            if (users.length == 0) {
+                return Neighbours.NONE;
+            }
+            if (counts.length <= filmUsers.getMaxId()) {
+                counts = new int[filmUsers.getMaxId() + 1];
+            }
+            for (int userId : users) {
+                for (int other : userFilms.get(userId)) {
+                    if (other == film || other >= counts.length) {
+                        continue;
+                    }
+                    if (counts[other]++ == 0) {
+                        touch(other);
+                    }
+                }
+            }
+            startHeap(neighboursSize);
+            for (int i = 0; i < touchedSize; i++) {
+                int other = touched[i];
+                offer(other, similarity(counts[other], users.length, filmUsers.get(other).length));
+            }
+            int[] ids = Arrays.copyOf(heapIds, heapSize);
+            Arrays.sort(ids);
+            int[] coLikes = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                coLikes[i] = counts[ids[i]];
+            }
+            for (int i = 0; i < touchedSize; i++) {
+                counts[touched[i]] = 0;
+            }
+            touchedSize = 0;
+            return new Neighbours(ids, coLikes);
+        }
+
+        private int[] recommend(int[] liked, Neighbours[] likedNeighbours, int limit) {
+            if (scores.length <= filmUsers.getMaxId()) {
+                scores = new double[filmUsers.getMaxId() + 1];
+            }
+            for (int i = 0; i < liked.length; i++) {
+                Neighbours similar = likedNeighbours[i];
+                int filmLikes = filmUsers.get(liked[i]).length;
+                for (int j = 0; j < similar.size(); j++) {
+                    int other = similar.ids[j];
+                    if (other >= scores.length || Arrays.binarySearch(liked, other) >= 0) {
+                        continue;
+                    }
+                    double similarity = similarity(similar.coLikes[j], filmLikes, filmUsers.get(other).length);
+                    if (similarity > 0) {
+                        if (scores[other] == 0) {
+                            touch(other);
+                        }
+                        scores[other] += similarity;
+                    }
+                }
+            }
+            startHeap(limit);
+            for (int i = 0; i < touchedSize; i++) {
+                int other = touched[i];
+                offer(other, scores[other]);
+                scores[other] = 0;
+            }
+            touchedSize = 0;
+            return pollAll();
+        }
+
+        private void touch(int id) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = id;
+        }
+
+        private void startHeap(int capacity) {
+            if (heapIds.length < capacity) {
+                heapIds = new int[capacity];
+                heapScores = new double[capacity];
+            }
+            heapCapacity = capacity;
+            heapSize = 0;
+        }
+
+        private void offer(int id, double score) {
+            if (heapSize < heapCapacity) {
+                heapIds[heapSize] = id;
+                heapScores[heapSize] = score;
+                siftUp(heapSize++);
+            } else if (heapCapacity > 0 && isWorse(heapIds[0], heapScores[0], id, score)) {
+                heapIds[0] = id;
+                heapScores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        //извлекаем из кучи от худшего к лучшему
+        private int[] pollAll() {
+            int[] result = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = heapIds[0];
+                heapSize--;
+                heapIds[0] = heapIds[heapSize];
+                heapScores[0] = heapScores[heapSize];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!isWorse(heapIds[i], heapScores[i], heapIds[parent], heapScores[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < heapSize && isWorse(heapIds[left], heapScores[left], heapIds[worst], heapScores[worst])) {
+                    worst = left;
+                }
+                if (right < heapSize && isWorse(heapIds[right], heapScores[right], heapIds[worst], heapScores[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = heapIds[i];
+            heapIds[i] = heapIds[j];
+            heapIds[j] = id;
+            double score = heapScores[i];
+            heapScores[i] = heapScores[j];
+            heapScores[j] = score;
+        }
+    }
+}
@@ -6,17 +6,24 @@ import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.user.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmFacets;
+import ru.yandex.practicum.filmorate.model.FilmsFilter;
+import ru.yandex.practicum.filmorate.model.FilmsPage;
+import ru.yandex.practicum.filmorate.model.FilmsSearchPage;
 import ru.yandex.practicum.filmorate.model.Genre;
-import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.user.dao.UserDao;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 //отвечает за операции с фильмами, — добавление и удаление лайка, вывод 10 наиболее популярных фильмов
@@ -25,18 +32,41 @@ import java.util.stream.Collectors;
 @Service
 @Slf4j
 public class FilmService {
+    //наибольший размер страницы при постраничном чтении фильмов
+    private static final int MAX_PAGE_SIZE = 1000;
+    //наибольший размер страницы поиска и наибольшая глубина, до которой можно листать результаты поиска
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+    private static final int MAX_SEARCH_OFFSET = 10_000;
+    //наибольшее количество популярных фильмов в одном ответе
+    public static final int MAX_POPULAR_COUNT = 1000;
+
     private final FilmDao filmStorage;
     private final UserDao userStorage;
     private final MpaDao mpaDao;
     private final FilmLikeDao filmLikeDao;
     private final GenreDao genreDao;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final LikesWriteBehindBuffer likesBuffer;
+    private final FilmRecommendations recommendations;
+    private final FilmSearchIndex searchIndex;
+    private final FilmFacetIndex facetIndex;
+    private final EntityVersions entityVersions;
 
-    public FilmService(FilmDao filmStorage, UserDao userStorage, MpaDao mpaDao, FilmLikeDao filmLikeDao, GenreDao genreDao) {
+    public FilmService(FilmDao filmStorage, UserDao userStorage, MpaDao mpaDao, FilmLikeDao filmLikeDao, GenreDao genreDao,
+                       PopularFilmsLeaderboard leaderboard, LikesWriteBehindBuffer likesBuffer,
+                       FilmRecommendations recommendations, FilmSearchIndex searchIndex, FilmFacetIndex facetIndex,
+                       EntityVersions entityVersions) {
         this.filmStorage = filmStorage;
         this.userStorage = userStorage;
         this.mpaDao = mpaDao;
         this.filmLikeDao = filmLikeDao;
         this.genreDao = genreDao;
+        this.leaderboard = leaderboard;
+        this.likesBuffer = likesBuffer;
+        this.recommendations = recommendations;
+        this.searchIndex = searchIndex;
+        this.facetIndex = facetIndex;
+        this.entityVersions = entityVersions;
     }
 
     //добавляем фильм
@@ -54,7 +84,9 @@ public class FilmService {
                 throw new ValidationException("Для обновляемого фильма не найдены все жанры.");
             }
         }
-        return filmStorage.addFilm(film);
+        Film addedFilm = filmStorage.addFilm(film);
+        leaderboard.addFilm(addedFilm.getId());
+        return addedFilm;
     }
 
     //обновляем фильм
@@ -73,25 +105,102 @@ public class FilmService {
                 throw new ValidationException("Для обновляемого фильма не найдены все жанры.");
             }
         }
-        return filmStorage.updateFilm(film);
+        Film updatedFilm = filmStorage.updateFilm(film);
+        //версия меняется после записи: ETag, выданный до неё, не достанется новым данным
+        entityVersions.filmChanged(film.getId());
+        return updatedFilm;
     }
 
     //удаление фильма по id
     public void deleteFilm(long filmId) {
         isValidFilmId(filmId);
         filmStorage.deleteFilm(filmId);
+        entityVersions.filmChanged(filmId);
+        leaderboard.removeFilm(filmId);
+        recommendations.removeFilm(filmId);
     }
 
     //получение фильма по id
     public Film getFilm(long filmId) {
         log.info("GET Запрос на поиск фильма с id={}", filmId);
         isValidFilmId(filmId);
-        return filmStorage.getFilm(filmId);
+        return readFilm(() -> filmStorage.getFilm(filmId));
+    }
+
+    //проверка существования фильма без чтения карточки: условный GET отвечает 404 раньше, чем 304
+    public void checkFilmExists(long filmId) {
+        isValidFilmId(filmId);
+        if (!filmStorage.hasFilm(filmId)) {
+            throw new FilmNotFoundException("С id=" + filmId + " фильм не найден.");
+        }
     }
 
     //возвращает информацию обо всех фильмах
     public List<Film> getFilms() {
-        return filmStorage.getFilms();
+        return readFilms(() -> filmStorage.getFilms());
+    }
+
+    //возвращает страницу из limit фильмов с id больше after
+    public FilmsPage getFilms(long after, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+        if (after < 0) {
+            throw new ValidationException("Некорректный курсор страницы фильмов.");
+        }
+        //запрашиваем на один фильм больше, чтобы узнать, есть ли следующая страница
+        List<Film> films = readFilms(() -> filmStorage.getFilms(after, limit + 1));
+        if (films.size() <= limit) {
+            return new FilmsPage(films, null);
+        }
+        List<Film> page = films.subList(0, limit);
+        return new FilmsPage(page, page.get(limit - 1).getId());
+    }
+
+    //возвращает страницу из limit фильмов с id больше after, подходящих под отбор, и количество подходящих фильмов
+    public FilmsPage getFilms(FilmsFilter filter, long after, int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE + ".");
+        }
+        if (after < 0) {
+            throw new ValidationException("Некорректный курсор страницы фильмов.");
+        }
+        validateFilter(filter);
+        FilmFacetIndex.FilterResult result = facetIndex.filter(filter, after, limit + 1);
+        long[] filmIds = result.getFilmIds();
+        //карточки страницы читаются одним запросом; фильмы, удалённые после отбора, пропускаются
+        List<Long> pageIds = new ArrayList<>(Math.min(filmIds.length, limit));
+        for (int i = 0; i < filmIds.length && i < limit; i++) {
+            pageIds.add(filmIds[i]);
+        }
+        List<Film> films = readFilms(() -> filmStorage.getFilmsByIds(pageIds));
+        Long nextCursor = filmIds.length > limit ? filmIds[limit - 1] : null;
+        return new FilmsPage(films, nextCursor, result.getTotal());
+    }
+
+    //количество фильмов по жанрам, рейтингам и годам выпуска для отбора
+    public FilmFacets getFilmFacets(FilmsFilter filter) {
+        validateFilter(filter);
+        return facetIndex.facets(filter);
+    }
+
+    //поиск фильмов по словам названия и описания: страница из limit фильмов, начиная с offset,
+    //по убыванию релевантности; последнее слово запроса может быть недописанным
+    public FilmsSearchPage searchFilms(String query, int offset, int limit) {
+        if (query == null || query.isBlank()) {
+            throw new ValidationException("Пустой поисковый запрос.");
+        }
+        if (limit <= 0 || limit > MAX_SEARCH_PAGE_SIZE) {
+            throw new ValidationException("Размер страницы поиска должен быть от 1 до " + MAX_SEARCH_PAGE_SIZE + ".");
+        }
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET) {
+            throw new ValidationException("Смещение страницы поиска должно быть от 0 до " + MAX_SEARCH_OFFSET + ".");
+        }
+        FilmSearchIndex.SearchResult result = searchIndex.search(query, offset, limit);
+        //карточки найденных фильмов читаются одним запросом в порядке релевантности;
+        //фильмы, удалённые после поиска, пропускаются
+        List<Film> films = readFilms(() -> filmStorage.getFilmsByIds(toIds(result.getFilmIds())));
+        return new FilmsSearchPage(films, result.getTotal());
     }
 
     //пользователь ставит лайк фильму.
@@ -109,7 +218,14 @@ public class FilmService {
         if(user==null) {
             throw new UserNotFoundException("Пользователь с id=" + userId + " не найден.");
         }
-        filmLikeDao.addLike(filmId,userId);
+        if (likesBuffer.isEnabled()) {
+            likesBuffer.addLike(filmId, userId);
+        } else {
+            filmLikeDao.addLike(filmId, userId);
+        }
+        entityVersions.filmChanged(filmId);
+        leaderboard.addLike(filmId);
+        recommendations.addLike(filmId, userId);
     }
 
     //пользователь удаляет лайк.
@@ -117,7 +233,14 @@ public class FilmService {
         log.debug("Запрос на удаление лайка фильму с id={} лайка от пользователя с userId={}", filmId, userId);
         isValidFilmId(filmId);
         isValidUserId(userId);
-        filmLikeDao.deleteLike(filmId,userId);
+        if (likesBuffer.isEnabled()) {
+            likesBuffer.deleteLike(filmId, userId);
+        } else {
+            filmLikeDao.deleteLike(filmId, userId);
+        }
+        entityVersions.filmChanged(filmId);
+        leaderboard.deleteLike(filmId);
+        recommendations.deleteLike(filmId, userId);
     }
 
     //вывод популярных фильмов,если параметр не задан, то выводим 10 фильмов
@@ -126,8 +249,84 @@ public class FilmService {
         if (count <= 0) {
             throw new ValidationException("Запрошено отрицательное количество популярных фильмов.");
         }
+        if (count > MAX_POPULAR_COUNT) {
+            throw new ValidationException("Количество популярных фильмов должно быть не больше " +
+                    MAX_POPULAR_COUNT + ".");
+        }
         log.debug("Запрос на получение {} популярных фильмов...", count);
-        return filmStorage.getPopularFilms(count);
+        //порядок фильмов берём из рейтинга в памяти; карточки фильмов, которых нет в кэше карточек
+        //(например, сброшенные лайком), хранилище читает одним запросом
+        List<Long> filmsId = leaderboard.getPopularFilms((int) count);
+        List<Film> popFilms = readFilms(() -> filmStorage.getFilmsByIds(filmsId));
+        if (popFilms.size() < filmsId.size()) {
+            Set<Long> found = popFilms.stream().map(Film::getId).collect(Collectors.toSet());
+            for (long filmId : filmsId) {
+                if (!found.contains(filmId)) {
+                    log.debug("Фильм с id={} из рейтинга не найден в хранилище, убираем его из рейтинга.", filmId);
+                    leaderboard.removeFilm(filmId);
+                }
+            }
+        }
+        return popFilms;
+    }
+
+    //рекомендации фильмов пользователю по лайкам пользователей со схожими вкусами
+    public List<Film> getRecommendations(long userId, int limit) {
+        isValidUserId(userId);
+        if (limit <= 0 || limit > FilmRecommendations.MAX_LIMIT) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " +
+                    FilmRecommendations.MAX_LIMIT + ".");
+        }
+        User user = userStorage.getUser(userId);
+        if (user == null) {
+            throw new UserNotFoundException("Пользователь с id=" + userId + " не найден.");
+        }
+        int[] filmsId = recommendations.recommend(userId, limit);
+        //карточки читаются одним запросом в порядке рекомендаций, удалённые фильмы пропускаются
+        return readFilms(() -> filmStorage.getFilmsByIds(toIds(filmsId)));
+    }
+
+    private static List<Long> toIds(int[] filmIds) {
+        List<Long> ids = new ArrayList<>(filmIds.length);
+        for (int filmId : filmIds) {
+            ids.add((long) filmId);
+        }
+        return ids;
+    }
+
+    //фильмы читаются через буфер лайков: запись буфера в БД не попадёт между чтением фильмов
+    //и добавлением к ним незаписанных лайков
+    private Film readFilm(Supplier<Film> read) {
+        return likesBuffer.read(read, this::withPendingLikes);
+    }
+
+    private List<Film> readFilms(Supplier<List<Film>> read) {
+        return likesBuffer.read(read, this::withPendingLikes);
+    }
+
+    //при отложенной записи лайков добавляем к количеству лайков фильма лайки, ещё не записанные в БД
+    private Film withPendingLikes(Film film) {
+        int pendingLikes = likesBuffer.getPendingLikes(film.getId());
+        if (pendingLikes == 0) {
+            return film;
+        }
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getRate(), film.getMpa(), film.getGenres(),
+                Math.max(film.getLikesCount() + pendingLikes, 0));
+    }
+
+    private List<Film> withPendingLikes(List<Film> films) {
+        if (!likesBuffer.hasPendingLikes()) {
+            return films;
+        }
+        return films.stream().map(this::withPendingLikes).collect(Collectors.toList());
+    }
+
+    //проверка фильтра фильмов: диапазон годов выпуска не должен быть пустым
+    private void validateFilter(FilmsFilter filter) {
+        if (filter.getYearFrom() != null && filter.getYearTo() != null && filter.getYearFrom() > filter.getYearTo()) {
+            throw new ValidationException("Первый год выпуска больше последнего.");
+        }
     }
 
     //проверка корректности значений filmId
@@ -146,26 +345,24 @@ public class FilmService {
         return true;
     }
 
-    //проверка наличие видов рейтингов добавляемого/обновляемого фильма в БД
+    //проверка наличие видов рейтингов добавляемого/обновляемого фильма в справочнике рейтингов
     private boolean isRatingsMpa(int mpaId) {
-        MPA ratingMpa = mpaDao.getRating(mpaId);
-        if (ratingMpa == null) {
+        //getRating бросает MpaNotFoundException (404), а неизвестный рейтинг в теле запроса - ошибка валидации
+        if (!mpaDao.hasRating(mpaId)) {
             log.debug("Не найден рейтинг фильма с id={}", mpaId);
             return false;
         }
         return true;
     }
 
-    //проверка наличие видов жанров добавляемого/обновляемого фильма в БД
+    //проверка наличие видов жанров добавляемого/обновляемого фильма в справочнике жанров
     private boolean isGenres(Set<Genre> genres) {
-        Set<Integer> genresId = genreDao.getGenresFilms().stream().map(g -> g.getId()).collect(Collectors.toSet());
         for (Genre gr : genres) {
-            if (!genresId.contains(gr.getId())) {
+            if (!genreDao.hasGenre(gr.getId())) {
                 log.debug("Для фильма не найден жанр с id=" + gr.getId());
                 return false;
             }
         }
-        log.debug("Для фильма не найден все добавляемые (обновляемые) жанры.");
         return true;
     }
 }
@@ -0,0 +1,229 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//рекомендации друзей: пользователи, которых нет в списке друзей, по убыванию количества общих друзей
+//кандидаты находятся в два шага по графу дружбы: друзья друзей пользователя
+//каждый поток считает общих друзей в своём переиспользуемом массиве счётчиков по id пользователя,
+//поэтому подсчёт не создаёт объектов; сбрасываются только затронутые счётчики
+//рекомендации кэшируются для пользователя вместе с массивами графа, по которым они посчитаны:
+//граф заменяет массив пользователя при каждом изменении его дружб, поэтому запись кэша действительна,
+//пока массивы пользователя и его друзей в графе те же самые
+@Component
+public class FriendSuggestions {
+    //наибольшее количество рекомендаций, столько же считается и кэшируется для пользователя
+    public static final int MAX_LIMIT = 100;
+    //счётчик пользователя, который уже в друзьях или сам пользователь
+    private static final int EXCLUDED = -1;
+
+    private final FriendsGraph friendsGraph;
+    private final int cacheSize;
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    //кэш рекомендаций: первым идёт пользователь, которого дольше всех не запрашивали
+    private final LinkedHashMap<Long, CachedSuggestions> cache;
+
+    public FriendSuggestions(FriendsGraph friendsGraph,
+                             @Value("${filmorate.users.suggestions.cache-size:10000}") int cacheSize) {
+        this.friendsGraph = friendsGraph;
+        this.cacheSize = Math.max(cacheSize, 0);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedSuggestions> eldest) {
+                return size() > FriendSuggestions.this.cacheSize;
+            }
+        };
+    }
+
+    //id не более limit рекомендуемых пользователей, лучшие - первыми
+    public int[] suggest(long userId, int limit) {
+        int[] suggestions = null;
+        if (cacheSize > 0) {
+            CachedSuggestions cached;
+            synchronized (cache) {
+                cached = cache.get(userId);
+            }
+            if (cached != null && cached.isValid(userId)) {
+                suggestions = cached.suggestions;
+            }
+        }
+        if (suggestions == null) {
+            int[] friends = friendsGraph.getFriends(userId);
+            int[][] friendsOfFriends = cacheSize > 0 ? new int[friends.length][] : null;
+            suggestions = workers.get().suggest(userId, friends, friendsOfFriends);
+            if (cacheSize > 0) {
+                CachedSuggestions cached = new CachedSuggestions(friends, friendsOfFriends, suggestions);
+                synchronized (cache) {
+                    cache.put(userId, cached);
+                }
+            }
+        }
+        return suggestions.length <= limit ? suggestions : Arrays.copyOf(suggestions, limit);
+    }
+
+    //рекомендации и массивы графа, по которым они посчитаны
+    private final class CachedSuggestions {
+        private final int[] friends;
+        private final int[][] friendsOfFriends;
+        private final int[] suggestions;
+
+        private CachedSuggestions(int[] friends, int[][] friendsOfFriends, int[] suggestions) {
+            this.friends = friends;
+            this.friendsOfFriends = friendsOfFriends;
+            this.suggestions = suggestions;
+        }
+
+        //дружбы пользователя и его друзей не менялись после подсчёта
+        private boolean isValid(long userId) {
+            if (friendsGraph.getFriends(userId) != friends) {
+                return false;
+            }
+            for (int i = 0; i < friends.length; i++) {
+                if (friendsGraph.getFriends(friends[i]) != friendsOfFriends[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    //переиспользуемые массивы одного потока
+    private final class Worker {
+        private int[] counts = new int[0]; //user_id - количество общих друзей
+        private int[] touched = new int[1024]; //id пользователей с ненулевым счётчиком
+        private int touchedSize;
+        //куча лучших кандидатов: на вершине худший из них
+        private final int[] heapIds = new int[MAX_LIMIT];
+        private final int[] heapCounts = new int[MAX_LIMIT];
+        private int heapSize;
+
+        //friendsOfFriends, если задан, заполняется массивами друзей друзей, по которым шёл подсчёт
+        private int[] suggest(long userId, int[] friends, int[][] friendsOfFriends) {
+            if (counts.length <= friendsGraph.getMaxUserId()) {
+                counts = new int[friendsGraph.getMaxUserId() + 1];
+            }
+            if (userId < counts.length) {
+                exclude((int) userId);
+            }
+            for (int friendId : friends) {
+                exclude(friendId);
+            }
+            for (int i = 0; i < friends.length; i++) {
+                int[] candidates = friendsGraph.getFriends(friends[i]);
+                if (friendsOfFriends != null) {
+                    friendsOfFriends[i] = candidates;
+                }
+                for (int candidate : candidates) {
+                    if (candidate >= counts.length) {
+                        //пользователь добавлен в граф после начала подсчёта
+                        continue;
+                    }
+                    int count = counts[candidate];
+                    if (count == 0) {
+                        touch(candidate);
+                    }
+                    if (count != EXCLUDED) {
+                        counts[candidate] = count + 1;
+                    }
+                }
+            }
+            heapSize = 0;
+            for (int i = 0; i < touchedSize; i++) {
+                int candidate = touched[i];
+                int count = counts[candidate];
+                counts[candidate] = 0;
+                if (count > 0) {
+                    offer(candidate, count);
+                }
+            }
+            touchedSize = 0;
+            //извлекаем из кучи от худшего к лучшему
+            int[] result = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                result[i] = heapIds[0];
+                heapSize--;
+                heapIds[0] = heapIds[heapSize];
+                heapCounts[0] = heapCounts[heapSize];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void exclude(int id) {
+            if (id < counts.length && counts[id] != EXCLUDED) {
+                if (counts[id] == 0) {
+                    touch(id);
+                }
+                counts[id] = EXCLUDED;
+            }
+        }
+
+        private void touch(int id) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = id;
+        }
+
+        private void offer(int id, int count) {
+            if (heapSize < MAX_LIMIT) {
+                heapIds[heapSize] = id;
+                heapCounts[heapSize] = count;
+                siftUp(heapSize++);
+            } else if (isWorse(heapIds[0], heapCounts[0], id, count)) {
+                heapIds[0] = id;
+                heapCounts[0] = count;
+                siftDown(0);
+            }
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!isWorse(heapIds[i], heapCounts[i], heapIds[parent], heapCounts[parent])) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < heapSize && isWorse(heapIds[left], heapCounts[left], heapIds[worst], heapCounts[worst])) {
+                    worst = left;
+                }
+                if (right < heapSize && isWorse(heapIds[right], heapCounts[right], heapIds[worst], heapCounts[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = heapIds[i];
+            heapIds[i] = heapIds[j];
+            heapIds[j] = id;
+            int count = heapCounts[i];
+            heapCounts[i] = heapCounts[j];
+            heapCounts[j] = count;
+        }
+    }
+
+    //кандидат a хуже кандидата b: меньше общих друзей, при равенстве - больше id
+    private static boolean isWorse(int aId, int aCount, int bId, int bCount) {
+        return aCount != bCount ? aCount < bCount : aId > bId;
+    }
+}
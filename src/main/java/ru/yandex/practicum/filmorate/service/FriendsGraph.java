@@ -0,0 +1,83 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
+
+import javax.annotation.PostConstruct;
+
+//граф дружбы пользователей в памяти приложения
+//для каждого пользователя хранится упорядоченный массив int id пользователей из его списка друзей:
+//тех, кого он добавил сам, - и с подтверждённой, и с неподтверждённой дружбой
+//дружба подтверждена, если пользователи есть в массивах друг друга
+//массивы хранятся в SortedIdLists по индексу id пользователя: чтение списка друзей не создаёт объектов
+//изменения сначала записываются в FriendsDao, потом в граф; массив пользователя заменяется новым целиком,
+//поэтому читатели получают массивы без блокировок
+//при старте граф строится по таблице friends
+@Component
+@Slf4j
+public class FriendsGraph {
+    private static final int PAIR_LOCKS = 64;
+
+    private final FriendsDao friendsDao;
+    //user_id - упорядоченные id друзей
+    private final SortedIdLists friends = new SortedIdLists();
+    //изменения одной пары пользователей выполняются по очереди
+    private final Object[] pairLocks = new Object[PAIR_LOCKS];
+
+    public FriendsGraph(FriendsDao friendsDao) {
+        this.friendsDao = friendsDao;
+        for (int i = 0; i < PAIR_LOCKS; i++) {
+            pairLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        SortedIdLists.Builder loaded = new SortedIdLists.Builder();
+        friendsDao.forEachFriend(loaded::add);
+        friends.load(loaded);
+        log.info("Граф дружбы построен: пользователей {}, записей в списках друзей {}.", loaded.size(), friends.size());
+    }
+
+    //упорядоченные id друзей пользователя; массив общий для всех читателей и не должен изменяться
+    public int[] getFriends(long userId) {
+        return friends.get(userId);
+    }
+
+    //наибольший id пользователя, для которого в графе есть место
+    public int getMaxUserId() {
+        return friends.getMaxId();
+    }
+
+    //упорядоченные id общих друзей пользователей
+    public int[] getCommonFriends(long userId, long otherId) {
+        return SortedIdLists.intersect(getFriends(userId), getFriends(otherId));
+    }
+
+    public boolean isFriend(long userId, long friendId) {
+        return friends.contains(userId, friendId);
+    }
+
+    //пользователь userId добавляет в друзья friendId
+    public void addFriend(long userId, long friendId) {
+        synchronized (pairLock(userId, friendId)) {
+            friendsDao.addFriend(userId, friendId);
+            friends.add(userId, friendId);
+        }
+    }
+
+    //пользователь userId удаляет из друзей friendId; как и в FriendsDao, список друзей friendId не меняется:
+    //подтверждённая дружба становится неподтверждённой дружбой friendId с userId
+    public void deleteFriend(long userId, long friendId) {
+        synchronized (pairLock(userId, friendId)) {
+            friendsDao.deleteFriend(userId, friendId);
+            friends.remove(userId, friendId);
+        }
+    }
+
+    private Object pairLock(long userId, long friendId) {
+        long hash = Math.min(userId, friendId) * 31 + Math.max(userId, friendId);
+        return pairLocks[(int) (hash & (PAIR_LOCKS - 1))];
+    }
+}
@@ -0,0 +1,398 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.film.LikesBufferFullException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+//отложенная запись лайков (filmorate.likes.write-behind.enabled=true)
+//лайк подтверждается сразу после записи в буфер, в films_like буфер записывается пакетами:
+//по расписанию, при накоплении batch-size лайков или, если буфер заполнен до max-pending, - потоком запроса
+//лайк и снятие лайка одной пары (фильм, пользователь) до записи в БД взаимно сокращаются
+//пока лайк не записан, его учитывают проверки повторного лайка и количество лайков фильма в ответах
+//лайки, которые не удалось записать из-за нарушения ограничений БД (фильм или пользователь удалены), отбрасываются,
+//при остальных ошибках они возвращаются в буфер, а запись по расписанию откладывается (от 1 с до 1 мин);
+//если на это время буфер заполнен, новый лайк не принимается - LikesBufferFullException (503 с Retry-After)
+//статистика ошибок публикуется в Micrometer: likes.write-behind.failures с тегом result=dropped|retried
+//и likes.write-behind.pending - количество лайков в буфере
+@Component
+@Slf4j
+public class LikesWriteBehindBuffer {
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+
+    private final FilmLikeDao filmLikeDao;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmRecommendations recommendations;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxPending;
+
+    //ожидающие записи лайки и лайки, которые записываются сейчас; изменяются под lock
+    private final Object lock = new Object();
+    private Map<FilmLike, PendingLike> pending = new HashMap<>();
+    private Map<FilmLike, PendingLike> inFlight = new HashMap<>();
+    private final Map<Long, Integer> pendingLikes = new HashMap<>(); //film_id - изменение количества лайков
+    //версия буфера: увеличивается в начале и в конце записи в БД, нечётная - идёт запись
+    private long version;
+
+    //запись буфера выполняет только один поток одновременно
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushSubmitted = new AtomicBoolean();
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "likes-write-behind");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //после ошибки записи фоновая запись откладывается до retryAt (System.nanoTime); backoffMillis меняется под flushLock
+    private volatile long retryAt = System.nanoTime();
+    private long backoffMillis;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+
+    //метрики регистрируются в конструкторе, а не через MeterBinder: реестр метрик создаётся раньше DAO,
+    //и MeterBinder, зависящий от DAO, замкнул бы зависимости бинов в цикл
+    public LikesWriteBehindBuffer(FilmLikeDao filmLikeDao, PopularFilmsLeaderboard leaderboard,
+                                  FilmRecommendations recommendations, MeterRegistry registry,
+                                  @Value("${filmorate.likes.write-behind.enabled:false}") boolean enabled,
+                                  @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                                  @Value("${filmorate.likes.write-behind.max-pending:100000}") int maxPending) {
+        this.filmLikeDao = filmLikeDao;
+        this.leaderboard = leaderboard;
+        this.recommendations = recommendations;
+        this.enabled = enabled;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxPending = Math.max(maxPending, this.batchSize);
+        if (enabled) {
+            log.info("Отложенная запись лайков включена: batch-size={}, max-pending={}.", this.batchSize, this.maxPending);
+        }
+        FunctionCounter.builder("likes.write-behind.failures", dropped, AtomicLong::get).tag("result", "dropped")
+                .description("Лайки, отброшенные из-за нарушения ограничений БД").register(registry);
+        FunctionCounter.builder("likes.write-behind.failures", retried, AtomicLong::get).tag("result", "retried")
+                .description("Лайки, возвращённые в буфер после ошибки записи").register(registry);
+        Gauge.builder("likes.write-behind.pending", this, LikesWriteBehindBuffer::getPendingSize)
+                .description("Лайки, ожидающие записи в БД").register(registry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void addLike(long filmId, long userId) {
+        change(new FilmLike(filmId, userId), true);
+    }
+
+    public void deleteLike(long filmId, long userId) {
+        change(new FilmLike(filmId, userId), false);
+    }
+
+    //читает фильмы из хранилища и добавляет к ним незаписанные лайки (withPendingLikes вызывается под блокировкой
+    //буфера), так чтобы запись буфера в БД не пришлась между ними: иначе лайк, уже записанный в БД,
+    //но ещё не убранный из буфера, учёлся бы дважды; если запись пришлась на чтение, фильмы читаются заново
+    public <T> T read(Supplier<T> read, Function<T, T> withPendingLikes) {
+        if (!enabled) {
+            return read.get();
+        }
+        while (true) {
+            long versionBefore;
+            synchronized (lock) {
+                versionBefore = version;
+            }
+            if ((versionBefore & 1) != 0) {
+                //идёт запись буфера - ждём её окончания
+                flushLock.lock();
+                flushLock.unlock();
+                continue;
+            }
+            T result = read.get();
+            synchronized (lock) {
+                if (version == versionBefore) {
+                    return withPendingLikes.apply(result);
+                }
+            }
+            log.debug("Во время чтения фильмов буфер лайков записан в БД, читаем заново.");
+        }
+    }
+
+    //изменение количества лайков фильма, ещё не записанное в БД
+    public int getPendingLikes(long filmId) {
+        synchronized (lock) {
+            return pendingLikes.getOrDefault(filmId, 0);
+        }
+    }
+
+    public boolean hasPendingLikes() {
+        synchronized (lock) {
+            return !pendingLikes.isEmpty();
+        }
+    }
+
+    public int getPendingSize() {
+        synchronized (lock) {
+            return pending.size();
+        }
+    }
+
+    private void change(FilmLike like, boolean liked) {
+        boolean flushed = false;
+        int pendingSize;
+        while (true) {
+            long versionBefore;
+            Boolean current;
+            synchronized (lock) {
+                current = currentState(like);
+                versionBefore = version;
+            }
+            //пары нет в буфере - читаем её состояние из БД без блокировки буфера
+            boolean persisted = current != null ? current : filmLikeDao.isLiked(like.getFilmId(), like.getUserId());
+            boolean full = false;
+            synchronized (lock) {
+                Boolean state = currentState(like);
+                if (state == null && version != versionBefore) {
+                    //пока читали БД, буфер успел записаться - состояние в БД могло измениться
+                    continue;
+                }
+                boolean wasLiked = state != null ? state : persisted;
+                if (wasLiked == liked) {
+                    throw new FilmNotFoundException(liked
+                            ? "Фильм с id=" + like.getFilmId() + " уже отмечен пользователем с id=" + like.getUserId() + "."
+                            : "Лайк фильму с id=" + like.getFilmId() + " от пользователя с id=" + like.getUserId() +
+                            " не найден.");
+                }
+                PendingLike pendingLike = pending.get(like);
+                if (pendingLike == null && pending.size() >= maxPending) {
+                    //буфер заполнен: размер проверяется под той же блокировкой, что и добавление лайка
+                    full = true;
+                } else {
+                    if (pendingLike == null) {
+                        pendingLike = new PendingLike(wasLiked);
+                        pending.put(like, pendingLike);
+                    }
+                    pendingLike.liked = liked;
+                    if (pendingLike.liked == pendingLike.persisted) {
+                        //лайк и снятие лайка сократились, в БД писать нечего
+                        pending.remove(like);
+                    }
+                    addPendingLikes(like.getFilmId(), liked ? 1 : -1);
+                    pendingSize = pending.size();
+                    break;
+                }
+            }
+            if (full) {
+                //прежде чем принять лайк, поток запроса сам записывает буфер в БД;
+                //если и после этого буфер заполнен из-за ошибок записи, лайк не принимаем
+                if (flushed && isBackingOff()) {
+                    throw new LikesBufferFullException("Буфер лайков заполнен: запись лайков в БД временно недоступна.",
+                            retryAfterSeconds());
+                }
+                log.debug("Буфер лайков заполнен, запись выполняет поток запроса.");
+                flush();
+                flushed = true;
+            }
+        }
+        if (pendingSize >= batchSize && !isBackingOff()) {
+            submitFlush();
+        }
+    }
+
+    //состояние пары по буферу: null, если пары в буфере нет
+    private Boolean currentState(FilmLike like) {
+        PendingLike pendingLike = pending.get(like);
+        if (pendingLike == null) {
+            pendingLike = inFlight.get(like);
+        }
+        return pendingLike == null ? null : pendingLike.liked;
+    }
+
+    private void addPendingLikes(long filmId, int delta) {
+        pendingLikes.merge(filmId, delta, (a, b) -> a + b == 0 ? null : a + b);
+    }
+
+    private void submitFlush() {
+        if (flushSubmitted.compareAndSet(false, true)) {
+            flushExecutor.execute(() -> {
+                flushSubmitted.set(false);
+                flush();
+            });
+        }
+    }
+
+    private boolean isBackingOff() {
+        return System.nanoTime() - retryAt < 0;
+    }
+
+    //секунды до следующей попытки записи в БД, не меньше одной
+    private long retryAfterSeconds() {
+        long nanos = retryAt - System.nanoTime();
+        return Math.max(1, (nanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.likes.write-behind.flush-interval-ms:1000}",
+            fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        if (enabled && !isBackingOff()) {
+            flush();
+        }
+    }
+
+    //записывает накопленные лайки в БД одной транзакцией
+    public void flush() {
+        flushLock.lock();
+        try {
+            Map<FilmLike, PendingLike> batch;
+            synchronized (lock) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                inFlight = batch;
+                pending = new HashMap<>();
+                version++;
+            }
+            Map<FilmLike, Boolean> failed = save(batch);
+            List<FilmLike> reverted = new ArrayList<>();
+            synchronized (lock) {
+                batch.forEach((like, pendingLike) -> {
+                    Boolean permanent = failed.get(like);
+                    if (permanent == null) {
+                        //лайк записан: количество лайков фильма в БД уже его учитывает
+                        removePendingLike(like, pendingLike);
+                    } else if (pending.containsKey(like)) {
+                        //после незаписанного изменения пара изменена обратно: изменения сокращаются,
+                        //в БД остаётся прежнее состояние; их изменения количества лайков и рейтинга
+                        //в сумме равны нулю
+                        pending.remove(like);
+                    } else if (permanent) {
+                        removePendingLike(like, pendingLike);
+                        reverted.add(like);
+                    } else {
+                        //лайк вернётся в БД со следующей записью буфера
+                        pending.put(like, pendingLike);
+                    }
+                });
+                inFlight = new HashMap<>();
+                version++;
+            }
+            //отброшенный лайк убираем из рейтинга популярных фильмов и из матрицы рекомендаций:
+            //они возвращаются к состоянию в БД
+            reverted.forEach(like -> {
+                if (batch.get(like).persisted) {
+                    leaderboard.addLike(like.getFilmId());
+                    recommendations.addLike(like.getFilmId(), like.getUserId());
+                } else {
+                    leaderboard.deleteLike(like.getFilmId());
+                    recommendations.deleteLike(like.getFilmId(), like.getUserId());
+                }
+            });
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void removePendingLike(FilmLike like, PendingLike pendingLike) {
+        addPendingLikes(like.getFilmId(), pendingLike.persisted ? 1 : -1);
+    }
+
+    //записывает пакет и возвращает незаписанные лайки: true - ошибка постоянная, лайк отбрасывается,
+    //false - лайк нужно записать позже
+    private Map<FilmLike, Boolean> save(Map<FilmLike, PendingLike> batch) {
+        List<FilmLike> likes = new ArrayList<>();
+        List<FilmLike> unlikes = new ArrayList<>();
+        batch.forEach((like, pendingLike) -> (pendingLike.liked ? likes : unlikes).add(like));
+        Map<FilmLike, Boolean> failed = new HashMap<>();
+        try {
+            filmLikeDao.saveLikes(likes, unlikes);
+            log.debug("Из буфера записано лайков: добавлено {}, удалено {}.", likes.size(), unlikes.size());
+        } catch (DataIntegrityViolationException e) {
+            log.warn("Пакетная запись {} лайков нарушает ограничения БД, записываем по одному: {}", batch.size(),
+                    e.getMessage());
+            saveOneByOne(batch, failed);
+        } catch (RuntimeException e) {
+            log.warn("Пакетная запись {} лайков не удалась, лайки возвращены в буфер.", batch.size(), e);
+            batch.keySet().forEach(like -> failed.put(like, false));
+        }
+        long retries = failed.values().stream().filter(permanent -> !permanent).count();
+        retried.addAndGet(retries);
+        dropped.addAndGet(failed.size() - retries);
+        if (retries > 0) {
+            backoffMillis = backoffMillis == 0 ? MIN_BACKOFF_MILLIS : Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(backoffMillis);
+            log.warn("Запись лайков отложена на {} мс.", backoffMillis);
+        } else {
+            backoffMillis = 0;
+            retryAt = System.nanoTime();
+        }
+        return failed;
+    }
+
+    //лайк, нарушающий ограничения БД (например, фильм или пользователь удалены), отбрасывается;
+    //после другой ошибки оставшиеся лайки не записываем - они вернутся в буфер
+    private void saveOneByOne(Map<FilmLike, PendingLike> batch, Map<FilmLike, Boolean> failed) {
+        boolean available = true;
+        for (Map.Entry<FilmLike, PendingLike> entry : batch.entrySet()) {
+            FilmLike like = entry.getKey();
+            if (!available) {
+                failed.put(like, false);
+                continue;
+            }
+            try {
+                if (entry.getValue().liked) {
+                    filmLikeDao.saveLikes(List.of(like), List.of());
+                } else {
+                    filmLikeDao.saveLikes(List.of(), List.of(like));
+                }
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Лайк фильму с id={} от пользователя с id={} не записан и отброшен: {}", like.getFilmId(),
+                        like.getUserId(), e.getMessage());
+                failed.put(like, true);
+            } catch (RuntimeException e) {
+                log.warn("Лайк фильму с id={} от пользователя с id={} не записан, лайки возвращены в буфер.",
+                        like.getFilmId(), like.getUserId(), e);
+                failed.put(like, false);
+                available = false;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        flushExecutor.shutdown();
+        flushExecutor.awaitTermination(10, TimeUnit.SECONDS);
+        flush();
+    }
+
+    //изменение пары (фильм, пользователь), ожидающее записи
+    private static class PendingLike {
+        private final boolean persisted; //состояние в БД, от которого отсчитывается изменение
+        private boolean liked; //состояние, которое нужно записать
+
+        private PendingLike(boolean persisted) {
+            this.persisted = persisted;
+            this.liked = persisted;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+//рейтинг фильмов по количеству лайков в памяти приложения
+//счётчик каждого фильма меняется под блокировкой только этого фильма (ConcurrentHashMap.compute),
+//упорядоченный индекс - ConcurrentSkipListSet: изменение за O(log n), чтение первых count фильмов без блокировок
+//при старте рейтинг строится по таблице films_like
+@Component
+@Slf4j
+public class PopularFilmsLeaderboard {
+    private final FilmLikeDao filmLikeDao;
+
+    private final ConcurrentHashMap<Long, Long> likes = new ConcurrentHashMap<>(); //film_id - количество лайков
+    private final ConcurrentSkipListSet<Rank> ranking = new ConcurrentSkipListSet<>();
+
+    public PopularFilmsLeaderboard(FilmLikeDao filmLikeDao) {
+        this.filmLikeDao = filmLikeDao;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        Map<Long, Long> filmsLikes = filmLikeDao.getLikesCount();
+        likes.clear();
+        ranking.clear();
+        filmsLikes.forEach((filmId, count) -> change(filmId, count));
+        log.info("Рейтинг популярных фильмов построен: {} фильмов.", likes.size());
+    }
+
+    //добавлен фильм без лайков
+    public void addFilm(long filmId) {
+        change(filmId, 0);
+    }
+
+    //фильм удалён
+    public void removeFilm(long filmId) {
+        likes.computeIfPresent(filmId, (id, count) -> {
+            ranking.remove(new Rank(count, id));
+            return null;
+        });
+    }
+
+    public void addLike(long filmId) {
+        change(filmId, 1);
+    }
+
+    public void deleteLike(long filmId) {
+        change(filmId, -1);
+    }
+
+    //количество лайков фильма исправлено сверкой с таблицей films_like
+    public void setLikes(long filmId, long count) {
+        likes.compute(filmId, (id, oldCount) -> {
+            long newCount = Math.max(count, 0);
+            ranking.add(new Rank(newCount, id));
+            if (oldCount != null && newCount != oldCount) {
+                ranking.remove(new Rank(oldCount, id));
+            }
+            return newCount;
+        });
+    }
+
+    public long getLikes(long filmId) {
+        return likes.getOrDefault(filmId, 0L);
+    }
+
+    //id не более count самых популярных фильмов: по убыванию количества лайков, при равенстве - по возрастанию id
+    public List<Long> getPopularFilms(int count) {
+        List<Long> films = new ArrayList<>(Math.min(count, 64));
+        Set<Long> seen = new HashSet<>();
+        Iterator<Rank> ranks = ranking.iterator();
+        while (films.size() < count && ranks.hasNext()) {
+            Rank rank = ranks.next();
+            //пока фильм переставляется, он может встретиться дважды: с прежним и новым количеством лайков
+            if (seen.add(rank.filmId)) {
+                films.add(rank.filmId);
+            }
+        }
+        return films;
+    }
+
+    private void change(long filmId, long delta) {
+        likes.compute(filmId, (id, count) -> {
+            long oldCount = count == null ? 0 : count;
+            long newCount = Math.max(oldCount + delta, 0);
+            //сначала добавляем новую позицию, потом убираем прежнюю - читатель не потеряет фильм
+            ranking.add(new Rank(newCount, id));
+            if (count != null && newCount != oldCount) {
+                ranking.remove(new Rank(oldCount, id));
+            }
+            return newCount;
+        });
+    }
+
+    //позиция фильма в рейтинге
+    private static final class Rank implements Comparable<Rank> {
+        private final long likes;
+        private final long filmId;
+
+        private Rank(long likes, long filmId) {
+            this.likes = likes;
+            this.filmId = filmId;
+        }
+
+        @Override
+        public int compareTo(Rank other) {
+            int byLikes = Long.compare(other.likes, likes);
+            return byLikes != 0 ? byLikes : Long.compare(filmId, other.filmId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Rank)) {
+                return false;
+            }
+            Rank rank = (Rank) o;
+            return likes == rank.likes && filmId == rank.filmId;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(likes) * 31 + Long.hashCode(filmId);
+        }
+    }
+}
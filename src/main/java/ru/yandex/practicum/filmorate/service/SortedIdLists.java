@@ -0,0 +1,219 @@
+package ru.yandex.practicum.filmorate.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+//упорядоченные массивы int id по индексу int id: друзья пользователя, фильмы с лайком пользователя и т.п.
+//массивы лежат в AtomicReferenceArray по индексу id: чтение списка не создаёт объектов
+//при каждом изменении массив списка заменяется новым целиком, поэтому читатели получают массивы без блокировок,
+//а по тождеству массива можно понять, менялся ли список; изменения выполняются по очереди
+final class SortedIdLists {
+    static final int[] EMPTY = new int[0];
+    //во сколько раз один массив должен быть длиннее другого, чтобы пересекать их галопирующим поиском
+    private static final int GALLOP_RATIO = 16;
+
+    //id - упорядоченный массив; массив списков заменяется новым, когда id не помещается
+    private volatile AtomicReferenceArray<int[]> lists = new AtomicReferenceArray<>(0);
+    private final Object writeLock = new Object();
+
+    //упорядоченный список id; массив общий для всех читателей и не должен изменяться
+    int[] get(long id) {
+        AtomicReferenceArray<int[]> current = lists;
+        if (id < 0 || id >= current.length()) {
+            return EMPTY;
+        }
+        int[] ids = current.get((int) id);
+        return ids == null ? EMPTY : ids;
+    }
+
+    //наибольший id, для которого есть место
+    int getMaxId() {
+        return lists.length() - 1;
+    }
+
+    boolean contains(long id, long value) {
+        return value <= Integer.MAX_VALUE && Arrays.binarySearch(get(id), (int) value) >= 0;
+    }
+
+    //добавляет value в список id; false, если value уже в списке
+    boolean add(long id, long value) {
+        int index = Math.toIntExact(id);
+        int newValue = Math.toIntExact(value);
+        synchronized (writeLock) {
+            AtomicReferenceArray<int[]> current = ensureCapacity(Math.max(index, newValue));
+            int[] ids = current.get(index);
+            if (ids == null) {
+                current.set(index, new int[]{newValue});
+                return true;
+            }
+            int pos = Arrays.binarySearch(ids, newValue);
+            if (pos >= 0) {
+                return false;
+            }
+            pos = -pos - 1;
+            int[] newIds = new int[ids.length + 1];
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            newIds[pos] = newValue;
+            System.arraycopy(ids, pos, newIds, pos + 1, ids.length - pos);
+            current.set(index, newIds);
+            return true;
+        }
+    }
+
+    //убирает value из списка id; false, если value в списке не было
+    boolean remove(long id, long value) {
+        if (id < 0 || value < 0 || value > Integer.MAX_VALUE) {
+            return false;
+        }
+        synchronized (writeLock) {
+            AtomicReferenceArray<int[]> current = lists;
+            if (id >= current.length()) {
+                return false;
+            }
+            int index = (int) id;
+            int[] ids = current.get(index);
+            int pos = ids == null ? -1 : Arrays.binarySearch(ids, (int) value);
+            if (pos < 0) {
+                return false;
+            }
+            int[] newIds = new int[ids.length - 1];
+            System.arraycopy(ids, 0, newIds, 0, pos);
+            System.arraycopy(ids, pos + 1, newIds, pos, ids.length - pos - 1);
+            current.set(index, newIds.length == 0 ? null : newIds);
+            return true;
+        }
+    }
+
+    //заменяет все списки построенными
+    void load(Builder builder) {
+        AtomicReferenceArray<int[]> built = new AtomicReferenceArray<>(builder.maxId + 1);
+        builder.lists.forEach((id, ids) -> built.set(id, ids.toSortedArray()));
+        synchronized (writeLock) {
+            lists = built;
+        }
+    }
+
+    //количество значений во всех списках
+    long size() {
+        AtomicReferenceArray<int[]> current = lists;
+        long size = 0;
+        for (int i = 0; i < current.length(); i++) {
+            int[] ids = current.get(i);
+            size += ids == null ? 0 : ids.length;
+        }
+        return size;
+    }
+
+    //увеличивает массив списков так, чтобы в нём был id; вызывается под writeLock
+    private AtomicReferenceArray<int[]> ensureCapacity(int id) {
+        AtomicReferenceArray<int[]> current = lists;
+        if (id < current.length()) {
+            return current;
+        }
+        AtomicReferenceArray<int[]> grown = new AtomicReferenceArray<>(Math.max(id + 1, current.length() * 3 / 2));
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        lists = grown;
+        return grown;
+    }
+
+    //пересечение упорядоченных массивов без повторов
+    //массивы близкой длины пересекаются слиянием за O(n + m), а если один много короче другого -
+    //галопирующим поиском каждого элемента короткого массива в длинном за O(n log(m / n))
+    static int[] intersect(int[] a, int[] b) {
+        if (a.length > b.length) {
+            int[] t = a;
+            a = b;
+            b = t;
+        }
+        if (a.length == 0) {
+            return EMPTY;
+        }
+        int[] result = new int[a.length];
+        int size = 0;
+        if ((long) a.length * GALLOP_RATIO < b.length) {
+            int low = 0;
+            for (int id : a) {
+                //шагами 1, 2, 4... ищем границу, за которой в длинном массиве начинаются id не меньше искомого
+                int high = low;
+                int step = 1;
+                while (high < b.length && b[high] < id) {
+                    low = high + 1;
+                    high += step;
+                    step <<= 1;
+                }
+                int pos = Arrays.binarySearch(b, low, Math.min(high + 1, b.length), id);
+                if (pos >= 0) {
+                    result[size++] = id;
+                    low = pos + 1;
+                } else {
+                    low = -pos - 1;
+                }
+                if (low >= b.length) {
+                    break;
+                }
+            }
+        } else {
+            int i = 0;
+            int j = 0;
+            while (i < a.length && j < b.length) {
+                if (a[i] < b[j]) {
+                    i++;
+                } else if (a[i] > b[j]) {
+                    j++;
+                } else {
+                    result[size++] = a[i];
+                    i++;
+                    j++;
+                }
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    //построение всех списков при загрузке из хранилища
+    static final class Builder {
+        private final Map<Integer, Ids> lists = new HashMap<>();
+        private int maxId;
+
+        void add(long id, long value) {
+            int index = Math.toIntExact(id);
+            int newValue = Math.toIntExact(value);
+            lists.computeIfAbsent(index, i -> new Ids()).add(newValue);
+            maxId = Math.max(maxId, Math.max(index, newValue));
+        }
+
+        int size() {
+            return lists.size();
+        }
+    }
+
+    //список при построении
+    private static final class Ids {
+        private int[] ids = new int[4];
+        private int size;
+
+        private void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        private int[] toSortedArray() {
+            int[] sorted = Arrays.copyOf(ids, size);
+            Arrays.sort(sorted);
+            //убираем повторы, если хранилище вернуло пару дважды
+            int unique = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[unique++] = sorted[i];
+                }
+            }
+            return unique == sorted.length ? sorted : Arrays.copyOf(sorted, unique);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//прогрев перед приёмом запросов (filmorate.warmup.enabled=true)
+//ApplicationRunner выполняется после запуска веб-сервера, но до ApplicationReadyEvent: до конца прогрева
+//проба готовности /actuator/health/readiness отвечает OUT_OF_SERVICE и балансировщик не присылает запросы
+//сначала кэш карточек заполняется самыми популярными фильмами, затем горячие маршруты вызываются по HTTP,
+//чтобы обработка запросов, сериализация и чтение из хранилища были скомпилированы JIT до прихода пользователей
+//ошибки прогрева записываются в журнал и не останавливают запуск
+@Component
+@ConditionalOnProperty(name = "filmorate.warmup.enabled", havingValue = "true")
+@Slf4j
+public class StartupWarmup implements ApplicationRunner {
+    private final FilmService filmService;
+    private final RestTemplate restTemplate;
+    private final Environment environment;
+    private final int films;
+    private final int requests;
+
+    public StartupWarmup(FilmService filmService, RestTemplateBuilder restTemplateBuilder, Environment environment,
+                         @Value("${filmorate.warmup.films:1000}") int films,
+                         @Value("${filmorate.warmup.requests:2000}") int requests) {
+        this.filmService = filmService;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofSeconds(5))
+                .setReadTimeout(Duration.ofSeconds(30))
+                .build();
+        this.environment = environment;
+        this.films = Math.min(Math.max(films, 0), FilmService.MAX_POPULAR_COUNT);
+        this.requests = Math.max(requests, 0);
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        long started = System.nanoTime();
+        List<Long> popularIds = preloadFilms();
+        long preloaded = System.nanoTime();
+        int done = callEndpoints(popularIds);
+        log.info("Прогрев завершён за {} мс: карточек фильмов загружено {} за {} мс, HTTP-запросов выполнено {}.",
+                (System.nanoTime() - started) / 1_000_000, popularIds.size(),
+                (preloaded - started) / 1_000_000, done);
+    }
+
+    //самые популярные фильмы читаются через хранилище и остаются в кэше карточек
+    private List<Long> preloadFilms() {
+        if (films == 0) {
+            return List.of();
+        }
+        try {
+            return filmService.getPopularFilms(films).stream().map(Film::getId).collect(Collectors.toList());
+        } catch (RuntimeException e) {
+            log.warn("Прогрев: не удалось прочитать популярные фильмы: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    //запросы к горячим маршрутам по кругу; карточки - популярных фильмов, которые уже в кэше
+    private int callEndpoints(List<Long> popularIds) {
+        String port = environment.getProperty("local.server.port");
+        if (port == null || requests == 0) {
+            return 0;
+        }
+        String baseUrl = "http://localhost:" + port;
+        List<String> urls = new ArrayList<>(List.of("/films/popular?count=10", "/films?limit=20", "/genres", "/mpa"));
+        for (int i = 0; i < Math.min(popularIds.size(), 100); i++) {
+            urls.add("/films/" + popularIds.get(i));
+        }
+        int done = 0;
+        int failed = 0;
+        for (int i = 0; i < requests; i++) {
+            String url = urls.get(i % urls.size());
+            try {
+                restTemplate.getForObject(baseUrl + url, String.class);
+                done++;
+            } catch (RestClientException e) {
+                //прогрев продолжается, в журнал пишется только первая ошибка
+                if (failed++ == 0) {
+                    log.warn("Прогрев: запрос {} завершился ошибкой: {}", url, e.getMessage());
+                }
+            }
+        }
+        if (failed > 0) {
+            log.warn("Прогрев: {} запросов завершились ошибкой.", failed);
+        }
+        return done;
+    }
+}
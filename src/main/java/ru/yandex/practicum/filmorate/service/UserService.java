@@ -2,9 +2,9 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exceptions.ValidationException;
 import ru.yandex.practicum.filmorate.exceptions.user.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
-import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
 import ru.yandex.practicum.filmorate.storage.user.dao.UserDao;
 
 import java.util.*;
@@ -15,12 +15,19 @@ import java.util.stream.Collectors;
 public class UserService {
 
    private final UserDao userStorage;
-   private final FriendsDao friendsDao;
+   //списки друзей читаются из графа дружбы в памяти, изменения проходят через него в FriendsDao
+   private final FriendsGraph friendsGraph;
+   private final FriendSuggestions friendSuggestions;
+   private final EntityVersions entityVersions;
 
     public UserService(UserDao userStorage,
-                       FriendsDao friendsDao) {
+                       FriendsGraph friendsGraph,
+                       FriendSuggestions friendSuggestions,
+                       EntityVersions entityVersions) {
         this.userStorage = userStorage;
-        this.friendsDao = friendsDao;
+        this.friendsGraph = friendsGraph;
+        this.friendSuggestions = friendSuggestions;
+        this.entityVersions = entityVersions;
     }
 
     //добавление пользователя
@@ -33,7 +40,9 @@ public class UserService {
     public User updateUser(User user) {
         log.info("Получен запрос на обновление пользователя...");
         isValidIdUser(user.getId());
-        return userStorage.updateUser(user);
+        User updatedUser = userStorage.updateUser(user);
+        entityVersions.userChanged(user.getId());
+        return updatedUser;
     }
 
     //возвращает информацию обо всех пользователях
@@ -50,6 +59,14 @@ public class UserService {
         return userStorage.getUser(userId);
     }
 
+    //проверка существования пользователя без чтения его данных: условный GET отвечает 404 раньше, чем 304
+    public void checkUserExists(long userId) {
+        isValidIdUser(userId);
+        if (!userStorage.hasUser(userId)) {
+            throw new UserNotFoundException("Пользователь с id=" + userId + " не найден.");
+        }
+    }
+
     //добавление в друзья
     public void addFriend(long userId, long friendId) {
         log.debug("Получен запрос на добавление для пользователя с id={} друга с id={}", userId, friendId);
@@ -59,7 +76,7 @@ public class UserService {
         //проверка наличия пользователей в БД
         userStorage.getUser(userId);
         userStorage.getUser(friendId);
-        friendsDao.addFriend(userId,friendId);
+        friendsGraph.addFriend(userId,friendId);
         log.info("Для пользователя с id = {} добавлен друг с id={}", userId, friendId);
     }
 
@@ -70,14 +87,14 @@ public class UserService {
         isValidIdUser(friendId);
         isNotEqualIdUser(userId, friendId);
         log.debug("Запрос на удаление для пользователя с id={} друга с id={} одобрен.", userId, friendId);
-        friendsDao.deleteFriend(userId,friendId);
+        friendsGraph.deleteFriend(userId,friendId);
     }
 
     //возвращение списка друзей пользователя
     public List<User> getFriends(long userId) {
         log.debug("Получен запрос на получение для пользователя с id={} списка друзей", userId);
         isValidIdUser(userId);
-        return friendsDao.getFriends(userId);
+        return userStorage.getUsersByIds(friendsGraph.getFriends(userId));
     }
 
 
@@ -87,7 +104,32 @@ public class UserService {
         isValidIdUser(userId);
         isValidIdUser(otherId);
         isNotEqualIdUser(userId, otherId);
-        return friendsDao.getCommonFriends(userId,otherId);
+        return userStorage.getUsersByIds(friendsGraph.getCommonFriends(userId, otherId));
+    }
+
+    //рекомендации друзей: не более limit пользователей не из списка друзей по убыванию количества общих друзей
+    public List<User> getSuggestions(long userId, int limit) {
+        log.debug("Получен запрос на рекомендации друзей для пользователя с id={}", userId);
+        isValidIdUser(userId);
+        if (limit <= 0 || limit > FriendSuggestions.MAX_LIMIT) {
+            throw new ValidationException("Количество рекомендаций должно быть от 1 до " +
+                    FriendSuggestions.MAX_LIMIT + ".");
+        }
+        userStorage.getUser(userId);
+        int[] suggestions = friendSuggestions.suggest(userId, limit);
+        //пользователи читаются в порядке id, возвращаем их в порядке рекомендаций
+        int[] sortedIds = suggestions.clone();
+        Arrays.sort(sortedIds);
+        Map<Long, User> users = userStorage.getUsersByIds(sortedIds).stream()
+                .collect(Collectors.toMap(User::getId, u -> u));
+        List<User> result = new ArrayList<>(suggestions.length);
+        for (int id : suggestions) {
+            User user = users.get((long) id);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
     }
 
     private boolean isValidIdUser(long userId) {
@@ -0,0 +1,341 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import java.util.Arrays;
+
+//множества id по id для хранилищ в памяти: лайки фильма, друзья пользователя
+//множество - массив int с открытой адресацией (линейное пробирование): в [0] размер, дальше ячейки, 0 - пустая;
+//id не упаковываются в Long, лайк или дружба занимают 4-8 байт вместо узла хеш-таблицы с двумя Long
+//массивы множеств лежат по страницам из PAGE_SIZE id, страница создаётся при первом id из неё
+//изменение и чтение множества выполняются под блокировкой его id - одной из LOCKS, как в FriendsGraph;
+//страницы создаются и каталог страниц растёт под общей блокировкой
+public final class IdSets {
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int LOCKS = 64;
+    private static final int[] EMPTY = new int[0];
+
+    private volatile int[][][] pages = new int[0][][];
+    private final Object[] locks = new Object[LOCKS];
+    private final Object pagesLock = new Object();
+
+    public IdSets() {
+        for (int i = 0; i < LOCKS; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    //добавляет value в множество id; false, если value уже в множестве
+    public boolean add(long id, long value) {
+        int index = toId(id);
+        int newValue = toId(value);
+        int[][] page = getOrCreatePage(index);
+        int slot = index & (PAGE_SIZE - 1);
+        synchronized (lockFor(index)) {
+            int[] table = page[slot];
+            if (table == null) {
+                table = new int[3];
+            } else if (find(table, newValue) >= 0) {
+                return false;
+            }
+            //заполненность не больше 3/4
+            if ((table[0] + 1) * 4 > (table.length - 1) * 3) {
+                table = rehash(table, (table.length - 1) * 2);
+            }
+            insert(table, newValue);
+            page[slot] = table;
+            return true;
+        }
+    }
+
+    //убирает value из множества id; false, если value в множестве не было
+    public boolean remove(long id, long value) {
+        if (!isId(id) || !isId(value)) {
+            return false;
+        }
+        int index = (int) id;
+        int[][] page = getPage(index);
+        if (page == null) {
+            return false;
+        }
+        int slot = index & (PAGE_SIZE - 1);
+        synchronized (lockFor(index)) {
+            int[] table = page[slot];
+            int pos = table == null ? -1 : find(table, (int) value);
+            if (pos < 0) {
+                return false;
+            }
+            delete(table, pos);
+            if (table[0] == 0) {
+                page[slot] = null;
+            } else if (table.length > 3 && table[0] * 8 <= table.length - 1) {
+                //после массовых удалений массив уменьшается
+                page[slot] = rehash(table, (table.length - 1) / 2);
+            }
+            return true;
+        }
+    }
+
+    //убирает множество id целиком; false, если оно было пустым
+    public boolean removeAll(long id) {
+        if (!isId(id)) {
+            return false;
+        }
+        int index = (int) id;
+        int[][] page = getPage(index);
+        if (page == null) {
+            return false;
+        }
+        synchronized (lockFor(index)) {
+            int slot = index & (PAGE_SIZE - 1);
+            boolean removed = page[slot] != null;
+            page[slot] = null;
+            return removed;
+        }
+    }
+
+    public boolean contains(long id, long value) {
+        if (!isId(id) || !isId(value)) {
+            return false;
+        }
+        int index = (int) id;
+        int[][] page = getPage(index);
+        if (page == null) {
+            return false;
+        }
+        synchronized (lockFor(index)) {
+            int[] table = page[index & (PAGE_SIZE - 1)];
+            return table != null && find(table, (int) value) >= 0;
+        }
+    }
+
+    public int size(long id) {
+        if (!isId(id)) {
+            return 0;
+        }
+        int index = (int) id;
+        int[][] page = getPage(index);
+        if (page == null) {
+            return 0;
+        }
+        synchronized (lockFor(index)) {
+            int[] table = page[index & (PAGE_SIZE - 1)];
+            return table == null ? 0 : table[0];
+        }
+    }
+
+    //id из множества в порядке возрастания; массив - копия
+    public int[] get(long id) {
+        if (!isId(id)) {
+            return EMPTY;
+        }
+        int index = (int) id;
+        int[][] page = getPage(index);
+        if (page == null) {
+            return EMPTY;
+        }
+        int[] ids;
+        synchronized (lockFor(index)) {
+            ids = values(page[index & (PAGE_SIZE - 1)]);
+        }
+        Arrays.sort(ids);
+        return ids;
+    }
+
+    //перебор всех пар: множество id и value из него; множество читается под блокировкой, обработчик - без неё
+    public void forEach(PairConsumer consumer) {
+        forEachSet((id, values) -> {
+            for (int value : values) {
+                consumer.accept(id, value);
+            }
+        });
+    }
+
+    //перебор непустых множеств: id и копия его значений
+    public void forEachSet(SetConsumer consumer) {
+        int[][][] current = pages;
+        for (int p = 0; p < current.length; p++) {
+            if (current[p] == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                int id = (p << PAGE_BITS) | slot;
+                int[] ids;
+                synchronized (lockFor(id)) {
+                    ids = values(current[p][slot]);
+                }
+                if (ids.length > 0) {
+                    consumer.accept(id, ids);
+                }
+            }
+        }
+    }
+
+    //перебор непустых множеств с их размерами
+    public void forEachSize(SizeConsumer consumer) {
+        int[][][] current = pages;
+        for (int p = 0; p < current.length; p++) {
+            if (current[p] == null) {
+                continue;
+            }
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                int id = (p << PAGE_BITS) | slot;
+                int size;
+                synchronized (lockFor(id)) {
+                    int[] table = current[p][slot];
+                    size = table == null ? 0 : table[0];
+                }
+                if (size > 0) {
+                    consumer.accept(id, size);
+                }
+            }
+        }
+    }
+
+    //оценка занимаемой памяти в байтах: массивы множеств, страницы и каталог страниц
+    //со сжатыми ссылками: заголовок массива 16 байт, ссылка 4 байта, выравнивание по 8 байт
+    public long getMemoryBytes() {
+        int[][][] current = pages;
+        long bytes = arrayBytes(current.length, 4);
+        for (int p = 0; p < current.length; p++) {
+            if (current[p] == null) {
+                continue;
+            }
+            bytes += arrayBytes(PAGE_SIZE, 4);
+            for (int slot = 0; slot < PAGE_SIZE; slot++) {
+                int id = (p << PAGE_BITS) | slot;
+                synchronized (lockFor(id)) {
+                    int[] table = current[p][slot];
+                    if (table != null) {
+                        bytes += arrayBytes(table.length, 4);
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    private static long arrayBytes(int length, int elementBytes) {
+        return (16 + (long) length * elementBytes + 7) & ~7L;
+    }
+
+    private int[][] getPage(int id) {
+        int[][][] current = pages;
+        int p = id >>> PAGE_BITS;
+        return p < current.length ? current[p] : null;
+    }
+
+    private int[][] getOrCreatePage(int id) {
+        int[][] page = getPage(id);
+        if (page != null) {
+            return page;
+        }
+        synchronized (pagesLock) {
+            int p = id >>> PAGE_BITS;
+            int[][][] current = pages;
+            if (p >= current.length) {
+                current = Arrays.copyOf(current, Math.max(p + 1, current.length * 3 / 2));
+            }
+            if (current[p] == null) {
+                current[p] = new int[PAGE_SIZE][];
+            }
+            pages = current;
+            return current[p];
+        }
+    }
+
+    private Object lockFor(int id) {
+        return locks[id & (LOCKS - 1)];
+    }
+
+    //ячейка value в массиве множества; -1, если value нет
+    private static int find(int[] table, int value) {
+        int mask = table.length - 2;
+        for (int i = hash(value) & mask; ; i = (i + 1) & mask) {
+            int current = table[i + 1];
+            if (current == value) {
+                return i;
+            }
+            if (current == 0) {
+                return -1;
+            }
+        }
+    }
+
+    private static void insert(int[] table, int value) {
+        int mask = table.length - 2;
+        int i = hash(value) & mask;
+        while (table[i + 1] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i + 1] = value;
+        table[0]++;
+    }
+
+    //удаление со сдвигом следующих значений цепочки назад, без отметок удалённых ячеек
+    private static void delete(int[] table, int pos) {
+        int mask = table.length - 2;
+        int hole = pos;
+        for (int i = (pos + 1) & mask; table[i + 1] != 0; i = (i + 1) & mask) {
+            int home = hash(table[i + 1]) & mask;
+            //значение можно перенести в дыру, если его исходная ячейка не лежит между дырой и его ячейкой
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                table[hole + 1] = table[i + 1];
+                hole = i;
+            }
+        }
+        table[hole + 1] = 0;
+        table[0]--;
+    }
+
+    private static int[] rehash(int[] table, int capacity) {
+        int[] newTable = new int[capacity + 1];
+        for (int i = 1; i < table.length; i++) {
+            if (table[i] != 0) {
+                insert(newTable, table[i]);
+            }
+        }
+        return newTable;
+    }
+
+    private static int[] values(int[] table) {
+        if (table == null) {
+            return EMPTY;
+        }
+        int[] values = new int[table[0]];
+        int n = 0;
+        for (int i = 1; i < table.length; i++) {
+            if (table[i] != 0) {
+                values[n++] = table[i];
+            }
+        }
+        return values;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean isId(long id) {
+        return id > 0 && id <= Integer.MAX_VALUE;
+    }
+
+    private static int toId(long id) {
+        if (!isId(id)) {
+            throw new IllegalArgumentException("id должен быть от 1 до " + Integer.MAX_VALUE + ": " + id);
+        }
+        return (int) id;
+    }
+
+    public interface PairConsumer {
+        void accept(long id, long value);
+    }
+
+    public interface SizeConsumer {
+        void accept(long id, int size);
+    }
+
+    public interface SetConsumer {
+        void accept(long id, int[] values);
+    }
+}
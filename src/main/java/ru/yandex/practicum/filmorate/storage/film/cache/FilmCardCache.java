@@ -0,0 +1,194 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+//кэш карточек фильмов (результат getFilm) перед хранилищем БД
+//размер ограничен: при переполнении вытесняется фильм, который дольше всех не запрашивали
+//каждая запись живёт не дольше ttl, после чего фильм заново читается из БД
+//записи сбрасываются при любом изменении фильма, его жанров или лайков
+//Film изменяемый, поэтому в кэш кладётся копия фильма и каждому читателю выдаётся своя копия
+//статистика публикуется в Micrometer (/actuator/metrics): cache.gets с тегом result=hit|miss,
+//cache.evictions с тегом cause=size|expired и cache.size, все с тегом cache=film-cards
+@Component
+@Slf4j
+public class FilmCardCache implements MeterBinder {
+    private static final String CACHE_NAME = "film-cards";
+
+    private final int maxSize;
+    private final long ttlNanos;
+
+    //порядок доступа: первым идёт фильм, который дольше всех не запрашивали
+    private final LinkedHashMap<Long, CachedCard> cards;
+
+    //счётчик сбросов: фильм, прочитанный из БД до сброса, в кэш уже не кладём
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public FilmCardCache(@Value("${filmorate.cache.film.max-size:10000}") int maxSize,
+                         @Value("${filmorate.cache.film.ttl-seconds:600}") long ttlSeconds) {
+        this.maxSize = Math.max(maxSize, 0);
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.cards = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CachedCard> eldest) {
+                if (size() > FilmCardCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        log.info("Кэш карточек фильмов: max-size={}, ttl={} c.", this.maxSize, ttlSeconds);
+    }
+
+    //возвращает фильм из кэша или null, если фильма в кэше нет или запись устарела
+    public Film get(long filmId) {
+        synchronized (cards) {
+            CachedCard card = cards.get(filmId);
+            if (card != null) {
+                if (System.nanoTime() - card.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return copy(card.film);
+                }
+                cards.remove(filmId);
+                expirations.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    //метка, которую нужно взять перед чтением фильма из БД и передать в put
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    //кладёт прочитанный из БД фильм, если с момента stamp кэш не сбрасывался
+    public void put(Film film, long stamp) {
+        if (maxSize == 0) {
+            return;
+        }
+        synchronized (cards) {
+            if (invalidations.get() != stamp) {
+                log.debug("Фильм с id={} изменён во время чтения, в кэш не добавлен.", film.getId());
+                return;
+            }
+            cards.put(film.getId(), new CachedCard(copy(film), System.nanoTime()));
+        }
+    }
+
+    //сбрасывает карточку фильма после его изменения
+    public void invalidate(long filmId) {
+        synchronized (cards) {
+            invalidations.incrementAndGet();
+            cards.remove(filmId);
+        }
+    }
+
+    //сбрасывает карточку сразу и ещё раз после завершения текущей транзакции:
+    //иначе карточку могут прочитать и закэшировать до фиксации изменений
+    public void invalidateAfterCompletion(long filmId) {
+        invalidate(filmId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidate(filmId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (cards) {
+            invalidations.incrementAndGet();
+            cards.clear();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Tags tags = Tags.of("cache", CACHE_NAME);
+        FunctionCounter.builder("cache.gets", hits, AtomicLong::get).tags(tags).tag("result", "hit")
+                .description("Чтения карточек фильмов из кэша").register(registry);
+        FunctionCounter.builder("cache.gets", misses, AtomicLong::get).tags(tags).tag("result", "miss")
+                .description("Чтения карточек фильмов, которых не было в кэше").register(registry);
+        FunctionCounter.builder("cache.evictions", evictions, AtomicLong::get).tags(tags).tag("cause", "size")
+                .description("Карточки, вытесненные при переполнении кэша").register(registry);
+        FunctionCounter.builder("cache.evictions", expirations, AtomicLong::get).tags(tags).tag("cause", "expired")
+                .description("Карточки, удалённые по истечении ttl").register(registry);
+        Gauge.builder("cache.size", this, cache -> cache.getStats().getSize()).tags(tags)
+                .description("Количество карточек в кэше").register(registry);
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (cards) {
+            size = cards.size();
+        }
+        return new Stats(size, maxSize, hits.get(), misses.get(), evictions.get(), expirations.get());
+    }
+
+    //копия фильма вместе с рейтингом и жанрами: изменения копии не попадают в кэш
+    private static Film copy(Film film) {
+        MPA mpa = film.getMpa() == null ? null : new MPA(film.getMpa().getId(), film.getMpa().getName());
+        Set<Genre> genres = null;
+        if (film.getGenres() != null) {
+            genres = new LinkedHashSet<>();
+            for (Genre genre : film.getGenres()) {
+                genres.add(new Genre(genre.getId(), genre.getName()));
+            }
+        }
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getRate(), mpa, genres, film.getLikesCount());
+    }
+
+    private static class CachedCard {
+        private final Film film;
+        private final long loadedAt;
+
+        private CachedCard(Film film, long loadedAt) {
+            this.film = film;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    //снимок статистики кэша
+    @Getter
+    @ToString
+    @AllArgsConstructor
+    public static class Stats {
+        private final int size;
+        private final int maxSize;
+        private final long hits;
+        private final long misses;
+        private final long evictions; //вытеснено при переполнении
+        private final long expirations; //удалено по истечении ttl
+    }
+}
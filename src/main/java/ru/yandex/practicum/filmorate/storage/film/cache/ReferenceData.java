@@ -0,0 +1,57 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//неизменяемый снимок справочников рейтингов MPA и жанров
+//id справочников - небольшие числа, поэтому поиск по id - обращение к массиву по индексу
+//объекты MPA и Genre общие для всех читателей и не должны изменяться
+public final class ReferenceData {
+    private final List<MPA> ratings;
+    private final List<Genre> genres;
+    private final MPA[] ratingsById;
+    private final Genre[] genresById;
+
+    public ReferenceData(List<MPA> ratings, List<Genre> genres) {
+        this.ratings = ratings.stream()
+                .map(r -> new MPA(r.getId(), r.getName()))
+                .sorted(Comparator.comparingInt(MPA::getId))
+                .collect(Collectors.toUnmodifiableList());
+        this.genres = genres.stream()
+                .map(g -> new Genre(g.getId(), g.getName()))
+                .sorted(Comparator.comparingInt(Genre::getId))
+                .collect(Collectors.toUnmodifiableList());
+        this.ratingsById = new MPA[this.ratings.stream().mapToInt(MPA::getId).max().orElse(-1) + 1];
+        for (MPA rating : this.ratings) {
+            ratingsById[rating.getId()] = rating;
+        }
+        this.genresById = new Genre[this.genres.stream().mapToInt(Genre::getId).max().orElse(-1) + 1];
+        for (Genre genre : this.genres) {
+            genresById[genre.getId()] = genre;
+        }
+    }
+
+    //рейтинг с id или null, если его нет в справочнике
+    public MPA getRating(int id) {
+        return id >= 0 && id < ratingsById.length ? ratingsById[id] : null;
+    }
+
+    //все рейтинги в порядке id
+    public List<MPA> getRatings() {
+        return ratings;
+    }
+
+    //жанр с id или null, если его нет в справочнике
+    public Genre getGenre(int id) {
+        return id >= 0 && id < genresById.length ? genresById[id] : null;
+    }
+
+    //все жанры в порядке id
+    public List<Genre> getGenres() {
+        return genres;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.yandex.practicum.filmorate.storage.film.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+
+//справочники рейтингов MPA и жанров в памяти приложения
+//справочники читаются из БД при старте и заново - только по явному вызову refresh()
+//читатели получают неизменяемый снимок без блокировок, refresh() подменяет снимок целиком
+@Component
+@Slf4j
+public class ReferenceDataRegistry {
+    private final JdbcTemplate jdbcTemplate;
+    private volatile ReferenceData data = new ReferenceData(List.of(), List.of());
+
+    public ReferenceDataRegistry(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void refresh() {
+        List<MPA> ratings = jdbcTemplate.query("select rating_id,rating_name from ratings_mpa order by rating_id;",
+                (rs, rowNum) -> new MPA(rs.getInt("rating_id"), rs.getString("rating_name")));
+        List<Genre> genres = jdbcTemplate.query("select genre_id,genre_name from genre order by genre_id;",
+                (rs, rowNum) -> new Genre(rs.getInt("genre_id"), rs.getString("genre_name")));
+        data = new ReferenceData(ratings, genres);
+        log.info("Справочники загружены: рейтингов MPA {}, жанров {}.", ratings.size(), genres.size());
+    }
+
+    public ReferenceData get() {
+        return data;
+    }
+}
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.film.dao;
 
 import ru.yandex.practicum.filmorate.model.Film;
 
+import java.util.Collection;
 import java.util.List;
 
 //методы добавления, удаления и модификации объектов.
@@ -11,6 +12,9 @@ public interface FilmDao {
     //добавление фильма
     Film addFilm(Film film);
 
+    //пакетное добавление фильмов с их жанрами, фильмам присваиваются id
+    List<Film> addFilms(List<Film> films);
+
     //обновление данных о фильме
     Film updateFilm(Film film);
 
@@ -18,6 +22,16 @@ public interface FilmDao {
     void deleteFilm(long filmId);
 
     Film getFilm(long filmId);
+
+    //проверка существования фильма без чтения его карточки
+    boolean hasFilm(long filmId);
+
+    //фильмы с id из filmIds в том же порядке; отсутствующие фильмы пропускаются
+    List<Film> getFilmsByIds(Collection<Long> filmIds);
+
     List<Film> getFilms();
+
+    //не более limit фильмов с id больше afterId в порядке возрастания id
+    List<Film> getFilms(long afterId, int limit);
     List<Film> getPopularFilms(long maxCount);
 }
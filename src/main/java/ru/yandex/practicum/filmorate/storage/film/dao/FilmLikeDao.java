@@ -1,9 +1,33 @@
 package ru.yandex.practicum.filmorate.storage.film.dao;
 
+import ru.yandex.practicum.filmorate.model.FilmLike;
+
+import java.util.Collection;
+import java.util.Map;
+
 public interface FilmLikeDao {
 
     void addLike(long filmId, long userId);
 
     void deleteLike(long filmId, long userId);
 
+    //поставил ли пользователь лайк фильму
+    boolean isLiked(long filmId, long userId);
+
+    //пакетная запись лайков: добавляет likes, удаляет unlikes и пересчитывает количество лайков затронутых фильмов
+    void saveLikes(Collection<FilmLike> likes, Collection<FilmLike> unlikes);
+
+    //пересчитывает количество лайков фильмов, возвращает исправленные фильмы: film_id - количество лайков
+    Map<Long, Long> reconcileLikesCount();
+
+    //количество лайков каждого фильма: film_id - количество
+    Map<Long, Long> getLikesCount();
+
+    //перебор всех лайков: фильм filmId и пользователь userId, поставивший ему лайк
+    void forEachLike(LikeConsumer consumer);
+
+    interface LikeConsumer {
+        void accept(long filmId, long userId);
+    }
+
 }
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.film.dao;
 
 import ru.yandex.practicum.filmorate.model.Genre;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface GenreDao {
@@ -9,8 +10,16 @@ public interface GenreDao {
     List<Genre> getGengesFilm(long filmId);
 
     List<Genre> getGenresFilms();
+    //есть ли жанр с id в справочнике
+    boolean hasGenre(int id);
 
     void addFilmGenre(long filmId,int genreId);
 
     void delFilmGenre(long filmId);
+
+    //добавляет фильму несколько жанров одним пакетом
+    void addFilmGenres(long filmId, Collection<Integer> genresId);
+
+    //удаляет у фильма несколько жанров одним пакетом
+    void delFilmGenres(long filmId, Collection<Integer> genresId);
 }
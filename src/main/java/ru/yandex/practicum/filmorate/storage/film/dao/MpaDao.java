@@ -7,4 +7,6 @@ import java.util.List;
 public interface MpaDao {
     MPA getRating(int id);
     List<MPA> getRatings();
+    //есть ли рейтинг с id в справочнике
+    boolean hasRating(int id);
 }
@@ -2,44 +2,64 @@ package ru.yandex.practicum.filmorate.storage.film.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @Component("filmDbStorage")
 @Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class FilmDbDao implements FilmDao {
+    //фильмы по списку id читаются списками IN не длиннее FILMS_IN_CHUNK id
+    private static final int FILMS_IN_CHUNK = 1000;
+
     private final JdbcTemplate jdbcTemplate;
     private final MpaDao mpaDao;
     private final GenreDao genreDao;
+    private final FilmCardCache filmCardCache;
+    //поисковый индекс и индекс отбора перечитывают добавленные, обновлённые и удалённые фильмы
+    //после фиксации транзакции
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmFacetIndex filmFacetIndex;
+    private final FilmRowsExtractor filmRowsExtractor = new FilmRowsExtractor();
 
     public FilmDbDao(JdbcTemplate jdbcTemplate, @Qualifier("mpaDbDao") MpaDao mpaDao,
-                     @Qualifier("genreDbDao") GenreDao genreDao) {
+                     @Qualifier("genreDbDao") GenreDao genreDao, FilmCardCache filmCardCache,
+                     FilmSearchIndex filmSearchIndex, FilmFacetIndex filmFacetIndex) {
         this.jdbcTemplate = jdbcTemplate;
         this.mpaDao = mpaDao;
         this.genreDao = genreDao;
+        this.filmCardCache = filmCardCache;
+        this.filmSearchIndex = filmSearchIndex;
+        this.filmFacetIndex = filmFacetIndex;
     }
 
     @Override
+    @Transactional
     public Film addFilm(Film film) {
         log.info("Запрос на добавление фильма: {} получен хранилищем БД", film.getName());
 
@@ -64,25 +84,67 @@ public class FilmDbDao implements FilmDao {
         long filmId = keyHolder.getKey().intValue();
         film.setId(filmId);
         log.debug("Добавлен новый фильм с id={}", filmId);
+        filmSearchIndex.refreshAfterCommit(filmId);
+        filmFacetIndex.refreshAfterCommit(filmId);
+
+        //жанры добавляем одним пакетом в таблицу films_genre
+        Set<Integer> genres = getGenresId(film);
+        genreDao.addFilmGenres(filmId, genres);
+        log.debug("Фильму с id={} добавлены жанры: {}", filmId, genres);
+        return buildFilm(film, genres, getFilmState(filmId));
+    }
 
-        //если все жанры найдены в БД, то добавляем записи о жанрах в таблицу films_genre
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            log.debug("Добавляем жанры вновь создаваемому фильму с id={}.", filmId);
-            Set<Integer> genres = film.getGenres().stream()
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
-            for (int gr : genres) {
-                genreDao.addFilmGenre(film.getId(), gr);
+    @Override
+    @Transactional
+    //фильмы добавляются одним пакетом INSERT в таблицу films, их жанры - одним пакетом в таблицу films_genre
+    //id фильмов берём из сгенерированных ключей пакета в порядке добавления
+    public List<Film> addFilms(List<Film> films) {
+        log.debug("Получен запрос на пакетное добавление {} фильмов в БД", films.size());
+        String addFilmSql = "INSERT INTO films(name,description,release_date,duration,rate,rating_id) VALUES(?,?,?,?,?,?);";
+        jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(addFilmSql, new String[]{"film_id"})) {
+                for (Film film : films) {
+                    ps.setString(1, film.getName());
+                    ps.setString(2, film.getDescription());
+                    ps.setString(3, film.getReleaseDate().toString());
+                    ps.setInt(4, film.getDuration());
+                    ps.setInt(5, film.getRate());
+                    ps.setInt(6, film.getMpa().getId());
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+                try (ResultSet keys = ps.getGeneratedKeys()) {
+                    for (Film film : films) {
+                        if (!keys.next()) {
+                            throw new SQLException("Получены не все id добавленных фильмов.");
+                        }
+                        film.setId(keys.getLong(1));
+                    }
+                }
+            }
+            return null;
+        });
+
+        List<Object[]> genreArgs = new ArrayList<>();
+        for (Film film : films) {
+            for (int genreId : getGenresId(film)) {
+                genreArgs.add(new Object[]{film.getId(), genreId});
             }
-            log.debug("Жанры для фильма с id={} добавлены.", filmId);
         }
-        return getFilm(film.getId());
+        if (!genreArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("insert into films_genre(film_id,genre_id) VALUES(?,?);", genreArgs);
+        }
+        List<Long> filmIds = films.stream().map(Film::getId).collect(Collectors.toList());
+        filmSearchIndex.refreshAfterCommit(filmIds);
+        filmFacetIndex.refreshAfterCommit(filmIds);
+        log.debug("Добавлено {} фильмов и {} записей о жанрах.", films.size(), genreArgs.size());
+        return films;
     }
 
     @Override
+    @Transactional
     //обновляем поля таблицы films: name, releaseDate, description, duration, rate, rating_id
-    //поле rating_id сначала ищем в таблице ratings_mpa и если найден, то обновляем
-    //обновляем поля таблицы films_genre:film_id, genre_id - удаляем и перезаписываем
+    //в таблице films_genre удаляем и добавляем только те жанры, которые изменились
     public Film updateFilm(Film film) {
         log.info("Получен запрос на обновление фильма с id={} в БД", film.getId());
 
@@ -99,33 +161,37 @@ public class FilmDbDao implements FilmDao {
             throw new FilmNotFoundException("Фильм с id=" + film.getId() + " для обновления не найден.");
         }
         log.debug("Фильм с id={} обновлён.", film.getId());
-        //если все жанры найдены в БД, то сначала удаляем записи из films_genre
-        // потом добавляем записи о жанрах в таблицу films_genre
-        genreDao.delFilmGenre(film.getId());
-        log.debug("Обновляем жанры фильма с film_id={}, жанры: {}", film.getId(), film.getGenres());
-        if (film.getGenres() != null && !film.getGenres().isEmpty()) {
-            Set<Integer> genres = film.getGenres().stream()
-                    .map(Genre::getId)
-                    .collect(Collectors.toSet());
-            log.debug("id жанров для обновления: {}", genres.toString());
-            for (int gr : genres) {
-                genreDao.addFilmGenre(film.getId(), gr);
-            }
-            log.debug("Жанры фильма с film_id={} обновлены.", film.getId());
-        }
-        return getFilm(film.getId());
+        filmCardCache.invalidateAfterCompletion(film.getId());
+        filmSearchIndex.refreshAfterCommit(film.getId());
+        filmFacetIndex.refreshAfterCommit(film.getId());
+
+        //сравниваем текущие жанры фильма с переданными
+        FilmState state = getFilmState(film.getId());
+        Set<Integer> genres = getGenresId(film);
+        Set<Integer> delGenres = new HashSet<>(state.genres);
+        delGenres.removeAll(genres);
+        Set<Integer> addGenres = new HashSet<>(genres);
+        addGenres.removeAll(state.genres);
+        log.debug("Жанры фильма с film_id={}: удаляются {}, добавляются {}", film.getId(), delGenres, addGenres);
+        genreDao.delFilmGenres(film.getId(), delGenres);
+        genreDao.addFilmGenres(film.getId(), addGenres);
+        return buildFilm(film, genres, state);
     }
 
     @Override
+    @Transactional
     public void deleteFilm(long filmId) {
         log.debug("Получен запрос на удаление фильма с id={}", filmId);
         String deleteFilmSql = "delete from films where film_id= ?";
         Object[] args = new Object[]{filmId};
         int delRow = jdbcTemplate.update(deleteFilmSql, args);
+        filmCardCache.invalidateAfterCompletion(filmId);
         if (delRow <= 0) {
             log.debug("Фильм с id={} для удаления не найден.", filmId);
             throw new FilmNotFoundException("Фильм с id=" + filmId + " для удаления не найден.");
         }
+        filmSearchIndex.refreshAfterCommit(filmId);
+        filmFacetIndex.refreshAfterCommit(filmId);
         log.debug("Фильм с id={} удалён.", filmId);
     }
 
@@ -136,94 +202,180 @@ public class FilmDbDao implements FilmDao {
     //из таблицы ratings_mpa: mpa.id,mpa.name
     public Film getFilm(long filmId) {
         log.debug("Получен запрос на фильм с id={};", filmId);
-        String getFilmSql = "select f.FILM_ID,f.NAME,f.DESCRIPTION,f.RELEASE_DATE,f.RELEASE_DATE,f.DURATION,f.RATE," +
+        Film cachedFilm = filmCardCache.get(filmId);
+        if (cachedFilm != null) {
+            log.debug("С id={} возвращён фильм из кэша: {}", filmId, cachedFilm.getName());
+            return cachedFilm;
+        }
+        long cacheStamp = filmCardCache.stamp();
+        String getFilmSql = "select f.FILM_ID,f.NAME,f.DESCRIPTION,f.RELEASE_DATE,f.DURATION,f.RATE,f.LIKES_COUNT," +
                 "rm.RATING_ID,rm.RATING_NAME,g.GENRE_ID,g.GENRE_NAME from films f " +
                 "LEFT JOIN RATINGS_MPA rm " +
                 "ON f.RATING_ID =rm.RATING_ID LEFT JOIN FILMS_GENRE fg ON f.FILM_ID =fg.FILM_ID LEFT JOIN GENRE g " +
                 "ON fg.GENRE_ID =g.GENRE_ID WHERE f.film_id=?; ";
-        List<Film> films = jdbcTemplate.query(getFilmSql, (rs, rowNum) -> filmMapper(rs), filmId);
-        //перебираем films, убираем дубли и группируем жанры
-        Optional<Film> film = getUniqueFilm(films).values().stream().findFirst();
-        if (!film.isPresent()) {
+        List<Film> films = jdbcTemplate.query(getFilmSql, filmRowsExtractor, filmId);
+        if (films == null || films.isEmpty()) {
             log.debug("С id={} фильм не найден.", filmId);
             throw new FilmNotFoundException("С id=" + filmId + " фильм не найден.");
         }
-        log.debug("С id={} возвращён фильм: {}", filmId, films.stream().findFirst().get().getName());
-        return film.get();
+        Film film = films.get(0);
+        log.debug("С id={} возвращён фильм: {}", filmId, film.getName());
+        filmCardCache.put(film, cacheStamp);
+        return film;
+    }
+
+    //поиск по первичному ключу без соединения с жанрами и рейтингом; кэш карточек не затрагивается
+    @Override
+    public boolean hasFilm(long filmId) {
+        return !jdbcTemplate.queryForList("select 1 from films where film_id=?", Integer.class, filmId).isEmpty();
+    }
+
+    @Override
+    //фильмы из кэша карточек берутся из него, остальные читаются одним запросом с жанрами на FILMS_IN_CHUNK id
+    //и кладутся в кэш; результат - в порядке filmIds
+    public List<Film> getFilmsByIds(Collection<Long> filmIds) {
+        log.debug("Получен запрос на чтение {} фильмов по id", filmIds.size());
+        Map<Long, Film> found = new HashMap<>();
+        Set<Long> notCached = new LinkedHashSet<>();
+        for (long filmId : filmIds) {
+            if (found.containsKey(filmId) || notCached.contains(filmId)) {
+                continue;
+            }
+            Film cachedFilm = filmCardCache.get(filmId);
+            if (cachedFilm != null) {
+                found.put(filmId, cachedFilm);
+            } else {
+                notCached.add(filmId);
+            }
+        }
+        List<Long> missing = new ArrayList<>(notCached);
+        long cacheStamp = filmCardCache.stamp();
+        for (int from = 0; from < missing.size(); from += FILMS_IN_CHUNK) {
+            List<Long> chunk = missing.subList(from, Math.min(from + FILMS_IN_CHUNK, missing.size()));
+            String getFilmsSql = "select f.FILM_ID,f.NAME,f.DESCRIPTION,f.RELEASE_DATE,f.DURATION,f.RATE,f.LIKES_COUNT," +
+                    "rm.RATING_ID,rm.RATING_NAME,g.GENRE_ID,g.GENRE_NAME from films f " +
+                    "LEFT JOIN RATINGS_MPA rm " +
+                    "ON f.RATING_ID =rm.RATING_ID LEFT JOIN FILMS_GENRE fg ON f.FILM_ID =fg.FILM_ID LEFT JOIN GENRE g " +
+                    "ON fg.GENRE_ID =g.GENRE_ID WHERE f.film_id IN (" +
+                    String.join(",", Collections.nCopies(chunk.size(), "?")) + ") ORDER BY f.FILM_ID;";
+            for (Film film : jdbcTemplate.query(getFilmsSql, filmRowsExtractor, chunk.toArray())) {
+                filmCardCache.put(film, cacheStamp);
+                found.put(film.getId(), film);
+            }
+        }
+        List<Film> films = new ArrayList<>(filmIds.size());
+        for (long filmId : filmIds) {
+            Film film = found.get(filmId);
+            if (film != null) {
+                films.add(film);
+            }
+        }
+        log.debug("По {} id прочитано фильмов: {}, из них из БД: {}", filmIds.size(), films.size(), missing.size());
+        return films;
     }
 
     @Override
     public List<Film> getFilms() {
         log.debug("Получен запрос на чтение всех фильмов");
-        String getFilmSql = "select f.FILM_ID ,f.NAME ,f.DESCRIPTION ,f.RELEASE_DATE ,f.RELEASE_DATE ,f.DURATION ,f.RATE ," +
+        String getFilmSql = "select f.FILM_ID ,f.NAME ,f.DESCRIPTION ,f.RELEASE_DATE ,f.DURATION ,f.RATE ,f.LIKES_COUNT ," +
                 "rm.RATING_ID ,rm.RATING_NAME ,g.GENRE_ID ,g.GENRE_NAME from films f LEFT JOIN RATINGS_MPA rm " +
                 "ON f.RATING_ID =rm.RATING_ID LEFT JOIN FILMS_GENRE fg ON f.FILM_ID =fg.FILM_ID LEFT JOIN GENRE g " +
                 "ON fg.GENRE_ID =g.GENRE_ID ORDER BY f.FILM_ID;";
         //запрашиваем все фильмы с жанрами и рейтингом MPA
-        List<Film> films = jdbcTemplate.query(getFilmSql, (rs, rowNum) -> filmMapper(rs));
+        //если у фильма несколько жанров, то строк будет несколько - extractor собирает их в один фильм
+        List<Film> films = jdbcTemplate.query(getFilmSql, filmRowsExtractor);
         if (films == null) {
             log.debug("Фильмы не найдены.");
             throw new FilmNotFoundException("Фильмы не найдены.");
         }
-        log.debug("Получен списко из {} фильмов.", films.size());
-        //если у фильма несколько жанров, то будут дубли
-        //перебираем получившийся набор, если дубль, то добавляем в Set<Genre> ещё один жанр
-        //long - film_id
-        //Film - информация о фильме
-        //перебираем films, убираем дубли и группируем жанры
-        LinkedHashMap<Long, Film> filmsMap = getUniqueFilm(films);
-        log.debug("После удаления дублей осталось {} фильмов.", filmsMap.size());
-        return filmsMap.values().stream().collect(Collectors.toList());
+        log.debug("Получен список из {} фильмов.", films.size());
+        return films;
+    }
+
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        log.debug("Получен запрос на чтение {} фильмов с id больше {}", limit, afterId);
+        //сначала отбираем страницу фильмов по первичному ключу, затем присоединяем жанры только к ним
+        String getFilmSql = "select f.FILM_ID ,f.NAME ,f.DESCRIPTION ,f.RELEASE_DATE ,f.DURATION ,f.RATE ,f.LIKES_COUNT ," +
+                "rm.RATING_ID ,rm.RATING_NAME ,g.GENRE_ID ,g.GENRE_NAME from " +
+                "(SELECT * FROM films WHERE film_id > ? ORDER BY film_id LIMIT ?) f LEFT JOIN RATINGS_MPA rm " +
+                "ON f.RATING_ID =rm.RATING_ID LEFT JOIN FILMS_GENRE fg ON f.FILM_ID =fg.FILM_ID LEFT JOIN GENRE g " +
+                "ON fg.GENRE_ID =g.GENRE_ID ORDER BY f.FILM_ID;";
+        List<Film> films = jdbcTemplate.query(getFilmSql, filmRowsExtractor, afterId, limit);
+        log.debug("Получена страница из {} фильмов.", films.size());
+        return films;
     }
 
     @Override
     public List<Film> getPopularFilms(long maxCount) {
-        String popFilmSql = "SELECT f2.FILM_ID ,f2.NAME ,f2.DESCRIPTION ,f2.RELEASE_DATE ,f2.RELEASE_DATE ,f2.DURATION ,f2.RATE," +
-                "rm.RATING_ID ,rm.RATING_NAME ,g.GENRE_ID ,g.GENRE_NAME FROM (SELECT f.* FROM FILMS f LEFT JOIN " +
-                "(SELECT FILM_ID,COUNT(*) cLike FROM FILMS_LIKE GROUP BY FILM_ID ) fl ON fl.FILM_ID=f.FILM_ID " +
-                "ORDER BY clike DESC limit(?)) f2 " +
+        //количество лайков хранится в films.likes_count, поэтому самые популярные фильмы читаются
+        //по индексу films_likes_count_idx без подсчёта лайков по всей таблице films_like
+        String popFilmSql = "SELECT f2.FILM_ID ,f2.NAME ,f2.DESCRIPTION ,f2.RELEASE_DATE ,f2.DURATION ,f2.RATE ,f2.LIKES_COUNT," +
+                "rm.RATING_ID ,rm.RATING_NAME ,g.GENRE_ID ,g.GENRE_NAME FROM (SELECT * FROM FILMS " +
+                "ORDER BY likes_count DESC, film_id limit(?)) f2 " +
                 "LEFT JOIN RATINGS_MPA rm ON f2.RATING_ID =rm.RATING_ID " +
                 "LEFT JOIN FILMS_GENRE fg ON f2.FILM_ID =fg.FILM_ID " +
-                "LEFT JOIN GENRE g ON fg.GENRE_ID =g.GENRE_ID;";
-        List<Film> popFilms = jdbcTemplate.query(popFilmSql, (rs, rowNum) -> filmMapper(rs), maxCount);
-        log.debug("Популярные фильмы:");
-        for (Film film : popFilms) {
-            log.debug("Фильм с film_id={}: {}", film.getId(), film);
+                "LEFT JOIN GENRE g ON fg.GENRE_ID =g.GENRE_ID " +
+                "ORDER BY f2.LIKES_COUNT DESC, f2.FILM_ID;";
+        List<Film> popFilms = jdbcTemplate.query(popFilmSql, filmRowsExtractor, maxCount);
+        log.debug("Получено {} популярных фильмов.", popFilms.size());
+        return popFilms;
+    }
+
+    //id жанров фильма без повторов
+    private Set<Integer> getGenresId(Film film) {
+        if (film.getGenres() == null) {
+            return new HashSet<>();
         }
-        //перебираем films, убираем дубли и группируем жанры
-        LinkedHashMap<Long, Film> filmsMap = getUniqueFilm(popFilms);
-        return filmsMap.values().stream().collect(Collectors.toList());
+        return film.getGenres().stream()
+                .map(Genre::getId)
+                .collect(Collectors.toSet());
     }
 
-    private Film filmMapper(ResultSet rs) throws SQLException {
-        //перебираем записи результирующего набора
-        long id = rs.getLong("film_id");
-        String name = rs.getString("name");
-        String description = rs.getString("description");
-        LocalDate releaseDate = rs.getDate("release_date").toLocalDate();
-        int duration = rs.getInt("duration");
-        int rate = rs.getInt("rate");
-        MPA mpa = new MPA();
-        mpa.setId(rs.getInt("rating_id"));
-        mpa.setName(rs.getString("rating_name"));
-        int genreId = rs.getInt("genre_id");
-        log.debug("Получен жанр фильма с film_id={} - genre_id={}", id, genreId);
+    //то, чего нет в запросе на добавление/обновление фильма, читаем одним запросом:
+    //количество лайков, название рейтинга MPA и id текущих жанров фильма
+    private FilmState getFilmState(long filmId) {
+        String stateSql = "SELECT f.LIKES_COUNT, rm.RATING_NAME, fg.GENRE_ID FROM films f " +
+                "LEFT JOIN RATINGS_MPA rm ON f.RATING_ID = rm.RATING_ID " +
+                "LEFT JOIN FILMS_GENRE fg ON f.FILM_ID = fg.FILM_ID WHERE f.FILM_ID = ?;";
+        FilmState state = jdbcTemplate.query(stateSql, rs -> {
+            FilmState filmState = null;
+            while (rs.next()) {
+                if (filmState == null) {
+                    filmState = new FilmState(rs.getInt("likes_count"), rs.getString("rating_name"));
+                }
+                int genreId = rs.getInt("genre_id");
+                if (genreId > 0) {
+                    filmState.genres.add(genreId);
+                }
+            }
+            return filmState;
+        }, filmId);
+        if (state == null) {
+            throw new FilmNotFoundException("С id=" + filmId + " фильм не найден.");
+        }
+        return state;
+    }
+
+    //собираем возвращаемый фильм из переданных данных без повторного чтения фильма из БД
+    private Film buildFilm(Film film, Set<Integer> genresId, FilmState state) {
         Set<Genre> genres = new HashSet<>();
-        if (genreId > 0) {
-            genres.add(new Genre(genreId, rs.getString("genre_name")));
+        for (int genreId : genresId) {
+            genres.add(genreDao.getGenge(genreId));
         }
-        return new Film(id, name, description, releaseDate, duration, rate, mpa, genres);
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getRate(), new MPA(film.getMpa().getId(), state.mpaName), genres,
+                state.likesCount);
     }
 
-    private LinkedHashMap<Long, Film> getUniqueFilm(List<Film> films) {
-        LinkedHashMap<Long, Film> filmsMap = new LinkedHashMap<>();
-        for (Film film : films) {
-            if (filmsMap.containsKey(film.getId())) {
-                filmsMap.get(film.getId()).addGenres(film.getGenres().stream().findFirst().get());
-            } else {
-                filmsMap.put(film.getId(), film);
-            }
+    private static class FilmState {
+        private final int likesCount;
+        private final String mpaName;
+        private final Set<Integer> genres = new HashSet<>();
+
+        private FilmState(int likesCount, String mpaName) {
+            this.likesCount = likesCount;
+            this.mpaName = mpaName;
         }
-        return filmsMap;
     }
 }
@@ -2,51 +2,75 @@ package ru.yandex.practicum.filmorate.storage.film.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
 @Component
 @Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class FilmLikeDbDao implements FilmLikeDao {
+    //лайк добавляется, только если его ещё нет: поиск по уникальному индексу films_like_film_user_uq
+    private static final String MERGE_LIKE_SQL = "MERGE INTO FILMS_LIKE fl " +
+            "USING (SELECT CAST(? AS INTEGER) AS film_id, CAST(? AS INTEGER) AS user_id) l " +
+            "ON fl.film_id = l.film_id AND fl.user_id = l.user_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, user_id) VALUES (l.film_id, l.user_id);";
 
     private final JdbcTemplate jdbcTemplate;
     private final MpaDao mpaDao;
     private final GenreDao genreDao;
+    private final FilmCardCache filmCardCache;
 
     public FilmLikeDbDao(JdbcTemplate jdbcTemplate, @Qualifier("mpaDbDao") MpaDao mpaDao,
-                         @Qualifier("genreDbDao") GenreDao genreDao) {
+                         @Qualifier("genreDbDao") GenreDao genreDao, FilmCardCache filmCardCache) {
         this.jdbcTemplate = jdbcTemplate;
         this.mpaDao = mpaDao;
         this.genreDao = genreDao;
+        this.filmCardCache = filmCardCache;
     }
 
     //добавить лайки фильмам в таблицу films_like
+    //в той же транзакции увеличиваем films.likes_count
     @Override
+    @Transactional
     public void addLike(long filmId, long userId) {
         try{
-            String addSql="insert into  FILMS_LIKE (film_id, user_id) select ?, ? from dual where not exists "+
-                    "(select 1 from FILMS_LIKE where film_id=? AND user_id=?);";
-            Object[] args = new Object[] {filmId,userId,filmId,userId};
-            int addRow=jdbcTemplate.update(addSql, args);
+            int addRow=jdbcTemplate.update(MERGE_LIKE_SQL, filmId, userId);
             if (addRow<=0) {
                 log.debug("Ошибка добавления для фильма с id={} лайка от пользователя с id={}.",filmId,userId);
                 throw new FilmNotFoundException("Фильм с id="+filmId+" или пользователь с id="+userId+" не найден.");
             }
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count + 1 WHERE film_id = ?;", filmId);
         } catch (RuntimeException e) {
             log.debug("Возникло исключение: фильм или пользователь не найдены.");
             throw new FilmNotFoundException("Фильм с id="+filmId+" или пользователь с id="+userId+" не найден.");
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
         }
         log.debug("Для фильма с id={} добавлен лайк пользователем с id={}.",filmId,userId);
     }
 
     //удалить лайки фильмам из таблицы films_like
+    //в той же транзакции уменьшаем films.likes_count
     @Override
+    @Transactional
     public void deleteLike(long filmId, long userId) {
         try{
             String delSql="delete from  FILMS_LIKE where film_id=? AND user_id=?;";
@@ -56,11 +80,91 @@ public class FilmLikeDbDao implements FilmLikeDao {
                 log.debug("Ошибка удаления для фильма с id={} лайка от пользователя с id={}.",filmId,userId);
                 throw new FilmNotFoundException("Фильм с id="+filmId+" или пользователь с id="+userId+" не найден.");
             }
+            jdbcTemplate.update("UPDATE films SET likes_count = likes_count - 1 WHERE film_id = ? AND likes_count > 0;",
+                    filmId);
         } catch (RuntimeException e) {
             log.debug("Возникло исключение: фильм или пользователь не найдены.");
             throw new FilmNotFoundException("Фильм с id="+filmId+" или пользователь с id="+userId+" не найден.");
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
         }
         log.debug("Для фильма с id={} удалён лайк пользователем с id={}.",filmId,userId);
     }
 
+    @Override
+    public boolean isLiked(long filmId, long userId) {
+        String likedSql = "select count(*) from FILMS_LIKE where film_id=? AND user_id=?;";
+        Integer likes = jdbcTemplate.queryForObject(likedSql, Integer.class, filmId, userId);
+        return likes != null && likes > 0;
+    }
+
+    //записать накопленные лайки одной транзакцией: пакет добавлений, пакет удалений
+    //и пакет пересчёта films.likes_count - по одной строке films на фильм, а не на каждый лайк
+    @Override
+    @Transactional
+    public void saveLikes(Collection<FilmLike> likes, Collection<FilmLike> unlikes) {
+        if (!likes.isEmpty()) {
+            List<Object[]> args = likes.stream()
+                    .map(l -> new Object[]{l.getFilmId(), l.getUserId()})
+                    .collect(Collectors.toList());
+            jdbcTemplate.batchUpdate(MERGE_LIKE_SQL, args);
+        }
+        if (!unlikes.isEmpty()) {
+            String delSql = "delete from FILMS_LIKE where film_id=? AND user_id=?;";
+            List<Object[]> args = unlikes.stream()
+                    .map(l -> new Object[]{l.getFilmId(), l.getUserId()})
+                    .collect(Collectors.toList());
+            jdbcTemplate.batchUpdate(delSql, args);
+        }
+        //фильмы обновляем в порядке id, чтобы параллельные транзакции блокировали строки в одном порядке
+        Set<Long> films = new TreeSet<>();
+        likes.forEach(l -> films.add(l.getFilmId()));
+        unlikes.forEach(l -> films.add(l.getFilmId()));
+        if (films.isEmpty()) {
+            return;
+        }
+        String countSql = "UPDATE films SET likes_count = (SELECT COUNT(*) FROM films_like fl WHERE fl.film_id = ?) " +
+                "WHERE film_id = ?;";
+        jdbcTemplate.batchUpdate(countSql, films.stream()
+                .map(filmId -> new Object[]{filmId, filmId})
+                .collect(Collectors.toList()));
+        films.forEach(filmCardCache::invalidateAfterCompletion);
+        log.debug("Записано лайков: добавлено {}, удалено {}, фильмов {}.", likes.size(), unlikes.size(), films.size());
+    }
+
+    //пересчитать films.likes_count по таблице films_like, если счётчики разошлись
+    @Override
+    public Map<Long, Long> reconcileLikesCount() {
+        //FINAL TABLE возвращает строки, изменённые этим же UPDATE, - исправленные фильмы с новым количеством лайков
+        String reconcileSql = "SELECT film_id, likes_count FROM FINAL TABLE (UPDATE films f SET likes_count = " +
+                "(SELECT COUNT(*) FROM films_like fl WHERE fl.film_id = f.film_id) " +
+                "WHERE likes_count <> (SELECT COUNT(*) FROM films_like fl WHERE fl.film_id = f.film_id));";
+        Map<Long, Long> fixed = new HashMap<>();
+        jdbcTemplate.query(reconcileSql, rs -> {
+            fixed.put(rs.getLong("film_id"), rs.getLong("likes_count"));
+        });
+        fixed.keySet().forEach(filmCardCache::invalidate);
+        return fixed;
+    }
+
+    //количество лайков каждого фильма по таблице films_like, фильмы без лайков - с нулём
+    @Override
+    public Map<Long, Long> getLikesCount() {
+        String likesSql = "SELECT f.film_id, COUNT(fl.user_id) AS likes FROM films f " +
+                "LEFT JOIN films_like fl ON f.film_id = fl.film_id GROUP BY f.film_id;";
+        Map<Long, Long> likes = new HashMap<>();
+        jdbcTemplate.query(likesSql, rs -> {
+            likes.put(rs.getLong("film_id"), rs.getLong("likes"));
+        });
+        log.debug("Получено количество лайков {} фильмов.", likes.size());
+        return likes;
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        jdbcTemplate.query("SELECT film_id, user_id FROM films_like;", rs -> {
+            consumer.accept(rs.getLong("film_id"), rs.getLong("user_id"));
+        });
+    }
+
 }
@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage.film.daoImpl;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//собирает фильмы из результата запроса films LEFT JOIN ratings_mpa LEFT JOIN films_genre LEFT JOIN genre
+//у фильма с несколькими жанрами несколько строк: фильм создаётся по первой строке,
+//из остальных строк к нему добавляются только жанры
+//порядок фильмов совпадает с порядком их первого появления в результате запроса
+public class FilmRowsExtractor implements ResultSetExtractor<List<Film>> {
+
+    @Override
+    public List<Film> extractData(ResultSet rs) throws SQLException {
+        Map<Long, Film> films = new LinkedHashMap<>();
+        Film film = null;
+        while (rs.next()) {
+            long id = rs.getLong("film_id");
+            //строки одного фильма обычно идут подряд, тогда обходимся без поиска в map
+            if (film == null || film.getId() != id) {
+                film = films.get(id);
+                if (film == null) {
+                    film = mapFilm(rs, id);
+                    films.put(id, film);
+                }
+            }
+            int genreId = rs.getInt("genre_id");
+            if (genreId > 0) {
+                film.addGenres(new Genre(genreId, rs.getString("genre_name")));
+            }
+        }
+        return new ArrayList<>(films.values());
+    }
+
+    private Film mapFilm(ResultSet rs, long id) throws SQLException {
+        Date releaseDate = rs.getDate("release_date");
+        MPA mpa = new MPA(rs.getInt("rating_id"), rs.getString("rating_name"));
+        return new Film(id,
+                rs.getString("name"),
+                rs.getString("description"),
+                releaseDate == null ? null : releaseDate.toLocalDate(),
+                rs.getInt("duration"),
+                rs.getInt("rate"),
+                mpa,
+                new HashSet<>(),
+                rs.getInt("likes_count"));
+    }
+}
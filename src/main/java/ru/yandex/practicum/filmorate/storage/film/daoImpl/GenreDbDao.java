@@ -1,38 +1,57 @@
 package ru.yandex.practicum.filmorate.storage.film.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.genre.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.cache.ReferenceDataRegistry;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Collectors;
 
 
 @Component("genreDbDao")
 @Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class GenreDbDao implements GenreDao {
+    //жанр добавляется фильму, только если его ещё нет: поиск по уникальному индексу films_genre_film_genre_uq
+    private static final String MERGE_FILM_GENRE_SQL = "MERGE INTO films_genre fg " +
+            "USING (SELECT CAST(? AS INTEGER) AS film_id, CAST(? AS INTEGER) AS genre_id) g " +
+            "ON fg.film_id = g.film_id AND fg.genre_id = g.genre_id " +
+            "WHEN NOT MATCHED THEN INSERT (film_id, genre_id) VALUES (g.film_id, g.genre_id);";
     private final JdbcTemplate jdbcTemplate;
+    private final FilmCardCache filmCardCache;
+    //справочник жанров читается из памяти, а не из таблицы genre
+    private final ReferenceDataRegistry referenceData;
+    //индекс отбора по жанрам перечитывает фильм после фиксации транзакции, изменившей его жанры
+    private final FilmFacetIndex filmFacetIndex;
 
-    public GenreDbDao(JdbcTemplate jdbcTemplate) {
+    public GenreDbDao(JdbcTemplate jdbcTemplate, FilmCardCache filmCardCache, ReferenceDataRegistry referenceData,
+                      FilmFacetIndex filmFacetIndex) {
         this.jdbcTemplate = jdbcTemplate;
+        this.filmCardCache = filmCardCache;
+        this.referenceData = referenceData;
+        this.filmFacetIndex = filmFacetIndex;
     }
 
     @Override
     public Genre getGenge(int id) {
         log.debug("Получен запрос на поиск жанра с id={}", id);
-        String getGenreSql = "select genre_id,genre_name from genre where genre_id = ?;";
-        Genre genre = jdbcTemplate.query(getGenreSql, (rs, rowNum) -> genreMapper(rs), id).stream().findAny().orElse(null);
+        Genre genre = referenceData.get().getGenre(id);
         if (genre == null) {
             log.debug("Жанр с id={} не найден.", id);
-            throw new GenreNotFoundException("Рейтинг MPA не найдены");
+            throw new GenreNotFoundException("Жанр с id=" + id + " не найден.");
         }
-        log.debug("Жанр с id={} найден.", id);
         return genre;
     }
 
@@ -47,23 +66,23 @@ public class GenreDbDao implements GenreDao {
 
     @Override
     public List<Genre> getGenresFilms() {
-        try {
-            log.debug("Получен запрос на чтение всех жанров.");
-            String getGenreSql = "select genre_id,genre_name from genre order by genre_id;";
-            List<Genre> genres = jdbcTemplate.query(getGenreSql, (rs, rowNum) -> genreMapper(rs));
-            return genres;
-        } catch (Throwable e) {
-            log.debug("Возникло исключение.");
-            return null;
-        }
+        return referenceData.get().getGenres();
+    }
+
+    @Override
+    public boolean hasGenre(int id) {
+        return referenceData.get().getGenre(id) != null;
     }
 
     @Override
     public void addFilmGenre(long filmId, int genreId) {
         try{
-            jdbcTemplate.update("insert into films_genre(film_id,genre_id) VALUES(?,?);",filmId,genreId);
+            jdbcTemplate.update(MERGE_FILM_GENRE_SQL,filmId,genreId);
         } catch (RuntimeException e) {
             throw new GenreNotFoundException("Ошибка добавления фильму с filmId="+filmId+" жанра с genreId="+genreId);
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
+            filmFacetIndex.refreshAfterCommit(filmId);
         }
     }
 
@@ -73,13 +92,51 @@ public class GenreDbDao implements GenreDao {
         jdbcTemplate.update("delete from films_genre where film_id=?;",filmId);
         } catch (RuntimeException e) {
             throw new GenreNotFoundException("Ошибка удаления жанров у фильма с filmId="+filmId);
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
+            filmFacetIndex.refreshAfterCommit(filmId);
+        }
+    }
+
+    //жанры добавляются и удаляются пакетом JdbcTemplate.batchUpdate - одно обращение к БД на пакет
+    //карточка фильма сбрасывается после завершения транзакции FilmDbDao
+    @Override
+    public void addFilmGenres(long filmId, Collection<Integer> genresId) {
+        if (genresId.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = genresId.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+        try {
+            jdbcTemplate.batchUpdate(MERGE_FILM_GENRE_SQL, args);
+        } catch (RuntimeException e) {
+            throw new GenreNotFoundException("Ошибка добавления фильму с filmId=" + filmId + " жанров " + genresId);
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
+            filmFacetIndex.refreshAfterCommit(filmId);
+        }
+    }
+
+    @Override
+    public void delFilmGenres(long filmId, Collection<Integer> genresId) {
+        if (genresId.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = genresId.stream()
+                .map(genreId -> new Object[]{filmId, genreId})
+                .collect(Collectors.toList());
+        try {
+            jdbcTemplate.batchUpdate("delete from films_genre where film_id=? AND genre_id=?;", args);
+        } catch (RuntimeException e) {
+            throw new GenreNotFoundException("Ошибка удаления у фильма с filmId=" + filmId + " жанров " + genresId);
+        } finally {
+            filmCardCache.invalidateAfterCompletion(filmId);
+            filmFacetIndex.refreshAfterCommit(filmId);
         }
     }
 
     private Genre genreMapper(ResultSet rs) throws SQLException {
-        int id = rs.getInt("GENRE_ID");
-        String name = rs.getString("GENRE_NAME");
-        log.debug("Считан жанр с id={}, name={}", id, name);
-        return new Genre(id, name);
+        return new Genre(rs.getInt("GENRE_ID"), rs.getString("GENRE_NAME"));
     }
 }
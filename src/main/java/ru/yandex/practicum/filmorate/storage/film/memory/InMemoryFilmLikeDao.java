@@ -1,54 +1,244 @@
 package ru.yandex.practicum.filmorate.storage.film.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.IdSets;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Consumer;
+import java.util.function.LongPredicate;
 
 //реализация методов добавления, удаления и модификации объектов.
+//лайки фильма - множество id пользователей в IdSets: id хранятся как int, без упаковки в Long
+//лайк фильму, которого нет в InMemoryFilmStorage (например, удалённому), отклоняется, как внешним ключом films_like;
+//id удалённых фильмов запоминаются только на время восстановления из журнала, поэтому не копятся
+//лайк, его удаление и удаление фильма выполняются под блокировкой фильма - одной из FILM_LOCKS;
+//с журналом (StorageJournal) лайк пишется в журнал под той же блокировкой, удаление фильма пишет InMemoryFilmStorage
+//фильмы с лайками упорядочены по количеству лайков в ranking, популярные фильмы читаются без сортировки всех фильмов
 @Component("filmLikeInMemoryDao")
 @Slf4j
-public class InMemoryFilmLikeDao implements FilmLikeDao {
+public class InMemoryFilmLikeDao implements FilmLikeDao, JournaledStorage {
+    private static final int FILM_LOCKS = 64;
+
+    private final IdSets likeUsers = new IdSets();
+    //проверка существования фильма, её задаёт InMemoryFilmStorage; без хранилища фильмов (в тестах и бенчмарках)
+    //лайк принимается любому фильму
+    private volatile LongPredicate filmExists = filmId -> true;
+    //id фильмов, удалённых в журнале: лайк из журнала после удаления фильма не восстанавливается;
+    //нужны только при восстановлении и после него очищаются
+    private final Set<Long> removedFilms = ConcurrentHashMap.newKeySet();
+    private final Object[] filmLocks = new Object[FILM_LOCKS];
+    //позиции фильмов с лайками: по убыванию количества лайков, при равенстве - по возрастанию id;
+    //позиция меняется под блокировкой фильма вместе с его лайками
+    private final ConcurrentSkipListSet<Long> ranking = new ConcurrentSkipListSet<>();
+
+    private StorageJournal journal;
+
+    public InMemoryFilmLikeDao() {
+        for (int i = 0; i < FILM_LOCKS; i++) {
+            filmLocks[i] = new Object();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void registerInJournal() {
+        if (journal != null) {
+            journal.register(this);
+            removedFilms.clear();
+        }
+    }
+
+    void setFilmExists(LongPredicate filmExists) {
+        this.filmExists = filmExists;
+    }
 
-    HashMap<Long, Set<Long>> likeUsers=new HashMap<>();
     @Override
     public void addLike(long filmId, long userId) {
-        Optional<Set<Long>> likesFilm = Optional.ofNullable(this.likeUsers.get(filmId));
-        Set<Long> newLikes=new HashSet<>();
-        if (likesFilm.isPresent()) {
-            newLikes = likesFilm.get();
-            Optional<Long> likes = newLikes.stream().filter(u -> u == userId).findFirst();
-            if (likes.isPresent()) {
-                return;
+        long sequence = 0;
+        synchronized (lockFor(filmId)) {
+            if (!filmExists.test(filmId)) {
+                throw new FilmNotFoundException("Фильм с id=" + filmId + " не найден.");
+            }
+            if (likeUsers.add(filmId, userId)) {
+                reRank(filmId, likeUsers.size(filmId) - 1);
+                sequence = append(JournalRecord.pair(JournalRecord.LIKE, filmId, userId));
+                log.debug("Фильму с filmId={} добавлен лайк от пользователя userId={}", filmId, userId);
             }
         }
-        log.debug("Фильму с filmId={} добавлен лайк от пользователя userId={}", filmId, userId);
-        newLikes.add(userId);
-        likeUsers.put(filmId, newLikes);
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteLike(long filmId, long userId) {
         log.debug("Получен запрос на удаление лайка фильму с filmId={} пользователем с userId={}.", filmId, userId);
-        Optional<Set<Long>> likesFilm = Optional.ofNullable(likeUsers.get(filmId));
-        if (likesFilm.isPresent()) {
-            Iterator<Long> userIter = likesFilm.get().iterator();
-            while (userIter.hasNext()) {
-                if (userIter.next() == userId) {
-                    userIter.remove();
-                    log.debug("Для фильма filmId={} удалён лайк пользователя с userId={}.", filmId, userId);
-                }
+        long sequence = 0;
+        synchronized (lockFor(filmId)) {
+            if (likeUsers.remove(filmId, userId)) {
+                reRank(filmId, likeUsers.size(filmId) + 1);
+                sequence = append(JournalRecord.pair(JournalRecord.UNLIKE, filmId, userId));
+                log.debug("Для фильма filmId={} удалён лайк пользователя с userId={}.", filmId, userId);
             }
         }
+        awaitDurable(sequence);
+    }
+
+    //удаляет лайки удалённого фильма; вызывается хранилищем фильмов после удаления фильма из его словаря,
+    //поэтому лайк, поставленный позже, уже не найдёт фильм
+    public void removeFilm(long filmId) {
+        synchronized (lockFor(filmId)) {
+            int likes = likeUsers.size(filmId);
+            likeUsers.removeAll(filmId);
+            reRank(filmId, likes);
+        }
+    }
+
+    @Override
+    public boolean isLiked(long filmId, long userId) {
+        return likeUsers.contains(filmId, userId);
     }
 
-    public Map<Long, Integer> getPopularFilms() {
-        Map<Long,Integer> popFilms=new HashMap<>();
-        for(Long k:likeUsers.keySet()) {
-            popFilms.put(k,likeUsers.get(k).size());
+    @Override
+    public void saveLikes(Collection<FilmLike> likes, Collection<FilmLike> unlikes) {
+        for (FilmLike like : likes) {
+            try {
+                addLike(like.getFilmId(), like.getUserId());
+            } catch (FilmNotFoundException e) {
+                log.debug("Лайк удалённому фильму с id={} не записан.", like.getFilmId());
+            }
         }
-        log.debug("Возвращено {} популярных фильмов.",popFilms.size());
+        unlikes.forEach(l -> deleteLike(l.getFilmId(), l.getUserId()));
+    }
+
+    //количество лайков вычисляется по множеству пользователей, расхождений быть не может
+    @Override
+    public Map<Long, Long> reconcileLikesCount() {
+        return Map.of();
+    }
+
+    @Override
+    public Map<Long, Long> getLikesCount() {
+        Map<Long, Long> likes = new HashMap<>();
+        likeUsers.forEachSize((filmId, size) -> likes.put(filmId, (long) size));
+        return likes;
+    }
+
+    //количество лайков фильма
+    public int getLikesCount(long filmId) {
+        return likeUsers.size(filmId);
+    }
+
+    @Override
+    public void forEachLike(LikeConsumer consumer) {
+        likeUsers.forEach(consumer::accept);
+    }
+
+    //оценка памяти, занимаемой лайками, в байтах
+    public long getMemoryBytes() {
+        return likeUsers.getMemoryBytes();
+    }
+
+    @Override
+    public void restore(JournalRecord record) {
+        switch (record.getType()) {
+            case JournalRecord.LIKE:
+                if (!removedFilms.contains(record.readId())
+                        && likeUsers.add(record.readId(), record.readValue())) {
+                    reRank(record.readId(), likeUsers.size(record.readId()) - 1);
+                }
+                break;
+            case JournalRecord.UNLIKE:
+                if (likeUsers.remove(record.readId(), record.readValue())) {
+                    reRank(record.readId(), likeUsers.size(record.readId()) + 1);
+                }
+                break;
+            case JournalRecord.FILM_LIKES:
+                long filmId = record.readId();
+                int likes = likeUsers.size(filmId);
+                for (int userId : record.readValues()) {
+                    likeUsers.add(filmId, userId);
+                }
+                reRank(filmId, likes);
+                break;
+            case JournalRecord.FILM_DELETE:
+                removedFilms.add(record.readId());
+                removeFilm(record.readId());
+                break;
+            default:
+                break;
+        }
+    }
+
+    //удалённые фильмы в снимок не пишутся: лайк удалённому фильму отклоняется, и в журнал после снимка
+    //лайки таких фильмов не попадают
+    @Override
+    public void snapshot(Consumer<JournalRecord> writer) {
+        likeUsers.forEachSet((filmId, userIds) ->
+                writer.accept(JournalRecord.set(JournalRecord.FILM_LIKES, filmId, userIds)));
+    }
+
+    //id не более count фильмов с лайками: по убыванию количества лайков, при равенстве - по возрастанию id
+    public List<Long> getPopularFilms(int count) {
+        List<Long> popFilms = new ArrayList<>(Math.min(count, 64));
+        Set<Long> seen = new HashSet<>();
+        Iterator<Long> ranks = ranking.iterator();
+        while (popFilms.size() < count && ranks.hasNext()) {
+            long filmId = ranks.next() & 0xFFFFFFFFL;
+            //пока фильм переставляется, он может встретиться дважды: с прежним и новым количеством лайков
+            if (seen.add(filmId)) {
+                popFilms.add(filmId);
+            }
+        }
+        log.debug("Возвращено {} популярных фильмов.", popFilms.size());
         return popFilms;
     }
+
+    //переставляет фильм в ranking после изменения количества его лайков; фильм без лайков в ranking не хранится.
+    //сначала добавляется новая позиция, потом убирается прежняя - читатель не потеряет фильм
+    private void reRank(long filmId, int oldLikes) {
+        int newLikes = likeUsers.size(filmId);
+        if (newLikes == oldLikes) {
+            return;
+        }
+        if (newLikes > 0) {
+            ranking.add(rank(filmId, newLikes));
+        }
+        if (oldLikes > 0) {
+            ranking.remove(rank(filmId, oldLikes));
+        }
+    }
+
+    //старшие 32 бита - лайки в обратном порядке, младшие - id фильма (id в IdSets и так хранятся как int)
+    private static long rank(long filmId, int likes) {
+        return ((long) (Integer.MAX_VALUE - likes) << 32) | (filmId & 0xFFFFFFFFL);
+    }
+
+    //номер записи в журнале, 0 без журнала или без изменения
+    private long append(JournalRecord record) {
+        return journal == null ? 0 : journal.append(record);
+    }
+
+    private void awaitDurable(long sequence) {
+        if (journal != null && sequence > 0) {
+            journal.awaitDurable(sequence);
+        }
+    }
+
+    private Object lockFor(long filmId) {
+        return filmLocks[(int) Math.floorMod(filmId, (long) FILM_LOCKS)];
+    }
 }
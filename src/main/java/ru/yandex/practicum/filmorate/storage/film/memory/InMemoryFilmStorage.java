@@ -1,144 +1,339 @@
 package ru.yandex.practicum.filmorate.storage.film.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
-import ru.yandex.practicum.filmorate.exceptions.genre.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
 import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 //реализация методов добавления, удаления и модификации объектов.
+//фильмы хранятся в ConcurrentSkipListMap: чтение не блокируется, страницы каталога берутся по порядку id;
+//хранилище держит свои копии фильмов и возвращает копии, поэтому вызывающий код не изменит их в обход блокировок
+//добавление, обновление и удаление фильма меняют сразу несколько структур (фильм, жанры, лайки, индексы поиска
+//и отбора) и выполняются под блокировкой фильма - одной из FILM_LOCKS по id, как FriendsGraph блокирует пары
+//с журналом (StorageJournal) фильм и его удаление пишутся в журнал под той же блокировкой
 @Component("filmInMemoryDao")
 @Slf4j
-public class InMemoryFilmStorage implements FilmDao {
+public class InMemoryFilmStorage implements FilmDao, JournaledStorage {
+    private static final int FILM_LOCKS = 64;
 
-    private int maxId = 0;
+    private final AtomicLong maxId = new AtomicLong();
 
-    private Map<Long, Film> films = new HashMap<>(); //информация о фильмах
+    private final ConcurrentNavigableMap<Long, Film> films = new ConcurrentSkipListMap<>(); //информация о фильмах
+    private final Object[] filmLocks = new Object[FILM_LOCKS];
 
-    InMemoryFilmLikeDao inMemoryFilmLikeDao;
-    GenreDao genreDao;
-    MpaDao mpaDao;
+    private final InMemoryFilmLikeDao inMemoryFilmLikeDao;
+    private final GenreDao genreDao;
+    private final MpaDao mpaDao;
+    //индексы поиска и отбора; без них (хранилище в тестах и бенчмарках) не обновляются
+    private final FilmSearchIndex filmSearchIndex;
+    private final FilmFacetIndex filmFacetIndex;
 
+    private StorageJournal journal;
+
+    public InMemoryFilmStorage(InMemoryFilmLikeDao inMemoryFilmLikeDao, GenreDao genreDao, MpaDao mpaDao) {
+        this(inMemoryFilmLikeDao, genreDao, mpaDao, null, null);
+    }
+
+    @Autowired
     public InMemoryFilmStorage(@Qualifier("filmLikeInMemoryDao") InMemoryFilmLikeDao inMemoryFilmLikeDao,
                                @Qualifier("genreInMemoryDao") GenreDao genreDao,
-                               @Qualifier("mpaInMemoryDao") MpaDao mpaDao) {
+                               @Qualifier("mpaInMemoryDao") MpaDao mpaDao,
+                               FilmSearchIndex filmSearchIndex, FilmFacetIndex filmFacetIndex) {
         this.inMemoryFilmLikeDao = inMemoryFilmLikeDao;
         this.genreDao = genreDao;
         this.mpaDao = mpaDao;
+        this.filmSearchIndex = filmSearchIndex;
+        this.filmFacetIndex = filmFacetIndex;
+        for (int i = 0; i < FILM_LOCKS; i++) {
+            filmLocks[i] = new Object();
+        }
+        inMemoryFilmLikeDao.setFilmExists(films::containsKey);
+    }
+
+    @Autowired(required = false)
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void registerInJournal() {
+        if (journal != null) {
+            journal.register(this);
+        }
     }
 
     @Override
     public Film addFilm(Film film) {
         log.debug("Получен запрос на добавление фильма : {}", film);
+        //рейтинг и жанры проверяем до выдачи id: фильм с ошибкой не занимает id
+        Film stored = prepare(film);
         final long id = generateId();
         film.setId(id);
-        if(film.getMpa()!=null) {
-            film.setMpa(mpaDao.getRating(film.getMpa().getId()));
-            log.debug("Фильму с id={} добавлены рейтинги MPAA: {}",film.getId(),film.getMpa());
+        stored.setId(id);
+        long sequence;
+        synchronized (lockFor(id)) {
+            store(stored);
+            sequence = append(JournalRecord.film(stored));
         }
-        if(film.getGenres()!=null) {
-            TreeSet<Genre> genresNewFilm=new TreeSet<>((o1,o2)->o1.getId()-o2.getId());
-            for(Genre gr:film.getGenres()) {
-                if(genreDao.getGenge(gr.getId())!=null) {
-                    genresNewFilm.add(genreDao.getGenge(gr.getId()));
-                } else {
-                    throw new GenreNotFoundException("Жанр с id="+gr.getId()+" не найден.");
-                }
-            }
-            log.debug("Фильму с id={} добавлены жанры: {}",film.getId(),film.getGenres());
-            film.setGenres(genresNewFilm);
-        } else{
-            film.setGenres(new HashSet<>());
-        }
-        this.films.put(id, film);
-        log.info("Фильм добавлен : {}", this.films.get(id));
-        return film;
+        awaitDurable(sequence);
+        log.info("Фильм добавлен : {}", stored);
+        return copy(stored, 0);
     }
 
     @Override
     public Film updateFilm(Film film) {
         long filmId = film.getId();
-        if (this.films.containsKey(filmId)) {
-            //добавляем названия рейтингов MPAA
-            if(film.getMpa()!=null) {
-                film.setMpa(mpaDao.getRating(film.getMpa().getId()));
-                log.debug("Фильму с id={} добавлены рейтинги MPAA: {}",film.getId(),film.getMpa());
-            }
-
-            //добавляем жанры
-            if(film.getGenres()!=null) {
-                TreeSet<Genre> genresNewFilm=new TreeSet<>((o1,o2)->o1.getId()-o2.getId());
-                for(Genre gr:film.getGenres()) {
-                    if(genreDao.getGenge(gr.getId())!=null) {
-                        genresNewFilm.add(genreDao.getGenge(gr.getId()));
-                    } else {
-                        throw new GenreNotFoundException("Жанр с id="+gr.getId()+" не найден.");
-                    }
-                }
-                log.debug("Фильму с id={} добавлены жанры: {}",film.getId(),film.getGenres());
-                film.setGenres(genresNewFilm);
-            }else{
-                film.setGenres(new HashSet<>());
+        Film stored = prepare(film);
+        long sequence;
+        synchronized (lockFor(filmId)) {
+            if (!this.films.containsKey(filmId)) {
+                throw new FilmNotFoundException("Фильм с id=" + filmId + " не найден.");
             }
-            this.films.put(film.getId(), film);
-            log.info("Фильм обновлён : {}", this.films.get(filmId));
-            return film;
+            store(stored);
+            sequence = append(JournalRecord.film(stored));
         }
-        throw new FilmNotFoundException("Фильм с id=" + filmId + " не найден.");
+        awaitDurable(sequence);
+        log.info("Фильм обновлён : {}", stored);
+        return copy(stored, inMemoryFilmLikeDao.getLikesCount(filmId));
     }
 
-    //удаление фильма
+    //удаление фильма вместе с его жанрами, лайками и записями индексов, как каскадом в БД
     @Override
     public void deleteFilm(long filmId) {
-        films.remove(filmId);
+        long sequence;
+        synchronized (lockFor(filmId)) {
+            if (!remove(filmId)) {
+                throw new FilmNotFoundException("Фильм с id=" + filmId + " для удаления не найден.");
+            }
+            inMemoryFilmLikeDao.removeFilm(filmId);
+            sequence = append(JournalRecord.id(JournalRecord.FILM_DELETE, filmId));
+        }
+        awaitDurable(sequence);
         log.info("Фильм с id={} удалён.", filmId);
     }
 
     //возвращает список всех фильмов
     @Override
     public List<Film> getFilms() {
-        return new ArrayList<>(this.films.values());
+        return this.films.values().stream()
+                .map(this::withLikes)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Film> addFilms(List<Film> films) {
+        List<Film> addedFilms = new ArrayList<>(films.size());
+        for (Film film : films) {
+            addedFilms.add(addFilm(film));
+        }
+        return addedFilms;
+    }
+
+    //возвращает страницу фильмов с id больше afterId
+    @Override
+    public List<Film> getFilms(long afterId, int limit) {
+        return this.films.tailMap(afterId, false).values().stream()
+                .limit(limit)
+                .map(this::withLikes)
+                .collect(Collectors.toList());
     }
 
     //получение фильма по id
     @Override
     public Film getFilm(long filmId) {
         log.debug("Запрошен фильм с id={}", filmId);
-        if(!this.films.containsKey(filmId)) {
+        Film film = this.films.get(filmId);
+        if (film == null) {
             throw new FilmNotFoundException("Фильм с filmId="+filmId+" не найден.");
         }
-        return this.films.get(filmId);
+        return withLikes(film);
+    }
+
+    @Override
+    public boolean hasFilm(long filmId) {
+        return films.containsKey(filmId);
+    }
+
+    @Override
+    public List<Film> getFilmsByIds(Collection<Long> filmIds) {
+        List<Film> result = new ArrayList<>(filmIds.size());
+        for (long filmId : filmIds) {
+            Film film = this.films.get(filmId);
+            if (film != null) {
+                result.add(withLikes(film));
+            }
+        }
+        return result;
     }
 
     @Override
     public List<Film> getPopularFilms(long maxCount) {
         log.debug("Запрос на получение {} популярных фильмов...", maxCount);
-        Map<Long, Integer> popFilms= inMemoryFilmLikeDao.getPopularFilms();
-        for(Long pf:films.keySet()) {
-            if(!popFilms.containsKey(pf)) {
-                log.debug("Добавлен фильм filmId={} с нулевым рейтингом.",pf);
-                popFilms.put(pf,0);
+        int count = (int) Math.min(maxCount, Integer.MAX_VALUE);
+        //фильмы с лайками берутся по порядку из InMemoryFilmLikeDao, копируются только попавшие в ответ
+        List<Film> popularFilms = new ArrayList<>(Math.min(count, 64));
+        Set<Long> added = new HashSet<>();
+        for (long filmId : inMemoryFilmLikeDao.getPopularFilms(count)) {
+            Film film = films.get(filmId);
+            if (film != null && added.add(filmId)) {
+                popularFilms.add(withLikes(film));
             }
         }
-        log.debug("Найдено {} популярных фильмов.",popFilms.size());
-        return popFilms.entrySet().stream()
-                .sorted(Collections.reverseOrder(Map.Entry.comparingByValue()))
-                .map(f->getFilm(f.getKey()))
-                .limit(maxCount)
-                .collect(Collectors.toList());
+        //если фильмов с лайками не хватило, ответ дополняется фильмами без лайков по порядку id
+        Iterator<Film> rest = films.values().iterator();
+        while (popularFilms.size() < count && rest.hasNext()) {
+            Film film = rest.next();
+            if (!added.contains(film.getId()) && inMemoryFilmLikeDao.getLikesCount(film.getId()) == 0) {
+                popularFilms.add(copy(film, 0));
+            }
+        }
+        log.debug("Найдено {} популярных фильмов.",popularFilms.size());
+        return popularFilms;
+    }
+
+    //лайки удалённого фильма восстанавливает InMemoryFilmLikeDao по той же записи FILM_DELETE
+    @Override
+    public void restore(JournalRecord record) {
+        switch (record.getType()) {
+            case JournalRecord.FILM:
+                Film stored = prepare(record.readFilm());
+                maxId.accumulateAndGet(stored.getId(), Math::max);
+                store(stored);
+                break;
+            case JournalRecord.FILM_DELETE:
+                remove(record.readId());
+                break;
+            case JournalRecord.FILM_MAX_ID:
+                maxId.accumulateAndGet(record.readId(), Math::max);
+                break;
+            default:
+                break;
+        }
+    }
+
+    //наибольший id записывается отдельно: фильм с ним мог быть удалён, а id не переиспользуются
+    @Override
+    public void snapshot(Consumer<JournalRecord> writer) {
+        writer.accept(JournalRecord.id(JournalRecord.FILM_MAX_ID, maxId.get()));
+        films.values().forEach(film -> writer.accept(JournalRecord.film(film)));
+    }
+
+    //записывает фильм, его жанры и записи индексов; вызывается под блокировкой фильма
+    private void store(Film stored) {
+        long filmId = stored.getId();
+        Film oldFilm = this.films.get(filmId);
+        //жанры фильма в хранилище жанров меняем на разницу старых и новых
+        Set<Integer> genres = getGenresId(stored);
+        if (oldFilm != null) {
+            Set<Integer> delGenres = getGenresId(oldFilm);
+            delGenres.removeAll(genres);
+            genreDao.delFilmGenres(filmId, delGenres);
+        }
+        genreDao.addFilmGenres(filmId, genres);
+        this.films.put(filmId, stored);
+        index(stored);
+    }
+
+    //удаляет фильм, его жанры и записи индексов; false, если фильма нет; вызывается под блокировкой фильма
+    private boolean remove(long filmId) {
+        if (films.remove(filmId) == null) {
+            return false;
+        }
+        genreDao.delFilmGenre(filmId);
+        if (filmSearchIndex != null) {
+            filmSearchIndex.remove(filmId);
+            filmFacetIndex.remove(filmId);
+        }
+        return true;
+    }
+
+    //проверяет рейтинг и жанры фильма и возвращает копию фильма для хранения:
+    //рейтинг с названием, жанры из хранилища жанров, упорядоченные по id
+    private Film prepare(Film film) {
+        Film stored = copy(film, 0);
+        //добавляем названия рейтингов MPAA
+        if(film.getMpa()!=null) {
+            stored.setMpa(mpaDao.getRating(film.getMpa().getId()));
+            log.debug("Фильму с id={} добавлены рейтинги MPAA: {}",film.getId(),stored.getMpa());
+        }
+        //добавляем жанры; getGenge выбрасывает исключение для неизвестного жанра
+        TreeSet<Genre> genresNewFilm=new TreeSet<>(Comparator.comparingInt(Genre::getId));
+        if(film.getGenres()!=null) {
+            for(Genre gr:film.getGenres()) {
+                genresNewFilm.add(genreDao.getGenge(gr.getId()));
+            }
+            log.debug("Фильму с id={} добавлены жанры: {}",film.getId(),genresNewFilm);
+        }
+        stored.setGenres(Collections.unmodifiableSortedSet(genresNewFilm));
+        return stored;
+    }
+
+    //обновляет записи фильма в индексах поиска и отбора
+    private void index(Film film) {
+        if (filmSearchIndex == null) {
+            return;
+        }
+        filmSearchIndex.index(film.getId(), film.getName(), film.getDescription());
+        filmFacetIndex.index(film.getId(), film.getMpa() == null ? null : film.getMpa().getId(),
+                film.getReleaseDate() == null ? null : film.getReleaseDate().getYear(), getGenresId(film));
+    }
+
+    private Film withLikes(Film film) {
+        return copy(film, inMemoryFilmLikeDao.getLikesCount(film.getId()));
+    }
+
+    //копия фильма с изменяемым множеством жанров
+    private static Film copy(Film film, int likesCount) {
+        Set<Genre> genres = null;
+        if (film.getGenres() != null) {
+            genres = new TreeSet<>(Comparator.comparingInt(Genre::getId));
+            genres.addAll(film.getGenres());
+        }
+        return new Film(film.getId(), film.getName(), film.getDescription(), film.getReleaseDate(),
+                film.getDuration(), film.getRate(), film.getMpa(), genres, likesCount);
+    }
+
+    private static Set<Integer> getGenresId(Film film) {
+        return film.getGenres().stream().map(Genre::getId).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private Object lockFor(long filmId) {
+        return filmLocks[(int) Math.floorMod(filmId, (long) FILM_LOCKS)];
+    }
+
+    //номер записи в журнале, 0 без журнала
+    private long append(JournalRecord record) {
+        return journal == null ? 0 : journal.append(record);
+    }
+
+    private void awaitDurable(long sequence) {
+        if (journal != null) {
+            journal.awaitDurable(sequence);
+        }
     }
 
     //генерация очередного id фильма
-    private int generateId() {
-        return ++maxId;
+    private long generateId() {
+        return maxId.incrementAndGet();
     }
 
 }
@@ -8,14 +8,17 @@ import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.film.dao.GenreDao;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import static java.util.Map.entry;
 
+//жанры фильмов хранятся неизменяемыми множествами и заменяются целиком через compute:
+//чтение жанров фильма не блокируется и не видит множество в середине изменения
 @Component("genreInMemoryDao")
 @Slf4j
 public class InMemoryGenreDao implements GenreDao {
-    Map<Long, LinkedHashSet<Genre>> genresFilms = new HashMap<>();
+    private final Map<Long, Set<Genre>> genresFilms = new ConcurrentHashMap<>();
     private final LinkedHashMap<Integer, String> genres = new LinkedHashMap<>(Map.ofEntries(
             entry(1, "Комедия"),
             entry(2, "Драма"),
@@ -35,8 +38,9 @@ public class InMemoryGenreDao implements GenreDao {
 
     @Override
     public List<Genre> getGengesFilm(long filmId) {
-        if(genresFilms.containsKey(filmId)) {
-            return genresFilms.get(filmId).stream()
+        Set<Genre> genresFilm = genresFilms.get(filmId);
+        if (genresFilm != null) {
+            return genresFilm.stream()
                     .sorted((g1,g2)->g1.getId()-g2.getId())
                     .collect(Collectors.toList());
         }
@@ -51,27 +55,41 @@ public class InMemoryGenreDao implements GenreDao {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public boolean hasGenre(int id) {
+        return genres.containsKey(id);
+    }
+
     @Override
     public void addFilmGenre(long filmId, int genreId) {
-        Optional<LinkedHashSet<Genre>> genresFilm = Optional.ofNullable(this.genresFilms.get(filmId));
-        LinkedHashSet<Genre> newGenre = new LinkedHashSet<>();
-        if (genresFilm.isPresent()) {
-            newGenre = genresFilm.get();
-            Optional<Genre> genre = newGenre.stream().filter(u -> u.getId() == genreId).findFirst();
-            if (genre.isPresent()) {
-                return;
-            }
-        }
-        log.debug("Фильму с filmId={} добавлен очередной жанр с friendIв={}", filmId, genreId);
-        newGenre.add(new Genre(genreId, genres.get(genreId)));
-        genresFilms.put(filmId, newGenre);
+        addFilmGenres(filmId, List.of(genreId));
     }
 
     @Override
     public void delFilmGenre(long filmId) {
         log.debug("Получен запрос на удаление жанров фильма с filmId={}.", filmId);
-        if(genresFilms.containsKey(filmId)) {
-            genresFilms.remove(filmId);
-        }
+        genresFilms.remove(filmId);
+    }
+
+    @Override
+    public void addFilmGenres(long filmId, Collection<Integer> genresId) {
+        genresFilms.compute(filmId, (id, genresFilm) -> {
+            Set<Genre> newGenres = genresFilm == null ? new LinkedHashSet<>() : new LinkedHashSet<>(genresFilm);
+            for (int genreId : genresId) {
+                if (newGenres.add(new Genre(genreId, genres.get(genreId)))) {
+                    log.debug("Фильму с filmId={} добавлен очередной жанр с genreId={}", filmId, genreId);
+                }
+            }
+            return Collections.unmodifiableSet(newGenres);
+        });
+    }
+
+    @Override
+    public void delFilmGenres(long filmId, Collection<Integer> genresId) {
+        genresFilms.computeIfPresent(filmId, (id, genresFilm) -> {
+            Set<Genre> newGenres = new LinkedHashSet<>(genresFilm);
+            newGenres.removeIf(g -> genresId.contains(g.getId()));
+            return Collections.unmodifiableSet(newGenres);
+        });
     }
 }
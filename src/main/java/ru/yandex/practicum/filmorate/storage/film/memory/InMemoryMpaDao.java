@@ -37,4 +37,9 @@ public class InMemoryMpaDao implements MpaDao {
                 .map(k -> new MPA(k.getKey(), k.getValue()))
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public boolean hasRating(int id) {
+        return mpa.containsKey(id);
+    }
 }
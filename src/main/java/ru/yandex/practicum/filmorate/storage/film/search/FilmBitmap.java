@@ -0,0 +1,64 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//битовая карта id фильмов: бит film_id установлен - фильм входит в множество
+//биты меняются на месте под блокировкой индекса, читатели работают без блокировок;
+//массив заменяется большим, когда id не помещается
+final class FilmBitmap {
+    private volatile AtomicLongArray bits;
+
+    FilmBitmap() {
+        this(new AtomicLongArray(0));
+    }
+
+    private FilmBitmap(AtomicLongArray bits) {
+        this.bits = bits;
+    }
+
+    //карта из готовых 64-битных слов; массив больше не должен изменяться
+    static FilmBitmap of(long[] words) {
+        return new FilmBitmap(new AtomicLongArray(words));
+    }
+
+    boolean contains(int film) {
+        AtomicLongArray current = bits;
+        int word = film >>> 6;
+        return word < current.length() && (current.get(word) & (1L << film)) != 0;
+    }
+
+    //количество 64-битных слов карты
+    int words() {
+        return bits.length();
+    }
+
+    //64-битное слово карты с фильмами от word * 64; за пределами карты - 0
+    long word(int word) {
+        AtomicLongArray current = bits;
+        return word < current.length() ? current.get(word) : 0;
+    }
+
+    //вызывается под блокировкой индекса
+    void set(int film) {
+        int word = film >>> 6;
+        AtomicLongArray current = bits;
+        if (word >= current.length()) {
+            AtomicLongArray grown = new AtomicLongArray(Math.max(word + 1, current.length() * 3 / 2));
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            bits = grown;
+            current = grown;
+        }
+        current.set(word, current.get(word) | (1L << film));
+    }
+
+    //вызывается под блокировкой индекса
+    void clear(int film) {
+        int word = film >>> 6;
+        AtomicLongArray current = bits;
+        if (word < current.length()) {
+            current.set(word, current.get(word) & ~(1L << film));
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import java.util.List;
+
+//битовые карты фильмов частого слова: фильмы со словом и фильмы со словом в названии
+//для частых слов проверка бита дешевле распаковки сжатого списка, а пересечение слов - это AND по 64 фильма за раз
+final class FilmBits {
+    private final FilmBitmap films;
+    private final FilmBitmap names;
+
+    private FilmBits(FilmBitmap films, FilmBitmap names) {
+        this.films = films;
+        this.names = names;
+    }
+
+    static FilmBits of(PostingList postings) {
+        FilmBits bits = new FilmBits(new FilmBitmap(), new FilmBitmap());
+        PostingList.Cursor cursor = postings.cursor();
+        while (cursor.next()) {
+            bits.set(cursor.id(), cursor.inName());
+        }
+        return bits;
+    }
+
+    //объединение карт частых слов и списков редких слов: фильм есть хотя бы у одного слова,
+    //в названии - хотя бы у одного слова; карта собирается на один запрос и не изменяется
+    static FilmBits union(List<FilmBits> dense, List<PostingList> sparse) {
+        int words = 0;
+        for (FilmBits bits : dense) {
+            words = Math.max(words, bits.words());
+        }
+        for (PostingList postings : sparse) {
+            words = Math.max(words, (postings.lastId() >>> 6) + 1);
+        }
+        long[] films = new long[words];
+        long[] names = new long[words];
+        for (FilmBits bits : dense) {
+            for (int w = 0; w < words; w++) {
+                films[w] |= bits.filmsWord(w);
+                names[w] |= bits.namesWord(w);
+            }
+        }
+        for (PostingList postings : sparse) {
+            PostingList.Cursor cursor = postings.cursor();
+            while (cursor.next()) {
+                int film = cursor.id();
+                films[film >>> 6] |= 1L << film;
+                if (cursor.inName()) {
+                    names[film >>> 6] |= 1L << film;
+                }
+            }
+        }
+        return new FilmBits(FilmBitmap.of(films), FilmBitmap.of(names));
+    }
+
+    boolean contains(int film) {
+        return films.contains(film);
+    }
+
+    boolean inName(int film) {
+        return names.contains(film);
+    }
+
+    //количество 64-битных слов карты
+    int words() {
+        return films.words();
+    }
+
+    long filmsWord(int word) {
+        return films.word(word);
+    }
+
+    long namesWord(int word) {
+        return names.word(word);
+    }
+
+    //вызывается под блокировкой индекса
+    void set(int film, boolean inName) {
+        films.set(film);
+        if (inName) {
+            names.set(film);
+        } else {
+            names.clear(film);
+        }
+    }
+
+    //вызывается под блокировкой индекса
+    void clear(int film) {
+        films.clear(film);
+        names.clear(film);
+    }
+}
@@ -0,0 +1,352 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.yandex.practicum.filmorate.model.FilmFacets;
+import ru.yandex.practicum.filmorate.model.FilmsFilter;
+
+import javax.annotation.PostConstruct;
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+//отбор фильмов по жанрам, рейтингам MPA и годам выпуска по битовым картам id фильмов
+//для каждого жанра, рейтинга и года хранится карта его фильмов; отбор - это OR карт выбранных значений поля
+//и AND полей, по 64 фильма за раз
+//карты строятся при старте по таблицам films и films_genre; FilmDbDao и GenreDbDao после фиксации транзакции
+//передают id изменённых фильмов, и индекс перечитывает их из БД
+//читатели работают без блокировок, изменения выполняются по очереди
+@Component
+@Slf4j
+public class FilmFacetIndex {
+    //количество фильмов в одном запросе при перечитывании изменённых фильмов
+    private static final int FILMS_IN_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final FilmBitmap films = new FilmBitmap(); //все фильмы
+    private final Map<Integer, FilmBitmap> genres = new ConcurrentHashMap<>();
+    private final Map<Integer, FilmBitmap> ratings = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, FilmBitmap> years = new ConcurrentSkipListMap<>();
+    //film_id - значения полей фильма, чтобы при изменении фильма снимать его старые биты; изменяются под writeLock
+    private FilmValues[] filmValues = new FilmValues[0];
+    private int filmsCount;
+    private final Object writeLock = new Object();
+
+    public FilmFacetIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (writeLock) {
+            for (int filmId = 0; filmId < filmValues.length; filmId++) {
+                remove(filmId);
+            }
+            Map<Integer, FilmValues> loaded = new HashMap<>();
+            jdbcTemplate.query("SELECT film_id, rating_id, release_date FROM films;", rs -> {
+                loaded.put(rs.getInt("film_id"),
+                        new FilmValues(rs.getObject("rating_id", Integer.class), getYear(rs.getDate("release_date"))));
+            });
+            jdbcTemplate.query("SELECT film_id, genre_id FROM films_genre;", rs -> {
+                FilmValues values = loaded.get(rs.getInt("film_id"));
+                if (values != null) {
+                    values.addGenre(rs.getInt("genre_id"));
+                }
+            });
+            loaded.forEach(this::index);
+            log.info("Индекс отбора фильмов построен: фильмов {}, жанров {}, рейтингов {}, годов {}.",
+                    filmsCount, genres.size(), ratings.size(), years.size());
+        }
+    }
+
+    //после фиксации текущей транзакции перечитывает фильм из БД; вне транзакции - сразу
+    //фильмы, изменённые в одной транзакции несколько раз, перечитываются один раз
+    @SuppressWarnings("unchecked")
+    public void refreshAfterCommit(long filmId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(List.of(filmId));
+            return;
+        }
+        Set<Long> pending = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Long> filmIds = new LinkedHashSet<>();
+            TransactionSynchronizationManager.bindResource(this, filmIds);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    refresh(filmIds);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(FilmFacetIndex.this);
+                }
+            });
+            pending = filmIds;
+        }
+        pending.add(filmId);
+    }
+
+    public void refreshAfterCommit(Collection<Long> filmIds) {
+        filmIds.forEach(this::refreshAfterCommit);
+    }
+
+    //перечитывает фильмы из БД: найденные индексируются заново, не найденные удаляются из индекса
+    private void refresh(Collection<Long> filmIds) {
+        List<Long> ids = new ArrayList<>(filmIds);
+        synchronized (writeLock) {
+            for (int from = 0; from < ids.size(); from += FILMS_IN_CHUNK) {
+                List<Long> chunk = ids.subList(from, Math.min(from + FILMS_IN_CHUNK, ids.size()));
+                String inSql = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                Map<Integer, FilmValues> loaded = new HashMap<>();
+                jdbcTemplate.query("SELECT film_id, rating_id, release_date FROM films WHERE film_id IN (" + inSql + ");",
+                        rs -> {
+                            loaded.put(rs.getInt("film_id"), new FilmValues(rs.getObject("rating_id", Integer.class),
+                                    getYear(rs.getDate("release_date"))));
+                        }, chunk.toArray());
+                jdbcTemplate.query("SELECT film_id, genre_id FROM films_genre WHERE film_id IN (" + inSql + ");",
+                        rs -> {
+                            FilmValues values = loaded.get(rs.getInt("film_id"));
+                            if (values != null) {
+                                values.addGenre(rs.getInt("genre_id"));
+                            }
+                        }, chunk.toArray());
+                for (long filmId : chunk) {
+                    FilmValues values = loaded.get((int) filmId);
+                    if (values == null) {
+                        remove(filmId);
+                    } else {
+                        index((int) filmId, values);
+                    }
+                }
+            }
+        }
+    }
+
+    //индексирует фильм, заменяя его прежние значения
+    public void index(long filmId, Integer ratingId, Integer year, Collection<Integer> genreIds) {
+        FilmValues values = new FilmValues(ratingId, year);
+        genreIds.forEach(values::addGenre);
+        index(Math.toIntExact(filmId), values);
+    }
+
+    private void index(int film, FilmValues values) {
+        synchronized (writeLock) {
+            remove(film);
+            if (film >= filmValues.length) {
+                filmValues = Arrays.copyOf(filmValues, Math.max(film + 1, filmValues.length * 3 / 2));
+            }
+            films.set(film);
+            if (values.ratingId != null) {
+                ratings.computeIfAbsent(values.ratingId, id -> new FilmBitmap()).set(film);
+            }
+            if (values.year != null) {
+                years.computeIfAbsent(values.year, year -> new FilmBitmap()).set(film);
+            }
+            for (int genreId : values.genreIds) {
+                genres.computeIfAbsent(genreId, id -> new FilmBitmap()).set(film);
+            }
+            filmValues[film] = values;
+            filmsCount++;
+        }
+    }
+
+    public void remove(long filmId) {
+        synchronized (writeLock) {
+            if (filmId <= 0 || filmId >= filmValues.length || filmValues[(int) filmId] == null) {
+                return;
+            }
+            int film = (int) filmId;
+            FilmValues values = filmValues[film];
+            filmValues[film] = null;
+            filmsCount--;
+            films.clear(film);
+            if (values.ratingId != null) {
+                ratings.get(values.ratingId).clear(film);
+            }
+            if (values.year != null) {
+                years.get(values.year).clear(film);
+            }
+            for (int genreId : values.genreIds) {
+                genres.get(genreId).clear(film);
+            }
+        }
+    }
+
+    //не более limit id фильмов, подходящих под отбор, с id больше after, по возрастанию id,
+    //и количество всех подходящих фильмов
+    public FilterResult filter(FilmsFilter filter, long after, int limit) {
+        long[] matched = select(filter, null);
+        int total = 0;
+        for (long word : matched) {
+            total += Long.bitCount(word);
+        }
+        long[] filmIds = new long[Math.min(limit, total)];
+        int size = 0;
+        long start = Math.max(after + 1, 0);
+        for (int w = (int) Math.min(start >>> 6, matched.length); w < matched.length && size < filmIds.length; w++) {
+            long word = matched[w];
+            if (w == start >>> 6) {
+                word &= -1L << start;
+            }
+            for (; word != 0 && size < filmIds.length; word &= word - 1) {
+                filmIds[size++] = ((long) w << 6) | Long.numberOfTrailingZeros(word);
+            }
+        }
+        return new FilterResult(Arrays.copyOf(filmIds, size), total);
+    }
+
+    //количество фильмов по значениям каждого поля: с отбором по остальным полям, без отбора по самому полю
+    //для жанров с allGenres выбранные жанры остаются в отборе: количество показывает, сколько фильмов останется,
+    //если добавить жанр
+    public FilmFacets facets(FilmsFilter filter) {
+        int total = count(select(filter, null), null);
+        long[] withoutGenres = select(filter, filter.isAllGenres() ? null : Field.GENRE);
+        long[] withoutRatings = select(filter, Field.RATING);
+        long[] withoutYears = select(filter, Field.YEAR);
+        return new FilmFacets(total, counts(genres, withoutGenres), counts(ratings, withoutRatings),
+                counts(years, withoutYears));
+    }
+
+    //количество проиндексированных фильмов
+    public int getFilmsCount() {
+        synchronized (writeLock) {
+            return filmsCount;
+        }
+    }
+
+    //фильмы, подходящие под отбор по всем полям, кроме excluded
+    private long[] select(FilmsFilter filter, Field excluded) {
+        long[] matched = new long[films.words()];
+        for (int w = 0; w < matched.length; w++) {
+            matched[w] = films.word(w);
+        }
+        if (excluded != Field.GENRE && !filter.getGenres().isEmpty()) {
+            if (filter.isAllGenres()) {
+                for (int genreId : filter.getGenres()) {
+                    and(matched, Collections.singletonList(genres.get(genreId)));
+                }
+            } else {
+                and(matched, values(genres, filter.getGenres()));
+            }
+        }
+        if (excluded != Field.RATING && !filter.getMpa().isEmpty()) {
+            and(matched, values(ratings, filter.getMpa()));
+        }
+        if (excluded != Field.YEAR && (filter.getYearFrom() != null || filter.getYearTo() != null)) {
+            int from = filter.getYearFrom() == null ? Integer.MIN_VALUE : filter.getYearFrom();
+            int to = filter.getYearTo() == null ? Integer.MAX_VALUE : filter.getYearTo();
+            and(matched, from > to ? List.of() : new ArrayList<>(years.subMap(from, true, to, true).values()));
+        }
+        return matched;
+    }
+
+    private static List<FilmBitmap> values(Map<Integer, FilmBitmap> bitmaps, Set<Integer> ids) {
+        List<FilmBitmap> values = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            values.add(bitmaps.get(id));
+        }
+        return values;
+    }
+
+    //оставляет в matched фильмы, которые есть хотя бы в одной карте; null - карта пустого значения
+    private static void and(long[] matched, List<FilmBitmap> bitmaps) {
+        for (int w = 0; w < matched.length; w++) {
+            if (matched[w] == 0) {
+                continue;
+            }
+            long any = 0;
+            for (FilmBitmap bitmap : bitmaps) {
+                if (bitmap != null) {
+                    any |= bitmap.word(w);
+                }
+            }
+            matched[w] &= any;
+        }
+    }
+
+    private static Map<Integer, Integer> counts(Map<Integer, FilmBitmap> bitmaps, long[] matched) {
+        Map<Integer, Integer> counts = new TreeMap<>();
+        bitmaps.forEach((id, bitmap) -> {
+            int count = count(matched, bitmap);
+            if (count > 0) {
+                counts.put(id, count);
+            }
+        });
+        return counts;
+    }
+
+    //количество фильмов matched, которые есть в bitmap; bitmap null - все фильмы matched
+    private static int count(long[] matched, FilmBitmap bitmap) {
+        int count = 0;
+        for (int w = 0; w < matched.length; w++) {
+            count += Long.bitCount(bitmap == null ? matched[w] : matched[w] & bitmap.word(w));
+        }
+        return count;
+    }
+
+    private static Integer getYear(Date date) {
+        return date == null ? null : date.toLocalDate().getYear();
+    }
+
+    private enum Field {
+        GENRE, RATING, YEAR
+    }
+
+    //значения полей фильма
+    private static final class FilmValues {
+        private static final int[] NO_GENRES = new int[0];
+
+        private final Integer ratingId;
+        private final Integer year;
+        private int[] genreIds = NO_GENRES;
+
+        private FilmValues(Integer ratingId, Integer year) {
+            this.ratingId = ratingId;
+            this.year = year;
+        }
+
+        private void addGenre(int genreId) {
+            for (int id : genreIds) {
+                if (id == genreId) {
+                    return;
+                }
+            }
+            genreIds = Arrays.copyOf(genreIds, genreIds.length + 1);
+            genreIds[genreIds.length - 1] = genreId;
+        }
+    }
+
+    //id фильмов страницы и количество всех подходящих фильмов
+    public static final class FilterResult {
+        private final long[] filmIds;
+        private final int total;
+
+        private FilterResult(long[] filmIds, int total) {
+            this.filmIds = filmIds;
+            this.total = total;
+        }
+
+        public long[] getFilmIds() {
+            return filmIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+}
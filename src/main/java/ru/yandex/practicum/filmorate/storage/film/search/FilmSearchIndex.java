@@ -0,0 +1,699 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Collectors;
+
+//полнотекстовый поиск фильмов по словам названия и описания: инвертированный индекс в памяти приложения
+//текст делится на слова из букв и цифр в нижнем регистре; для каждого слова хранится сжатый список id фильмов
+//(PostingList), словарь слов упорядочен, поэтому последнее слово запроса ищется и как начало слова - для автодополнения
+//найденные фильмы должны содержать все слова запроса; вес слова - его редкость (idf), в названии - втрое больше
+//для каждого фильма хранятся номера его слов, чтобы при изменении и удалении фильма менять только его списки
+//у частых слов, которые есть в каждом DENSE_SHARE-м фильме, кроме списка есть битовая карта фильмов (FilmBits):
+//запросы из частых слов пересекаются по битам, а не распаковкой длинных списков
+//индекс строится при старте по таблице films; FilmDbDao после фиксации транзакции передаёт id изменённых фильмов,
+//индекс перечитывает их из БД: так он сходится к последнему зафиксированному состоянию фильма
+//читатели работают без блокировок, изменения выполняются по очереди
+@Component
+@Slf4j
+public class FilmSearchIndex {
+    //наибольшее количество слов запроса
+    public static final int MAX_QUERY_TERMS = 8;
+    //сколько самых частых слов словаря подставляется вместо начала слова
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final float NAME_WEIGHT = 3;
+    //слово получает битовую карту, когда оно есть хотя бы в каждом DENSE_SHARE-м фильме и не меньше чем в DENSE_MIN_FILMS
+    private static final int DENSE_SHARE = 16;
+    private static final int DENSE_MIN_FILMS = 4096;
+    //список слова короче кандидатов в SHORT_LIST_RATIO раз - кандидаты ищутся в нём двоичным поиском
+    private static final int SHORT_LIST_RATIO = 8;
+    //количество фильмов в одном запросе при перечитывании изменённых фильмов
+    private static final int FILMS_IN_CHUNK = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    //слово - его номер и список фильмов; упорядоченный словарь нужен только для поиска по началу слова,
+    //целые слова ищутся в хеш-таблице
+    private final ConcurrentHashMap<String, Term> terms = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<String, Term> dictionary = new ConcurrentSkipListMap<>();
+    //изменяются под writeLock
+    private final List<Term> termsById = new ArrayList<>();
+    private byte[][] filmTerms = new byte[0][]; //film_id - упорядоченные номера слов фильма в формате varint
+    private volatile int films;
+    private final Object writeLock = new Object();
+    private final ThreadLocal<Worker> workers = ThreadLocal.withInitial(Worker::new);
+
+    public FilmSearchIndex(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        synchronized (writeLock) {
+            terms.clear();
+            dictionary.clear();
+            termsById.clear();
+            filmTerms = new byte[0][];
+            films = 0;
+            //фильмы читаются по возрастанию id, поэтому каждый id дописывается в конец списков слов
+            jdbcTemplate.query("SELECT film_id, name, description FROM films ORDER BY film_id;", rs -> {
+                index(rs.getLong("film_id"), rs.getString("name"), rs.getString("description"));
+            });
+        }
+        log.info("Поисковый индекс фильмов построен: фильмов {}, слов {}.", films, terms.size());
+    }
+
+    //после фиксации текущей транзакции перечитывает фильмы из БД; вне транзакции - сразу
+    public void refreshAfterCommit(Collection<Long> filmIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            refresh(filmIds);
+            return;
+        }
+        List<Long> ids = new ArrayList<>(filmIds);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                refresh(ids);
+            }
+        });
+    }
+
+    public void refreshAfterCommit(long filmId) {
+        refreshAfterCommit(List.of(filmId));
+    }
+
+    //перечитывает фильмы из БД: найденные индексируются заново, не найденные удаляются из индекса
+    //чтение и изменение выполняются под writeLock, поэтому последним применяется последнее зафиксированное состояние
+    private void refresh(Collection<Long> filmIds) {
+        List<Long> ids = new ArrayList<>(filmIds);
+        synchronized (writeLock) {
+            for (int from = 0; from < ids.size(); from += FILMS_IN_CHUNK) {
+                List<Long> chunk = ids.subList(from, Math.min(from + FILMS_IN_CHUNK, ids.size()));
+                Set<Long> missing = new LinkedHashSet<>(chunk);
+                String inSql = String.join(",", Collections.nCopies(chunk.size(), "?"));
+                jdbcTemplate.query("SELECT film_id, name, description FROM films WHERE film_id IN (" + inSql + ");",
+                        rs -> {
+                            long filmId = rs.getLong("film_id");
+                            missing.remove(filmId);
+                            index(filmId, rs.getString("name"), rs.getString("description"));
+                        }, chunk.toArray());
+                missing.forEach(this::remove);
+            }
+        }
+    }
+
+    //индексирует фильм, заменяя его прежние слова
+    public void index(long filmId, String name, String description) {
+        int film = Math.toIntExact(filmId);
+        Map<String, Boolean> words = new HashMap<>(); //слово - есть в названии
+        for (String word : tokenize(name)) {
+            words.put(word, true);
+        }
+        for (String word : tokenize(description)) {
+            words.putIfAbsent(word, false);
+        }
+        synchronized (writeLock) {
+            int[] oldTerms = getFilmTerms(film);
+            if (oldTerms == null) {
+                films++;
+            }
+            int[] newTerms = new int[words.size()];
+            int size = 0;
+            for (Map.Entry<String, Boolean> word : words.entrySet()) {
+                Term term = terms.get(word.getKey());
+                if (term == null) {
+                    term = new Term(termsById.size());
+                    termsById.add(term);
+                    terms.put(word.getKey(), term);
+                    dictionary.put(word.getKey(), term);
+                }
+                boolean inName = word.getValue();
+                if (oldTerms == null || Arrays.binarySearch(oldTerms, term.id) < 0
+                        || isInName(term.postings, film) != inName) {
+                    addPosting(term, film, inName);
+                }
+                newTerms[size++] = term.id;
+            }
+            Arrays.sort(newTerms);
+            if (oldTerms != null) {
+                for (int termId : oldTerms) {
+                    if (Arrays.binarySearch(newTerms, termId) < 0) {
+                        removePosting(termsById.get(termId), film);
+                    }
+                }
+            }
+            setFilmTerms(film, newTerms);
+        }
+    }
+
+    public void remove(long filmId) {
+        synchronized (writeLock) {
+            if (filmId <= 0 || filmId >= filmTerms.length) {
+                return;
+            }
+            int film = (int) filmId;
+            int[] oldTerms = getFilmTerms(film);
+            if (oldTerms == null) {
+                return;
+            }
+            for (int termId : oldTerms) {
+                removePosting(termsById.get(termId), film);
+            }
+            filmTerms[film] = null;
+            films--;
+        }
+    }
+
+    //id найденных фильмов с offset по offset + limit в порядке убывания веса, при равенстве - по возрастанию id,
+    //и общее количество найденных фильмов
+    public SearchResult search(String query, int offset, int limit) {
+        List<String> words = tokenize(query).stream().distinct().limit(MAX_QUERY_TERMS).collect(Collectors.toList());
+        if (words.isEmpty()) {
+            return SearchResult.EMPTY;
+        }
+        //если запрос не закончен пробелом или знаком, последнее слово может быть ещё не дописано
+        char last = query.charAt(query.length() - 1);
+        boolean prefix = Character.isLetterOrDigit(last);
+        int filmsCount = Math.max(films, 1);
+        List<QueryTerm> terms = new ArrayList<>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            QueryTerm term = prefix && i == words.size() - 1 ? expand(words.get(i), filmsCount)
+                    : exact(words.get(i), filmsCount);
+            if (term == null) {
+                return SearchResult.EMPTY;
+            }
+            terms.add(term);
+        }
+        //сначала самое редкое слово: с него начинается список кандидатов, остальные слова только проверяются
+        terms.sort((a, b) -> Long.compare(a.size, b.size));
+        return workers.get().search(terms, offset, limit);
+    }
+
+    //количество проиндексированных фильмов
+    public int getFilmsCount() {
+        return films;
+    }
+
+    //байт занимают списки фильмов всех слов
+    public long getPostingsBytes() {
+        long bytes = 0;
+        for (Term term : terms.values()) {
+            bytes += term.postings.bytes();
+        }
+        return bytes;
+    }
+
+    private QueryTerm exact(String word, int filmsCount) {
+        Term term = terms.get(word);
+        if (term == null || term.postings.size() == 0) {
+            return null;
+        }
+        return new QueryTerm(new PostingList[]{term.postings}, term.bits, filmsCount);
+    }
+
+    //слова словаря, которые начинаются с word: не больше MAX_PREFIX_EXPANSIONS самых частых
+    //если среди них есть частые слова, для запроса собирается объединённая битовая карта всех слов
+    private QueryTerm expand(String word, int filmsCount) {
+        List<Term> expansions = new ArrayList<>();
+        for (Term term : dictionary.subMap(word, true, word + Character.MAX_VALUE, false).values()) {
+            if (term.postings.size() > 0) {
+                expansions.add(term);
+            }
+        }
+        if (expansions.isEmpty()) {
+            return null;
+        }
+        if (expansions.size() > MAX_PREFIX_EXPANSIONS) {
+            expansions.sort((a, b) -> Integer.compare(b.postings.size(), a.postings.size()));
+            expansions = expansions.subList(0, MAX_PREFIX_EXPANSIONS);
+        }
+        PostingList[] lists = new PostingList[expansions.size()];
+        List<FilmBits> dense = new ArrayList<>();
+        List<PostingList> sparse = new ArrayList<>();
+        for (int i = 0; i < lists.length; i++) {
+            Term term = expansions.get(i);
+            lists[i] = term.postings;
+            FilmBits bits = term.bits;
+            if (bits != null) {
+                dense.add(bits);
+            } else {
+                sparse.add(lists[i]);
+            }
+        }
+        FilmBits bits = null;
+        if (lists.length == 1 || sparse.isEmpty() && dense.size() == 1) {
+            bits = dense.isEmpty() ? null : dense.get(0);
+        } else if (!dense.isEmpty()) {
+            bits = FilmBits.union(dense, sparse);
+        }
+        return new QueryTerm(lists, bits, filmsCount);
+    }
+
+    //вызывается под writeLock
+    private void addPosting(Term term, int film, boolean inName) {
+        term.postings = term.postings.with(film, inName);
+        if (term.bits != null) {
+            term.bits.set(film, inName);
+        } else if (term.postings.size() >= DENSE_MIN_FILMS && (long) term.postings.size() * DENSE_SHARE >= films) {
+            term.bits = FilmBits.of(term.postings);
+        }
+    }
+
+    //вызывается под writeLock
+    private void removePosting(Term term, int film) {
+        term.postings = term.postings.without(film);
+        if (term.bits != null) {
+            term.bits.clear(film);
+        }
+    }
+
+    private static boolean isInName(PostingList postings, int film) {
+        PostingList.Cursor cursor = postings.cursor();
+        return cursor.advance(film) && cursor.id() == film && cursor.inName();
+    }
+
+    private int[] getFilmTerms(int film) {
+        if (film >= filmTerms.length || filmTerms[film] == null) {
+            return null;
+        }
+        byte[] bytes = filmTerms[film];
+        int count = 0;
+        for (byte b : bytes) {
+            if (b >= 0) {
+                count++;
+            }
+        }
+        int[] terms = new int[count];
+        int prev = 0;
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = bytes[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            prev += value;
+            terms[i] = prev;
+        }
+        return terms;
+    }
+
+    //номера слов хранятся разностями с предыдущим в формате varint
+    private void setFilmTerms(int film, int[] terms) {
+        if (film >= filmTerms.length) {
+            filmTerms = Arrays.copyOf(filmTerms, Math.max(film + 1, filmTerms.length * 3 / 2));
+        }
+        byte[] bytes = new byte[terms.length * 5];
+        int length = 0;
+        int prev = 0;
+        for (int term : terms) {
+            length = PostingList.writeVarInt(bytes, length, term - prev);
+            prev = term;
+        }
+        filmTerms[film] = Arrays.copyOf(bytes, length);
+    }
+
+    //слова из букв и цифр в нижнем регистре, ё заменяется на е
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                c = Character.toLowerCase(c);
+                word.append(c == 'ё' ? 'е' : c);
+            } else if (word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words;
+    }
+
+    //слово словаря; список фильмов заменяется под writeLock
+    private static final class Term {
+        private final int id;
+        private volatile PostingList postings = PostingList.EMPTY;
+        private volatile FilmBits bits; //только у частых слов
+
+        private Term(int id) {
+            this.id = id;
+        }
+    }
+
+    //слово запроса: списки фильмов слова или слов с его началом, битовая карта частого слова и вес слова
+    private static final class QueryTerm {
+        private final PostingList[] lists;
+        private final FilmBits bits;
+        private final long size;
+        private final float weight;
+
+        private QueryTerm(PostingList[] lists, FilmBits bits, int filmsCount) {
+            this.lists = lists;
+            this.bits = bits;
+            long total = 0;
+            for (PostingList list : lists) {
+                total += list.size();
+            }
+            this.size = total;
+            this.weight = (float) Math.log(1 + (double) filmsCount / Math.max(Math.min(total, filmsCount), 1));
+        }
+    }
+
+    //найденные фильмы страницы и общее количество найденных фильмов
+    public static final class SearchResult {
+        private static final SearchResult EMPTY = new SearchResult(new int[0], 0);
+
+        private final int[] filmIds;
+        private final int total;
+
+        private SearchResult(int[] filmIds, int total) {
+            this.filmIds = filmIds;
+            this.total = total;
+        }
+
+        public int[] getFilmIds() {
+            return filmIds;
+        }
+
+        public int getTotal() {
+            return total;
+        }
+    }
+
+    //переиспользуемые массивы одного потока
+    private static final class Worker {
+        private int[] ids = new int[1024]; //кандидаты по возрастанию id
+        private float[] scores = new float[1024];
+        private int size;
+        private int[] heapIds = new int[0];
+        private float[] heapScores = new float[0];
+        private int heapSize;
+
+        private float[] best = new float[0]; //вес слова запроса у каждого кандидата
+        private FilmBits[] termBits = new FilmBits[MAX_QUERY_TERMS];
+        private int[] matchedWords = new int[0]; //номера непустых 64-битных слов пересечения битовых карт
+        private long[] matchedBits = new long[0];
+
+        private SearchResult search(List<QueryTerm> terms, int offset, int limit) {
+            if (terms.stream().allMatch(term -> term.bits != null)) {
+                return searchBits(terms, offset, limit);
+            }
+            collect(terms.get(0));
+            for (int t = 1; t < terms.size() && size > 0; t++) {
+                QueryTerm term = terms.get(t);
+                if (term.bits != null) {
+                    filterBits(term);
+                } else {
+                    filter(term);
+                }
+            }
+            int total = size;
+            int top = (int) Math.min((long) offset + limit, total);
+            if (offset >= top) {
+                return new SearchResult(new int[0], total);
+            }
+            resetHeap(top);
+            for (int c = 0; c < size; c++) {
+                offer(ids[c], scores[c], top);
+            }
+            return page(offset, total);
+        }
+
+        //все слова запроса частые: фильмы находятся пересечением битовых карт по 64 фильма
+        //вес фильма зависит только от того, какие слова запроса есть в его названии, поэтому вес каждого фильма
+        //не считается: страница набирается по наборам слов в названии в порядке убывания веса набора,
+        //а внутри набора фильмы идут по возрастанию id
+        private SearchResult searchBits(List<QueryTerm> terms, int offset, int limit) {
+            int count = terms.size();
+            int words = Integer.MAX_VALUE;
+            for (int t = 0; t < count; t++) {
+                termBits[t] = terms.get(t).bits;
+                words = Math.min(words, termBits[t].words());
+            }
+            //непустые 64-битные слова пересечения
+            if (matchedWords.length < words) {
+                matchedWords = new int[words];
+                matchedBits = new long[words];
+            }
+            int matchedCount = 0;
+            int total = 0;
+            for (int w = 0; w < words; w++) {
+                long matched = -1L;
+                for (int t = 0; t < count && matched != 0; t++) {
+                    matched &= termBits[t].filmsWord(w);
+                }
+                if (matched != 0) {
+                    matchedWords[matchedCount] = w;
+                    matchedBits[matchedCount] = matched;
+                    matchedCount++;
+                    total += Long.bitCount(matched);
+                }
+            }
+            int top = (int) Math.min((long) offset + limit, total);
+            if (offset >= top) {
+                Arrays.fill(termBits, null);
+                return new SearchResult(new int[0], total);
+            }
+            //наборы слов в названии - битовые маски слов запроса, по убыванию веса
+            int sets = 1 << count;
+            float[] setScores = new float[sets];
+            Integer[] order = new Integer[sets];
+            for (int set = 0; set < sets; set++) {
+                float score = 0;
+                for (int t = 0; t < count; t++) {
+                    float weight = terms.get(t).weight;
+                    score += (set & (1 << t)) != 0 ? weight * NAME_WEIGHT : weight;
+                }
+                setScores[set] = score;
+                order[set] = set;
+            }
+            Arrays.sort(order, (a, b) -> Float.compare(setScores[b], setScores[a]));
+            int[] page = new int[top];
+            int size = 0;
+            for (int from = 0; from < sets && size < top; ) {
+                //наборы с одинаковым весом просматриваются вместе, чтобы их фильмы шли по возрастанию id
+                int to = from + 1;
+                while (to < sets && setScores[order[to]] == setScores[order[from]]) {
+                    to++;
+                }
+                for (int i = 0; i < matchedCount && size < top; i++) {
+                    int w = matchedWords[i];
+                    long selected = 0;
+                    for (int s = from; s < to; s++) {
+                        long films = matchedBits[i];
+                        for (int t = 0; t < count; t++) {
+                            long names = termBits[t].namesWord(w);
+                            films &= (order[s] & (1 << t)) != 0 ? names : ~names;
+                        }
+                        selected |= films;
+                    }
+                    for (; selected != 0 && size < top; selected &= selected - 1) {
+                        page[size++] = (w << 6) | Long.numberOfTrailingZeros(selected);
+                    }
+                }
+                from = to;
+            }
+            Arrays.fill(termBits, null);
+            return new SearchResult(Arrays.copyOfRange(page, offset, top), total);
+        }
+
+        private void resetHeap(int capacity) {
+            if (heapIds.length < capacity) {
+                heapIds = new int[capacity];
+                heapScores = new float[capacity];
+            }
+            heapSize = 0;
+        }
+
+        //фильмы кучи с offset по убыванию веса; куча при этом опустошается
+        private SearchResult page(int offset, int total) {
+            int[] page = new int[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                page[i] = heapIds[0];
+                heapSize--;
+                heapIds[0] = heapIds[heapSize];
+                heapScores[0] = heapScores[heapSize];
+                siftDown(0);
+            }
+            return new SearchResult(Arrays.copyOfRange(page, offset, page.length), total);
+        }
+
+        //оставляет кандидатов, которые есть хотя бы в одном списке слова
+        //списки проходятся по очереди: длинный список - вместе с кандидатами с пропуском блоков,
+        //а по короткому, например редкому слову с началом из запроса, кандидаты ищутся двоичным поиском
+        private void filter(QueryTerm term) {
+            if (best.length < size) {
+                best = new float[ids.length];
+            }
+            Arrays.fill(best, 0, size, 0);
+            for (PostingList list : term.lists) {
+                PostingList.Cursor cursor = list.cursor();
+                if ((long) list.size() * SHORT_LIST_RATIO < size) {
+                    int from = 0;
+                    while (from < size && cursor.next()) {
+                        int pos = Arrays.binarySearch(ids, from, size, cursor.id());
+                        if (pos >= 0) {
+                            best[pos] = Math.max(best[pos], cursor.inName() ? term.weight * NAME_WEIGHT : term.weight);
+                            from = pos + 1;
+                        } else {
+                            from = -pos - 1;
+                        }
+                    }
+                } else {
+                    for (int c = 0; c < size && cursor.advance(ids[c]); c++) {
+                        if (cursor.id() == ids[c]) {
+                            best[c] = Math.max(best[c], cursor.inName() ? term.weight * NAME_WEIGHT : term.weight);
+                        }
+                    }
+                }
+            }
+            int kept = 0;
+            for (int c = 0; c < size; c++) {
+                if (best[c] > 0) {
+                    ids[kept] = ids[c];
+                    scores[kept] = scores[c] + best[c];
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        //у частого слова кандидаты проверяются по битовой карте
+        private void filterBits(QueryTerm term) {
+            int kept = 0;
+            for (int c = 0; c < size; c++) {
+                int id = ids[c];
+                if (term.bits.contains(id)) {
+                    ids[kept] = id;
+                    scores[kept] = scores[c] + (term.bits.inName(id) ? term.weight * NAME_WEIGHT : term.weight);
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        //кандидаты первого слова: объединение его списков, вес фильма - наибольший из списков
+        private void collect(QueryTerm term) {
+            size = 0;
+            ensureCapacity((int) Math.min(term.size, Integer.MAX_VALUE - 8));
+            for (PostingList list : term.lists) {
+                PostingList.Cursor cursor = list.cursor();
+                while (cursor.next()) {
+                    ids[size] = cursor.id();
+                    scores[size] = cursor.inName() ? term.weight * NAME_WEIGHT : term.weight;
+                    size++;
+                }
+            }
+            if (term.lists.length > 1) {
+                mergeDuplicates();
+            }
+        }
+
+        //упорядочивает кандидатов нескольких списков по id и оставляет каждый id один раз с наибольшим весом
+        private void mergeDuplicates() {
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                //вес положительный, поэтому его биты упорядочены как числа
+                packed[i] = ((long) ids[i] << 32) | Float.floatToIntBits(scores[i]);
+            }
+            Arrays.sort(packed);
+            int kept = 0;
+            for (int i = 0; i < packed.length; i++) {
+                int id = (int) (packed[i] >>> 32);
+                float score = Float.intBitsToFloat((int) packed[i]);
+                if (kept > 0 && ids[kept - 1] == id) {
+                    scores[kept - 1] = Math.max(scores[kept - 1], score);
+                } else {
+                    ids[kept] = id;
+                    scores[kept] = score;
+                    kept++;
+                }
+            }
+            size = kept;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (ids.length < capacity) {
+                ids = new int[capacity];
+                scores = new float[capacity];
+            }
+        }
+
+        //куча лучших фильмов: на вершине худший из них
+        private void offer(int id, float score, int capacity) {
+            if (heapSize < capacity) {
+                heapIds[heapSize] = id;
+                heapScores[heapSize] = score;
+                int i = heapSize++;
+                while (i > 0) {
+                    int parent = (i - 1) / 2;
+                    if (!isWorse(heapIds[i], heapScores[i], heapIds[parent], heapScores[parent])) {
+                        break;
+                    }
+                    swap(i, parent);
+                    i = parent;
+                }
+            } else if (isWorse(heapIds[0], heapScores[0], id, score)) {
+                heapIds[0] = id;
+                heapScores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < heapSize && isWorse(heapIds[left], heapScores[left], heapIds[worst], heapScores[worst])) {
+                    worst = left;
+                }
+                if (right < heapSize && isWorse(heapIds[right], heapScores[right], heapIds[worst], heapScores[worst])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int i, int j) {
+            int id = heapIds[i];
+            heapIds[i] = heapIds[j];
+            heapIds[j] = id;
+            float score = heapScores[i];
+            heapScores[i] = heapScores[j];
+            heapScores[j] = score;
+        }
+
+        //фильм a хуже фильма b: меньше вес, при равенстве - больше id
+        private static boolean isWorse(int aId, float aScore, int bId, float bScore) {
+            return aScore != bScore ? aScore < bScore : aId > bId;
+        }
+    }
+}
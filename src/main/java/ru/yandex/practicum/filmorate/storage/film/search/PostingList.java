@@ -0,0 +1,181 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import java.util.Arrays;
+
+//сжатый список id фильмов, в которых встречается слово
+//id идут по возрастанию, каждый записан разностью с предыдущим в формате varint (7 бит на байт),
+//младший бит разности - слово есть в названии фильма
+//каждые BLOCK записей начинается блок: его первый id и смещение хранятся отдельно, чтобы при пересечении
+//списков пропускать блоки без распаковки
+//объект не изменяется; добавление id в конец дописывает байты за длиной, видимой читателям прежнего объекта,
+//поэтому добавлять можно только к последнему объекту списка и только под блокировкой индекса
+final class PostingList {
+    static final int BLOCK = 128;
+    static final PostingList EMPTY = new PostingList(new byte[0], 0, 0, 0, new int[0], new int[0]);
+
+    private final byte[] data;
+    private final int length; //байт записано
+    private final int size; //id в списке
+    private final int lastId;
+    private final int[] blockIds; //первый id каждого блока
+    private final int[] blockOffsets; //смещение каждого блока в data
+
+    private PostingList(byte[] data, int length, int size, int lastId, int[] blockIds, int[] blockOffsets) {
+        this.data = data;
+        this.length = length;
+        this.size = size;
+        this.lastId = lastId;
+        this.blockIds = blockIds;
+        this.blockOffsets = blockOffsets;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int lastId() {
+        return lastId;
+    }
+
+    //байт занимает список
+    long bytes() {
+        return length + 4L * (blockIds.length + blockOffsets.length);
+    }
+
+    //список с filmId; filmId, которые больше последнего id, дописываются в конец
+    PostingList with(int filmId, boolean inName) {
+        if (size == 0 || filmId > lastId) {
+            return append(filmId, inName);
+        }
+        Cursor cursor = cursor();
+        PostingList list = EMPTY;
+        boolean added = false;
+        while (cursor.next()) {
+            if (!added && cursor.id() >= filmId) {
+                list = list.append(filmId, inName);
+                added = true;
+                if (cursor.id() == filmId) {
+                    continue;
+                }
+            }
+            list = list.append(cursor.id(), cursor.inName());
+        }
+        return list;
+    }
+
+    //список без filmId
+    PostingList without(int filmId) {
+        Cursor cursor = cursor();
+        if (!cursor.advance(filmId) || cursor.id() != filmId) {
+            return this;
+        }
+        PostingList list = EMPTY;
+        cursor = cursor();
+        while (cursor.next()) {
+            if (cursor.id() != filmId) {
+                list = list.append(cursor.id(), cursor.inName());
+            }
+        }
+        return list;
+    }
+
+    private PostingList append(int filmId, boolean inName) {
+        int blocks = (size + BLOCK - 1) / BLOCK;
+        int[] newBlockIds = blockIds;
+        int[] newBlockOffsets = blockOffsets;
+        int delta = filmId - lastId;
+        if (size % BLOCK == 0) {
+            if (blocks == blockIds.length) {
+                int capacity = Math.max(4, blocks * 2);
+                newBlockIds = Arrays.copyOf(blockIds, capacity);
+                newBlockOffsets = Arrays.copyOf(blockOffsets, capacity);
+            }
+            newBlockIds[blocks] = filmId;
+            newBlockOffsets[blocks] = length;
+            delta = 0;
+        }
+        byte[] newData = data;
+        if (length + 5 > data.length) {
+            newData = Arrays.copyOf(data, Math.max(16, data.length + (data.length >> 1) + 5));
+        }
+        int newLength = writeVarInt(newData, length, (delta << 1) | (inName ? 1 : 0));
+        return new PostingList(newData, newLength, size + 1, filmId, newBlockIds, newBlockOffsets);
+    }
+
+    Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    static int writeVarInt(byte[] bytes, int offset, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[offset++] = (byte) value;
+        return offset;
+    }
+
+    //последовательное чтение списка
+    static final class Cursor {
+        private final PostingList list;
+        private int index = -1; //номер текущей записи
+        private int offset; //смещение следующей записи
+        private int id;
+        private boolean inName;
+
+        private Cursor(PostingList list) {
+            this.list = list;
+        }
+
+        int id() {
+            return id;
+        }
+
+        boolean inName() {
+            return inName;
+        }
+
+        //переход к следующей записи; false, если записи кончились
+        boolean next() {
+            if (index + 1 >= list.size) {
+                index = list.size;
+                return false;
+            }
+            index++;
+            int prev = index % BLOCK == 0 ? list.blockIds[index / BLOCK] : id;
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = list.data[offset++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            id = prev + (value >>> 1);
+            inName = (value & 1) != 0;
+            return true;
+        }
+
+        //переход к первой записи с id не меньше target; false, если таких записей нет
+        boolean advance(int target) {
+            if (index >= 0 && index < list.size && id >= target) {
+                return true;
+            }
+            int blocks = (list.size + BLOCK - 1) / BLOCK;
+            int currentBlock = Math.max(index, 0) / BLOCK;
+            if (currentBlock + 1 < blocks && list.blockIds[currentBlock + 1] <= target) {
+                //последний блок, который начинается не позже target
+                int pos = Arrays.binarySearch(list.blockIds, currentBlock + 1, blocks, target);
+                int block = pos >= 0 ? pos : -pos - 2;
+                index = block * BLOCK - 1;
+                offset = list.blockOffsets[block];
+            }
+            while (next()) {
+                if (id >= target) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+
+//запись журнала и снимка хранилищ в памяти: тип и двоичные поля
+//записи журнала - изменения: пользователь, фильм, удаление фильма, лайк, друг; записи снимка - то же состояние
+//целиком, лайки фильма и друзья пользователя - одной записью с массивом id
+//каждая запись задаёт итоговое значение своего ключа, поэтому повторное применение записи ничего не меняет
+public final class JournalRecord {
+    public static final byte USER = 1; //пользователь целиком: добавление и обновление
+    public static final byte USER_MAX_ID = 2; //наибольший выданный id пользователя
+    public static final byte FILM = 3; //фильм целиком: добавление и обновление
+    public static final byte FILM_DELETE = 4; //удаление фильма, в снимке - удалённый фильм
+    public static final byte FILM_MAX_ID = 5; //наибольший выданный id фильма
+    public static final byte LIKE = 6;
+    public static final byte UNLIKE = 7;
+    public static final byte FILM_LIKES = 8; //все лайки фильма, только в снимке
+    public static final byte FRIEND = 9;
+    public static final byte UNFRIEND = 10;
+    public static final byte USER_FRIENDS = 11; //все друзья пользователя, только в снимке
+    public static final byte SNAPSHOT_END = 12; //последняя запись снимка
+
+    private static final long NO_DATE = Long.MIN_VALUE;
+
+    private final byte[] bytes; //тип и поля
+
+    JournalRecord(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    public byte getType() {
+        return bytes[0];
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    public static JournalRecord user(User user) {
+        Writer writer = new Writer(USER);
+        writer.putLong(user.getId());
+        writer.putString(user.getEmail());
+        writer.putString(user.getLogin());
+        writer.putString(user.getName());
+        writer.putDate(user.getBirthday());
+        return writer.toRecord();
+    }
+
+    //рейтинг и жанры записываются только своими id
+    public static JournalRecord film(Film film) {
+        Writer writer = new Writer(FILM);
+        writer.putLong(film.getId());
+        writer.putString(film.getName());
+        writer.putString(film.getDescription());
+        writer.putDate(film.getReleaseDate());
+        writer.putInt(film.getDuration());
+        writer.putInt(film.getRate());
+        writer.putInt(film.getMpa() == null ? 0 : film.getMpa().getId());
+        int[] genreIds = film.getGenres() == null ? new int[0]
+                : film.getGenres().stream().mapToInt(Genre::getId).toArray();
+        writer.putInts(genreIds);
+        return writer.toRecord();
+    }
+
+    //запись с одним id: удаление фильма, наибольший id
+    public static JournalRecord id(byte type, long id) {
+        Writer writer = new Writer(type);
+        writer.putLong(id);
+        return writer.toRecord();
+    }
+
+    //запись с парой id: лайк (фильм, пользователь), друг (пользователь, друг)
+    public static JournalRecord pair(byte type, long id, long value) {
+        Writer writer = new Writer(type);
+        writer.putLong(id);
+        writer.putLong(value);
+        return writer.toRecord();
+    }
+
+    //запись с множеством id: лайки фильма, друзья пользователя
+    public static JournalRecord set(byte type, long id, int[] values) {
+        Writer writer = new Writer(type);
+        writer.putLong(id);
+        writer.putInts(values);
+        return writer.toRecord();
+    }
+
+    public static JournalRecord snapshotEnd(long records) {
+        return id(SNAPSHOT_END, records);
+    }
+
+    public User readUser() {
+        ByteBuffer buffer = fields();
+        return new User(buffer.getLong(), getString(buffer), getString(buffer), getString(buffer), getDate(buffer));
+    }
+
+    //фильм с рейтингом и жанрами без названий
+    public Film readFilm() {
+        ByteBuffer buffer = fields();
+        long id = buffer.getLong();
+        String name = getString(buffer);
+        String description = getString(buffer);
+        LocalDate releaseDate = getDate(buffer);
+        int duration = buffer.getInt();
+        int rate = buffer.getInt();
+        int mpaId = buffer.getInt();
+        Set<Genre> genres = new HashSet<>();
+        for (int genreId : getInts(buffer)) {
+            genres.add(new Genre(genreId, null));
+        }
+        return new Film(id, name, description, releaseDate, duration, rate, mpaId == 0 ? null : new MPA(mpaId, null),
+                genres);
+    }
+
+    //id записи с одним id, парой или множеством id
+    public long readId() {
+        return fields().getLong();
+    }
+
+    //второй id пары
+    public long readValue() {
+        ByteBuffer buffer = fields();
+        buffer.getLong();
+        return buffer.getLong();
+    }
+
+    //id множества
+    public int[] readValues() {
+        ByteBuffer buffer = fields();
+        buffer.getLong();
+        return getInts(buffer);
+    }
+
+    private ByteBuffer fields() {
+        return ByteBuffer.wrap(bytes, 1, bytes.length - 1);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static LocalDate getDate(ByteBuffer buffer) {
+        long epochDay = buffer.getLong();
+        return epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    private static int[] getInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    //поля записи в растущем массиве
+    private static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(64);
+
+        Writer(byte type) {
+            buffer.put(type);
+        }
+
+        void putLong(long value) {
+            ensure(Long.BYTES).putLong(value);
+        }
+
+        void putInt(int value) {
+            ensure(Integer.BYTES).putInt(value);
+        }
+
+        void putString(String value) {
+            if (value == null) {
+                putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            putInt(bytes.length);
+            ensure(bytes.length).put(bytes);
+        }
+
+        void putDate(LocalDate date) {
+            putLong(date == null ? NO_DATE : date.toEpochDay());
+        }
+
+        void putInts(int[] values) {
+            putInt(values.length);
+            ensure(values.length * Integer.BYTES);
+            buffer.asIntBuffer().put(values);
+            buffer.position(buffer.position() + values.length * Integer.BYTES);
+        }
+
+        JournalRecord toRecord() {
+            byte[] bytes = new byte[buffer.position()];
+            buffer.flip();
+            buffer.get(bytes);
+            return new JournalRecord(bytes);
+        }
+
+        private ByteBuffer ensure(int length) {
+            if (buffer.remaining() < length) {
+                ByteBuffer newBuffer = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + length));
+                buffer.flip();
+                newBuffer.put(buffer);
+                buffer = newBuffer;
+            }
+            return buffer;
+        }
+    }
+}
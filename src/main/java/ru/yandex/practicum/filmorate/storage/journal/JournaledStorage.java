@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import java.util.function.Consumer;
+
+//хранилище в памяти, изменения которого пишутся в журнал StorageJournal
+public interface JournaledStorage {
+
+    //применяет запись снимка или журнала при восстановлении, без записи в журнал;
+    //записи других хранилищ пропускает
+    void restore(JournalRecord record);
+
+    //передаёт состояние хранилища записями снимка
+    void snapshot(Consumer<JournalRecord> writer);
+}
@@ -0,0 +1,497 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+//журнал изменений хранилищ в памяти (filmorate.storage=memory, filmorate.storage.journal.enabled=true)
+//изменения дописываются в отображённый в память файл сегмента journal-<номер>.log: запись - длина, CRC32 и поля
+//групповая фиксация: поток журнала сбрасывает сегмент на диск (force) за все записи, накопленные к этому моменту,
+//а изменяющие потоки при sync=true ждут сброса своей записи; при sync=false записи сбрасываются
+//раз в flush-interval-ms и при сбое теряются изменения за последний интервал
+//снимок snapshot-<номер>.bin - состояние всех хранилищ записями того же формата, номер - первый сегмент после снимка;
+//снимок пишется во временный файл и переименовывается, после этого старые сегменты и снимки удаляются
+//при старте хранилище регистрируется в журнале и получает записи последнего снимка и сегментов после него;
+//запись, оборванная сбоем (неполная или с неверной CRC), и всё после неё отбрасываются
+//записи задают итоговые значения своих ключей, поэтому изменения, попавшие и в снимок, и в сегмент после него,
+//применяются повторно без последствий
+@Component
+@ConditionalOnExpression("'${filmorate.storage:db}' == 'memory' && ${filmorate.storage.journal.enabled:false}")
+@Slf4j
+public class StorageJournal {
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES; //длина и CRC32 записи
+
+    private final Path dir;
+    private final int segmentSize;
+    private final boolean sync;
+    private final long flushIntervalMs;
+
+    private final List<JournaledStorage> storages = new CopyOnWriteArrayList<>();
+
+    //текущий сегмент и количество записанных записей; изменяются под appendLock
+    private final Object appendLock = new Object();
+    private FileChannel segmentChannel;
+    private MappedByteBuffer segment;
+    private long segmentNumber;
+    private long appended;
+    private long snapshotNumber; //первый сегмент после последнего снимка, 0 - снимка нет
+    private long snapshotAppended; //записей к последнему снимку
+    private boolean closed;
+
+    //записи, сброшенные на диск; изменяются под syncLock
+    private final Object syncLock = new Object();
+    private long synced;
+    private boolean syncRequested;
+    private volatile boolean running;
+    private Thread flusher;
+
+    private final Object snapshotLock = new Object();
+
+    @Autowired
+    public StorageJournal(@Value("${filmorate.storage.journal.dir:./db/journal}") String dir,
+                          @Value("${filmorate.storage.journal.segment-size-mb:64}") int segmentSizeMb,
+                          @Value("${filmorate.storage.journal.sync:true}") boolean sync,
+                          @Value("${filmorate.storage.journal.flush-interval-ms:10}") long flushIntervalMs) {
+        this(Paths.get(dir), checkSegmentSize(segmentSizeMb) << 20, sync, flushIntervalMs);
+    }
+
+    StorageJournal(Path dir, int segmentSize, boolean sync, long flushIntervalMs) {
+        this.dir = dir;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.flushIntervalMs = Math.max(flushIntervalMs, 1);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        Files.createDirectories(dir);
+        //временный файл остаётся от снимка, прерванного сбоем
+        for (Path tmp : list("", TMP_SUFFIX)) {
+            log.warn("Удалён недописанный снимок {}.", tmp.getFileName());
+            Files.delete(tmp);
+        }
+        List<Path> snapshots = list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+        if (!snapshots.isEmpty()) {
+            Path snapshot = snapshots.get(snapshots.size() - 1);
+            checkSnapshot(snapshot);
+            snapshotNumber = number(snapshot);
+        }
+        //сегменты до снимка остаются, если сбой случился между записью снимка и их удалением
+        deleteBefore(snapshotNumber);
+
+        List<Path> segments = list(SEGMENT_PREFIX, SEGMENT_SUFFIX);
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (readSegment(segments.get(i), null) < 0) {
+                throw new IllegalStateException("Сегмент журнала " + segments.get(i).getFileName() + " повреждён.");
+            }
+        }
+        segmentNumber = segments.isEmpty() ? Math.max(snapshotNumber, 1) : number(segments.get(segments.size() - 1));
+        mapSegment();
+        int end = readSegment(segment.duplicate(), null);
+        if (end < 0) {
+            end = -end - 1;
+            log.warn("В сегменте {} отброшена запись, оборванная сбоем, с позиции {}.", segmentName(segmentNumber), end);
+        }
+        //за концом записей могут остаться страницы записей, сброшенных после оборванной, - обнуляем их
+        for (int i = end; i < segment.capacity(); i++) {
+            if (segment.get(i) != 0) {
+                segment.put(i, (byte) 0);
+            }
+        }
+        segment.force();
+        segment.position(end);
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "storage-journal");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Журнал хранилища открыт: каталог {}, снимок {}, текущий сегмент {}, позиция {}.",
+                dir, snapshotNumber == 0 ? "нет" : snapshotName(snapshotNumber), segmentName(segmentNumber), end);
+    }
+
+    //восстанавливает хранилище из снимка и сегментов после него; дальше изменения хранилища пишутся в журнал
+    public void register(JournaledStorage storage) {
+        synchronized (appendLock) {
+            long snapshotRecords = 0;
+            if (snapshotNumber > 0) {
+                snapshotRecords = readFile(dir.resolve(snapshotName(snapshotNumber)), record -> {
+                    if (record.getType() != JournalRecord.SNAPSHOT_END) {
+                        storage.restore(record);
+                    }
+                });
+            }
+            long[] records = new long[1];
+            Consumer<JournalRecord> restore = record -> {
+                storage.restore(record);
+                records[0]++;
+            };
+            for (long number = Math.max(snapshotNumber, 1); number < segmentNumber; number++) {
+                Path path = dir.resolve(segmentName(number));
+                if (Files.exists(path)) {
+                    readFile(path, restore);
+                }
+            }
+            ByteBuffer current = segment.duplicate();
+            current.limit(segment.position()).position(0);
+            readSegment(current, restore);
+            storages.add(storage);
+            log.info("Хранилище {} восстановлено: записей снимка {}, записей журнала {}.",
+                    storage.getClass().getSimpleName(), snapshotRecords, records[0]);
+        }
+    }
+
+    //дописывает запись в журнал; возвращает номер записи для awaitDurable
+    public long append(JournalRecord record) {
+        byte[] bytes = record.getBytes();
+        if (HEADER_BYTES + bytes.length > segmentSize) {
+            throw new IllegalArgumentException("Запись журнала длиной " + bytes.length + " байт больше сегмента.");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        synchronized (appendLock) {
+            if (closed) {
+                throw new IllegalStateException("Журнал хранилища закрыт.");
+            }
+            if (segment.remaining() < HEADER_BYTES + bytes.length) {
+                roll();
+            }
+            segment.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes);
+            return ++appended;
+        }
+    }
+
+    //при sync=true ждёт, пока запись с номером sequence будет сброшена на диск
+    public void awaitDurable(long sequence) {
+        if (!sync) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (synced >= sequence) {
+                return;
+            }
+            syncRequested = true;
+            syncLock.notifyAll();
+            while (synced < sequence) {
+                if (!running) {
+                    throw new IllegalStateException("Журнал хранилища закрыт.");
+                }
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Ожидание записи журнала прервано.", e);
+                }
+            }
+        }
+    }
+
+    //снимок всех хранилищ; журнал продолжается в новом сегменте, старые сегменты после снимка удаляются
+    @Scheduled(initialDelayString = "${filmorate.storage.journal.snapshot-interval-ms:600000}",
+            fixedDelayString = "${filmorate.storage.journal.snapshot-interval-ms:600000}")
+    public void snapshot() throws IOException {
+        synchronized (snapshotLock) {
+            long number;
+            synchronized (appendLock) {
+                if (closed || appended == snapshotAppended) {
+                    log.debug("Хранилища не изменились после снимка, снимок не нужен.");
+                    return;
+                }
+                roll();
+                number = segmentNumber;
+                snapshotAppended = appended;
+            }
+            long started = System.nanoTime();
+            Path target = dir.resolve(snapshotName(number));
+            Path tmp = dir.resolve(snapshotName(number) + TMP_SUFFIX);
+            long records = 0;
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+                long[] count = new long[1];
+                Consumer<JournalRecord> writer = record -> {
+                    try {
+                        writeRecord(out, record);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                };
+                for (JournaledStorage storage : storages) {
+                    storage.snapshot(writer);
+                }
+                records = count[0];
+                writeRecord(out, JournalRecord.snapshotEnd(records));
+                out.flush();
+                channel.force(true);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            forceDir();
+            synchronized (appendLock) {
+                snapshotNumber = number;
+            }
+            deleteBefore(number);
+            log.info("Записан снимок {}: записей {}, {} мс.", target.getFileName(), records,
+                    (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        running = false;
+        synchronized (syncLock) {
+            syncLock.notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (appendLock) {
+            if (!closed) {
+                closed = true;
+                segment.force();
+                segmentChannel.close();
+            }
+        }
+        log.info("Журнал хранилища закрыт, записей {}.", appended);
+    }
+
+    //позиция в текущем сегменте
+    int getPosition() {
+        synchronized (appendLock) {
+            return segment.position();
+        }
+    }
+
+    Path getSegmentPath() {
+        synchronized (appendLock) {
+            return dir.resolve(segmentName(segmentNumber));
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (syncLock) {
+                if (!syncRequested) {
+                    try {
+                        syncLock.wait(flushIntervalMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                syncRequested = false;
+            }
+            flush();
+        }
+        flush();
+    }
+
+    //сбрасывает на диск все записи, дописанные к этому моменту
+    private void flush() {
+        long target;
+        MappedByteBuffer buffer;
+        synchronized (appendLock) {
+            if (closed) {
+                return;
+            }
+            target = appended;
+            buffer = segment;
+        }
+        synchronized (syncLock) {
+            if (target <= synced) {
+                return;
+            }
+        }
+        buffer.force();
+        synchronized (syncLock) {
+            synced = Math.max(synced, target);
+            syncLock.notifyAll();
+        }
+    }
+
+    //сбрасывает текущий сегмент и начинает следующий; вызывается под appendLock
+    private void roll() {
+        try {
+            segment.force();
+            segmentChannel.close();
+            segmentNumber++;
+            mapSegment();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось начать сегмент журнала " + segmentName(segmentNumber), e);
+        }
+    }
+
+    private void mapSegment() throws IOException {
+        segmentChannel = FileChannel.open(dir.resolve(segmentName(segmentNumber)), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = segmentChannel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, segmentChannel.size()));
+    }
+
+    //читает записи файла снимка или сегмента, отображая его в память; возвращает количество записей
+    private long readFile(Path path, Consumer<JournalRecord> consumer) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long[] records = new long[1];
+            readSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), record -> {
+                consumer.accept(record);
+                records[0]++;
+            });
+            return records[0];
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать " + path.getFileName(), e);
+        }
+    }
+
+    private int readSegment(Path path, Consumer<JournalRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return readSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), consumer);
+        }
+    }
+
+    //читает записи до первой пустой; возвращает позицию после последней целой записи
+    //или -(позиция + 1), если дальше оборванная запись
+    private static int readSegment(ByteBuffer buffer, Consumer<JournalRecord> consumer) {
+        int position = 0;
+        CRC32 crc = new CRC32();
+        while (position + HEADER_BYTES <= buffer.limit()) {
+            int length = buffer.getInt(position);
+            if (length == 0) {
+                return position;
+            }
+            if (length < 0 || length > buffer.limit() - position - HEADER_BYTES) {
+                return -position - 1;
+            }
+            ByteBuffer bytes = buffer.duplicate();
+            bytes.limit(position + HEADER_BYTES + length).position(position + HEADER_BYTES);
+            crc.reset();
+            crc.update(bytes.duplicate());
+            if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+                return -position - 1;
+            }
+            if (consumer != null) {
+                byte[] record = new byte[length];
+                bytes.get(record);
+                consumer.accept(new JournalRecord(record));
+            }
+            position += HEADER_BYTES + length;
+        }
+        return position;
+    }
+
+    //снимок должен заканчиваться записью SNAPSHOT_END с количеством записей снимка
+    private void checkSnapshot(Path snapshot) {
+        long[] records = new long[1];
+        JournalRecord[] last = new JournalRecord[1];
+        int end;
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            end = readSegment(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), record -> {
+                records[0]++;
+                last[0] = record;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Не удалось прочитать снимок " + snapshot.getFileName(), e);
+        }
+        if (end < 0 || last[0] == null || last[0].getType() != JournalRecord.SNAPSHOT_END
+                || last[0].readId() != records[0] - 1) {
+            throw new IllegalStateException("Снимок " + snapshot.getFileName() + " повреждён.");
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, JournalRecord record) throws IOException {
+        byte[] bytes = record.getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    private void deleteBefore(long number) throws IOException {
+        for (Path path : list(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (number(path) < number) {
+                Files.delete(path);
+            }
+        }
+        for (Path path : list(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            if (number(path) < number) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    //переименование снимка сохраняется на диске вместе с каталогом
+    private void forceDir() {
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            log.debug("Каталог журнала не сброшен на диск: {}", e.getMessage());
+        }
+    }
+
+    //файлы каталога с префиксом и суффиксом в порядке имён, то есть номеров
+    private List<Path> list(String prefix, String suffix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> {
+                        String name = path.getFileName().toString();
+                        return name.startsWith(prefix) && name.endsWith(suffix);
+                    })
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static long number(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(name.indexOf('-') + 1, name.indexOf('.')));
+    }
+
+    private static String segmentName(long number) {
+        return String.format("%s%020d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX);
+    }
+
+    private static String snapshotName(long number) {
+        return String.format("%s%020d%s", SNAPSHOT_PREFIX, number, SNAPSHOT_SUFFIX);
+    }
+
+    private static int checkSegmentSize(int segmentSizeMb) {
+        if (segmentSizeMb < 1 || segmentSizeMb > 1024) {
+            throw new IllegalArgumentException("Размер сегмента журнала должен быть от 1 до 1024 МБ: " + segmentSizeMb);
+        }
+        return segmentSizeMb;
+    }
+}
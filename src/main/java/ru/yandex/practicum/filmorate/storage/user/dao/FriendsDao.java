@@ -9,4 +9,10 @@ public interface FriendsDao {
     void deleteFriend(long userId, long friendId); //удаление пользователем друга friendId
     List<User> getFriends(long userId); //возвращение списка друзей пользователя userId
     List<User> getCommonFriends(long userId, long otherId); //возвращение общих друзей пользователя
+    //перебор всех пар: пользователь userId и друг friendId из списка его друзей
+    void forEachFriend(FriendConsumer consumer);
+
+    interface FriendConsumer {
+        void accept(long userId, long friendId);
+    }
 }
@@ -1,6 +1,7 @@
 package ru.yandex.practicum.filmorate.storage.user.dao;
 
 import ru.yandex.practicum.filmorate.model.User;
+import java.util.List;
 import java.util.Set;
 
 //методы добавления, удаления и модификации объектов.
@@ -12,4 +13,10 @@ public interface UserDao {
     Set<User> getUsers();
 
     User getUser(long userId);
+
+    //проверка существования пользователя без чтения его данных
+    boolean hasUser(long userId);
+
+    //пользователи с id из упорядоченного по возрастанию массива usersId, в порядке id
+    List<User> getUsersByIds(int[] usersId);
 }
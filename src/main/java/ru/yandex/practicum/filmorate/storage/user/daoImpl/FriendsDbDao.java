@@ -2,9 +2,9 @@ package ru.yandex.practicum.filmorate.storage.user.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.rowset.SqlRowSet;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
 import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
@@ -16,8 +16,13 @@ import java.util.List;
 @Component
 @Qualifier("friendsDbDao")
 @Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class FriendsDbDao implements FriendsDao {
+    //запись (user_id, friend_id) означает, что friend_id в списке друзей user_id;
+    //подтверждённая дружба - две зеркальные записи, поэтому друзья пользователя читаются одним условием
+    //по индексу friends_user_friend_uq
+    private static final String FRIENDS_ID_SQL = "SELECT friend_id FROM friends WHERE user_id = ?";
 
     private final JdbcTemplate jdbcTemplate;
 
@@ -27,73 +32,28 @@ public class FriendsDbDao implements FriendsDao {
 
     @Override
     public void addFriend(long userId, long friendId) {
-        //считываем из таблицы friends
-        String friendsSql = "select user_id, friend_id, friend_status from friends where (user_id=? and friend_id=?) " +
-                "or (user_id=? and friend_id=?);";
-        Object[] args = new Object[]{userId, friendId, friendId, userId};
-        SqlRowSet friendsRows = jdbcTemplate.queryForRowSet(friendsSql, args);
-        if (friendsRows.first()) {
-            int user1 = friendsRows.getInt("user_id");
-            boolean status = friendsRows.getBoolean("friend_status");
-            //если найдена запись, то смотрим на friend_status, если он true,то пользователи дружат между собой
-            //тогда просто выходим
-            //если friend_status=false, то user_id дружит с friend_id, но не наоборот
-            //если user_id=userId, то просто выходим
-            //если user_id=friendId и friend_status=true, то выходим
-            if (status || user1 == userId) {
-                return;
-            } else if (user1 == friendId & !status) {
-                //если user_id=friendId и friend_status=false, то отправляем запрос на friend_status=true (подтверждаем дружбу)
-                String friendSqlTrue = "UPDATE friends SET user_id=?,friend_id=?,friend_status=?;";
-                args = new Object[]{friendId, userId, true};
-                jdbcTemplate.update(friendSqlTrue, args);
-            }
-        } else {
-            //если запись не найдена, то добавляем её
-            String addFriendSql = "INSERT INTO friends(user_id,friend_id) VALUES(?,?);";
-            args = new Object[]{userId, friendId};
-            jdbcTemplate.update(addFriendSql, args);
-        }
+        //добавляем запись userId - friendId; если friendId уже добавил userId, дружба становится подтверждённой
+        //MERGE не создаст повтор, если запись уже есть или её добавили параллельно
+        String addFriendSql = "MERGE INTO friends f " +
+                "USING (SELECT CAST(? AS INTEGER) AS user_id, CAST(? AS INTEGER) AS friend_id) n " +
+                "ON f.user_id = n.user_id AND f.friend_id = n.friend_id " +
+                "WHEN NOT MATCHED THEN INSERT (user_id, friend_id) VALUES (n.user_id, n.friend_id);";
+        jdbcTemplate.update(addFriendSql, userId, friendId);
     }
 
     @Override
     public void deleteFriend(long userId, long friendId) {
-        //userId удаляет из друзей friendId
-        //возможно в след. случаях:
-        //существует запись: userId, friendId, false - неподтверждённая дружба - просто удаляем
-        //существует запись: friendId, userId, false - неподтверждённая дружба - ничего не делаем
-        //существует запись: userId, friendId, true - подтверждённая дружба - удаляем и записываем friendId, userId, false
-        //существует запись: friendId, userId, true - подтверждённая дружба - удаляем и записываем friendId, userId, false
-        //если запись не найдена, то ничего не делаем.
-        //считываем из таблицы friends
-        String friendsSql = "select user_id, friend_id, friend_status from friends where (user_id=? and friend_id=?) " +
-                "or (user_id=? and friend_id=?);";
-        Object[] args = new Object[]{userId, friendId, friendId, userId};
-        SqlRowSet friendsRows = jdbcTemplate.queryForRowSet(friendsSql, args);
-        if (friendsRows.first()) {
-            log.debug("Получен непустой ответ на удаление от сервера...");
-            boolean status = friendsRows.getBoolean("friend_status");
-            log.debug("Статус дружбы: обоюдная...");
-            String delFriendSql = "DELETE FROM friends WHERE (user_id=? and friend_id=?) OR (user_id=? and friend_id=?);";
-            args = new Object[]{userId, friendId, friendId, userId};
-            jdbcTemplate.update(delFriendSql, args);
-            if (status) {
-                String addFriendSql = "INSERT INTO friends(user_id,friend_id) VALUES(?,?);";
-                args = new Object[]{friendId, userId};
-                jdbcTemplate.update(addFriendSql, args);
-            }
-        }
+        //удаляем только запись userId - friendId: при подтверждённой дружбе friendId остаётся
+        //в неподтверждённой дружбе с userId, запись friendId - userId при этом не меняется
+        String delFriendSql = "DELETE FROM friends WHERE user_id=? AND friend_id=?;";
+        jdbcTemplate.update(delFriendSql, userId, friendId);
     }
 
     @Override
     public List<User> getFriends(long userId) {
-        //возвращаем друзей пользователя userId
-        //посмотреть, возможно переписать
-        String getFriendsSql = "SELECT u2.* FROM USERS u2 LEFT JOIN (SELECT DISTINCT CASE WHEN "+
-                "(f.FRIEND_ID =? AND f.FRIEND_STATUS) THEN f.USER_ID ELSE f.FRIEND_ID END AS FRIEND_ID " +
-                "FROM FRIENDS f WHERE f.USER_ID =? OR (f.FRIEND_ID =? AND f.FRIEND_STATUS)) fr " +
-                "ON u2.USER_ID =fr.FRIEND_ID WHERE fr.FRIEND_ID IS NOT NULL;";
-        Object[] args=new Object[]{userId,userId,userId};
+        //возвращаем друзей пользователя userId в порядке id
+        String getFriendsSql = "SELECT * FROM USERS WHERE USER_ID IN (" + FRIENDS_ID_SQL + ") ORDER BY USER_ID;";
+        Object[] args=new Object[]{userId};
         List<User> users=jdbcTemplate.query(getFriendsSql, (rs, rowNum) ->userMapper(rs),args);
         log.debug("Количество друзей пользователя с id={}: {}",userId,users.size());
         return users;
@@ -101,19 +61,23 @@ public class FriendsDbDao implements FriendsDao {
 
     @Override
     public List<User> getCommonFriends(long userId, long otherId) {
-        String commonFriendSql="SELECT * FROM USERS WHERE USER_ID IN (SELECT f1.friend FROM (SELECT DISTINCT CASE WHEN (u.USER_ID =f.FRIEND_ID AND "+
-                "f.FRIEND_STATUS) THEN f.USER_ID ELSE f.FRIEND_ID END AS friend FROM (SELECT * FROM USERS  WHERE USER_ID =?) u LEFT JOIN "+
-                "FRIENDS f ON u.USER_ID =f.USER_ID OR (u.USER_ID =f.FRIEND_ID AND f.FRIEND_STATUS) "+
-                ") f1 INNER JOIN (SELECT DISTINCT CASE WHEN (u.USER_ID =f.FRIEND_ID AND "+
-                "f.FRIEND_STATUS) THEN f.USER_ID ELSE f.FRIEND_ID END AS friend FROM (SELECT * FROM USERS  WHERE USER_ID =?) u LEFT JOIN FRIENDS f " +
-                "ON u.USER_ID =f.USER_ID OR (u.USER_ID =f.FRIEND_ID AND f.FRIEND_STATUS)) f2 " +
-                "ON f1.friend=f2.friend);";
+        //пользователи читаются по первичному ключу из списка друзей первого пользователя
+        String commonFriendSql = "SELECT * FROM USERS WHERE USER_ID IN (" + FRIENDS_ID_SQL + ") " +
+                "AND USER_ID IN (" + FRIENDS_ID_SQL + ") ORDER BY USER_ID;";
         Object[] args=new Object[]{userId,otherId};
         List<User> users=jdbcTemplate.query(commonFriendSql, (rs, rowNum) ->userMapper(rs),args);
         log.debug("Количество общих друзей пользователей с id={},{}: {}",userId,otherId,users.size());
         return users;
     }
 
+    @Override
+    public void forEachFriend(FriendConsumer consumer) {
+        //пользователь user_id добавил в друзья friend_id
+        jdbcTemplate.query("SELECT user_id, friend_id FROM friends;", rs -> {
+            consumer.accept(rs.getLong("user_id"), rs.getLong("friend_id"));
+        });
+    }
+
     private User userMapper(ResultSet rs) throws SQLException {
         //перебираем записи результирующего набора
         return new User(rs.getLong("user_id"),
@@ -2,6 +2,7 @@ package ru.yandex.practicum.filmorate.storage.user.daoImpl;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Primary;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.PreparedStatementCreator;
@@ -16,6 +17,8 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -23,8 +26,11 @@ import java.util.stream.Collectors;
 @Component
 @Qualifier("userDbDao")
 @Primary
+@ConditionalOnProperty(name = "filmorate.storage", havingValue = "db", matchIfMissing = true)
 @Slf4j
 public class UserDbDao implements UserDao {
+    private static final int USERS_IN_CHUNK = 1000;
+
     private final JdbcTemplate jdbcTemplate;
 
     public UserDbDao(JdbcTemplate jdbcTemplate) {
@@ -103,6 +109,30 @@ public class UserDbDao implements UserDao {
         return user;
     }
 
+    @Override
+    public boolean hasUser(long userId) {
+        return !jdbcTemplate.queryForList("select 1 from users where user_id=?", Integer.class, userId).isEmpty();
+    }
+
+    //пользователи читаются по первичному ключу списками IN не длиннее USERS_IN_CHUNK id
+    //id упорядочены, поэтому результаты порций, упорядоченные по id, идут друг за другом
+    @Override
+    public List<User> getUsersByIds(int[] usersId) {
+        List<User> users = new ArrayList<>(usersId.length);
+        for (int from = 0; from < usersId.length; from += USERS_IN_CHUNK) {
+            int to = Math.min(from + USERS_IN_CHUNK, usersId.length);
+            Object[] args = new Object[to - from];
+            for (int i = from; i < to; i++) {
+                args[i - from] = usersId[i];
+            }
+            String getUsersSql = "SELECT * FROM users WHERE user_id IN (" +
+                    String.join(",", Collections.nCopies(args.length, "?")) + ") ORDER BY user_id;";
+            users.addAll(jdbcTemplate.query(getUsersSql, (rs, rowNum) -> userMapper(rs), args));
+        }
+        log.debug("По {} id прочитано пользователей: {}", usersId.length, users.size());
+        return users;
+    }
+
     private User userMapper(ResultSet rs) throws SQLException {
         //перебираем записи результирующего набора
         return new User(rs.getLong("user_id"),
@@ -1,80 +1,155 @@
 package ru.yandex.practicum.filmorate.storage.user.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.IdSets;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
 import ru.yandex.practicum.filmorate.storage.user.dao.FriendsDao;
 import ru.yandex.practicum.filmorate.storage.user.dao.UserDao;
 
-import java.util.*;
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
+//друзья пользователей в памяти: для каждого пользователя - множество id пользователей из его списка друзей
+//в IdSets, как записи (user_id, friend_id) таблицы friends; id хранятся как int, без упаковки в Long
+//хранятся id, а не пользователи: списки друзей возвращаются с актуальными данными пользователей в порядке id
+//с журналом (StorageJournal) изменение пишется в журнал под блокировкой пользователя, как в InMemoryUserStorage
 @Component("friendsInMemoryDao")
 @Slf4j
-public class InMemoryFriendsStorage implements FriendsDao {
+public class InMemoryFriendsStorage implements FriendsDao, JournaledStorage {
+    private static final int USER_LOCKS = 64;
 
-    private Map<Long, LinkedHashSet<User>> friends = new HashMap<>(); //информация о друзьях пользователя
-    UserDao userDao;
+    private final IdSets friends = new IdSets(); //id друзей пользователя
+    private final Object[] userLocks = new Object[USER_LOCKS];
+    private final UserDao userDao;
+
+    private StorageJournal journal;
 
     public InMemoryFriendsStorage(@Qualifier("userInMemoryDao") UserDao userDao) {
         this.userDao = userDao;
+        for (int i = 0; i < USER_LOCKS; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void registerInJournal() {
+        if (journal != null) {
+            journal.register(this);
+        }
     }
 
     @Override
     public void addFriend(long userId, long friendId) {
         log.debug("Получен запрос на добавление пользователю с user_id={} друга с friend_id={}.", userId, friendId);
-        Optional<LinkedHashSet<User>> friendSet = Optional.ofNullable(friends.get(userId));
-        LinkedHashSet<User> newUser = new LinkedHashSet<>();
-        if (friendSet.isPresent()) {
-            newUser = friendSet.get();
-            Optional<User> user = newUser.stream().filter(u -> u.getId() == friendId).findFirst();
-            if (user.isPresent()) {
-                return;
+        //друг должен существовать, как при внешнем ключе таблицы friends
+        userDao.getUser(friendId);
+        long sequence = 0;
+        synchronized (lockFor(userId)) {
+            if (friends.add(userId, friendId)) {
+                sequence = append(JournalRecord.pair(JournalRecord.FRIEND, userId, friendId));
+                log.debug("Пользователю с userId={} добавлен очередной друг с friendId={}", userId, friendId);
             }
         }
-        log.debug("Пользователю с userId={} добавлен очередной друг с friendIв={}", userId, friendId);
-        newUser.add(userDao.getUser(friendId));
-        friends.put(userId, newUser);
+        awaitDurable(sequence);
     }
 
     @Override
     public void deleteFriend(long userId, long friendId) {
         log.debug("Получен запрос на удаление пользователю с user_id={} друга с friend_id={}.", userId, friendId);
-        Optional<LinkedHashSet<User>> friendSet = Optional.ofNullable(friends.get(userId));
-        if (friendSet.isPresent()) {
-            Iterator<User> userIter = friendSet.get().iterator();
-            while (userIter.hasNext()) {
-                if (userIter.next().getId() == friendId) {
-                    userIter.remove();
-                    log.debug("Для пользователя userId={} удалён друг с friendId={}.", userId, friendId);
-                }
+        long sequence = 0;
+        synchronized (lockFor(userId)) {
+            if (friends.remove(userId, friendId)) {
+                sequence = append(JournalRecord.pair(JournalRecord.UNFRIEND, userId, friendId));
+                log.debug("Для пользователя userId={} удалён друг с friendId={}.", userId, friendId);
             }
         }
+        awaitDurable(sequence);
     }
 
     @Override
     public List<User> getFriends(long userId) {
         log.debug("Запрос на получение друзей пользователя с userId={}", userId);
-        Optional<Set<User>> friendSet = Optional.ofNullable(friends.get(userId));
-        Set<User> newUser = new HashSet<>();
-        if (!friendSet.isPresent()) {
-            return new ArrayList<>();
-        }
-        return friendSet.get().stream().collect(Collectors.toList());
+        return Arrays.stream(friends.get(userId))
+                .mapToObj(userDao::getUser)
+                .collect(Collectors.toList());
     }
 
     @Override
     public List<User> getCommonFriends(long userId, long otherId) {
         log.debug("Получен запрос на поиск общих друзей для пользователей с userId={} и otherId={}.", userId, otherId);
-        Optional<Set<User>> userFriendsOp = Optional.ofNullable(friends.get(userId));
-        Optional<Set<User>> otherFriendsOp = Optional.ofNullable(friends.get(otherId));
-        if (userFriendsOp.isPresent() && otherFriendsOp.isPresent()) {
-            Set<Long> userFriends = userFriendsOp.get().stream().map(User::getId).collect(Collectors.toSet());
-            Set<Long> otherFriends = otherFriendsOp.get().stream().map(User::getId).collect(Collectors.toSet());
-            return userFriends.stream().filter(otherFriends::contains).map(userDao::getUser)
-                    .collect(Collectors.toList());
+        //перебираем меньшее множество и проверяем id в большем
+        boolean userSmaller = friends.size(userId) <= friends.size(otherId);
+        long smaller = userSmaller ? userId : otherId;
+        long larger = userSmaller ? otherId : userId;
+        return Arrays.stream(friends.get(smaller))
+                .filter(friendId -> friends.contains(larger, friendId))
+                .mapToObj(userDao::getUser)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public void forEachFriend(FriendConsumer consumer) {
+        friends.forEach(consumer::accept);
+    }
+
+    //оценка памяти, занимаемой друзьями, в байтах
+    public long getMemoryBytes() {
+        return friends.getMemoryBytes();
+    }
+
+    //существование друга проверено при исходном изменении
+    @Override
+    public void restore(JournalRecord record) {
+        switch (record.getType()) {
+            case JournalRecord.FRIEND:
+                friends.add(record.readId(), record.readValue());
+                break;
+            case JournalRecord.UNFRIEND:
+                friends.remove(record.readId(), record.readValue());
+                break;
+            case JournalRecord.USER_FRIENDS:
+                long userId = record.readId();
+                for (int friendId : record.readValues()) {
+                    friends.add(userId, friendId);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    @Override
+    public void snapshot(Consumer<JournalRecord> writer) {
+        friends.forEachSet((userId, friendIds) ->
+                writer.accept(JournalRecord.set(JournalRecord.USER_FRIENDS, userId, friendIds)));
+    }
+
+    //номер записи в журнале, 0 без журнала или без изменения
+    private long append(JournalRecord record) {
+        return journal == null ? 0 : journal.append(record);
+    }
+
+    private void awaitDurable(long sequence) {
+        if (journal != null && sequence > 0) {
+            journal.awaitDurable(sequence);
         }
-        return new ArrayList<>();
+    }
+
+    private Object lockFor(long userId) {
+        return userLocks[(int) Math.floorMod(userId, (long) USER_LOCKS)];
     }
 }
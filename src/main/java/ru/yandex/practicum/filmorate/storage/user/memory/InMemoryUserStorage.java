@@ -1,21 +1,55 @@
 package ru.yandex.practicum.filmorate.storage.user.memory;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exceptions.user.UserNotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.journal.JournaledStorage;
+import ru.yandex.practicum.filmorate.storage.journal.StorageJournal;
 import ru.yandex.practicum.filmorate.storage.user.dao.UserDao;
 
+import javax.annotation.PostConstruct;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 //реализация методов добавления, удаления и модификации объектов.
+//пользователи хранятся в ConcurrentHashMap, id выдаёт атомарный счётчик, поэтому хранилище можно вызывать
+//из нескольких потоков; обновление заменяет пользователя целиком
+//с журналом (StorageJournal) пользователь записывается в журнал под блокировкой своего id, чтобы записи
+//об одном пользователе шли в порядке изменений; ответ возвращается после сброса записи на диск
 @Component("userInMemoryDao")
 @Slf4j
-public class InMemoryUserStorage implements UserDao {
-    private long maxId = 0;
+public class InMemoryUserStorage implements UserDao, JournaledStorage {
+    private static final int USER_LOCKS = 64;
 
-    private Map<Long, User> users = new HashMap<>(); //информация о пользователях
+    private final AtomicLong maxId = new AtomicLong();
+
+    private final Map<Long, User> users = new ConcurrentHashMap<>(); //информация о пользователях
+    private final Object[] userLocks = new Object[USER_LOCKS];
+
+    private StorageJournal journal;
+
+    public InMemoryUserStorage() {
+        for (int i = 0; i < USER_LOCKS; i++) {
+            userLocks[i] = new Object();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setJournal(StorageJournal journal) {
+        this.journal = journal;
+    }
+
+    @PostConstruct
+    public void registerInJournal() {
+        if (journal != null) {
+            journal.register(this);
+        }
+    }
 
     @Override
     public User addUser(User user) {
@@ -27,7 +61,12 @@ public class InMemoryUserStorage implements UserDao {
         }
         final long id = generateId();
         user.setId(id);
-        this.users.put(id, user);
+        long sequence;
+        synchronized (lockFor(id)) {
+            this.users.put(id, user);
+            sequence = append(user);
+        }
+        awaitDurable(sequence);
         //возвращаем информацию о добавленном пользователе
         log.debug("Добавлен пользователь с id={}, name={}, email={}, login={}, birthday={}"
                 , id, user.getName(), user.getEmail(), user.getLogin(), user.getBirthday());
@@ -36,13 +75,20 @@ public class InMemoryUserStorage implements UserDao {
 
     @Override
     public User updateUser(User user) {
-        if (this.users.containsKey(user.getId())) {
-            String name = user.getName();
-            String login = user.getLogin();
-            if (name == null || name.isBlank()) {
-                user.setName(login);
+        String name = user.getName();
+        String login = user.getLogin();
+        if (name == null || name.isBlank()) {
+            user.setName(login);
+        }
+        //replace не добавит пользователя, которого нет в хранилище
+        long sequence = -1;
+        synchronized (lockFor(user.getId())) {
+            if (this.users.replace(user.getId(), user) != null) {
+                sequence = append(user);
             }
-            this.users.put(user.getId(), user);
+        }
+        if (sequence >= 0) {
+            awaitDurable(sequence);
             log.info("Обновлены данные пользователя с id={}, name={}, email={}, login={}, birthday={}"
                     , user.getId(), user.getName(), user.getEmail(), user.getLogin(), user.getBirthday());
             return user;
@@ -53,21 +99,69 @@ public class InMemoryUserStorage implements UserDao {
     @Override
     public Set<User> getUsers() {
         log.info("Получен список пользователей.");
-        return this.users.values().stream().collect(Collectors.toSet());
+        return new HashSet<>(this.users.values());
     }
 
     //возвращает данные о пользователе
     @Override
     public User getUser(long userId) {
         log.debug("Получен запрос из InMemory на пользователя с id={}",userId);
-        if(!users.containsKey(userId)) {
+        User user = users.get(userId);
+        if (user == null) {
             throw new UserNotFoundException("Пользователь с id="+userId+" не найден.");
         }
-        return users.get(userId);
+        return user;
+    }
+
+    @Override
+    public boolean hasUser(long userId) {
+        return users.containsKey(userId);
+    }
+
+    @Override
+    public List<User> getUsersByIds(int[] usersId) {
+        List<User> result = new ArrayList<>(usersId.length);
+        for (int userId : usersId) {
+            User user = users.get((long) userId);
+            if (user != null) {
+                result.add(user);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void restore(JournalRecord record) {
+        if (record.getType() == JournalRecord.USER) {
+            User user = record.readUser();
+            users.put(user.getId(), user);
+            maxId.accumulateAndGet(user.getId(), Math::max);
+        }
+    }
+
+    //пользователи не удаляются, поэтому наибольший id восстанавливается по ним
+    @Override
+    public void snapshot(Consumer<JournalRecord> writer) {
+        users.values().forEach(user -> writer.accept(JournalRecord.user(user)));
     }
 
     private long generateId() {
-        return ++maxId;
+        return maxId.incrementAndGet();
+    }
+
+    //номер записи в журнале, 0 без журнала
+    private long append(User user) {
+        return journal == null ? 0 : journal.append(JournalRecord.user(user));
+    }
+
+    private void awaitDurable(long sequence) {
+        if (journal != null) {
+            journal.awaitDurable(sequence);
+        }
+    }
+
+    private Object lockFor(long userId) {
+        return userLocks[(int) Math.floorMod(userId, (long) USER_LOCKS)];
     }
 
 }
@@ -0,0 +1,15 @@
+--справочники рейтингов MPA и жанров с теми же id, что выдаёт data.sql
+--MERGE по id добавляет недостающие записи и исправляет названия, остальные данные не трогает;
+--повторяемая миграция выполняется заново только после изменения этого файла
+MERGE INTO ratings_mpa (rating_id, rating_name) KEY (rating_id) VALUES (1, 'G'),
+                                                                       (2, 'PG'),
+                                                                       (3, 'PG-13'),
+                                                                       (4, 'R'),
+                                                                       (5, 'NC-17');
+
+MERGE INTO genre (genre_id, genre_name) KEY (genre_id) VALUES (1, 'Комедия'),
+                                                              (2, 'Драма'),
+                                                              (3, 'Мультфильм'),
+                                                              (4, 'Триллер'),
+                                                              (5, 'Документальный'),
+                                                              (6, 'Боевик');
@@ -0,0 +1,59 @@
+--исходная схема: таблицы в том виде, в котором их создавал schema.sql до перехода на миграции
+--существующая БД, созданная тем schema.sql, принимается за версию 1 (spring.flyway.baseline-on-migrate), и эта
+--миграция в ней не выполняется; изменения схемы добавляются следующими версиями V2__..., V3__...
+
+--создание таблицы ratings
+CREATE TABLE IF NOT EXISTS ratings_mpa (
+        rating_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        rating_name VARCHAR(10) NOT NULL,
+        constraint uq1 unique (rating_name)
+);
+
+--создание таблицы genre
+CREATE TABLE IF NOT EXISTS genre (
+        genre_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        genre_name VARCHAR(100) NOT NULL,
+        constraint uq2 unique (genre_name)
+);
+
+--создание таблицы users
+CREATE TABLE IF NOT EXISTS users (
+        user_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        email VARCHAR(320) NOT NULL,
+        login VARCHAR(100) NOT NULL,
+        name VARCHAR(100) NOT NULL,
+        birthday DATE
+);
+
+--создание таблицы films
+CREATE TABLE IF NOT EXISTS films (
+        film_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        name VARCHAR(100) NOT NULL,
+        description VARCHAR(1000),
+        release_date DATE,
+        duration INTEGER,
+        rate INTEGER,
+        rating_id INTEGER REFERENCES ratings_mpa (rating_id) ON DELETE SET NULL
+);
+
+--создание таблицы films_genre
+CREATE TABLE IF NOT EXISTS films_genre (
+        films_genre_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        film_id INTEGER REFERENCES films (film_id) ON DELETE CASCADE,
+        genre_id INTEGER REFERENCES genre (genre_id) ON DELETE CASCADE
+);
+
+--создание таблицы friends
+CREATE TABLE IF NOT EXISTS friends (
+        user_friend_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        user_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE,
+        friend_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE,
+        friend_status BOOLEAN DEFAULT FALSE
+);
+
+--создание таблицы films_like
+CREATE TABLE IF NOT EXISTS films_like (
+        films_like_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+        film_id INTEGER REFERENCES films (film_id) ON DELETE CASCADE,
+        user_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE
+);
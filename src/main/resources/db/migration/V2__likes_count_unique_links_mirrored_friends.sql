@@ -0,0 +1,31 @@
+--переход от исходной схемы (V1) к текущей: счётчик лайков фильма, уникальные записи в таблицах связей
+--и дружба в виде зеркальных записей. Операторы не меняют БД, которая уже в текущем виде
+--(создана schema.sql после этих изменений и принята за версию 1), поэтому миграция выполняется и в ней
+
+--пользователь ставит фильму не больше одного лайка; по индексу проверяется лайк и выполняется MERGE лайка
+DELETE FROM films_like fl WHERE EXISTS (SELECT 1 FROM films_like d WHERE d.film_id = fl.film_id
+        AND d.user_id = fl.user_id AND d.films_like_id < fl.films_like_id);
+CREATE UNIQUE INDEX IF NOT EXISTS films_like_film_user_uq ON films_like (film_id, user_id);
+
+--количество лайков фильма: обновляется вместе с таблицей films_like, популярные фильмы читаются по индексу
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM films_like l WHERE l.film_id = f.film_id);
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
+--жанр у фильма не повторяется; по индексу читаются жанры фильма и выполняется MERGE жанра
+DELETE FROM films_genre fg WHERE EXISTS (SELECT 1 FROM films_genre d WHERE d.film_id = fg.film_id
+        AND d.genre_id = fg.genre_id AND d.films_genre_id < fg.films_genre_id);
+CREATE UNIQUE INDEX IF NOT EXISTS films_genre_film_genre_uq ON films_genre (film_id, genre_id);
+
+--подтверждённая дружба была одной записью с friend_status=true, теперь для неё добавляется зеркальная запись,
+--и друзья пользователя читаются по индексу user_id; в БД без столбца friend_status перенос ничего не меняет
+ALTER TABLE friends ADD COLUMN IF NOT EXISTS friend_status BOOLEAN DEFAULT FALSE;
+INSERT INTO friends (user_id, friend_id) SELECT DISTINCT f.friend_id, f.user_id FROM friends f WHERE f.friend_status
+        AND NOT EXISTS (SELECT 1 FROM friends r WHERE r.user_id = f.friend_id AND r.friend_id = f.user_id);
+ALTER TABLE friends DROP COLUMN friend_status;
+
+--запись о дружбе пары пользователей не повторяется; второй индекс - для удаления записей, в которых пользователь друг
+DELETE FROM friends f WHERE EXISTS (SELECT 1 FROM friends d WHERE d.user_id = f.user_id
+        AND d.friend_id = f.friend_id AND d.user_friend_id < f.user_friend_id);
+CREATE UNIQUE INDEX IF NOT EXISTS friends_user_friend_uq ON friends (user_id, friend_id);
+CREATE INDEX IF NOT EXISTS friends_friend_user_idx ON friends (friend_id, user_id);
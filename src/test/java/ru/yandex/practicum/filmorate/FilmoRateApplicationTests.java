@@ -5,6 +5,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.genre.GenreNotFoundException;
 import ru.yandex.practicum.filmorate.exceptions.mpa.MpaNotFoundException;
@@ -13,6 +14,9 @@ import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.MPA;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmLikesReconciliationJob;
+import ru.yandex.practicum.filmorate.service.PopularFilmsLeaderboard;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
 import ru.yandex.practicum.filmorate.storage.film.dao.FilmLikeDao;
 import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
 import ru.yandex.practicum.filmorate.storage.film.daoImpl.GenreDbDao;
@@ -22,7 +26,9 @@ import ru.yandex.practicum.filmorate.storage.user.daoImpl.UserDbDao;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -38,6 +44,10 @@ class FilmoRateApplicationTests {
     private final FilmLikeDao filmLikeDao;
     private final MpaDbDao mpaDbStorage;
     private final GenreDbDao genreDbStorage;
+    private final FilmCardCache filmCardCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final PopularFilmsLeaderboard leaderboard;
+    private final FilmLikesReconciliationJob likesReconciliationJob;
 
     private final User user1 = new User(1, "user1_test_1@email.ru", "user1_login", "user1_name",
             LocalDate.of(2002, 5, 3));
@@ -64,6 +74,8 @@ class FilmoRateApplicationTests {
         assertEquals("user1_name", userGet.getName(), "name добавленного пользователя не совпадает.");
         // обновление пользователя с неизвестным id: код возвращаемой ошибки
         assertThrows(UserNotFoundException.class, () -> userStorage.updateUser(userUnknown));
+        assertTrue(userStorage.hasUser(user.getId()), "Добавленный пользователь должен существовать.");
+        assertFalse(userStorage.hasUser(9999), "Пользователя с id=9999 быть не должно.");
         // обновление пользователя с корректным id: id пользователя, имя пользователя и др. данные
         user = userStorage.updateUser(user1Update);
         assertEquals("user1_login_update", user.getName(), "name добавленного пользователя не совпадает.");
@@ -111,16 +123,22 @@ class FilmoRateApplicationTests {
         assertEquals("film1_test_name", filmTest1.getName(), "name добавленного фильма не совпадает.");
         //получаем фильм с неизвестным id
         assertThrows(FilmNotFoundException.class, () -> filmDbStorage.getFilm(9999));
+        assertTrue(filmDbStorage.hasFilm(5), "Добавленный фильм должен существовать.");
+        assertFalse(filmDbStorage.hasFilm(9999), "Фильма с id=9999 быть не должно.");
         //обновление фильма с несуществующим id
         assertThrows(FilmNotFoundException.class, () -> filmDbStorage.updateFilm(filmUpdateUnknown));
         //обновление фильма с корректным id
         Film filmTestUpdate = filmDbStorage.updateFilm(filmUpdateCorrect);
         assertEquals("film1_test_name_update", filmTestUpdate.getName());
+        //обновлённый фильм собирается без повторного чтения и должен совпадать с фильмом из БД
+        assertEquals("G", filmTestUpdate.getMpa().getName(), "Название рейтинга MPA не совпадает.");
+        assertEquals(filmDbStorage.getFilm(5), filmTestUpdate, "Обновлённый фильм не совпадает с фильмом в БД.");
         //удаление фильма с несуществующим id
         assertThrows(FilmNotFoundException.class, () -> filmDbStorage.deleteFilm(9999));
         //удаление фильма с корректным id
         filmDbStorage.deleteFilm(5);
         assertThrows(FilmNotFoundException.class, () -> filmDbStorage.getFilm(5));
+        assertFalse(filmDbStorage.hasFilm(5), "Удалённого фильма быть не должно.");
         //получение списка фильмов
         List<Film> films = filmDbStorage.getFilms();
         assertEquals(4, films.size(), "Количество фильмов не совпадает.");
@@ -130,6 +148,30 @@ class FilmoRateApplicationTests {
         assertEquals("The Lion King", films.get(3).getName(), "name фильма с id=4 не совпадает.");
     }
 
+    @Test
+    public void testFilmsPage() {
+        //страница из двух фильмов после фильма с id=1
+        List<Film> page = filmDbStorage.getFilms(1, 2);
+        assertEquals(2, page.size(), "Количество фильмов на странице не совпадает.");
+        assertEquals(2, page.get(0).getId(), "Первый фильм страницы не совпадает.");
+        assertEquals(3, page.get(1).getId(), "Последний фильм страницы не совпадает.");
+        assertEquals(3, page.get(1).getGenres().size(), "Количество жанров фильма с id=3 не совпадает.");
+        //после последнего фильма страница пустая
+        assertTrue(filmDbStorage.getFilms(9999, 2).isEmpty(), "Страница после последнего фильма должна быть пустой.");
+    }
+
+    @Test
+    public void testFilmsByIds() {
+        //фильмы возвращаются в порядке запрошенных id, несуществующие пропускаются
+        filmCardCache.invalidateAll();
+        filmDbStorage.getFilm(2);
+        List<Film> films = filmDbStorage.getFilmsByIds(List.of(3L, 9999L, 2L, 1L));
+        assertEquals(List.of(3L, 2L, 1L), films.stream().map(Film::getId).collect(Collectors.toList()),
+                "Порядок фильмов не совпадает.");
+        assertEquals(filmDbStorage.getFilm(3), films.get(0), "Фильм с id=3 не совпадает с карточкой.");
+        assertEquals(3, films.get(0).getGenres().size(), "Количество жанров фильма с id=3 не совпадает.");
+    }
+
     @Test
     public void testCrudFilmLike() {
         //самые популярные фильмы
@@ -153,6 +195,46 @@ class FilmoRateApplicationTests {
         assertEquals(2, popularFilms.get(0).getId(), "Самый популярный фильм не совпадает.");
     }
 
+    @Test
+    public void testFilmCardCache() {
+        //повторный запрос фильма обслуживается из кэша
+        Film filmFirst = filmDbStorage.getFilm(3);
+        FilmCardCache.Stats statsBefore = filmCardCache.getStats();
+        Film filmSecond = filmDbStorage.getFilm(3);
+        FilmCardCache.Stats statsAfter = filmCardCache.getStats();
+        assertEquals(filmFirst, filmSecond, "Фильм с id=3 из кэша не совпадает с прочитанным из БД.");
+        assertEquals(statsBefore.getHits() + 1, statsAfter.getHits(), "Количество попаданий в кэш не совпадает.");
+        //каждый читатель получает свою копию: её изменение не портит карточку в кэше
+        filmSecond.setName("Изменённое название");
+        filmSecond.getGenres().clear();
+        assertEquals(filmFirst, filmDbStorage.getFilm(3), "Изменение выданного фильма попало в кэш.");
+        statsAfter = filmCardCache.getStats();
+        //после сброса фильм заново читается из БД
+        filmCardCache.invalidate(3);
+        Film filmReloaded = filmDbStorage.getFilm(3);
+        assertNotSame(filmFirst, filmReloaded, "Фильм с id=3 должен быть прочитан из БД.");
+        assertEquals(statsAfter.getMisses() + 1, filmCardCache.getStats().getMisses(),
+                "Количество промахов кэша не совпадает.");
+        assertEquals(filmFirst, filmReloaded, "Фильм с id=3 из кэша и из БД не совпадает.");
+    }
+
+    @Test
+    public void testLikesCount() {
+        //количество лайков фильма хранится вместе с фильмом
+        assertEquals(3, filmDbStorage.getFilm(2).getLikesCount(), "Количество лайков фильма с id=2 не совпадает.");
+        assertEquals(1, filmDbStorage.getFilm(3).getLikesCount(), "Количество лайков фильма с id=3 не совпадает.");
+        //счётчики совпадают с таблицей films_like
+        assertEquals(Map.of(), filmLikeDao.reconcileLikesCount(), "Количество лайков не должно расходиться.");
+        //после сверки разошедшиеся счётчики исправлены и в БД, и в рейтинге популярных фильмов
+        jdbcTemplate.update("UPDATE films SET likes_count = 10 WHERE film_id = 3");
+        for (int i = 0; i < 9; i++) {
+            leaderboard.addLike(3);
+        }
+        likesReconciliationJob.reconcileLikesCount();
+        assertEquals(1, filmDbStorage.getFilm(3).getLikesCount(), "Количество лайков фильма с id=3 не исправлено.");
+        assertEquals(1, leaderboard.getLikes(3), "Количество лайков фильма с id=3 в рейтинге не исправлено.");
+    }
+
     @Test
     public void testMpa() {
         //получаем список всех рейтингов MPA
@@ -160,6 +242,9 @@ class FilmoRateApplicationTests {
         assertEquals(5, ratings.size(), "Количество известный рейтингов MPA не совпадает.");
         //получаем рейтинг MPA по некорректному id
         assertThrows(MpaNotFoundException.class, () -> mpaDbStorage.getRating(9999));
+        //проверка наличия рейтинга без исключения - так её делает FilmService
+        assertFalse(mpaDbStorage.hasRating(9999), "Рейтинга MPA с id=9999 быть не должно.");
+        assertTrue(mpaDbStorage.hasRating(1), "Ретинг MPA с id=1 должен существовать.");
         //получаем рейтинг MPA по корректному id
         MPA rating = mpaDbStorage.getRating(1);
         assertNotNull(rating, "Ретинг MPA должен существовать.");
@@ -0,0 +1,56 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConditionalGetTest {
+
+    @Test
+    void testNotModified() {
+        ResponseEntity<String> response = ConditionalGet.respond(request("\"f1\""), "\"f1\"", () -> { },
+                CacheControl.noCache(), () -> fail("Тело не должно читаться при совпадении ETag."));
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+
+        response = ConditionalGet.respond(request("\"f1\""), "\"f2\"", () -> { }, CacheControl.noCache(),
+                () -> "film");
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("film", response.getBody());
+    }
+
+    @Test
+    void testMissingEntityIsNotModified() {
+        //ETag несуществующего фильма совпадает с If-None-Match, но клиент должен получить 404, а не 304
+        assertThrows(FilmNotFoundException.class, () -> ConditionalGet.respond(request("\"f1\""), "\"f1\"",
+                () -> {
+                    throw new FilmNotFoundException("С id=1 фильм не найден.");
+                }, CacheControl.noCache(), () -> "film"));
+    }
+
+    @Test
+    void testContentTag() {
+        List<Genre> genres = List.of(new Genre(1, "Комедия"), new Genre(2, "Драма"));
+        String tag = ConditionalGet.contentTag(genres);
+        assertTrue(tag.matches("\"r[0-9a-f]{32}\""), "ETag должен содержать MD5 содержимого: " + tag);
+        assertEquals(tag, ConditionalGet.contentTag(List.of(new Genre(1, "Комедия"), new Genre(2, "Драма"))),
+                "ETag одинакового содержимого должен совпадать.");
+        assertNotEquals(tag, ConditionalGet.contentTag(List.of(new Genre(1, "Комедия"), new Genre(2, "Драма2"))),
+                "ETag должен меняться вместе с содержимым.");
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/films/1");
+        request.addHeader("If-None-Match", ifNoneMatch);
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
+}
@@ -0,0 +1,160 @@
+package ru.yandex.practicum.filmorate.dataset;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatasetGeneratorTest {
+
+    private static DatasetSettings settings(long seed) {
+        DatasetSettings settings = new DatasetSettings();
+        settings.setUsers(5000);
+        settings.setFilms(2000);
+        settings.setLikesPerUser(10);
+        settings.setFriendsPerUser(20);
+        settings.setSeed(seed);
+        return settings;
+    }
+
+    //при одном seed набор не меняется, при другом - меняется
+    @Test
+    void testReproducible() throws IOException {
+        RecordingSink first = new RecordingSink();
+        new DatasetGenerator(settings(7)).generate(first);
+        RecordingSink second = new RecordingSink();
+        new DatasetGenerator(settings(7)).generate(second);
+        RecordingSink other = new RecordingSink();
+        new DatasetGenerator(settings(8)).generate(other);
+
+        assertEquals(first.events, second.events);
+        assertNotEquals(first.events, other.events);
+    }
+
+    @Test
+    void testDataset() {
+        RecordingSink sink = new RecordingSink();
+        new DatasetGenerator(settings(42)).generate(sink);
+
+        assertEquals(5000, sink.users.size());
+        assertEquals(2000, sink.films.size());
+        //лайки без повторов, количество лайков фильма совпадает с переданным в фильме
+        Map<Long, Integer> likesCount = new HashMap<>();
+        Set<Long> likes = new HashSet<>();
+        for (long[] like : sink.likes) {
+            assertTrue(like[0] >= 1 && like[0] <= 2000 && like[1] >= 1 && like[1] <= 5000);
+            assertTrue(likes.add(like[0] << 32 | like[1]), "Повторный лайк");
+            likesCount.merge(like[0], 1, Integer::sum);
+        }
+        for (Film film : sink.films) {
+            assertEquals(likesCount.getOrDefault(film.getId(), 0), film.getLikesCount());
+            assertFalse(film.getGenres().isEmpty());
+            assertTrue(film.getGenres().size() <= 3);
+            assertTrue(film.getDescription().length() <= 200);
+            assertTrue(film.getMpa().getId() >= 1 && film.getMpa().getId() <= 5);
+        }
+        //записи о дружбе без повторов и без дружбы с собой
+        Set<Long> friends = new HashSet<>();
+        for (long[] friend : sink.friends) {
+            assertNotEquals(friend[0], friend[1]);
+            assertTrue(friends.add(friend[0] << 32 | friend[1]), "Повторная запись о дружбе");
+        }
+        long mirrored = sink.friends.stream().filter(f -> friends.contains(f[1] << 32 | f[0])).count();
+        assertTrue(mirrored > 0 && mirrored < sink.friends.size(), "Есть подтверждённые дружбы и заявки");
+    }
+
+    //популярность фильмов и количество друзей распределены с тяжёлым хвостом
+    @Test
+    void testDistributions() {
+        RecordingSink sink = new RecordingSink();
+        new DatasetGenerator(settings(42)).generate(sink);
+
+        int[] filmLikes = sink.films.stream().mapToInt(Film::getLikesCount).sorted().toArray();
+        long topLikes = 0;
+        for (int i = filmLikes.length - filmLikes.length / 100; i < filmLikes.length; i++) {
+            topLikes += filmLikes[i];
+        }
+        assertTrue(topLikes * 5 > sink.likes.size(), "1% популярных фильмов собирают больше 20% лайков");
+
+        int[] degrees = new int[5001];
+        for (long[] friend : sink.friends) {
+            degrees[(int) friend[0]]++;
+        }
+        int max = Arrays.stream(degrees).max().orElse(0);
+        double mean = (double) sink.friends.size() / 5000;
+        assertTrue(max > mean * 10, "Есть пользователи с количеством друзей во много раз больше среднего");
+    }
+
+    //CSV-файлы делятся на части, в каждой части строка заголовка
+    @Test
+    void testCsvParts(@TempDir Path directory) throws IOException {
+        Files.writeString(directory.resolve("films_like.9.csv"), "FILM_ID,USER_ID\n1,1\n");
+        RecordingSink sink = new RecordingSink();
+        try (CsvDatasetWriter writer = new CsvDatasetWriter(directory, 1000)) {
+            DatasetGenerator generator = new DatasetGenerator(settings(42));
+            generator.generate(writer);
+            generator.generate(sink);
+        }
+
+        List<Path> likeParts = CsvDatasetWriter.parts(directory, "films_like");
+        assertEquals((sink.likes.size() + 999) / 1000, likeParts.size(), "Части прежнего набора удалены");
+        long rows = 0;
+        for (Path part : likeParts) {
+            List<String> lines = Files.readAllLines(part, StandardCharsets.UTF_8);
+            assertEquals("FILM_ID,USER_ID", lines.get(0));
+            rows += lines.size() - 1;
+        }
+        assertEquals(sink.likes.size(), rows);
+
+        List<String> users = Files.readAllLines(directory.resolve("users.0.csv"), StandardCharsets.UTF_8);
+        User user = sink.users.get(0);
+        assertEquals("1,\"" + user.getEmail() + "\",\"" + user.getLogin() + "\",\"" + user.getName() + "\",\"" +
+                user.getBirthday() + "\"", users.get(1));
+    }
+
+    private static final class RecordingSink implements DatasetSink {
+        private final List<String> events = new ArrayList<>();
+        private final List<User> users = new ArrayList<>();
+        private final List<Film> films = new ArrayList<>();
+        private final List<long[]> likes = new ArrayList<>();
+        private final List<long[]> friends = new ArrayList<>();
+
+        @Override
+        public void user(User user) {
+            users.add(user);
+            events.add(user.toString());
+        }
+
+        @Override
+        public void like(long filmId, long userId) {
+            likes.add(new long[]{filmId, userId});
+            events.add("like " + filmId + " " + userId);
+        }
+
+        @Override
+        public void film(Film film) {
+            films.add(film);
+            events.add(film.toString());
+        }
+
+        @Override
+        public void friend(long userId, long friendId) {
+            friends.add(new long[]{userId, friendId});
+            events.add("friend " + userId + " " + friendId);
+        }
+    }
+}
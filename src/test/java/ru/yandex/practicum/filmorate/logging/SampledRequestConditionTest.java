@@ -0,0 +1,29 @@
+package ru.yandex.practicum.filmorate.logging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SampledRequestConditionTest {
+
+    @Test
+    void testSampleRate() {
+        assertTrue(new SampledRequestCondition(1).test(null), "При доле 1 записываются все запросы.");
+        assertFalse(new SampledRequestCondition(0).test(null), "При доле 0 запросы не записываются.");
+
+        SampledRequestCondition condition = new SampledRequestCondition(0.1);
+        int sampled = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (condition.test(null)) {
+                sampled++;
+            }
+        }
+        assertTrue(sampled > 9_000 && sampled < 11_000, "Записано запросов: " + sampled);
+    }
+
+    @Test
+    void testInvalidSampleRate() {
+        assertThrows(IllegalArgumentException.class, () -> new SampledRequestCondition(-0.5));
+        assertThrows(IllegalArgumentException.class, () -> new SampledRequestCondition(2));
+    }
+}
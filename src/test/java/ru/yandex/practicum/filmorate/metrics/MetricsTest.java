@@ -0,0 +1,127 @@
+package ru.yandex.practicum.filmorate.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exceptions.genre.GenreNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.dao.MpaDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+
+import javax.sql.DataSource;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectProvider<MeterRegistry> registryProvider =
+            new StaticListableBeanFactory(Map.of("meterRegistry", registry)).getBeanProvider(MeterRegistry.class);
+
+    @Test
+    void testDaoTimers() {
+        Object bean = new DaoMetricsPostProcessor(registryProvider)
+                .postProcessAfterInitialization(new InMemoryMpaDao(), "inMemoryMpaDao");
+        assertTrue(bean instanceof InMemoryMpaDao, "Прокси должен оставаться подклассом бина.");
+        MpaDao mpaDao = (MpaDao) bean;
+
+        assertEquals("G", mpaDao.getRating(1).getName());
+        mpaDao.getRating(2);
+        mpaDao.getRatings();
+        assertThrows(GenreNotFoundException.class, () -> mpaDao.getRating(100));
+
+        assertEquals(2, registry.get(DaoMetricsPostProcessor.DAO_TIMER)
+                .tags("dao", "MpaDao", "method", "getRating", "storage", "inMemoryMpaDao", "exception", "none")
+                .timer().count());
+        assertEquals(1, registry.get(DaoMetricsPostProcessor.DAO_TIMER)
+                .tags("method", "getRatings", "exception", "none").timer().count());
+        assertEquals(1, registry.get(DaoMetricsPostProcessor.DAO_TIMER)
+                .tags("method", "getRating", "exception", "GenreNotFoundException").timer().count());
+    }
+
+    @Test
+    void testFilmCardCacheMeters() {
+        FilmCardCache cache = new FilmCardCache(1, 600);
+        cache.bindTo(registry);
+        cache.get(1);
+        cache.put(new Film(1, "Film", "d", null, 100, 0, null, null), cache.stamp());
+        cache.get(1);
+        cache.put(new Film(2, "Film", "d", null, 100, 0, null, null), cache.stamp());
+
+        assertEquals(1, registry.get("cache.gets").tags("cache", "film-cards", "result", "hit")
+                .functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tags("result", "miss").functionCounter().count());
+        assertEquals(1, registry.get("cache.evictions").tags("cause", "size").functionCounter().count());
+        assertEquals(1, registry.get("cache.size").gauge().value());
+    }
+
+    @Test
+    void testSqlCounters() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SqlMetricsDataSource(dataSource(3), registryProvider));
+
+        //вне HTTP-запроса учитываются только общие счётчики
+        jdbcTemplate.query("SELECT 1", (rs, rowNum) -> rowNum);
+
+        SqlCounters counters = SqlCounters.start();
+        try {
+            assertEquals(3, jdbcTemplate.query("SELECT 1", (rs, rowNum) -> rowNum).size());
+            jdbcTemplate.query("SELECT 2", (rs, rowNum) -> rowNum);
+            jdbcTemplate.update("UPDATE films SET name = 'film'");
+        } finally {
+            SqlCounters.finish();
+        }
+        assertNull(SqlCounters.current());
+
+        assertEquals(3, counters.statements);
+        assertEquals(6, counters.rows);
+        assertEquals(4, registry.get(SqlMetricsDataSource.STATEMENTS_COUNTER).counter().count());
+        assertEquals(9, registry.get(SqlMetricsDataSource.ROWS_COUNTER).counter().count());
+    }
+
+    //источник данных, каждый запрос которого возвращает rows строк
+    private static DataSource dataSource(int rows) {
+        return stub(DataSource.class, (name, args) -> name.equals("getConnection")
+                ? stub(Connection.class, (connectionMethod, connectionArgs) -> connectionMethod.endsWith("Statement")
+                ? stub(PreparedStatement.class, (statementMethod, statementArgs) -> {
+                    if (statementMethod.equals("executeQuery")) {
+                        int[] left = {rows};
+                        return stub(ResultSet.class, (resultMethod, resultArgs) ->
+                                resultMethod.equals("next") ? left[0]-- > 0 : null);
+                    }
+                    return statementMethod.equals("executeUpdate") ? 1 : null;
+                })
+                : null)
+                : null);
+    }
+
+    private interface Answer {
+        Object answer(String method, Object[] args);
+    }
+
+    //заглушка интерфейса: незаданные методы возвращают значение по умолчанию для своего типа
+    private static <T> T stub(Class<T> type, Answer answer) {
+        return type.cast(Proxy.newProxyInstance(MetricsTest.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = answer.answer(method.getName(), args);
+                    if (result != null || !method.getReturnType().isPrimitive()) {
+                        return result;
+                    }
+                    Class<?> returnType = method.getReturnType();
+                    if (returnType == boolean.class) {
+                        return false;
+                    }
+                    if (returnType == long.class) {
+                        return 0L;
+                    }
+                    return returnType == void.class ? null : 0;
+                }));
+    }
+}
@@ -0,0 +1,46 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EntityVersionsTest {
+
+    @Test
+    void testTagChangesWithEntity() {
+        EntityVersions versions = new EntityVersions();
+        String filmTag = versions.getFilmTag(1);
+        String otherFilmTag = versions.getFilmTag(2);
+        String userTag = versions.getUserTag(1);
+        assertTrue(filmTag.startsWith("\"") && filmTag.endsWith("\""), "ETag должен быть в кавычках: " + filmTag);
+        assertEquals(filmTag, versions.getFilmTag(1), "ETag без изменений не должен меняться.");
+
+        versions.filmChanged(1);
+        assertNotEquals(filmTag, versions.getFilmTag(1), "ETag не изменился после изменения фильма.");
+        assertEquals(otherFilmTag, versions.getFilmTag(2), "Изменение фильма поменяло ETag соседнего фильма.");
+        assertEquals(userTag, versions.getUserTag(1), "Изменение фильма поменяло ETag пользователя.");
+
+        versions.userChanged(1);
+        assertNotEquals(userTag, versions.getUserTag(1), "ETag не изменился после изменения пользователя.");
+        assertNotEquals(versions.getFilmTag(1), versions.getUserTag(1));
+
+        String changedFilmTag = versions.getFilmTag(1);
+        versions.allFilmsChanged();
+        assertNotEquals(changedFilmTag, versions.getFilmTag(1));
+        assertNotEquals(otherFilmTag, versions.getFilmTag(2), "ETag фильмов не изменились после изменения всех.");
+    }
+
+    @Test
+    void testSharedSlotNeverRepeatsTag() {
+        //фильмы 1 и 1 + 2^16 делят счётчик: изменение любого из них меняет ETag обоих, прежний ETag не возвращается
+        EntityVersions versions = new EntityVersions();
+        long neighbour = 1 + (1 << 16);
+        String tag = versions.getFilmTag(1);
+        versions.filmChanged(neighbour);
+        String changedTag = versions.getFilmTag(1);
+        assertNotEquals(tag, changedTag);
+        versions.filmChanged(1);
+        assertNotEquals(tag, versions.getFilmTag(1));
+        assertNotEquals(changedTag, versions.getFilmTag(1));
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmImportResult;
+import ru.yandex.practicum.filmorate.model.FilmsImportReport;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryGenreDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmImportServiceTest {
+
+    @Test
+    void testImportFilms() throws IOException {
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        InMemoryGenreDao genreDao = new InMemoryGenreDao();
+        InMemoryMpaDao mpaDao = new InMemoryMpaDao();
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(filmLikeDao, genreDao, mpaDao);
+        PopularFilmsLeaderboard leaderboard = new PopularFilmsLeaderboard(filmLikeDao);
+        leaderboard.rebuild();
+        FilmImportService importService = new FilmImportService(filmStorage, mpaDao, genreDao, leaderboard,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules(), 2);
+
+        String body = String.join("\n",
+                "{\"name\":\"Film 1\",\"description\":\"d\",\"releaseDate\":\"2000-01-01\",\"duration\":100," +
+                        "\"mpa\":{\"id\":1},\"genres\":[{\"id\":1},{\"id\":2}]}",
+                "",
+                "{\"name\":\"broken\"",
+                "{\"name\":\"\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}}",
+                "{\"name\":\"Film 5\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":99}}",
+                "{\"name\":\"Film 6\",\"releaseDate\":\"2001-01-01\",\"duration\":90,\"mpa\":{\"id\":2}}",
+                "{\"name\":\"Film 7\",\"releaseDate\":\"2002-01-01\",\"duration\":80,\"mpa\":{\"id\":3}," +
+                        "\"genres\":[{\"id\":6}]}");
+        FilmsImportReport report = importService.importFilms(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(6, report.getTotal(), "Количество строк не совпадает.");
+        assertEquals(3, report.getImported(), "Количество добавленных фильмов не совпадает.");
+        assertEquals(3, report.getFailed(), "Количество ошибок не совпадает.");
+        List<Integer> lines = report.getResults().stream().map(FilmImportResult::getLine).collect(Collectors.toList());
+        assertEquals(List.of(1, 3, 4, 5, 6, 7), lines, "Результаты должны идти в порядке строк.");
+        List<Integer> importedLines = report.getResults().stream()
+                .filter(FilmImportResult::isImported)
+                .map(FilmImportResult::getLine)
+                .collect(Collectors.toList());
+        assertEquals(List.of(1, 6, 7), importedLines, "Добавлены фильмы не из тех строк.");
+
+        assertEquals(3, filmStorage.getFilms().size(), "Количество фильмов в хранилище не совпадает.");
+        assertEquals(2, filmStorage.getFilm(report.getResults().get(0).getFilmId()).getGenres().size());
+        assertEquals(3, leaderboard.getPopularFilms(10).size(), "Добавленные фильмы должны попасть в рейтинг.");
+    }
+
+    @Test
+    void testWriteErrorIsNotExposed() throws IOException {
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        InMemoryGenreDao genreDao = new InMemoryGenreDao();
+        InMemoryMpaDao mpaDao = new InMemoryMpaDao();
+        //хранилище падает с текстом, похожим на исключение H2 с SQL и именем ограничения
+        InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(filmLikeDao, genreDao, mpaDao) {
+            @Override
+            public List<Film> addFilms(List<Film> films) {
+                throw new DataIntegrityViolationException("PreparedStatementCallback; SQL [INSERT INTO films...]; " +
+                        "Referential integrity constraint violation: CONSTRAINT_3F: PUBLIC.FILMS FOREIGN KEY");
+            }
+        };
+        PopularFilmsLeaderboard leaderboard = new PopularFilmsLeaderboard(filmLikeDao);
+        leaderboard.rebuild();
+        FilmImportService importService = new FilmImportService(filmStorage, mpaDao, genreDao, leaderboard,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ObjectMapper().findAndRegisterModules(), 2);
+
+        String body = "{\"name\":\"Film 1\",\"releaseDate\":\"2000-01-01\",\"duration\":100,\"mpa\":{\"id\":1}}";
+        FilmsImportReport report = importService.importFilms(
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals(1, report.getFailed(), "Фильм не должен быть добавлен.");
+        assertEquals(FilmImportService.WRITE_ERROR, report.getResults().get(0).getError(),
+                "Клиенту должна возвращаться общая причина без текста исключения БД.");
+    }
+}
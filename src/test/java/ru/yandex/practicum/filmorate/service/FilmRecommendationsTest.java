@@ -0,0 +1,93 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinTask;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmRecommendationsTest {
+    private static final int FILMS = 60;
+    private static final int USERS = 80;
+
+    //соседи, обновлённые по отдельным лайкам, дают те же рекомендации, что и построенные заново по всем лайкам
+    @Test
+    void testIncrementalUpdatesMatchRebuild() {
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        //списки соседей длиннее количества фильмов: они не бывают полными и обновляются по лайкам точно
+        FilmRecommendations recommendations = new FilmRecommendations(filmLikeDao, FILMS, 1);
+        recommendations.rebuild();
+        Random random = new Random(11);
+        for (int i = 0; i < 4000; i++) {
+            int userId = 1 + random.nextInt(USERS);
+            //пользователи лайкают в основном фильмы рядом со своим id, чтобы у фильмов были общие лайки
+            int filmId = 1 + Math.floorMod(userId * FILMS / USERS + random.nextInt(15) - 7, FILMS);
+            if (filmLikeDao.isLiked(filmId, userId)) {
+                filmLikeDao.deleteLike(filmId, userId);
+                recommendations.deleteLike(filmId, userId);
+            } else {
+                filmLikeDao.addLike(filmId, userId);
+                recommendations.addLike(filmId, userId);
+            }
+            if (i % 50 == 0) {
+                //рекомендации считают соседей фильмов пользователя, дальше эти соседи обновляются по лайкам
+                recommendations.recommend(userId, 10);
+            }
+        }
+        refresh(recommendations);
+
+        FilmRecommendations rebuilt = new FilmRecommendations(filmLikeDao, FILMS, 1);
+        rebuilt.rebuild();
+        for (int userId = 1; userId <= USERS; userId++) {
+            assertArrayEquals(rebuilt.recommend(userId, 20), recommendations.recommend(userId, 20),
+                    "Рекомендации пользователя " + userId);
+        }
+        recommendations.shutdown();
+        rebuilt.shutdown();
+    }
+
+    @Test
+    void testRecommendations() {
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        filmLikeDao.addLike(1, 1);
+        filmLikeDao.addLike(2, 1);
+        filmLikeDao.addLike(3, 1);
+        filmLikeDao.addLike(1, 2);
+        filmLikeDao.addLike(2, 2);
+        filmLikeDao.addLike(1, 3);
+        //для фильма хранится только один похожий фильм
+        FilmRecommendations recommendations = new FilmRecommendations(filmLikeDao, 1, 1);
+        recommendations.rebuild();
+
+        //фильм 2 лайкнули оба пользователя с лайком фильма 1, фильм 3 - только один
+        assertArrayEquals(new int[]{2}, recommendations.recommend(3, 10));
+        assertArrayEquals(new int[0], recommendations.recommend(1, 10), "Все фильмы уже отмечены пользователем.");
+        assertArrayEquals(new int[0], recommendations.recommend(4, 10), "У пользователя нет лайков.");
+
+        //после снятия лайков фильм 2 больше не похож на фильм 1; фильм 3 был за пределами полного списка соседей
+        //и появляется в нём после пересчёта
+        recommendations.deleteLike(2, 1);
+        recommendations.deleteLike(2, 2);
+        assertArrayEquals(new int[0], recommendations.recommend(3, 10));
+        refresh(recommendations);
+        assertArrayEquals(new int[]{3}, recommendations.recommend(3, 10));
+
+        //новый лайк сразу меняет соседей фильма
+        recommendations.addLike(2, 1);
+        recommendations.addLike(2, 2);
+        assertArrayEquals(new int[]{2}, recommendations.recommend(3, 10));
+        recommendations.removeFilm(2);
+        assertArrayEquals(new int[0], recommendations.recommend(3, 10));
+        recommendations.shutdown();
+    }
+
+    //ждём окончания пересчёта устаревших соседей
+    private static void refresh(FilmRecommendations recommendations) {
+        ForkJoinTask<?> refresh = recommendations.submitRefresh();
+        if (refresh != null) {
+            refresh.join();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendSuggestionsTest {
+
+    //рекомендации совпадают с наивным подсчётом друзей друзей
+    @Test
+    void testSuggestionsMatchNaiveCount() {
+        int users = 300;
+        FriendsGraph graph = graph(users);
+        Random random = new Random(7);
+        for (int i = 0; i < users * 8; i++) {
+            int userId = 1 + random.nextInt(users);
+            //дружба в основном между соседними id, чтобы у пользователей были общие друзья
+            int friendId = 1 + Math.floorMod(userId + random.nextInt(41) - 20, users);
+            if (userId != friendId) {
+                graph.addFriend(userId, friendId);
+            }
+        }
+        FriendSuggestions suggestions = new FriendSuggestions(graph, 0);
+        for (int userId = 1; userId <= users; userId++) {
+            assertArrayEquals(naiveSuggestions(graph, userId, 15), suggestions.suggest(userId, 15),
+                    "Рекомендации пользователя " + userId);
+        }
+    }
+
+    @Test
+    void testCacheFollowsFriendChanges() {
+        FriendsGraph graph = graph(5);
+        graph.addFriend(1, 2);
+        graph.addFriend(2, 3);
+        FriendSuggestions suggestions = new FriendSuggestions(graph, 100);
+
+        int[] first = suggestions.suggest(1, 10);
+        assertArrayEquals(new int[]{3}, first);
+        assertSame(first, suggestions.suggest(1, 10), "Рекомендации должны браться из кэша.");
+        //изменилась дружба друга - рекомендации пересчитываются
+        graph.addFriend(2, 4);
+        assertArrayEquals(new int[]{3, 4}, suggestions.suggest(1, 10));
+        assertArrayEquals(new int[]{3}, suggestions.suggest(1, 1));
+        //изменилась дружба самого пользователя
+        graph.addFriend(1, 3);
+        assertArrayEquals(new int[]{4}, suggestions.suggest(1, 10));
+        assertArrayEquals(new int[0], suggestions.suggest(5, 10));
+    }
+
+    private static FriendsGraph graph(int users) {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        for (int i = 1; i <= users; i++) {
+            userStorage.addUser(new User(0, "user" + i + "@mail.ru", "user" + i, "User " + i, LocalDate.of(1990, 1, 1)));
+        }
+        FriendsGraph graph = new FriendsGraph(new InMemoryFriendsStorage(userStorage));
+        graph.rebuild();
+        return graph;
+    }
+
+    private static int[] naiveSuggestions(FriendsGraph graph, int userId, int limit) {
+        int[] friends = graph.getFriends(userId);
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int friendId : friends) {
+            for (int candidate : graph.getFriends(friendId)) {
+                if (candidate != userId && Arrays.binarySearch(friends, candidate) < 0) {
+                    counts.merge(candidate, 1, Integer::sum);
+                }
+            }
+        }
+        return counts.entrySet().stream()
+                .sorted(Comparator.comparing(Map.Entry<Integer, Integer>::getValue).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .mapToInt(Map.Entry::getKey)
+                .toArray();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FriendsGraphTest {
+
+    @Test
+    void testAddAndDeleteFriends() {
+        InMemoryUserStorage userStorage = new InMemoryUserStorage();
+        for (int i = 1; i <= 4; i++) {
+            userStorage.addUser(new User(0, "user" + i + "@mail.ru", "user" + i, "User " + i, LocalDate.of(1990, 1, i)));
+        }
+        InMemoryFriendsStorage friendsDao = new InMemoryFriendsStorage(userStorage);
+        friendsDao.addFriend(1, 3);
+        friendsDao.addFriend(1, 2);
+        friendsDao.addFriend(2, 3);
+        FriendsGraph graph = new FriendsGraph(friendsDao);
+        graph.rebuild();
+
+        //граф строится по хранилищу
+        assertArrayEquals(new int[]{2, 3}, graph.getFriends(1));
+        assertArrayEquals(new int[]{3}, graph.getCommonFriends(1, 2));
+        assertArrayEquals(new int[0], graph.getFriends(4));
+
+        //изменения записываются и в хранилище, и в граф
+        graph.addFriend(4, 3);
+        graph.addFriend(2, 1);
+        assertArrayEquals(new int[]{3}, graph.getFriends(4));
+        assertEquals(1, friendsDao.getFriends(4).size());
+        assertArrayEquals(new int[]{1, 3}, graph.getFriends(2));
+
+        //после удаления подтверждённой дружбы второй пользователь остаётся в неподтверждённой дружбе
+        graph.deleteFriend(1, 2);
+        assertArrayEquals(new int[]{3}, graph.getFriends(1));
+        assertArrayEquals(new int[]{1, 3}, graph.getFriends(2));
+        assertTrue(friendsDao.getFriends(1).stream().noneMatch(u -> u.getId() == 2));
+        assertArrayEquals(new int[]{3}, graph.getCommonFriends(1, 4));
+
+        //удаление пользователя, который сам не добавлял в друзья, не меняет список друзей второго
+        graph.deleteFriend(3, 4);
+        assertArrayEquals(new int[]{3}, graph.getFriends(4));
+        assertEquals(1, friendsDao.getFriends(4).size());
+    }
+}
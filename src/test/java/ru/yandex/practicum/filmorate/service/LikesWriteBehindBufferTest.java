@@ -0,0 +1,291 @@
+package ru.yandex.practicum.filmorate.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.exceptions.film.LikesBufferFullException;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LikesWriteBehindBufferTest {
+
+    @Test
+    void testCoalescingAndReadYourWrites() {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard(filmLikeDao),
+                recommendations(filmLikeDao), new SimpleMeterRegistry(), true, 1000, 1000);
+
+        //лайк и снятие лайка до записи сокращаются
+        buffer.addLike(1, 1);
+        buffer.deleteLike(1, 1);
+        assertEquals(0, buffer.getPendingSize(), "Лайк и снятие лайка должны сократиться.");
+        assertEquals(0, buffer.getPendingLikes(1));
+
+        //лайк виден до записи в БД
+        buffer.addLike(1, 1);
+        assertFalse(filmLikeDao.isLiked(1, 1), "Лайк не должен быть записан до flush.");
+        assertEquals(1, buffer.getPendingLikes(1));
+        assertThrows(FilmNotFoundException.class, () -> buffer.addLike(1, 1));
+        buffer.flush();
+        assertTrue(filmLikeDao.isLiked(1, 1), "Лайк должен быть записан после flush.");
+        assertEquals(0, buffer.getPendingLikes(1));
+
+        //повторный лайк проверяется по БД, снятие лайка ждёт записи
+        assertThrows(FilmNotFoundException.class, () -> buffer.addLike(1, 1));
+        buffer.deleteLike(1, 1);
+        assertEquals(-1, buffer.getPendingLikes(1));
+        assertThrows(FilmNotFoundException.class, () -> buffer.deleteLike(1, 1));
+        buffer.flush();
+        assertFalse(filmLikeDao.isLiked(1, 1), "Лайк должен быть удалён после flush.");
+    }
+
+    //лайк, нарушающий ограничения БД, отбрасывается, а рейтинг и рекомендации возвращаются к состоянию в БД
+    @Test
+    void testFailedLikeIsDropped() {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        filmLikeDao.failingUser = 13;
+        filmLikeDao.addLike(2, 1);
+        PopularFilmsLeaderboard leaderboard = leaderboard(filmLikeDao);
+        FilmRecommendations recommendations = recommendations(filmLikeDao);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard, recommendations,
+                registry, true, 1000, 1000);
+
+        buffer.addLike(1, 1);
+        leaderboard.addLike(1);
+        recommendations.addLike(1, 1);
+        buffer.addLike(1, 13);
+        leaderboard.addLike(1);
+        recommendations.addLike(1, 13);
+        //пока лайк не отброшен, пользователю 13 рекомендуется фильм 2, который лайкнул и пользователь 1
+        assertArrayEquals(new int[]{2}, recommendations.recommend(13, 10));
+        buffer.flush();
+
+        assertTrue(filmLikeDao.isLiked(1, 1));
+        assertFalse(filmLikeDao.isLiked(1, 13));
+        assertEquals(1, leaderboard.getLikes(1), "Незаписанный лайк должен быть убран из рейтинга.");
+        assertArrayEquals(new int[0], recommendations.recommend(13, 10),
+                "Незаписанный лайк должен быть убран из матрицы рекомендаций.");
+        assertEquals(0, buffer.getPendingLikes(1));
+        assertEquals(1, failures(registry, "dropped"), "Отброшенный лайк должен попасть в метрику.");
+        assertEquals(0, failures(registry, "retried"));
+        //пару можно снова лайкнуть
+        buffer.addLike(1, 13);
+        assertEquals(1, buffer.getPendingSize());
+    }
+
+    //при временной ошибке БД лайки возвращаются в буфер и записываются следующей записью
+    @Test
+    void testTransientFailureIsRetried() {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        PopularFilmsLeaderboard leaderboard = leaderboard(filmLikeDao);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard,
+                recommendations(filmLikeDao), registry, true, 1000, 1000);
+
+        buffer.addLike(1, 1);
+        leaderboard.addLike(1);
+        buffer.addLike(1, 2);
+        leaderboard.addLike(1);
+        filmLikeDao.unavailable = true;
+        //пока лайки пользователя 2 записываются, пользователь снимает лайк: изменения сокращаются
+        filmLikeDao.onSave = () -> {
+            buffer.deleteLike(1, 2);
+            leaderboard.deleteLike(1);
+        };
+        buffer.flush();
+        filmLikeDao.onSave = null;
+
+        assertFalse(filmLikeDao.isLiked(1, 1));
+        assertEquals(1, buffer.getPendingSize(), "Незаписанный лайк должен вернуться в буфер.");
+        assertEquals(1, buffer.getPendingLikes(1), "Незаписанный лайк должен учитываться в количестве лайков.");
+        assertEquals(1, leaderboard.getLikes(1), "Лайк, возвращённый в буфер, остаётся в рейтинге.");
+        assertThrows(FilmNotFoundException.class, () -> buffer.addLike(1, 1));
+        assertEquals(2, failures(registry, "retried"), "Возвращённые в буфер лайки должны попасть в метрику.");
+        assertEquals(0, failures(registry, "dropped"));
+
+        filmLikeDao.unavailable = false;
+        buffer.flush();
+        assertTrue(filmLikeDao.isLiked(1, 1), "Лайк должен быть записан повторной записью.");
+        assertFalse(filmLikeDao.isLiked(1, 2));
+        assertEquals(0, buffer.getPendingSize());
+        assertFalse(buffer.hasPendingLikes());
+    }
+
+    //заполненный буфер при недоступной БД не принимает новые лайки
+    @Test
+    void testFullBufferRejectsLikes() throws InterruptedException {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        filmLikeDao.unavailable = true;
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard(filmLikeDao),
+                recommendations(filmLikeDao), registry, true, 2, 2);
+
+        buffer.addLike(1, 1);
+        buffer.addLike(1, 2);
+        //ждём, пока фоновая запись, запущенная по batch-size, вернёт лайки в буфер
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while ((failures(registry, "retried") < 2 || buffer.getPendingSize() < 2) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, failures(registry, "retried"));
+
+        LikesBufferFullException full = assertThrows(LikesBufferFullException.class, () -> buffer.addLike(1, 3));
+        assertTrue(full.getRetryAfterSeconds() >= 1, "Повтор лайка - не раньше следующей попытки записи.");
+        assertEquals(2, buffer.getPendingSize(), "Буфер не должен расти сверх max-pending.");
+        //снятие лайка из буфера места не занимает
+        buffer.deleteLike(1, 2);
+        assertEquals(1, buffer.getPendingSize());
+    }
+
+    //запись буфера между чтением количества лайков из БД и из буфера не должна учитывать лайк дважды
+    @Test
+    void testReadDuringFlush() throws Exception {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard(filmLikeDao),
+                recommendations(filmLikeDao), new SimpleMeterRegistry(), true, 1000, 1000);
+        buffer.addLike(1, 1);
+
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        filmLikeDao.afterSave = () -> {
+            committed.countDown();
+            awaitQuietly(release);
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> flush = executor.submit(buffer::flush);
+            assertTrue(committed.await(10, TimeUnit.SECONDS));
+            //лайк уже в БД, но ещё в буфере
+            AtomicInteger reads = new AtomicInteger();
+            Future<Integer> likes = executor.submit(() -> buffer.read(() -> {
+                reads.incrementAndGet();
+                return filmLikeDao.getLikesCount(1);
+            }, count -> count + buffer.getPendingLikes(1)));
+            Thread.sleep(100);
+            assertEquals(0, reads.get(), "Во время записи буфера фильмы не должны читаться.");
+            release.countDown();
+            flush.get(10, TimeUnit.SECONDS);
+            assertEquals(1, likes.get(10, TimeUnit.SECONDS), "Лайк не должен учитываться дважды.");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    //много потоков ставят и снимают лайки при маленьком буфере: запись идёт и по порогу, и потоками запросов
+    @Test
+    void testConcurrentLikes() throws InterruptedException {
+        SafeFilmLikeDao filmLikeDao = new SafeFilmLikeDao();
+        LikesWriteBehindBuffer buffer = new LikesWriteBehindBuffer(filmLikeDao, leaderboard(filmLikeDao),
+                recommendations(filmLikeDao), new SimpleMeterRegistry(), true, 50, 200);
+        int threads = 8;
+        int users = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            long filmId = t % 2 + 1;
+            long firstUser = (long) t * users;
+            executor.submit(() -> {
+                for (long userId = firstUser; userId < firstUser + users; userId++) {
+                    buffer.addLike(filmId, userId);
+                    //каждый третий лайк снимаем: часть сократится в буфере, часть будет удалена из БД
+                    if (userId % 3 == 0) {
+                        buffer.deleteLike(filmId, userId);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+        buffer.shutdown();
+
+        assertFalse(buffer.hasPendingLikes(), "После записи не должно остаться незаписанных лайков.");
+        long expected = 0;
+        for (long userId = 0; userId < (long) threads * users; userId++) {
+            long filmId = userId / users % 2 + 1;
+            boolean liked = userId % 3 != 0;
+            assertEquals(liked, filmLikeDao.isLiked(filmId, userId), "Фильм " + filmId + ", пользователь " + userId);
+            if (liked) {
+                expected++;
+            }
+        }
+        assertEquals(expected, filmLikeDao.getLikesCount().values().stream().mapToLong(Long::longValue).sum());
+        assertTrue(filmLikeDao.maxBatch <= 200, "Буфер вырос сверх max-pending: " + filmLikeDao.maxBatch);
+    }
+
+    private static long failures(SimpleMeterRegistry registry, String result) {
+        return (long) registry.get("likes.write-behind.failures").tag("result", result).functionCounter().count();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static FilmRecommendations recommendations(SafeFilmLikeDao filmLikeDao) {
+        FilmRecommendations recommendations = new FilmRecommendations(filmLikeDao, 50, 1);
+        recommendations.rebuild();
+        return recommendations;
+    }
+
+    private static PopularFilmsLeaderboard leaderboard(SafeFilmLikeDao filmLikeDao) {
+        PopularFilmsLeaderboard leaderboard = new PopularFilmsLeaderboard(filmLikeDao);
+        leaderboard.rebuild();
+        return leaderboard;
+    }
+
+    //хранилище лайков в памяти, безопасное для нескольких потоков; лайки пользователя failingUser
+    //нарушают ограничения БД, при unavailable не записывается ничего
+    private static class SafeFilmLikeDao extends InMemoryFilmLikeDao {
+        private volatile long failingUser = -1;
+        private volatile boolean unavailable;
+        private volatile Runnable onSave;
+        private volatile Runnable afterSave;
+        private int maxBatch;
+
+        @Override
+        public synchronized boolean isLiked(long filmId, long userId) {
+            return super.isLiked(filmId, userId);
+        }
+
+        @Override
+        public void saveLikes(Collection<FilmLike> likes, Collection<FilmLike> unlikes) {
+            if (onSave != null) {
+                onSave.run();
+            }
+            synchronized (this) {
+                maxBatch = Math.max(maxBatch, likes.size() + unlikes.size());
+                if (unavailable) {
+                    throw new TransientDataAccessResourceException("Нет соединения с БД.");
+                }
+                if (likes.stream().anyMatch(l -> l.getUserId() == failingUser)) {
+                    throw new DataIntegrityViolationException("Пользователь с id=" + failingUser + " не найден.");
+                }
+                super.saveLikes(likes, unlikes);
+            }
+            if (afterSave != null) {
+                afterSave.run();
+            }
+        }
+
+        @Override
+        public synchronized int getLikesCount(long filmId) {
+            return super.getLikesCount(filmId);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PopularFilmsLeaderboardTest {
+    private static final int FILMS = 200;
+    private static final int WRITERS = 16;
+    private static final int OPERATIONS = 20_000;
+
+    @Test
+    void testRebuildFromLikes() {
+        InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+        filmLikeDao.addLike(1, 1);
+        filmLikeDao.addLike(2, 1);
+        filmLikeDao.addLike(2, 2);
+        filmLikeDao.addLike(3, 1);
+        PopularFilmsLeaderboard leaderboard = new PopularFilmsLeaderboard(filmLikeDao);
+        leaderboard.rebuild();
+
+        assertEquals(List.of(2L, 1L, 3L), leaderboard.getPopularFilms(10));
+        assertEquals(List.of(2L), leaderboard.getPopularFilms(1));
+
+        leaderboard.addFilm(4);
+        leaderboard.addLike(3);
+        leaderboard.addLike(3);
+        leaderboard.deleteLike(2);
+        assertEquals(List.of(3L, 1L, 2L, 4L), leaderboard.getPopularFilms(10));
+
+        leaderboard.removeFilm(3);
+        leaderboard.deleteLike(4);
+        assertEquals(0, leaderboard.getLikes(4));
+        assertEquals(List.of(1L, 2L, 4L), leaderboard.getPopularFilms(10));
+    }
+
+    //писатели одновременно ставят и снимают лайки, читатель всё это время запрашивает популярные фильмы
+    //в итоге количество лайков и порядок фильмов должны совпасть с подсчётом по операциям
+    @Test
+    void testConcurrentLikesAndReads() throws InterruptedException {
+        PopularFilmsLeaderboard leaderboard = new PopularFilmsLeaderboard(new InMemoryFilmLikeDao());
+        leaderboard.rebuild();
+        for (long filmId = 1; filmId <= FILMS; filmId++) {
+            leaderboard.addFilm(filmId);
+        }
+        AtomicLongArray expected = new AtomicLongArray(FILMS + 1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        ConcurrentLinkedQueue<String> errors = new ConcurrentLinkedQueue<>();
+
+        Thread reader = new Thread(() -> {
+            while (writing.get()) {
+                List<Long> top = leaderboard.getPopularFilms(10);
+                if (top.size() != 10 || new HashSet<>(top).size() != top.size()) {
+                    errors.add("Некорректный список популярных фильмов: " + top);
+                }
+            }
+        });
+        reader.start();
+
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int w = 0; w < WRITERS; w++) {
+            long seed = w;
+            writers.submit(() -> {
+                Random random = new Random(seed);
+                //id фильмов, которым этот писатель поставил ещё не снятые лайки
+                List<Long> liked = new ArrayList<>();
+                start.await();
+                for (int i = 0; i < OPERATIONS; i++) {
+                    if (!liked.isEmpty() && random.nextInt(3) == 0) {
+                        long filmId = liked.remove(random.nextInt(liked.size()));
+                        leaderboard.deleteLike(filmId);
+                        expected.decrementAndGet((int) filmId);
+                    } else {
+                        //перекос к первым фильмам, чтобы у лидеров было много одновременных изменений
+                        long filmId = 1 + (long) (FILMS * Math.pow(random.nextDouble(), 3));
+                        liked.add(filmId);
+                        leaderboard.addLike(filmId);
+                        expected.incrementAndGet((int) filmId);
+                    }
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        writers.shutdown();
+        assertTrue(writers.awaitTermination(1, TimeUnit.MINUTES));
+        writing.set(false);
+        reader.join();
+
+        assertTrue(errors.isEmpty(), () -> errors.peek());
+        for (int filmId = 1; filmId <= FILMS; filmId++) {
+            assertEquals(expected.get(filmId), leaderboard.getLikes(filmId), "Фильм с id=" + filmId);
+        }
+        List<Long> expectedOrder = LongStream.rangeClosed(1, FILMS).boxed()
+                .sorted(Comparator.<Long>comparingLong(id -> -expected.get(id.intValue()))
+                        .thenComparingLong(id -> id))
+                .collect(Collectors.toList());
+        assertEquals(expectedOrder, leaderboard.getPopularFilms(FILMS));
+        Set<Long> all = new HashSet<>(leaderboard.getPopularFilms(FILMS * 2));
+        assertEquals(FILMS, all.size());
+    }
+}
@@ -0,0 +1,59 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SortedIdListsTest {
+
+    @Test
+    void testAddAndRemove() {
+        SortedIdLists lists = new SortedIdLists();
+        assertTrue(lists.add(3, 7));
+        assertTrue(lists.add(3, 2));
+        assertFalse(lists.add(3, 7), "Повторное значение не добавляется.");
+        int[] before = lists.get(3);
+        assertArrayEquals(new int[]{2, 7}, before);
+        assertEquals(7, lists.getMaxId(), "Место должно быть и для id значений.");
+
+        //при изменении массив списка заменяется, прежний массив у читателя не меняется
+        assertTrue(lists.remove(3, 2));
+        assertFalse(lists.remove(3, 2));
+        assertArrayEquals(new int[]{2, 7}, before);
+        assertArrayEquals(new int[]{7}, lists.get(3));
+        assertArrayEquals(new int[0], lists.get(100));
+        assertTrue(lists.contains(3, 7));
+
+        SortedIdLists.Builder builder = new SortedIdLists.Builder();
+        builder.add(1, 5);
+        builder.add(1, 2);
+        builder.add(1, 5);
+        lists.load(builder);
+        assertArrayEquals(new int[]{2, 5}, lists.get(1));
+        assertArrayEquals(new int[0], lists.get(3));
+        assertEquals(2, lists.size());
+    }
+
+    //пересечение слиянием и галопирующим поиском совпадает с наивным
+    @Test
+    void testIntersect() {
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            int[] a = randomSortedIds(random, random.nextInt(40), 2000);
+            int[] b = randomSortedIds(random, random.nextInt(2000), 2000);
+            int[] expected = Arrays.stream(a).filter(id -> Arrays.binarySearch(b, id) >= 0).toArray();
+            assertArrayEquals(expected, SortedIdLists.intersect(a, b));
+            assertArrayEquals(expected, SortedIdLists.intersect(b, a));
+        }
+        assertArrayEquals(new int[0], SortedIdLists.intersect(new int[0], new int[]{1, 2}));
+        assertArrayEquals(new int[]{5}, SortedIdLists.intersect(new int[]{5}, IntStream.rangeClosed(1, 100).toArray()));
+    }
+
+    private static int[] randomSortedIds(Random random, int size, int maxId) {
+        return random.ints(size, 1, maxId).distinct().sorted().toArray();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdSetsTest {
+
+    @Test
+    void testMatchesHashSets() {
+        IdSets sets = new IdSets();
+        Map<Long, Set<Long>> expected = new HashMap<>();
+        Random random = new Random(42);
+        //небольшой диапазон значений, чтобы добавления и удаления часто попадали в одни и те же цепочки
+        for (int i = 0; i < 200_000; i++) {
+            long id = 1 + random.nextInt(50) * 1000L;
+            long value = 1 + random.nextInt(300);
+            Set<Long> values = expected.computeIfAbsent(id, k -> new HashSet<>());
+            if (random.nextInt(3) == 0) {
+                assertEquals(values.remove(value), sets.remove(id, value), "remove(" + id + ", " + value + ")");
+            } else {
+                assertEquals(values.add(value), sets.add(id, value), "add(" + id + ", " + value + ")");
+            }
+        }
+
+        Map<Long, Set<Long>> actual = new HashMap<>();
+        sets.forEach((id, value) -> assertTrue(actual.computeIfAbsent(id, k -> new HashSet<>()).add(value)));
+        expected.values().removeIf(Set::isEmpty);
+        assertEquals(expected, actual, "Перебор пар не совпадает с множествами.");
+        for (Map.Entry<Long, Set<Long>> entry : expected.entrySet()) {
+            long id = entry.getKey();
+            assertEquals(entry.getValue().size(), sets.size(id));
+            long[] values = entry.getValue().stream().mapToLong(Long::longValue).sorted().toArray();
+            assertArrayEquals(values, Arrays.stream(sets.get(id)).asLongStream().toArray(),
+                    "Значения возвращаются по возрастанию.");
+            for (long value = 1; value <= 300; value++) {
+                assertEquals(entry.getValue().contains(value), sets.contains(id, value));
+            }
+        }
+    }
+
+    @Test
+    void testRemoveAllAndBounds() {
+        IdSets sets = new IdSets();
+        for (long value = 1; value <= 100; value++) {
+            sets.add(5_000_000, value);
+        }
+        assertEquals(100, sets.size(5_000_000));
+        //массив множества уменьшается, когда в нём остаётся мало значений
+        long bytes = sets.getMemoryBytes();
+        for (long value = 1; value <= 99; value++) {
+            assertTrue(sets.remove(5_000_000, value));
+        }
+        assertTrue(sets.getMemoryBytes() < bytes, "Массив множества не уменьшился после удалений.");
+        assertArrayEquals(new int[]{100}, sets.get(5_000_000));
+
+        assertTrue(sets.removeAll(5_000_000));
+        assertFalse(sets.removeAll(5_000_000));
+        assertEquals(0, sets.size(5_000_000));
+        assertFalse(sets.contains(5_000_000, 100));
+
+        //id вне int и неположительные id не хранятся
+        assertFalse(sets.contains(-1, 1));
+        assertFalse(sets.remove(1L << 40, 1));
+        assertArrayEquals(new int[0], sets.get(0));
+        assertThrows(IllegalArgumentException.class, () -> sets.add(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> sets.add(1, 1L << 40));
+    }
+}
@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryGenreDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+import ru.yandex.practicum.filmorate.storage.journal.JournalRecord;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//хранилища в памяти под одновременными запросами из нескольких потоков
+class InMemoryStorageConcurrencyTest {
+    private static final int THREADS = 8;
+
+    private final InMemoryUserStorage userStorage = new InMemoryUserStorage();
+    private final InMemoryFriendsStorage friendsStorage = new InMemoryFriendsStorage(userStorage);
+    private final InMemoryFilmLikeDao filmLikeDao = new InMemoryFilmLikeDao();
+    private final InMemoryGenreDao genreDao = new InMemoryGenreDao();
+    private final InMemoryFilmStorage filmStorage = new InMemoryFilmStorage(filmLikeDao, genreDao, new InMemoryMpaDao());
+
+    @Test
+    void testAddUsers() throws Exception {
+        Set<Long> ids = ConcurrentHashMap.newKeySet();
+        runConcurrently(thread -> {
+            for (int i = 0; i < 1000; i++) {
+                ids.add(userStorage.addUser(user(thread * 1000 + i)).getId());
+            }
+        });
+
+        assertEquals(THREADS * 1000, ids.size(), "Пользователям выданы повторяющиеся id.");
+        assertEquals(THREADS * 1000, userStorage.getUsers().size(), "Количество пользователей не совпадает.");
+        assertEquals(THREADS * 1000L, Collections.max(ids), "id пользователей должны идти подряд.");
+    }
+
+    @Test
+    void testLikesAndFriends() throws Exception {
+        for (int i = 1; i <= THREADS * 100; i++) {
+            userStorage.addUser(user(i));
+        }
+        Film film = filmStorage.addFilm(film(List.of(1)));
+
+        //каждый поток ставит лайки и добавляет в друзья своих пользователей, повторяя каждый запрос дважды
+        runConcurrently(thread -> {
+            for (int repeat = 0; repeat < 2; repeat++) {
+                for (long userId = thread * 100 + 1; userId <= thread * 100 + 100; userId++) {
+                    filmLikeDao.addLike(film.getId(), userId);
+                    friendsStorage.addFriend(1, userId);
+                }
+            }
+        });
+
+        assertEquals(THREADS * 100, filmStorage.getFilm(film.getId()).getLikesCount(),
+                "Количество лайков не совпадает.");
+        assertEquals(THREADS * 100L, filmLikeDao.getLikesCount().get(film.getId()));
+        List<Long> friendIds = friendsStorage.getFriends(1).stream().map(User::getId).collect(Collectors.toList());
+        assertEquals(THREADS * 100, friendIds.size(), "Количество друзей не совпадает.");
+        assertEquals(1L, friendIds.get(0), "Друзья возвращаются в порядке id.");
+
+        //потоки удаляют половину лайков
+        runConcurrently(thread -> {
+            for (long userId = thread * 100 + 1; userId <= thread * 100 + 50; userId++) {
+                filmLikeDao.deleteLike(film.getId(), userId);
+            }
+        });
+        assertEquals(THREADS * 50, filmStorage.getFilm(film.getId()).getLikesCount());
+        assertEquals(film.getId(), filmStorage.getPopularFilms(1).get(0).getId());
+    }
+
+    @Test
+    void testDeleteFilmWithConcurrentLikes() throws Exception {
+        Film film = filmStorage.addFilm(film(List.of(1, 2)));
+        CountDownLatch liked = new CountDownLatch(THREADS - 1);
+
+        //потоки ставят лайки, пока последний поток удаляет фильм
+        runConcurrently(thread -> {
+            if (thread == THREADS - 1) {
+                awaitQuietly(liked);
+                filmStorage.deleteFilm(film.getId());
+                return;
+            }
+            for (long userId = 1; userId <= 10_000; userId++) {
+                try {
+                    filmLikeDao.addLike(film.getId(), thread * 10_000 + userId);
+                } catch (FilmNotFoundException e) {
+                    break;
+                }
+                if (userId == 100) {
+                    liked.countDown();
+                }
+            }
+        });
+
+        //лайки удалённого фильма не остаются ни в хранилище, ни в подсчёте, как при каскадном удалении
+        assertThrows(FilmNotFoundException.class, () -> filmStorage.getFilm(film.getId()));
+        assertFalse(filmLikeDao.getLikesCount().containsKey(film.getId()), "Лайки удалённого фильма остались.");
+        assertThrows(FilmNotFoundException.class, () -> filmLikeDao.addLike(film.getId(), 1));
+        assertThrows(FilmNotFoundException.class, () -> genreDao.getGengesFilm(film.getId()));
+        assertThrows(FilmNotFoundException.class, () -> filmStorage.deleteFilm(film.getId()));
+        //удалённый фильм не запоминается: в снимке лайков нет записей об удалённых фильмах
+        List<JournalRecord> records = new ArrayList<>();
+        filmLikeDao.snapshot(records::add);
+        assertTrue(records.stream().allMatch(record -> record.getType() == JournalRecord.FILM_LIKES),
+                "Удалённые фильмы не должны храниться в хранилище лайков.");
+    }
+
+    @Test
+    void testPopularFilms() throws Exception {
+        List<Long> filmIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            filmIds.add(filmStorage.addFilm(film(List.of(1))).getId());
+        }
+
+        //поток ставит фильму с номером потока thread * 10 лайков и убирает половину
+        runConcurrently(thread -> {
+            long filmId = filmIds.get(thread);
+            for (long userId = 1; userId <= thread * 10L; userId++) {
+                filmLikeDao.addLike(filmId, userId);
+                filmLikeDao.addLike(filmIds.get(0), thread * 100L + userId);
+                filmLikeDao.deleteLike(filmIds.get(0), thread * 100L + userId);
+            }
+            for (long userId = 1; userId <= thread * 5L; userId++) {
+                filmLikeDao.deleteLike(filmId, userId);
+            }
+        });
+
+        List<Long> expected = new ArrayList<>(filmIds.subList(1, THREADS));
+        Collections.reverse(expected);
+        expected.add(filmIds.get(0));
+        assertEquals(expected, popularIds(THREADS + 5), "Фильмы упорядочены по убыванию количества лайков.");
+        assertEquals(expected.subList(0, 3), popularIds(3));
+        assertEquals((THREADS - 1) * 5, filmStorage.getPopularFilms(1).get(0).getLikesCount());
+
+        //при равном количестве лайков фильмы идут по возрастанию id, удалённый фильм из рейтинга уходит
+        for (long userId = 1; userId <= 5; userId++) {
+            filmLikeDao.addLike(filmIds.get(0), userId);
+        }
+        filmStorage.deleteFilm(filmIds.get(THREADS - 1));
+        assertEquals(List.of(filmIds.get(THREADS - 2), filmIds.get(THREADS - 3)), popularIds(2));
+        assertEquals(List.of(filmIds.get(0), filmIds.get(1)), popularIds(THREADS).subList(THREADS - 3, THREADS - 1));
+    }
+
+    @Test
+    void testUpdateFilm() throws Exception {
+        Film film = filmStorage.addFilm(film(List.of(1)));
+
+        //потоки одновременно обновляют фильм, каждый - своим набором жанров
+        runConcurrently(thread -> {
+            for (int i = 0; i < 500; i++) {
+                Film update = film(List.of(1 + (thread + i) % 6, 1 + (thread + i + 1) % 6));
+                update.setId(film.getId());
+                update.setName("Film " + thread);
+                filmStorage.updateFilm(update);
+            }
+        });
+
+        //жанры фильма и жанры в хранилище жанров - от одного и того же обновления
+        Film updated = filmStorage.getFilm(film.getId());
+        assertEquals(2, updated.getGenres().size());
+        assertEquals(new ArrayList<>(updated.getGenres()), genreDao.getGengesFilm(film.getId()),
+                "Жанры фильма разошлись с хранилищем жанров.");
+        assertEquals(1, filmStorage.getFilms().size());
+
+        //возвращённую копию можно менять, хранилище от этого не меняется
+        updated.getGenres().clear();
+        assertEquals(2, filmStorage.getFilm(film.getId()).getGenres().size());
+    }
+
+    private List<Long> popularIds(int count) {
+        return filmStorage.getPopularFilms(count).stream().map(Film::getId).collect(Collectors.toList());
+    }
+
+    private static User user(int i) {
+        return new User(0, "user" + i + "@mail.ru", "user" + i, "User " + i, LocalDate.of(1990, 1, 1));
+    }
+
+    private static Film film(List<Integer> genreIds) {
+        Set<Genre> genres = genreIds.stream().map(id -> new Genre(id, null)).collect(Collectors.toSet());
+        return new Film(0, "Film", "Description", LocalDate.of(2000, 1, 1), 100, 0, new MPA(1, null), genres);
+    }
+
+    //запускает задачу в THREADS потоках одновременно и ждёт завершения; исключение потока проваливает тест
+    private static void runConcurrently(ThreadTask task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    awaitQuietly(start);
+                    task.run(thread);
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private interface ThreadTask {
+        void run(int thread);
+    }
+}
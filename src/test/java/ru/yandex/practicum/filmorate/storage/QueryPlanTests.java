@@ -0,0 +1,354 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.FilmLike;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmLikeDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.GenreDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.MpaDbDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.FriendsDbDao;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.UserDbDao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//проверка планов запросов DAO на большом наборе данных: каждый запрос, который DAO выполняет
+//для одного фильма, пользователя или пары, прогоняется через EXPLAIN, и тест падает,
+//если H2 читает большую таблицу полным перебором вместо индекса.
+//списки целиком (getFilms(), getUsers(), getLikesCount(), reconcileLikesCount()) читают таблицы полностью
+//намеренно и здесь не проверяются; маленькие справочники genre и ratings_mpa тоже не проверяются
+class QueryPlanTests {
+    private static final int USERS = 10_000;
+    private static final int FILMS = 5_000;
+    //id первых добавленных пользователя и фильма: data.sql уже содержит 6 пользователей и 4 фильма
+    private static final int FIRST_USER = 7;
+    private static final int FIRST_FILM = 5;
+
+    //большие таблицы, которые нельзя читать полным перебором
+    private static final Pattern TABLE_SCAN = Pattern.compile(
+            "PUBLIC\\.(FILMS|USERS|FILMS_LIKE|FILMS_GENRE|FRIENDS)\\.tableScan", Pattern.CASE_INSENSITIVE);
+
+    private static DriverManagerDataSource dataSource;
+    private static RecordingDataSource recordingDataSource;
+    private static FilmDbDao filmDao;
+    private static FilmLikeDbDao filmLikeDao;
+    private static GenreDbDao genreDao;
+    private static MpaDbDao mpaDao;
+    private static UserDbDao userDao;
+    private static FriendsDbDao friendsDao;
+
+    @BeforeAll
+    static void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:h2:mem:query_plans;DB_CLOSE_DELAY=-1", "sa", "password");
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator(
+                new ClassPathResource("schema.sql"), new ClassPathResource("data.sql"));
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+        seed(new JdbcTemplate(dataSource));
+
+        recordingDataSource = new RecordingDataSource(dataSource);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(recordingDataSource);
+        //кэш карточек отключён, чтобы каждый вызов доходил до БД
+        FilmCardCache filmCardCache = new FilmCardCache(0, 0);
+        ReferenceDataRegistry referenceData = new ReferenceDataRegistry(jdbcTemplate);
+        referenceData.refresh();
+        mpaDao = new MpaDbDao(referenceData);
+        FilmFacetIndex filmFacetIndex = new FilmFacetIndex(jdbcTemplate);
+        genreDao = new GenreDbDao(jdbcTemplate, filmCardCache, referenceData, filmFacetIndex);
+        filmDao = new FilmDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache, new FilmSearchIndex(jdbcTemplate),
+                filmFacetIndex);
+        filmLikeDao = new FilmLikeDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache);
+        userDao = new UserDbDao(jdbcTemplate);
+        friendsDao = new FriendsDbDao(jdbcTemplate);
+    }
+
+    //10 000 пользователей, 5 000 фильмов по два жанра, 50 000 лайков и 30 000 записей о дружбе
+    private static void seed(JdbcTemplate jdbcTemplate) {
+        jdbcTemplate.execute("INSERT INTO users(email, login, name, birthday) " +
+                "SELECT 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01' " +
+                "FROM SYSTEM_RANGE(1, " + USERS + ")");
+        jdbcTemplate.execute("INSERT INTO films(name, description, release_date, duration, rate, rating_id) " +
+                "SELECT 'Film ' || X, 'Description ' || X, DATE '2000-01-01', 90 + MOD(X, 60), 0, MOD(X, 5) + 1 " +
+                "FROM SYSTEM_RANGE(1, " + FILMS + ")");
+        jdbcTemplate.execute("INSERT INTO films_genre(film_id, genre_id) " +
+                "SELECT X + " + (FIRST_FILM - 1) + ", MOD(X, 6) + 1 FROM SYSTEM_RANGE(1, " + FILMS + ") " +
+                "UNION ALL SELECT X + " + (FIRST_FILM - 1) + ", MOD(X + 3, 6) + 1 FROM SYSTEM_RANGE(1, " + FILMS + ")");
+        //каждый фильм получает 10 лайков от разных пользователей
+        jdbcTemplate.execute("INSERT INTO films_like(film_id, user_id) " +
+                "SELECT MOD(X, " + FILMS + ") + " + FIRST_FILM + ", " +
+                "MOD(X / " + FILMS + " * 5997 + MOD(X, " + FILMS + "), " + USERS + ") + " + FIRST_USER + " " +
+                "FROM SYSTEM_RANGE(0, " + (FILMS * 10 - 1) + ")");
+        jdbcTemplate.execute("UPDATE films f SET likes_count = " +
+                "(SELECT COUNT(*) FROM films_like fl WHERE fl.film_id = f.film_id)");
+        //каждый пользователь добавил в друзья трёх следующих, половина дружб подтверждена зеркальной записью
+        String friendPairs = "SELECT MOD(X, " + USERS + ") + " + FIRST_USER + " AS user_id, " +
+                "MOD(MOD(X, " + USERS + ") + X / " + USERS + " + 1, " + USERS + ") + " + FIRST_USER + " AS friend_id, " +
+                "X FROM SYSTEM_RANGE(0, " + (USERS * 3 - 1) + ")";
+        jdbcTemplate.execute("INSERT INTO friends(user_id, friend_id) SELECT user_id, friend_id FROM (" + friendPairs + ") " +
+                "UNION SELECT friend_id, user_id FROM (" + friendPairs + ") WHERE MOD(X, 2) = 0");
+        //обновляем статистику, по которой H2 выбирает индексы
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void testFilmQueriesUseIndexes() {
+        long filmId = FIRST_FILM + 100;
+        assertNoTableScans("FilmDao.getFilm", () -> filmDao.getFilm(filmId));
+        assertNoTableScans("FilmDao.getFilms(afterId, limit)", () -> filmDao.getFilms(filmId, 20));
+        assertNoTableScans("FilmDao.getPopularFilms", () -> filmDao.getPopularFilms(10));
+        assertNoTableScans("FilmDao.getFilmsByIds", () -> filmDao.getFilmsByIds(List.of(filmId + 7, filmId, filmId + 3)));
+
+        Film film = new Film(0, "Query plan", "Фильм для проверки планов", LocalDate.of(2001, 2, 3), 100, 0,
+                new MPA(1, null), Set.of(new Genre(1, null), new Genre(2, null)));
+        Film added = assertNoTableScans("FilmDao.addFilm", () -> filmDao.addFilm(film));
+        added.setGenres(Set.of(new Genre(2, null), new Genre(3, null)));
+        assertNoTableScans("FilmDao.updateFilm", () -> filmDao.updateFilm(added));
+        assertNoTableScans("FilmDao.deleteFilm", () -> {
+            filmDao.deleteFilm(added.getId());
+            return null;
+        });
+        assertNoTableScans("FilmDao.addFilms", () -> filmDao.addFilms(List.of(
+                new Film(0, "Query plan 2", "d", LocalDate.of(2002, 2, 3), 100, 0,
+                        new MPA(2, null), Set.of(new Genre(4, null))))));
+    }
+
+    @Test
+    void testGenreQueriesUseIndexes() {
+        long filmId = FIRST_FILM + 200;
+        assertNoTableScans("GenreDao.getGengesFilm", () -> genreDao.getGengesFilm(filmId));
+        assertNoTableScans("GenreDao.delFilmGenres", () -> {
+            genreDao.delFilmGenres(filmId, List.of(1, 2));
+            return null;
+        });
+        assertNoTableScans("GenreDao.addFilmGenres", () -> {
+            genreDao.addFilmGenres(filmId, List.of(1, 2));
+            return null;
+        });
+        assertNoTableScans("GenreDao.addFilmGenre", () -> {
+            genreDao.addFilmGenre(filmId, 3);
+            return null;
+        });
+        assertNoTableScans("GenreDao.delFilmGenre", () -> {
+            genreDao.delFilmGenre(filmId);
+            return null;
+        });
+        //рейтинги MPA читаются из справочника в памяти: полного перебора нет, потому что нет запросов к БД
+        assertNoQueries("MpaDao.getRating", () -> mpaDao.getRating(1));
+    }
+
+    @Test
+    void testLikeQueriesUseIndexes() {
+        long filmId = FIRST_FILM + 300;
+        long userId = FIRST_USER + 9_000;
+        assertNoTableScans("FilmLikeDao.isLiked", () -> filmLikeDao.isLiked(filmId, userId));
+        assertNoTableScans("FilmLikeDao.addLike", () -> {
+            filmLikeDao.addLike(filmId, userId);
+            return null;
+        });
+        assertNoTableScans("FilmLikeDao.deleteLike", () -> {
+            filmLikeDao.deleteLike(filmId, userId);
+            return null;
+        });
+        assertNoTableScans("FilmLikeDao.saveLikes", () -> {
+            filmLikeDao.saveLikes(List.of(new FilmLike(filmId, userId)), List.of());
+            return null;
+        });
+        assertNoTableScans("FilmLikeDao.saveLikes (unlike)", () -> {
+            filmLikeDao.saveLikes(List.of(), List.of(new FilmLike(filmId, userId)));
+            return null;
+        });
+    }
+
+    @Test
+    void testUserQueriesUseIndexes() {
+        long userId = FIRST_USER + 400;
+        long friendId = FIRST_USER + 5_000;
+        assertNoTableScans("UserDao.getUser", () -> userDao.getUser(userId));
+        User user = new User(userId, "plan@mail.ru", "plan", "Plan", LocalDate.of(1991, 1, 1));
+        assertNoTableScans("UserDao.updateUser", () -> userDao.updateUser(user));
+        assertNoTableScans("UserDao.addUser", () -> userDao.addUser(
+                new User(0, "plan2@mail.ru", "plan2", "Plan 2", LocalDate.of(1992, 1, 1))));
+
+        assertNoTableScans("FriendsDao.addFriend", () -> {
+            friendsDao.addFriend(userId, friendId);
+            return null;
+        });
+        assertNoTableScans("FriendsDao.addFriend (подтверждение)", () -> {
+            friendsDao.addFriend(friendId, userId);
+            return null;
+        });
+        assertNoTableScans("FriendsDao.getFriends", () -> friendsDao.getFriends(userId));
+        assertNoTableScans("FriendsDao.getCommonFriends", () -> friendsDao.getCommonFriends(userId, userId + 1));
+        assertNoTableScans("FriendsDao.deleteFriend", () -> {
+            friendsDao.deleteFriend(userId, friendId);
+            return null;
+        });
+    }
+
+    //выполняет вызов DAO, записывая его запросы, и проверяет план каждого запроса
+    private static <T> T assertNoTableScans(String call, Supplier<T> daoCall) {
+        List<RecordedStatement> statements = recordingDataSource.record();
+        T result;
+        try {
+            result = daoCall.get();
+        } finally {
+            recordingDataSource.stopRecording();
+        }
+        assertFalse(statements.isEmpty(), call + " не выполнил ни одного запроса.");
+        for (RecordedStatement statement : statements) {
+            String plan = explain(statement);
+            Matcher matcher = TABLE_SCAN.matcher(plan);
+            assertFalse(matcher.find(), call + " читает таблицу полным перебором.\nЗапрос: " + statement.sql +
+                    "\nПлан: " + plan);
+        }
+        return result;
+    }
+
+    //выполняет вызов DAO и проверяет, что он не обращается к БД
+    private static <T> T assertNoQueries(String call, Supplier<T> daoCall) {
+        List<RecordedStatement> statements = recordingDataSource.record();
+        T result;
+        try {
+            result = daoCall.get();
+        } finally {
+            recordingDataSource.stopRecording();
+        }
+        assertTrue(statements.isEmpty(), call + " выполняет запросы к БД: " + statements.size());
+        return result;
+    }
+
+    private static String explain(RecordedStatement statement) {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement ps = connection.prepareStatement("EXPLAIN " + statement.sql)) {
+            for (Map.Entry<Integer, Object> parameter : statement.parameters.entrySet()) {
+                ps.setObject(parameter.getKey(), parameter.getValue());
+            }
+            StringBuilder plan = new StringBuilder();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+            }
+            return plan.toString();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Не удалось получить план запроса " + statement.sql, e);
+        }
+    }
+
+    //запрос и значения его параметров; у пакетного запроса - параметры первого набора
+    private static class RecordedStatement {
+        private final String sql;
+        private final Map<Integer, Object> parameters = new TreeMap<>();
+        private boolean batched;
+
+        private RecordedStatement(String sql) {
+            this.sql = sql;
+        }
+    }
+
+    //источник данных, который записывает все запросы, выполненные через его соединения
+    private static class RecordingDataSource extends DelegatingDataSource {
+        private List<RecordedStatement> statements;
+
+        private RecordingDataSource(DriverManagerDataSource target) {
+            super(target);
+        }
+
+        private synchronized List<RecordedStatement> record() {
+            statements = new ArrayList<>();
+            return statements;
+        }
+
+        private synchronized void stopRecording() {
+            statements = null;
+        }
+
+        private synchronized void add(RecordedStatement statement) {
+            if (statements != null) {
+                statements.add(statement);
+            }
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            return proxy(Connection.class, connection, (method, args) -> {
+                Object result = invoke(connection, method, args);
+                if (method.getName().equals("prepareStatement") && args[0] instanceof String) {
+                    RecordedStatement statement = new RecordedStatement((String) args[0]);
+                    add(statement);
+                    return proxy(PreparedStatement.class, result, (psMethod, psArgs) -> {
+                        String name = psMethod.getName();
+                        if (name.equals("addBatch")) {
+                            statement.batched = true;
+                        } else if (name.startsWith("set") && !statement.batched && psArgs != null
+                                && psArgs.length >= 2 && psArgs[0] instanceof Integer) {
+                            Object value = name.equals("setNull") ? null : psArgs[1];
+                            statement.parameters.put((Integer) psArgs[0], value);
+                        }
+                        return invoke(result, psMethod, psArgs);
+                    });
+                }
+                if (method.getName().equals("createStatement")) {
+                    return proxy(Statement.class, result, (stMethod, stArgs) -> {
+                        if (stMethod.getName().startsWith("execute") && stArgs != null
+                                && stArgs.length > 0 && stArgs[0] instanceof String) {
+                            add(new RecordedStatement((String) stArgs[0]));
+                        }
+                        return invoke(result, stMethod, stArgs);
+                    });
+                }
+                return result;
+            });
+        }
+    }
+
+    private interface Call {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, Call call) {
+        InvocationHandler handler = (proxy, method, args) -> call.invoke(method, args);
+        return type.cast(Proxy.newProxyInstance(QueryPlanTests.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.storage.film.cache.ReferenceData;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReferenceDataTest {
+
+    @Test
+    void testLookupById() {
+        List<Genre> genres = new ArrayList<>(List.of(new Genre(6, "Боевик"), new Genre(1, "Комедия")));
+        ReferenceData data = new ReferenceData(List.of(new MPA(2, "PG"), new MPA(1, "G")), genres);
+
+        assertEquals(new MPA(1, "G"), data.getRating(1));
+        assertEquals(new Genre(6, "Боевик"), data.getGenre(6));
+        assertNull(data.getRating(3), "Рейтинга с id=3 нет в справочнике.");
+        assertNull(data.getGenre(2), "Жанра с id=2 нет в справочнике.");
+        assertNull(data.getGenre(-1));
+        assertNull(data.getGenre(9999));
+        assertEquals(List.of(new MPA(1, "G"), new MPA(2, "PG")), data.getRatings(), "Рейтинги должны идти по id.");
+        assertEquals(List.of(1, 6), List.of(data.getGenres().get(0).getId(), data.getGenres().get(1).getId()));
+
+        //снимок не зависит от исходных списков и не изменяется
+        genres.get(0).setName("Триллер");
+        genres.clear();
+        assertEquals("Боевик", data.getGenre(6).getName());
+        assertThrows(UnsupportedOperationException.class, () -> data.getGenres().add(new Genre(2, "Драма")));
+    }
+}
@@ -0,0 +1,172 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.cache.FilmCardCache;
+import ru.yandex.practicum.filmorate.storage.film.cache.ReferenceDataRegistry;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.FilmLikeDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.GenreDbDao;
+import ru.yandex.practicum.filmorate.storage.film.daoImpl.MpaDbDao;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmFacetIndex;
+import ru.yandex.practicum.filmorate.storage.film.search.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.user.daoImpl.FriendsDbDao;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//миграции профиля prod: БД, созданная исходной схемой (V1) или текущим schema.sql, принимается за версию 1
+//так же, как в application-prod.properties, и после миграции с ней работают DAO
+class SchemaMigrationTests {
+
+    @Test
+    void testUpgradeBaselineDatabase() {
+        DataSource dataSource = dataSource("migration_baseline");
+        execute(dataSource, "db/migration/V1__schema.sql");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("INSERT INTO ratings_mpa(rating_name) VALUES('G'), ('PG')");
+        jdbcTemplate.execute("INSERT INTO genre(genre_name) VALUES('Комедия'), ('Драма')");
+        jdbcTemplate.execute("INSERT INTO users(email, login, name, birthday) " +
+                "SELECT 'user' || X || '@mail.ru', 'user' || X, 'User ' || X, DATE '1990-01-01' FROM SYSTEM_RANGE(1, 4)");
+        jdbcTemplate.execute("INSERT INTO films(name, description, release_date, duration, rate, rating_id) " +
+                "VALUES('Film 1', 'd', DATE '2000-01-01', 90, 0, 1), ('Film 2', 'd', DATE '2001-01-01', 100, 0, 2)");
+        //повторяющиеся жанр, лайк и запись о дружбе, которые исходная схема допускала
+        jdbcTemplate.execute("INSERT INTO films_genre(film_id, genre_id) VALUES(1, 1), (1, 1), (1, 2)");
+        jdbcTemplate.execute("INSERT INTO films_like(film_id, user_id) VALUES(1, 1), (1, 1), (1, 2), (2, 3)");
+        //1 и 2 - подтверждённая дружба одной записью, 1 добавил 3 (дважды), 4 добавил 1
+        jdbcTemplate.execute("INSERT INTO friends(user_id, friend_id, friend_status) " +
+                "VALUES(1, 2, TRUE), (1, 3, FALSE), (1, 3, FALSE), (4, 1, FALSE)");
+
+        MigrateResult result = migrate(dataSource);
+
+        assertEquals("2", result.targetSchemaVersion);
+        assertEquals(List.of(2L, 1L), jdbcTemplate.queryForList(
+                "SELECT likes_count FROM films ORDER BY film_id", Long.class), "Количество лайков без повторов.");
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM films_genre", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.columns " +
+                "WHERE table_name = 'FRIENDS' AND column_name = 'FRIEND_STATUS'", Integer.class));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("INSERT INTO films_like(film_id, user_id) VALUES(1, 1)"));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("INSERT INTO films_genre(film_id, genre_id) VALUES(1, 2)"));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> jdbcTemplate.update("INSERT INTO friends(user_id, friend_id) VALUES(1, 3)"));
+
+        Daos daos = new Daos(jdbcTemplate);
+        assertEquals(List.of(2L, 3L), friendIds(daos.friendsDao.getFriends(1)));
+        assertEquals(List.of(1L), friendIds(daos.friendsDao.getFriends(2)), "Подтверждённая дружба взаимна.");
+        assertEquals(List.of(), friendIds(daos.friendsDao.getFriends(3)));
+        assertEquals(List.of(1L, 2L), daos.filmDao.getPopularFilms(10).stream()
+                .map(Film::getId).collect(Collectors.toList()));
+        daos.filmLikeDao.addLike(2, 4);
+        assertEquals(2, daos.filmDao.getFilm(2).getLikesCount());
+    }
+
+    @Test
+    void testMigrateCurrentSchemaDatabase() {
+        //БД, созданная текущим schema.sql (без профиля prod или загрузчиком набора данных): V2 её не меняет
+        DataSource dataSource = dataSource("migration_current");
+        execute(dataSource, "schema.sql", "data.sql");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Daos daos = new Daos(jdbcTemplate);
+        //data.sql тестов уже содержит лайки и дружбу в текущем виде
+        List<String> likes = jdbcTemplate.queryForList("SELECT film_id || ':' || likes_count FROM films " +
+                "ORDER BY film_id", String.class);
+        List<String> friends = jdbcTemplate.queryForList("SELECT user_id || ':' || friend_id FROM friends " +
+                "ORDER BY user_friend_id", String.class);
+
+        MigrateResult result = migrate(dataSource);
+
+        assertEquals("2", result.targetSchemaVersion);
+        assertEquals(likes, jdbcTemplate.queryForList("SELECT film_id || ':' || likes_count FROM films " +
+                "ORDER BY film_id", String.class));
+        assertEquals(friends, jdbcTemplate.queryForList("SELECT user_id || ':' || friend_id FROM friends " +
+                "ORDER BY user_friend_id", String.class));
+        assertEquals(List.of(2L, 3L), friendIds(daos.friendsDao.getFriends(1)));
+        assertEquals(2, daos.filmDao.getFilm(1).getLikesCount());
+    }
+
+    @Test
+    void testMigrationsMatchSchemaSql() {
+        //пустая БД после миграций и БД после schema.sql содержат одни и те же столбцы и индексы
+        DataSource migrated = dataSource("migration_empty");
+        migrate(migrated);
+        DataSource created = dataSource("migration_schema");
+        execute(created, "schema.sql");
+
+        assertEquals(describe(created), describe(migrated));
+    }
+
+    private static DataSource dataSource(String name) {
+        return new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "password");
+    }
+
+    private static void execute(DataSource dataSource, String... scripts) {
+        ResourceDatabasePopulator populator = new ResourceDatabasePopulator();
+        for (String script : scripts) {
+            populator.addScript(new ClassPathResource(script));
+        }
+        populator.setSqlScriptEncoding("UTF-8");
+        populator.execute(dataSource);
+    }
+
+    //те же настройки, что в application-prod.properties
+    private static MigrateResult migrate(DataSource dataSource) {
+        return Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("1")
+                .load()
+                .migrate();
+    }
+
+    //столбцы и именованные индексы таблиц приложения, без служебной таблицы Flyway;
+    //индексы внешних ключей H2 создаёт и называет сам
+    private static List<String> describe(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        List<String> columns = jdbcTemplate.queryForList("SELECT table_name || '.' || column_name || ' ' || data_type " +
+                "|| ' ' || is_nullable || ' ' || COALESCE(column_default, '') FROM information_schema.columns " +
+                "WHERE table_schema = 'PUBLIC' AND table_name <> 'flyway_schema_history' " +
+                "ORDER BY table_name, column_name", String.class);
+        List<String> indexes = jdbcTemplate.queryForList("SELECT i.table_name || '.' || i.index_name || ' ' " +
+                "|| i.index_type_name FROM information_schema.indexes i WHERE i.table_schema = 'PUBLIC' " +
+                "AND i.index_name NOT LIKE 'PRIMARY_KEY%' AND i.index_name NOT LIKE 'CONSTRAINT%' " +
+                "AND i.table_name <> 'flyway_schema_history' ORDER BY i.table_name, i.index_name", String.class);
+        columns.addAll(indexes);
+        return columns;
+    }
+
+    private static List<Long> friendIds(List<User> friends) {
+        return friends.stream().map(User::getId).sorted().collect(Collectors.toList());
+    }
+
+    private static class Daos {
+        private final FilmDbDao filmDao;
+        private final FilmLikeDbDao filmLikeDao;
+        private final FriendsDbDao friendsDao;
+
+        Daos(JdbcTemplate jdbcTemplate) {
+            FilmCardCache filmCardCache = new FilmCardCache(0, 0);
+            ReferenceDataRegistry referenceData = new ReferenceDataRegistry(jdbcTemplate);
+            referenceData.refresh();
+            MpaDbDao mpaDao = new MpaDbDao(referenceData);
+            FilmFacetIndex filmFacetIndex = new FilmFacetIndex(jdbcTemplate);
+            GenreDbDao genreDao = new GenreDbDao(jdbcTemplate, filmCardCache, referenceData, filmFacetIndex);
+            filmDao = new FilmDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache, new FilmSearchIndex(jdbcTemplate),
+                    filmFacetIndex);
+            filmLikeDao = new FilmLikeDbDao(jdbcTemplate, mpaDao, genreDao, filmCardCache);
+            friendsDao = new FriendsDbDao(jdbcTemplate);
+        }
+    }
+}
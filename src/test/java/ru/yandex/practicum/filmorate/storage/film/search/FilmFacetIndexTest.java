@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import org.junit.jupiter.api.Test;
+import ru.yandex.practicum.filmorate.model.FilmFacets;
+import ru.yandex.practicum.filmorate.model.FilmsFilter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmFacetIndexTest {
+    private static final int COMEDY = 1;
+    private static final int DRAMA = 2;
+    private static final int PG_13 = 3;
+
+    @Test
+    void testFilter() {
+        FilmFacetIndex index = new FilmFacetIndex(null);
+        index.index(1, PG_13, 1994, List.of(COMEDY, DRAMA));
+        index.index(2, PG_13, 1999, List.of(DRAMA));
+        index.index(3, 1, 1995, List.of(COMEDY));
+        index.index(4, PG_13, 2005, List.of(COMEDY));
+        index.index(70, PG_13, 1990, List.of(COMEDY));
+        index.index(130, null, null, List.of());
+
+        //комедии или драмы с рейтингом PG-13 девяностых годов
+        FilmsFilter filter = new FilmsFilter(Set.of(COMEDY, DRAMA), false, Set.of(PG_13), 1990, 1999);
+        assertArrayEquals(new long[]{1, 2, 70}, index.filter(filter, 0, 10).getFilmIds());
+        assertEquals(3, index.filter(filter, 0, 10).getTotal());
+        //страницы по курсору
+        assertArrayEquals(new long[]{1, 2}, index.filter(filter, 0, 2).getFilmIds());
+        assertArrayEquals(new long[]{70}, index.filter(filter, 2, 2).getFilmIds());
+        assertArrayEquals(new long[0], index.filter(filter, 70, 2).getFilmIds());
+        assertEquals(3, index.filter(filter, 70, 2).getTotal());
+
+        //и комедии, и драмы
+        assertArrayEquals(new long[]{1}, index.filter(new FilmsFilter(Set.of(COMEDY, DRAMA), true, Set.of(),
+                null, null), 0, 10).getFilmIds());
+        //без отбора - все фильмы, неизвестные значения - ни одного
+        assertArrayEquals(new long[]{1, 2, 3, 4, 70, 130}, index.filter(new FilmsFilter(Set.of(), false, Set.of(),
+                null, null), 0, 10).getFilmIds());
+        assertArrayEquals(new long[0], index.filter(new FilmsFilter(Set.of(99), false, Set.of(),
+                null, null), 0, 10).getFilmIds());
+        assertArrayEquals(new long[]{4}, index.filter(new FilmsFilter(Set.of(), false, Set.of(),
+                2000, null), 0, 10).getFilmIds());
+
+        //фильм меняет жанры и год, удалённый фильм больше не отбирается
+        index.index(2, PG_13, 2001, List.of(COMEDY));
+        index.remove(70);
+        assertArrayEquals(new long[]{1}, index.filter(filter, 0, 10).getFilmIds());
+        assertEquals(5, index.getFilmsCount());
+    }
+
+    @Test
+    void testFacets() {
+        FilmFacetIndex index = new FilmFacetIndex(null);
+        index.index(1, PG_13, 1994, List.of(COMEDY, DRAMA));
+        index.index(2, PG_13, 1999, List.of(DRAMA));
+        index.index(3, 1, 1995, List.of(COMEDY));
+        index.index(4, PG_13, 2005, List.of(COMEDY));
+
+        //количество по каждому полю считается с отбором по остальным полям
+        FilmFacets facets = index.facets(new FilmsFilter(Set.of(COMEDY), false, Set.of(PG_13), null, 1999));
+        assertEquals(1, facets.getTotal());
+        assertEquals(Map.of(COMEDY, 1, DRAMA, 2), facets.getGenres());
+        assertEquals(Map.of(PG_13, 1, 1, 1), facets.getMpa());
+        assertEquals(Map.of(1994, 1, 2005, 1), facets.getYears());
+
+        //для всех жанров сразу - сколько фильмов останется, если добавить жанр
+        facets = index.facets(new FilmsFilter(Set.of(COMEDY), true, Set.of(), null, null));
+        assertEquals(3, facets.getTotal());
+        assertEquals(Map.of(COMEDY, 3, DRAMA, 1), facets.getGenres());
+    }
+
+    //отбор по битовым картам совпадает с проверкой каждого фильма
+    @Test
+    void testFilterMatchesNaive() {
+        FilmFacetIndex index = new FilmFacetIndex(null);
+        Random random = new Random(9);
+        int films = 3000;
+        int[] ratings = new int[films + 1];
+        int[] years = new int[films + 1];
+        boolean[][] genres = new boolean[films + 1][7];
+        for (int filmId = 1; filmId <= films; filmId++) {
+            ratings[filmId] = 1 + random.nextInt(5);
+            years[filmId] = 1950 + random.nextInt(70);
+            List<Integer> filmGenres = new ArrayList<>();
+            for (int genreId = 1; genreId <= 6; genreId++) {
+                if (random.nextInt(4) == 0) {
+                    genres[filmId][genreId] = true;
+                    filmGenres.add(genreId);
+                }
+            }
+            index.index(filmId, ratings[filmId], years[filmId], filmGenres);
+        }
+        FilmsFilter filter = new FilmsFilter(Set.of(2, 5), false, Set.of(1, 3, 4), 1970, 1999);
+        List<Long> expected = new ArrayList<>();
+        for (int filmId = 1; filmId <= films; filmId++) {
+            if ((genres[filmId][2] || genres[filmId][5]) && Set.of(1, 3, 4).contains(ratings[filmId])
+                    && years[filmId] >= 1970 && years[filmId] <= 1999) {
+                expected.add((long) filmId);
+            }
+        }
+        List<Long> actual = new ArrayList<>();
+        long after = 0;
+        while (true) {
+            long[] page = index.filter(filter, after, 37).getFilmIds();
+            for (long filmId : page) {
+                actual.add(filmId);
+            }
+            if (page.length < 37) {
+                break;
+            }
+            after = page[page.length - 1];
+        }
+        assertEquals(expected, actual);
+        assertEquals(expected.size(), index.facets(filter).getTotal());
+    }
+}
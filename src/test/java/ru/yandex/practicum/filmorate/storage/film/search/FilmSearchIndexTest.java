@@ -0,0 +1,212 @@
+package ru.yandex.practicum.filmorate.storage.film.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FilmSearchIndexTest {
+
+    @Test
+    void testSearch() {
+        FilmSearchIndex index = new FilmSearchIndex(null);
+        index.index(1, "Звёздные войны", "Космическая опера о войне Империи и повстанцев.");
+        index.index(2, "Война и мир", "Экранизация романа Толстого.");
+        index.index(3, "Мир Юрского периода", "Парк с динозаврами выходит из-под контроля.");
+        index.index(4, "Интерстеллар", "Экспедиция через червоточину ищет новый мир для людей.");
+
+        //слово в названии весит больше, чем в описании; ё ищется как е
+        assertArrayEquals(new int[]{2, 3, 4}, index.search("мир ", 0, 10).getFilmIds());
+        assertArrayEquals(new int[]{1}, index.search("ЗВЕЗДНЫЕ", 0, 10).getFilmIds());
+        //все слова запроса должны быть в фильме
+        assertArrayEquals(new int[]{2}, index.search("война мир.", 0, 10).getFilmIds());
+        assertArrayEquals(new int[0], index.search("война динозавр.", 0, 10).getFilmIds());
+        //последнее недописанное слово ищется как начало слова, законченное - только целиком
+        assertArrayEquals(new int[]{1, 2}, index.search("вой", 0, 10).getFilmIds());
+        assertArrayEquals(new int[]{3}, index.search("мир дин", 0, 10).getFilmIds());
+        assertArrayEquals(new int[0], index.search("вой ", 0, 10).getFilmIds());
+        assertArrayEquals(new int[0], index.search(" ,. ", 0, 10).getFilmIds());
+
+        FilmSearchIndex.SearchResult page = index.search("мир", 1, 1);
+        assertArrayEquals(new int[]{3}, page.getFilmIds());
+        assertEquals(3, page.getTotal());
+        assertArrayEquals(new int[0], index.search("мир", 5, 1).getFilmIds());
+        assertEquals(3, index.search("мир", 5, 1).getTotal());
+    }
+
+    @Test
+    void testUpdateAndRemove() {
+        FilmSearchIndex index = new FilmSearchIndex(null);
+        index.index(1, "Мир", "");
+        index.index(2, "Дюна", "Пустынный мир");
+        assertArrayEquals(new int[]{1, 2}, index.search("мир", 0, 10).getFilmIds());
+
+        //слово перешло из описания в название, старые слова фильма больше не находятся
+        index.index(2, "Новый мир", "");
+        assertArrayEquals(new int[]{1, 2}, index.search("мир", 0, 10).getFilmIds());
+        assertArrayEquals(new int[0], index.search("дюна", 0, 10).getFilmIds());
+        index.index(1, "Война", "и мир");
+        assertArrayEquals(new int[]{2, 1}, index.search("мир", 0, 10).getFilmIds());
+        assertEquals(2, index.getFilmsCount());
+
+        index.remove(2);
+        index.remove(2);
+        assertArrayEquals(new int[]{1}, index.search("мир", 0, 10).getFilmIds());
+        assertArrayEquals(new int[0], index.search("новый", 0, 10).getFilmIds());
+        assertEquals(1, index.getFilmsCount());
+    }
+
+    //частые слова ищутся по битовым картам; результаты совпадают с подсчётом веса каждого фильма
+    @Test
+    void testFrequentWords() {
+        FilmSearchIndex index = new FilmSearchIndex(null);
+        Random random = new Random(5);
+        int films = 6000;
+        List<List<String>> names = new ArrayList<>();
+        List<List<String>> descriptions = new ArrayList<>();
+        for (int filmId = 1; filmId <= films; filmId++) {
+            List<String> name = new ArrayList<>();
+            List<String> description = new ArrayList<>();
+            addWord(random, 0.5, "альфа", name);
+            addWord(random, 0.3, "бета", name);
+            addWord(random, 0.4, "альфа", description);
+            addWord(random, 0.6, "бета", description);
+            addWord(random, 0.5, "гамма", description);
+            addWord(random, 0.01, "бетон", description);
+            addWord(random, 0.03, "редкое", name);
+            names.add(name);
+            descriptions.add(description);
+            index.index(filmId, String.join(" ", name), String.join(" ", description));
+        }
+        //изменения после построения карт тоже учитываются
+        for (int i = 0; i < 300; i++) {
+            int filmId = 1 + random.nextInt(films);
+            names.set(filmId - 1, List.of("бета"));
+            descriptions.set(filmId - 1, List.of("гамма"));
+            index.index(filmId, "бета", "гамма");
+        }
+
+        for (String query : List.of("альфа бета", "бета альфа гамма.", "гамма бет", "редкое альфа ", "редкое бета бе")) {
+            int[] expected = naiveSearch(query, names, descriptions);
+            FilmSearchIndex.SearchResult first = index.search(query, 0, 30);
+            assertEquals(expected.length, first.getTotal(), query);
+            assertArrayEquals(Arrays.copyOfRange(expected, 0, Math.min(30, expected.length)), first.getFilmIds(), query);
+            FilmSearchIndex.SearchResult deep = index.search(query, 50, 25);
+            assertArrayEquals(Arrays.copyOfRange(expected, Math.min(50, expected.length),
+                    Math.min(75, expected.length)), deep.getFilmIds(), query);
+        }
+    }
+
+    private static void addWord(Random random, double probability, String word, List<String> words) {
+        if (random.nextDouble() < probability) {
+            words.add(word);
+        }
+    }
+
+    //вес слова - log(1 + фильмов / фильмов со словом), в названии втрое больше; последнее недописанное слово -
+    //любое слово с этим началом; веса складываются от редкого слова к частому, как в индексе
+    private static int[] naiveSearch(String query, List<List<String>> names, List<List<String>> descriptions) {
+        List<String> words = FilmSearchIndex.tokenize(query);
+        boolean prefix = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        Map<String, Long> df = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            List<String> all = new ArrayList<>(names.get(i));
+            all.addAll(descriptions.get(i));
+            all.stream().distinct().forEach(word -> df.merge(word, 1L, Long::sum));
+        }
+        List<String> terms = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        for (int t = 0; t < words.size(); t++) {
+            String word = words.get(t);
+            boolean isPrefix = prefix && t == words.size() - 1;
+            terms.add(isPrefix ? word + "*" : word);
+            sizes.add(df.entrySet().stream()
+                    .filter(e -> isPrefix ? e.getKey().startsWith(word) : e.getKey().equals(word))
+                    .mapToLong(Map.Entry::getValue).sum());
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int t = 0; t < terms.size(); t++) {
+            order.add(t);
+        }
+        order.sort(Comparator.comparing(sizes::get));
+        Map<Integer, Float> scores = new HashMap<>();
+        for (int filmId = 1; filmId <= names.size(); filmId++) {
+            float score = 0;
+            for (int t : order) {
+                String term = terms.get(t);
+                float weight = (float) Math.log(1 + (double) names.size() / Math.min(sizes.get(t), names.size()));
+                if (names.get(filmId - 1).stream().anyMatch(word -> matches(term, word))) {
+                    score += weight * 3;
+                } else if (descriptions.get(filmId - 1).stream().anyMatch(word -> matches(term, word))) {
+                    score += weight;
+                } else {
+                    score = -1;
+                    break;
+                }
+            }
+            if (score > 0) {
+                scores.put(filmId, score);
+            }
+        }
+        return scores.keySet().stream()
+                .sorted(Comparator.comparing((Integer id) -> -scores.get(id)).thenComparing(id -> id))
+                .mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean matches(String term, String word) {
+        return term.endsWith("*") ? word.startsWith(term.substring(0, term.length() - 1)) : word.equals(term);
+    }
+
+    //сжатый список с пропуском блоков совпадает с обычным упорядоченным списком
+    @Test
+    void testPostingList() {
+        Random random = new Random(3);
+        TreeMap<Integer, Boolean> expected = new TreeMap<>();
+        PostingList list = PostingList.EMPTY;
+        for (int i = 0; i < 5000; i++) {
+            //в основном id дописываются в конец, как при загрузке фильмов, но бывают и вставки в середину
+            int id = random.nextInt(10) == 0 ? 1 + random.nextInt(100_000) : 1 + 20 * i + random.nextInt(20);
+            boolean inName = random.nextBoolean();
+            if (random.nextInt(20) == 0 && !expected.isEmpty()) {
+                Integer removed = expected.floorKey(id);
+                if (removed != null) {
+                    expected.remove(removed);
+                    list = list.without(removed);
+                }
+            } else {
+                expected.put(id, inName);
+                list = list.with(id, inName);
+            }
+        }
+        assertEquals(expected.size(), list.size());
+
+        List<Integer> ids = new ArrayList<>();
+        PostingList.Cursor cursor = list.cursor();
+        while (cursor.next()) {
+            assertEquals(expected.get(cursor.id()), cursor.inName());
+            ids.add(cursor.id());
+        }
+        assertEquals(new ArrayList<>(expected.keySet()), ids);
+
+        for (int step : new int[]{1, 7, 150, 3000}) {
+            cursor = list.cursor();
+            for (int target = 0; target <= 110_000; target += step + random.nextInt(step)) {
+                Integer next = expected.ceilingKey(target);
+                if (next == null) {
+                    assertFalse(cursor.advance(target));
+                    break;
+                }
+                assertTrue(cursor.advance(target));
+                assertEquals(next, cursor.id(), "Первый id не меньше " + target);
+            }
+        }
+    }
+}
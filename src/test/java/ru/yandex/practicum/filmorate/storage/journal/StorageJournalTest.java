@@ -0,0 +1,251 @@
+package ru.yandex.practicum.filmorate.storage.journal;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.yandex.practicum.filmorate.exceptions.film.FilmNotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.MPA;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmLikeDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryGenreDao;
+import ru.yandex.practicum.filmorate.storage.film.memory.InMemoryMpaDao;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryFriendsStorage;
+import ru.yandex.practicum.filmorate.storage.user.memory.InMemoryUserStorage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+//восстановление хранилищ в памяти из журнала и снимка после перезапуска и после сбоя во время записи
+class StorageJournalTest {
+    private static final int SEGMENT_SIZE = 1 << 20;
+
+    @TempDir
+    Path dir;
+
+    private final List<StorageJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (StorageJournal journal : journals) {
+            journal.close();
+        }
+    }
+
+    @Test
+    void testRestart() throws IOException {
+        Storages storages = open(SEGMENT_SIZE);
+        for (int i = 1; i <= 3; i++) {
+            storages.users.addUser(user(i));
+        }
+        User updated = user(2);
+        updated.setId(2);
+        updated.setName("Обновлённый");
+        storages.users.updateUser(updated);
+        storages.friends.addFriend(1, 2);
+        storages.friends.addFriend(1, 3);
+        storages.friends.deleteFriend(1, 3);
+        Film film = storages.films.addFilm(film(List.of(1, 2)));
+        Film deleted = storages.films.addFilm(film(List.of(3)));
+        Film update = film(List.of(2, 4));
+        update.setId(film.getId());
+        update.setName("Обновлённый");
+        storages.films.updateFilm(update);
+        storages.likes.addLike(film.getId(), 1);
+        storages.likes.addLike(film.getId(), 2);
+        storages.likes.deleteLike(film.getId(), 2);
+        storages.likes.addLike(deleted.getId(), 3);
+        storages.films.deleteFilm(deleted.getId());
+        storages.journal.close();
+
+        Storages restored = open(SEGMENT_SIZE);
+        assertEquals(storages.users.getUsers(), restored.users.getUsers(), "Пользователи не восстановлены.");
+        assertEquals("Обновлённый", restored.users.getUser(2).getName());
+        assertEquals(storages.friends.getFriends(1), restored.friends.getFriends(1), "Друзья не восстановлены.");
+        assertEquals(storages.films.getFilms(), restored.films.getFilms(), "Фильмы не восстановлены.");
+        assertEquals(List.of(2, 4), restored.genres.getGengesFilm(film.getId()).stream()
+                .map(Genre::getId).collect(Collectors.toList()), "Жанры фильма не восстановлены.");
+        assertTrue(restored.likes.isLiked(film.getId(), 1));
+        assertFalse(restored.likes.isLiked(film.getId(), 2));
+        assertThrows(FilmNotFoundException.class, () -> restored.likes.addLike(deleted.getId(), 1),
+                "Удалённому фильму можно поставить лайк.");
+        //id удалённого фильма не выдаётся повторно, id пользователей продолжаются
+        assertEquals(deleted.getId() + 1, restored.films.addFilm(film(List.of())).getId());
+        assertEquals(4, restored.users.addUser(user(4)).getId());
+    }
+
+    @Test
+    void testTornLastRecord() throws IOException {
+        Storages storages = open(SEGMENT_SIZE);
+        storages.users.addUser(user(1));
+        storages.users.addUser(user(2));
+        Film film = storages.films.addFilm(film(List.of(1)));
+        storages.likes.addLike(film.getId(), 1);
+        int position = storages.journal.getPosition();
+        storages.likes.addLike(film.getId(), 2);
+        int end = storages.journal.getPosition();
+        Path segment = storages.journal.getSegmentPath();
+        storages.journal.close();
+
+        //сбой во время записи последнего лайка: запись дописана не целиком, а страница после неё уже на диске
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            file.seek(end - 3);
+            file.write(new byte[]{7, 7, 7});
+            file.seek(end + 4096);
+            file.write(new byte[]{1, 2, 3, 4});
+        }
+
+        Storages restored = open(SEGMENT_SIZE);
+        assertEquals(position, restored.journal.getPosition(), "Журнал должен продолжаться с конца целых записей.");
+        assertTrue(restored.likes.isLiked(film.getId(), 1), "Лайк до сбоя потерян.");
+        assertFalse(restored.likes.isLiked(film.getId(), 2), "Оборванный лайк восстановлен.");
+        assertEquals(2, restored.users.getUsers().size());
+        byte[] bytes = Files.readAllBytes(segment);
+        for (int i = position; i < bytes.length; i++) {
+            assertEquals(0, bytes[i], "После конца журнала остались данные.");
+        }
+
+        //записи после восстановления переживают следующий перезапуск
+        restored.likes.addLike(film.getId(), 2);
+        restored.journal.close();
+        Storages reopened = open(SEGMENT_SIZE);
+        assertTrue(reopened.likes.isLiked(film.getId(), 1));
+        assertTrue(reopened.likes.isLiked(film.getId(), 2));
+    }
+
+    @Test
+    void testSnapshot() throws IOException {
+        Storages storages = open(SEGMENT_SIZE);
+        for (int i = 1; i <= 10; i++) {
+            storages.users.addUser(user(i));
+            storages.friends.addFriend(1, i);
+        }
+        Film film = storages.films.addFilm(film(List.of(1)));
+        Film deleted = storages.films.addFilm(film(List.of(1)));
+        for (int i = 1; i <= 10; i++) {
+            storages.likes.addLike(film.getId(), i);
+        }
+        storages.films.deleteFilm(deleted.getId());
+        storages.journal.snapshot();
+        //изменения после снимка - в новом сегменте
+        storages.likes.deleteLike(film.getId(), 10);
+        storages.friends.deleteFriend(1, 10);
+        storages.journal.close();
+
+        assertEquals(1, list("snapshot-").size(), "Должен остаться один снимок.");
+        assertEquals(1, list("journal-").size(), "Сегменты до снимка не удалены.");
+        //снимок, прерванный сбоем, не используется
+        Files.write(dir.resolve("snapshot-99999999999999999999.bin.tmp"), new byte[]{1, 2, 3});
+
+        Storages restored = open(SEGMENT_SIZE);
+        assertEquals(10, restored.users.getUsers().size());
+        assertEquals(9, restored.friends.getFriends(1).size());
+        assertEquals(9, restored.films.getFilm(film.getId()).getLikesCount());
+        assertThrows(FilmNotFoundException.class, () -> restored.films.getFilm(deleted.getId()));
+        assertEquals(deleted.getId() + 1, restored.films.addFilm(film(List.of())).getId());
+        assertTrue(list("snapshot-").stream().noneMatch(path -> path.toString().endsWith(".tmp")));
+    }
+
+    @Test
+    void testSmallSegments() throws IOException {
+        //записи переходят в новые сегменты по мере заполнения
+        Storages storages = open(4096);
+        Film film = storages.films.addFilm(film(List.of(1)));
+        for (int i = 1; i <= 2000; i++) {
+            storages.likes.addLike(film.getId(), i);
+        }
+        storages.journal.close();
+        assertTrue(list("journal-").size() > 10, "Журнал не разбит на сегменты.");
+
+        Storages restored = open(4096);
+        assertEquals(2000, restored.films.getFilm(film.getId()).getLikesCount());
+    }
+
+    @Test
+    void testConcurrentLikes() throws Exception {
+        Storages storages = open(SEGMENT_SIZE);
+        Film film = storages.films.addFilm(film(List.of(1)));
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> errors = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int i = 1; i <= 200; i++) {
+                        storages.likes.addLike(film.getId(), thread * 200 + i);
+                    }
+                } catch (RuntimeException e) {
+                    synchronized (errors) {
+                        errors.add(e);
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(List.of(), errors);
+        storages.journal.close();
+
+        Storages restored = open(SEGMENT_SIZE);
+        assertEquals(1600, restored.films.getFilm(film.getId()).getLikesCount());
+    }
+
+    private Storages open(int segmentSize) throws IOException {
+        StorageJournal journal = new StorageJournal(dir, segmentSize, true, 10);
+        journal.open();
+        journals.add(journal);
+        return new Storages(journal);
+    }
+
+    private List<Path> list(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.getFileName().toString().startsWith(prefix))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static User user(int i) {
+        return new User(0, "user" + i + "@mail.ru", "user" + i, "User " + i, LocalDate.of(1990, 1, 1));
+    }
+
+    private static Film film(List<Integer> genreIds) {
+        Set<Genre> genres = genreIds.stream().map(id -> new Genre(id, null)).collect(Collectors.toSet());
+        return new Film(0, "Film", "Description", LocalDate.of(2000, 1, 1), 100, 0, new MPA(1, null), genres);
+    }
+
+    //хранилища в памяти, восстановленные из журнала, как их собирает Spring
+    private static final class Storages {
+        final StorageJournal journal;
+        final InMemoryUserStorage users = new InMemoryUserStorage();
+        final InMemoryFriendsStorage friends = new InMemoryFriendsStorage(users);
+        final InMemoryFilmLikeDao likes = new InMemoryFilmLikeDao();
+        final InMemoryGenreDao genres = new InMemoryGenreDao();
+        final InMemoryFilmStorage films = new InMemoryFilmStorage(likes, genres, new InMemoryMpaDao());
+
+        Storages(StorageJournal journal) {
+            this.journal = journal;
+            users.setJournal(journal);
+            users.registerInJournal();
+            friends.setJournal(journal);
+            friends.registerInJournal();
+            likes.setJournal(journal);
+            likes.registerInJournal();
+            films.setJournal(journal);
+            films.registerInJournal();
+        }
+    }
+}
@@ -61,12 +61,13 @@ INSERT INTO films_genre(film_id,genre_id) VALUES(1,2),
                                                 (4,2),(4,3);
 
 --заполняем таблицу friends
-INSERT INTO friends(user_id,friend_id,friend_status) VALUES(1,2,true),
-                                                            (1,3,false),
-                                                            (4,1,false),
-                                                            (4,2,true),
-                                                            (2,5,false),
-                                                            (3,4,true);
+--подтверждённая дружба - две зеркальные записи: 1 и 2, 4 и 2, 3 и 4
+INSERT INTO friends(user_id,friend_id) VALUES(1,2),(2,1),
+                                             (1,3),
+                                             (4,1),
+                                             (4,2),(2,4),
+                                             (2,5),
+                                             (3,4),(4,3);
 
 --заполняем таблицу films_like
 INSERT INTO films_like(film_id,user_id) VALUES(1,2),
@@ -75,3 +76,6 @@ INSERT INTO films_like(film_id,user_id) VALUES(1,2),
                                             (2,4),
                                             (2,5),
                                             (3,6);
+
+--пересчитываем количество лайков фильмов
+UPDATE films f SET likes_count = (SELECT COUNT(*) FROM films_like fl WHERE fl.film_id = f.film_id);
@@ -32,6 +32,10 @@ CREATE TABLE IF NOT EXISTS films (
         rating_id INTEGER REFERENCES ratings_mpa (rating_id) ON DELETE SET NULL
 );
 
+--количество лайков фильма: обновляется вместе с таблицей films_like, популярные фильмы читаются по индексу
+ALTER TABLE films ADD COLUMN IF NOT EXISTS likes_count INTEGER DEFAULT 0 NOT NULL;
+CREATE INDEX IF NOT EXISTS films_likes_count_idx ON films (likes_count DESC, film_id);
+
 --создание таблицы films_genre
 CREATE TABLE IF NOT EXISTS films_genre (
         films_genre_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -39,17 +43,27 @@ CREATE TABLE IF NOT EXISTS films_genre (
         genre_id INTEGER REFERENCES genre (genre_id) ON DELETE CASCADE
 );
 
---создание таблицы friends
+--жанр у фильма не повторяется; по индексу читаются жанры фильма и выполняется MERGE жанра
+CREATE UNIQUE INDEX IF NOT EXISTS films_genre_film_genre_uq ON films_genre (film_id, genre_id);
+
+--создание таблицы friends: запись (user_id, friend_id) - friend_id в списке друзей user_id
+--подтверждённая дружба хранится двумя зеркальными записями, поэтому друзья пользователя читаются по индексу user_id
 CREATE TABLE IF NOT EXISTS friends (
         user_friend_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
         user_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE,
-        friend_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE,
-        friend_status BOOLEAN DEFAULT FALSE
+        friend_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE
 );
 
+--запись о дружбе пары пользователей не повторяется; второй индекс - для удаления записей, в которых пользователь друг
+CREATE UNIQUE INDEX IF NOT EXISTS friends_user_friend_uq ON friends (user_id, friend_id);
+CREATE INDEX IF NOT EXISTS friends_friend_user_idx ON friends (friend_id, user_id);
+
 --создание таблицы films_like
 CREATE TABLE IF NOT EXISTS films_like (
         films_like_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
         film_id INTEGER REFERENCES films (film_id) ON DELETE CASCADE,
         user_id INTEGER REFERENCES users (user_id) ON DELETE CASCADE
 );
+
+--пользователь ставит фильму не больше одного лайка; по индексу проверяется лайк и выполняется MERGE лайка
+CREATE UNIQUE INDEX IF NOT EXISTS films_like_film_user_uq ON films_like (film_id, user_id);